@@ -0,0 +1,81 @@
+package com.redcat.tutorials.benchmarks;
+
+import com.redcat.tutorials.callgraphgenerator.CallGraphAnalysis;
+import com.redcat.tutorials.callgraphgenerator.EndpointDetector;
+import com.redcat.tutorials.callgraphgenerator.ReachabilityIndex;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A synthetic Spring project written to a temporary classes directory once per trial, shared by every
+ * benchmark thread. Benchmarks that start from a built call graph ask for {@link #analyze()} in their setup.
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    @Param({"1000", "10000", "100000"})
+    public int classes;
+
+    public SpringCorpusGenerator.Shape shape;
+    public File classesDir;
+    public CallGraphAnalysis analysis;
+    public List<String> entryMethods;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        classesDir = Files.createTempDirectory("callgraph-corpus").toFile();
+        shape = SpringCorpusGenerator.Shape.of(classes);
+        int written = new SpringCorpusGenerator(shape).generate(classesDir);
+        System.out.println("Generated " + written + " class files (" + shape + ")");
+    }
+
+    /**
+     * Run the analysis once, keeping its call graph, builder and the endpoint entry methods in a stable order
+     */
+    public void analyze() throws IOException {
+        if (analysis != null) {
+            return;
+        }
+        analysis = new CallGraphAnalysis(classesDir.getAbsolutePath());
+        analysis.run();
+        entryMethods = new ArrayList<>();
+        for (EndpointDetector.Endpoint endpoint : analysis.getEndpoints()) {
+            entryMethods.add(endpoint.entryMethod);
+        }
+        entryMethods.sort(Comparator.naturalOrder());
+    }
+
+    /**
+     * Fail the trial if the call graph lost the cycles of the corpus, which the condensation benchmarks rely on
+     * @param reachability the reachability index of the analysed call graph
+     */
+    public void checkCycles(ReachabilityIndex reachability) {
+        int methods = reachability.getGraph().getNodeCount();
+        if (shape.cycleEvery > 0 && reachability.getComponentCount() >= methods) {
+            throw new IllegalStateException("Expected cycles in a corpus with " + shape + ", but the "
+                    + methods + " methods form as many strongly connected components");
+        }
+        System.out.println("Condensed " + methods + " methods into " + reachability.getComponentCount()
+                + " strongly connected components");
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        if (analysis != null) {
+            analysis.close();
+            analysis = null;
+        }
+        SpringCorpusGenerator.delete(classesDir);
+    }
+}
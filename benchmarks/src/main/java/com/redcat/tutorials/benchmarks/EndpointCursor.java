@@ -0,0 +1,21 @@
+package com.redcat.tutorials.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Walks the corpus endpoints round-robin, one cursor per benchmark thread
+ */
+@State(Scope.Thread)
+public class EndpointCursor {
+
+    private int next;
+
+    public String next(List<String> entryMethods) {
+        String entryMethod = entryMethods.get(next);
+        next = (next + 1) % entryMethods.size();
+        return entryMethod;
+    }
+}
@@ -0,0 +1,73 @@
+package com.redcat.tutorials.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.redcat.tutorials.callgraphgenerator.CallGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the full call graph and one endpoint's subgraph as JSON, to a stream that only counts bytes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonOutputBenchmark {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private CallGraph callGraph;
+
+    @Setup(Level.Trial)
+    public void setUp(Corpus corpus) throws IOException {
+        corpus.analyze();
+        callGraph = corpus.analysis.getCallGraph();
+    }
+
+    @Benchmark
+    public long fullGraph() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            callGraph.writeJson(generator);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long endpointSubGraph(Corpus corpus, EndpointCursor cursor) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            callGraph.writeSubGraphJson(generator, cursor.next(corpus.entryMethods));
+        }
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
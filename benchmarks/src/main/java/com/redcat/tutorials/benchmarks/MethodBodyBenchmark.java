@@ -0,0 +1,55 @@
+package com.redcat.tutorials.benchmarks;
+
+import com.redcat.tutorials.callgraphgenerator.MethodBodyExtractor;
+import com.redcat.tutorials.callgraphgenerator.ReachabilityIndex;
+import com.redcat.tutorials.callgraphgenerator.ScanShard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the method bodies of one endpoint's call hierarchy. The corpus has no sources, so bodies are
+ * textified bytecode; a body cache of 0 renders every body on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MethodBodyBenchmark {
+
+    @Param({"0", "10000"})
+    public int bodyCacheSize;
+
+    private ReachabilityIndex reachability;
+    private MethodBodyExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp(Corpus corpus) throws IOException {
+        corpus.analyze();
+        reachability = new ReachabilityIndex(corpus.analysis.getCallGraph());
+        corpus.checkCycles(reachability);
+        ScanShard scan = corpus.analysis.getScan();
+        extractor = new MethodBodyExtractor(corpus.analysis.getModules(), bodyCacheSize);
+        extractor.loadClasses(scan.getClasses(), scan.getClassBytes());
+    }
+
+    @Benchmark
+    public Map<String, MethodBodyExtractor.MethodInfo> extractMethodHierarchy(Corpus corpus, EndpointCursor cursor) {
+        return extractor.extractMethodHierarchyWithInfo(reachability, cursor.next(corpus.entryMethods));
+    }
+}
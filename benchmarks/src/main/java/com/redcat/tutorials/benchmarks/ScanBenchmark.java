@@ -0,0 +1,53 @@
+package com.redcat.tutorials.benchmarks;
+
+import com.redcat.tutorials.callgraphgenerator.CallGraphAnalysis;
+import com.redcat.tutorials.callgraphgenerator.ClassFileScanner;
+import com.redcat.tutorials.callgraphgenerator.ScanShard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning the corpus class files, alone and followed by the rest of the analysis up to a pruned call graph
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ScanBenchmark {
+
+    /**
+     * Parser threads; 0 for one per available processor
+     */
+    @Param({"1", "0"})
+    public int parallelism;
+
+    @Benchmark
+    public ScanShard scan(Corpus corpus) throws IOException {
+        return new ClassFileScanner(workers()).scan(corpus.classesDir);
+    }
+
+    @Benchmark
+    public int analysis(Corpus corpus) throws IOException {
+        try (CallGraphAnalysis analysis = new CallGraphAnalysis(corpus.classesDir.getAbsolutePath())) {
+            analysis.setParallelism(workers());
+            return analysis.run().getCallGraph().getEdgeCount();
+        }
+    }
+
+    private int workers() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,299 @@
+package com.redcat.tutorials.benchmarks;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the class files of a synthetic Spring project with ASM, so the generator can be benchmarked on
+ * projects of any size without checking in compiled code. The project is made of slices, each holding one
+ * {@code @RestController}, a chain of {@code @Service} layers and a {@code @Repository}. Every method calls
+ * {@link Shape#fanOut} methods of the next layer through injected fields, spreading over neighbouring slices
+ * so endpoints share much of their reachable graph. Services and repositories are optionally called through
+ * interfaces, and some repository methods call back into the first-layer service method that reaches them, so
+ * each forms a cycle through every layer of its slice.
+ */
+public class SpringCorpusGenerator {
+
+    public static final String BASE_PACKAGE = "com/acme/bench";
+    private static final String REQUEST = "Ljava/lang/String;";
+    private static final String HANDLER = "(" + REQUEST + ")" + REQUEST;
+
+    /**
+     * The shape of a generated project
+     */
+    public static class Shape {
+        public final int classes;       // approximate number of classes, interfaces included
+        public final int depth;         // service layers between a controller and its repository
+        public final int fanOut;        // calls made by each non-leaf method
+        public final int methods;       // endpoints per controller, and methods per service and repository
+        public final boolean interfaces; // call services and repositories through interfaces
+        public final int cycleEvery;    // every n-th repository method calls back into a service method reaching it, 0 for none
+
+        public Shape(int classes, int depth, int fanOut, int methods, boolean interfaces, int cycleEvery) {
+            this.classes = classes;
+            this.depth = Math.max(1, depth);
+            this.fanOut = Math.max(1, fanOut);
+            this.methods = Math.max(1, methods);
+            this.interfaces = interfaces;
+            this.cycleEvery = Math.max(0, cycleEvery);
+        }
+
+        /**
+         * @return a typical layered project of about the given number of classes
+         */
+        public static Shape of(int classes) {
+            return new Shape(classes, 3, 3, 4, true, 16);
+        }
+
+        /**
+         * @return the number of classes in one controller, service chain and repository slice
+         */
+        int classesPerSlice() {
+            int components = depth + 1; // services and the repository
+            return 1 + components * (interfaces ? 2 : 1);
+        }
+
+        /**
+         * @return the number of slices, and so of controllers
+         */
+        public int slices() {
+            return Math.max(1, classes / classesPerSlice());
+        }
+
+        @Override
+        public String toString() {
+            return slices() + " controllers x " + classesPerSlice() + " classes, depth " + depth + ", fan-out " + fanOut
+                    + ", " + methods + " methods" + (interfaces ? ", interfaces" : "")
+                    + (cycleEvery > 0 ? ", cycle every " + cycleEvery + " repository methods" : "");
+        }
+    }
+
+    private final Shape shape;
+
+    public SpringCorpusGenerator(Shape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Write the project's class files below a classes directory
+     * @return the number of class files written
+     */
+    public int generate(File classesDir) throws IOException {
+        int written = 0;
+        int slices = shape.slices();
+        for (int slice = 0; slice < slices; slice++) {
+            write(classesDir, controllerName(slice), controller(slice));
+            written++;
+            for (int layer = 0; layer <= shape.depth; layer++) {
+                write(classesDir, implementationName(layer, slice), component(layer, slice));
+                written++;
+                if (shape.interfaces) {
+                    write(classesDir, typeName(layer, slice), componentInterface(layer, slice));
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return the entry method id of an endpoint, as the call graph names it
+     */
+    public static String endpointMethod(int slice, int method) {
+        return controllerName(slice).replace('/', '.') + ".endpoint" + method + "(java.lang.String)";
+    }
+
+    /**
+     * Delete a generated classes directory
+     */
+    public static void delete(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private byte[] controller(int slice) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        String name = controllerName(slice);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+        writer.visitSource(simpleName(name) + ".java", null);
+        writer.visitAnnotation("Lorg/springframework/web/bind/annotation/RestController;", true).visitEnd();
+        writeFields(writer, 0, slice);
+        writeConstructor(writer);
+        for (int method = 0; method < shape.methods; method++) {
+            MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, "endpoint" + method, HANDLER, null, null);
+            var mapping = visitor.visitAnnotation("Lorg/springframework/web/bind/annotation/GetMapping;", true);
+            mapping.visit("value", "/bench/c" + slice + "/e" + method);
+            mapping.visitEnd();
+            writeCalls(visitor, name, 0, slice, method);
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param layer the service layer, or {@link Shape#depth} for the repository
+     */
+    private byte[] component(int layer, int slice) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        String name = implementationName(layer, slice);
+        boolean repository = layer == shape.depth;
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object",
+                shape.interfaces ? new String[]{typeName(layer, slice)} : null);
+        writer.visitSource(simpleName(name) + ".java", null);
+        writer.visitAnnotation(repository ? "Lorg/springframework/stereotype/Repository;"
+                : "Lorg/springframework/stereotype/Service;", true).visitEnd();
+        if (!repository) {
+            writeFields(writer, layer + 1, slice);
+        } else if (shape.cycleEvery > 0) {
+            writer.visitField(Opcodes.ACC_PRIVATE, "cycle", descriptor(typeName(0, slice)), null, null).visitEnd();
+        }
+        writeConstructor(writer);
+        for (int method = 0; method < shape.methods; method++) {
+            MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, "call" + method, HANDLER, null, null);
+            if (!repository) {
+                writeCalls(visitor, name, layer + 1, slice, method);
+            } else if (shape.cycleEvery > 0 && (slice * shape.methods + method) % shape.cycleEvery == 0) {
+                // Method m of each layer calls method m of the next layer of its own slice through dependency0,
+                // so calling method m of the first service layer closes a cycle through every layer
+                visitor.visitCode();
+                visitor.visitVarInsn(Opcodes.ALOAD, 0);
+                visitor.visitFieldInsn(Opcodes.GETFIELD, name, "cycle", descriptor(typeName(0, slice)));
+                visitor.visitVarInsn(Opcodes.ALOAD, 1);
+                invoke(visitor, 0, slice, method);
+                visitor.visitInsn(Opcodes.ARETURN);
+                visitor.visitMaxs(0, 0);
+                visitor.visitEnd();
+            } else {
+                visitor.visitCode();
+                visitor.visitVarInsn(Opcodes.ALOAD, 1);
+                visitor.visitInsn(Opcodes.ARETURN);
+                visitor.visitMaxs(0, 0);
+                visitor.visitEnd();
+            }
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private byte[] componentInterface(int layer, int slice) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+                typeName(layer, slice), null, "java/lang/Object", null);
+        for (int method = 0; method < shape.methods; method++) {
+            writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "call" + method, HANDLER, null, null).visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Declare one injected field per fan-out target in the given layer
+     */
+    private void writeFields(ClassWriter writer, int targetLayer, int slice) {
+        for (int target = 0; target < shape.fanOut; target++) {
+            writer.visitField(Opcodes.ACC_PRIVATE, "dependency" + target,
+                    descriptor(typeName(targetLayer, targetSlice(slice, target))), null, null).visitEnd();
+        }
+    }
+
+    private void writeConstructor(ClassWriter writer) {
+        MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        visitor.visitCode();
+        visitor.visitVarInsn(Opcodes.ALOAD, 0);
+        visitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        visitor.visitInsn(Opcodes.RETURN);
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+
+    /**
+     * Write a method body that passes its argument through each fan-out dependency in turn
+     */
+    private void writeCalls(MethodVisitor visitor, String owner, int targetLayer, int slice, int method) {
+        visitor.visitCode();
+        visitor.visitVarInsn(Opcodes.ALOAD, 1);
+        for (int target = 0; target < shape.fanOut; target++) {
+            int targetSlice = targetSlice(slice, target);
+            visitor.visitVarInsn(Opcodes.ASTORE, 1);
+            visitor.visitVarInsn(Opcodes.ALOAD, 0);
+            visitor.visitFieldInsn(Opcodes.GETFIELD, owner, "dependency" + target, descriptor(typeName(targetLayer, targetSlice)));
+            visitor.visitVarInsn(Opcodes.ALOAD, 1);
+            invoke(visitor, targetLayer, targetSlice, (method + target) % shape.methods);
+        }
+        visitor.visitInsn(Opcodes.ARETURN);
+        visitor.visitMaxs(0, 0);
+        visitor.visitEnd();
+    }
+
+    private void invoke(MethodVisitor visitor, int layer, int slice, int method) {
+        if (shape.interfaces) {
+            visitor.visitMethodInsn(Opcodes.INVOKEINTERFACE, typeName(layer, slice), "call" + method, HANDLER, true);
+        } else {
+            visitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, typeName(layer, slice), "call" + method, HANDLER, false);
+        }
+    }
+
+    private int targetSlice(int slice, int target) {
+        return (slice + target) % shape.slices();
+    }
+
+    private static String controllerName(int slice) {
+        return BASE_PACKAGE + "/web/Slice" + slice + "Controller";
+    }
+
+    /**
+     * @return the type callers depend on: the interface when there is one, the implementation otherwise
+     */
+    private String typeName(int layer, int slice) {
+        return shape.interfaces ? componentName(layer, slice) : implementationName(layer, slice);
+    }
+
+    private String implementationName(int layer, int slice) {
+        return shape.interfaces ? componentName(layer, slice) + "Impl" : componentName(layer, slice);
+    }
+
+    private String componentName(int layer, int slice) {
+        return layer == shape.depth
+                ? BASE_PACKAGE + "/repository/Slice" + slice + "Repository"
+                : BASE_PACKAGE + "/service/layer" + layer + "/Slice" + slice + "Service";
+    }
+
+    private static String descriptor(String internalName) {
+        return "L" + internalName + ";";
+    }
+
+    private static String simpleName(String internalName) {
+        return internalName.substring(internalName.lastIndexOf('/') + 1);
+    }
+
+    private static void write(File classesDir, String internalName, byte[] bytes) throws IOException {
+        File file = new File(classesDir, internalName + ".class");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SpringCorpusGenerator <classes dir> <class count>");
+            System.exit(1);
+            return;
+        }
+        Shape shape = Shape.of(Integer.parseInt(args[1]));
+        int written = new SpringCorpusGenerator(shape).generate(new File(args[0]));
+        System.out.println("Wrote " + written + " class files (" + shape + ") to " + args[0]);
+    }
+}
@@ -0,0 +1,54 @@
+package com.redcat.tutorials.benchmarks;
+
+import com.redcat.tutorials.callgraphgenerator.CallGraph;
+import com.redcat.tutorials.callgraphgenerator.ReachabilityIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The subgraph reachable from one endpoint, by a fresh traversal and from the shared condensation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SubGraphBenchmark {
+
+    private CallGraph callGraph;
+    private ReachabilityIndex reachability;
+
+    @Setup(Level.Trial)
+    public void setUp(Corpus corpus) throws IOException {
+        corpus.analyze();
+        callGraph = corpus.analysis.getCallGraph();
+        reachability = new ReachabilityIndex(callGraph);
+        corpus.checkCycles(reachability);
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> getSubGraphFrom(Corpus corpus, EndpointCursor cursor) {
+        return callGraph.getSubGraphFrom(cursor.next(corpus.entryMethods));
+    }
+
+    @Benchmark
+    public int[] reachableFromIndex(Corpus corpus, EndpointCursor cursor) {
+        int entry = callGraph.idOf(cursor.next(corpus.entryMethods));
+        return entry < 0 ? new int[0] : reachability.reachableFrom(entry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.redcat.tutorials.analysis.controller;
+
+import com.redcat.tutorials.analysis.dto.AnalysisJobRequest;
+import com.redcat.tutorials.analysis.dto.AnalysisJobResponse;
+import com.redcat.tutorials.analysis.service.AnalysisJobService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for call graph analyses run inside the server
+ */
+@RestController
+@RequestMapping("/api/analysis/jobs")
+@Slf4j
+public class AnalysisJobController {
+
+    private final AnalysisJobService analysisJobService;
+
+    public AnalysisJobController(AnalysisJobService analysisJobService) {
+        this.analysisJobService = analysisJobService;
+    }
+
+    /**
+     * Queue the analysis of a classes directory or jar; the results are loaded into MongoDB when it finishes
+     *
+     * @param request the classes path and project name
+     * @return the queued job, to be polled for progress
+     */
+    @PostMapping
+    public ResponseEntity<AnalysisJobResponse> submit(@RequestBody AnalysisJobRequest request) {
+        if (request.getClassesPath() == null || request.getClassesPath().isBlank()) {
+            return ResponseEntity.badRequest().body(AnalysisJobResponse.builder().message("Classes path is required").build());
+        }
+        if (request.getProjectName() == null || request.getProjectName().isBlank()) {
+            return ResponseEntity.badRequest().body(AnalysisJobResponse.builder().message("Project name is required").build());
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(analysisJobService.submit(request));
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected analysis of {}: job queue is full", request.getClassesPath());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(AnalysisJobResponse.builder().message("Too many analysis jobs queued, try again later").build());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<AnalysisJobResponse> getJob(@PathVariable String id) {
+        AnalysisJobResponse response = analysisJobService.getJob(id);
+        return response != null ? ResponseEntity.ok(response) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping
+    public ResponseEntity<List<AnalysisJobResponse>> getJobs() {
+        return ResponseEntity.ok(analysisJobService.getJobs());
+    }
+}
@@ -0,0 +1,24 @@
+package com.redcat.tutorials.analysis.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request to analyze a project's compiled classes and load the results into MongoDB
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnalysisJobRequest {
+    // Comma separated classes directories, jars or Maven / Gradle build directories
+    private String classesPath;
+    private String projectName;
+    // Packages of Boot jar dependencies to analyze along with the project
+    private List<String> libraryPackages;
+    // Comma separated project packages and packages to treat as libraries; derived from the classes if not given
+    private String includePackages;
+    private String excludePackages;
+}
@@ -0,0 +1,34 @@
+package com.redcat.tutorials.analysis.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnalysisJobResponse {
+    private String id;
+    private String projectName;
+    private String classesPath;
+    private String status;
+    // The phase running now, or the last one to run
+    private String phase;
+    private Integer completedPhases;
+    private Integer totalPhases;
+    // Milliseconds per finished phase, in the order they ran
+    private Map<String, Long> phaseTimings;
+    // Classes, methods, edges and endpoints of the analysis
+    private Map<String, Long> counts;
+    private String submittedAt;
+    private String startedAt;
+    private String finishedAt;
+    private Integer endpoints;
+    private Integer methodBodiesLoaded;
+    private Integer callGraphNodesLoaded;
+    private String message;
+}
@@ -0,0 +1,8 @@
+package com.redcat.tutorials.analysis.model;
+
+public enum AnalysisJobStatus {
+    QUEUED,
+    RUNNING,
+    FAILED,
+    FINISHED
+}
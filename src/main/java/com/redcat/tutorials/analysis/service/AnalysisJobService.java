@@ -0,0 +1,315 @@
+package com.redcat.tutorials.analysis.service;
+
+import com.redcat.tutorials.analysis.dto.AnalysisJobRequest;
+import com.redcat.tutorials.analysis.dto.AnalysisJobResponse;
+import com.redcat.tutorials.analysis.model.AnalysisJobStatus;
+import com.redcat.tutorials.callgraphgenerator.AnalysisReport;
+import com.redcat.tutorials.callgraphgenerator.CallGraphAnalysis;
+import com.redcat.tutorials.dataloader.dto.LoadDataResponse;
+import com.redcat.tutorials.dataloader.service.DataLoaderService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs call graph analyses inside the server and loads their results straight into MongoDB, so a project is
+ * analyzed without spawning a JVM or writing and re-reading the generator's JSON files. Jobs run on a fixed
+ * pool of workers behind a bounded queue; a job submitted while the queue is full is rejected. Jobs are kept
+ * in memory with their progress and phase timings, the most recent ones after they finish. The cost of each
+ * finished job, per phase and with its sizes, is published to Micrometer tagged by project; so are its peak heap
+ * and GC time when a single worker gives each job the JVM to itself.
+ */
+@Service
+@Slf4j
+public class AnalysisJobService {
+
+    public static final String PHASE_STORE = "store";
+
+    public static final String METRIC_PREFIX = "callgraph.analysis";
+
+    // Walk and parse are reported within the scan, so they do not count towards progress
+    private static final List<String> PHASES = List.of(CallGraphAnalysis.PHASE_SCAN, CallGraphAnalysis.PHASE_HIERARCHY,
+            CallGraphAnalysis.PHASE_EXPANSION, CallGraphAnalysis.PHASE_PACKAGES, CallGraphAnalysis.PHASE_PRUNE,
+            CallGraphAnalysis.PHASE_METHOD_BODIES, PHASE_STORE);
+
+    private final DataLoaderService dataLoaderService;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final boolean measureJvm;
+    private final int retainedJobs;
+    private final String snapshotDir;
+    private final Map<String, AnalysisJob> jobs = new LinkedHashMap<>(); // in submission order, guarded by itself
+
+    public AnalysisJobService(DataLoaderService dataLoaderService,
+                              MeterRegistry meterRegistry,
+                              @Value("${analysis.jobs.workers:2}") int workers,
+                              @Value("${analysis.jobs.queue-capacity:16}") int queueCapacity,
+                              @Value("${analysis.jobs.parallelism:0}") int parallelism,
+                              @Value("${analysis.jobs.retained:100}") int retainedJobs,
+                              @Value("${analysis.jobs.snapshot-dir:}") String snapshotDir) {
+        this.dataLoaderService = dataLoaderService;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "analysis-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Workers share the cores; each job parses classes and writes with its share of them
+        this.parallelism = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+        // Heap and GC are shared by concurrent jobs, so only a single worker can attribute them to its job
+        this.measureJvm = workers == 1;
+        this.retainedJobs = retainedJobs;
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * Queue an analysis
+     * @return the queued job
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public AnalysisJobResponse submit(AnalysisJobRequest request) {
+        AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), request);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            evictFinishedJobs();
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            throw e;
+        }
+        log.info("Queued analysis job {} of {} for project {}", job.id, request.getClassesPath(), request.getProjectName());
+        return job.toResponse();
+    }
+
+    /**
+     * @return the job, or null if it is unknown or no longer retained
+     */
+    public AnalysisJobResponse getJob(String id) {
+        AnalysisJob job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        return job != null ? job.toResponse() : null;
+    }
+
+    /**
+     * @return every retained job, most recently submitted first
+     */
+    public List<AnalysisJobResponse> getJobs() {
+        List<AnalysisJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        List<AnalysisJobResponse> responses = new ArrayList<>();
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            responses.add(snapshot.get(i).toResponse());
+        }
+        return responses;
+    }
+
+    private void run(AnalysisJob job) {
+        job.started();
+        AnalysisJobRequest request = job.request;
+        try (CallGraphAnalysis analysis = new CallGraphAnalysis(request.getClassesPath())) {
+            analysis.setParallelism(parallelism);
+            if (request.getLibraryPackages() != null) {
+                analysis.setLibraryPackages(request.getLibraryPackages());
+            }
+            if (request.getIncludePackages() != null || request.getExcludePackages() != null) {
+                analysis.setPackages(request.getIncludePackages(), request.getExcludePackages());
+            }
+            if (!snapshotDir.isBlank()) {
+                analysis.setSnapshotDir(new File(snapshotDir, request.getProjectName().replaceAll("[^a-zA-Z0-9.\\-_]", "_")));
+            }
+            AnalysisReport report = new AnalysisReport(request.getClassesPath(), job, measureJvm);
+            analysis.setPhaseListener(report);
+            analysis.run();
+            job.setEndpoints(analysis.getEndpoints().size());
+
+            report.phaseStarted(PHASE_STORE);
+            long started = System.nanoTime();
+            LoadDataResponse loaded = dataLoaderService.loadAnalysis(analysis, request.getProjectName());
+            report.phaseFinished(PHASE_STORE, (System.nanoTime() - started) / 1_000_000);
+            publish(report.finish(), request.getProjectName());
+            job.finished(loaded);
+            if (loaded.isSuccess()) {
+                log.info("Analysis job {} finished in {}", job.id, job.toResponse().getPhaseTimings());
+            } else {
+                log.warn("Analysis job {} failed to load its results: {}", job.id, loaded.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("Analysis job {} failed", job.id, e);
+            job.failed(e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * Record a finished job's phase timings, sizes, and, with a single worker, its peak heap and GC time. With
+     * several workers those are left to the process-wide jvm.memory and jvm.gc metrics.
+     */
+    private void publish(AnalysisReport report, String projectName) {
+        report.getPhases().forEach((phase, millis) -> Timer.builder(METRIC_PREFIX + ".phase")
+                .tag("project", projectName)
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(millis, TimeUnit.MILLISECONDS));
+        Timer.builder(METRIC_PREFIX + ".duration").tag("project", projectName).register(meterRegistry)
+                .record(report.getTotalMillis(), TimeUnit.MILLISECONDS);
+        if (report.isMeasuringJvm()) {
+            Timer.builder(METRIC_PREFIX + ".gc").tag("project", projectName).register(meterRegistry)
+                    .record(report.getGcMillis(), TimeUnit.MILLISECONDS);
+            DistributionSummary.builder(METRIC_PREFIX + ".peak.heap").baseUnit("bytes").tag("project", projectName)
+                    .register(meterRegistry).record(report.getPeakHeapBytes());
+        }
+        report.getCounts().forEach((name, count) -> DistributionSummary.builder(METRIC_PREFIX + ".size")
+                .tag("project", projectName)
+                .tag("count", name)
+                .register(meterRegistry)
+                .record(count));
+    }
+
+    private void evictFinishedJobs() {
+        Iterator<AnalysisJob> iterator = jobs.values().iterator();
+        int excess = jobs.size() - retainedJobs;
+        while (excess > 0 && iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A submitted analysis and its progress; updated by its worker, read by requests
+     */
+    private static final class AnalysisJob implements CallGraphAnalysis.PhaseListener {
+        final String id;
+        final AnalysisJobRequest request;
+        final Instant submittedAt = Instant.now();
+        private final Map<String, Long> phaseTimings = new LinkedHashMap<>();
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private AnalysisJobStatus status = AnalysisJobStatus.QUEUED;
+        private String phase;
+        private Instant startedAt;
+        private Instant finishedAt;
+        private Integer endpoints;
+        private LoadDataResponse loaded;
+        private String message;
+
+        AnalysisJob(String id, AnalysisJobRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        synchronized void started() {
+            status = AnalysisJobStatus.RUNNING;
+            startedAt = Instant.now();
+        }
+
+        @Override
+        public synchronized void phaseStarted(String phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public synchronized void phaseFinished(String phase, long millis) {
+            phaseTimings.put(phase, millis);
+        }
+
+        @Override
+        public synchronized void counted(String name, long count) {
+            counts.put(name, count);
+        }
+
+        @Override
+        public void info(String message) {
+            log.info("Analysis job {}: {}", id, message);
+        }
+
+        @Override
+        public void warn(String message) {
+            log.warn("Analysis job {}: {}", id, message);
+        }
+
+        @Override
+        public void warn(String message, Throwable error) {
+            log.warn("Analysis job {}: {}", id, message, error);
+        }
+
+        synchronized void setEndpoints(int endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        /**
+         * @param loaded what was stored; a load that did not succeed, e.g. one superseded by a later load of the
+         *               project, fails the job
+         */
+        synchronized void finished(LoadDataResponse loaded) {
+            this.loaded = loaded;
+            this.message = loaded.getMessage();
+            status = loaded.isSuccess() ? AnalysisJobStatus.FINISHED : AnalysisJobStatus.FAILED;
+            finishedAt = Instant.now();
+        }
+
+        synchronized void failed(String message) {
+            this.message = message;
+            status = AnalysisJobStatus.FAILED;
+            finishedAt = Instant.now();
+        }
+
+        synchronized boolean isDone() {
+            return status == AnalysisJobStatus.FINISHED || status == AnalysisJobStatus.FAILED;
+        }
+
+        synchronized AnalysisJobResponse toResponse() {
+            return AnalysisJobResponse.builder()
+                    .id(id)
+                    .projectName(request.getProjectName())
+                    .classesPath(request.getClassesPath())
+                    .status(status.name())
+                    .phase(phase)
+                    .completedPhases((int) phaseTimings.keySet().stream().filter(PHASES::contains).count())
+                    .totalPhases(PHASES.size())
+                    .phaseTimings(new LinkedHashMap<>(phaseTimings))
+                    .counts(new LinkedHashMap<>(counts))
+                    .submittedAt(submittedAt.toString())
+                    .startedAt(startedAt != null ? startedAt.toString() : null)
+                    .finishedAt(finishedAt != null ? finishedAt.toString() : null)
+                    .endpoints(endpoints)
+                    .methodBodiesLoaded(loaded != null ? loaded.getMethodBodiesLoaded() : null)
+                    .callGraphNodesLoaded(loaded != null ? loaded.getCallGraphNodesLoaded() : null)
+                    .message(message)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What one analysis cost: the time of each phase, the number of classes, methods, edges and endpoints and bytes
+ * written, the peak heap and the GC time. Collected as a {@link CallGraphAnalysis.PhaseListener}, forwarding
+ * every event to another listener, and written to {@value #FILE_NAME} in the output directory of a standalone
+ * run. Peak heap and GC time are read from the JVM, so they include whatever else the JVM runs meanwhile; they
+ * are only measured when the analysis has the JVM to itself, and are -1 otherwise.
+ */
+public class AnalysisReport implements CallGraphAnalysis.PhaseListener {
+
+    public static final String FILE_NAME = "analysis-report.json";
+
+    private final String classesPath;
+    private final CallGraphAnalysis.PhaseListener delegate;
+    private final Instant startedAt = Instant.now();
+    private final long started = System.nanoTime();
+    private final long gcMillisBefore;
+    private final long gcCountBefore;
+    private final Map<String, Long> phases = new LinkedHashMap<>(); // in the order they finished
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private final boolean measureJvm;
+    private long totalMillis = -1;
+    private long peakHeapBytes = -1;
+    private long gcMillis = -1;
+    private long gcCount = -1;
+
+    public AnalysisReport(String classesPath) {
+        this(classesPath, new CallGraphAnalysis.PhaseListener() {
+        }, true);
+    }
+
+    /**
+     * Start the report, resetting the peak usage of the heap pools if it measures the JVM
+     * @param classesPath the classes path analyzed
+     * @param delegate told about every phase, count and message as well
+     * @param measureJvm whether to measure peak heap and GC time, which is only meaningful when no other
+     *                   analysis runs in the JVM at the same time; resetting the peak would also disturb theirs
+     */
+    public AnalysisReport(String classesPath, CallGraphAnalysis.PhaseListener delegate, boolean measureJvm) {
+        this.classesPath = classesPath;
+        this.delegate = delegate;
+        this.measureJvm = measureJvm;
+        if (measureJvm) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+        long[] gc = measureJvm ? gcTotals() : new long[2];
+        this.gcMillisBefore = gc[0];
+        this.gcCountBefore = gc[1];
+    }
+
+    @Override
+    public void phaseStarted(String phase) {
+        delegate.phaseStarted(phase);
+    }
+
+    @Override
+    public synchronized void phaseFinished(String phase, long millis) {
+        phases.put(phase, millis);
+        delegate.phaseFinished(phase, millis);
+    }
+
+    @Override
+    public synchronized void counted(String name, long count) {
+        counts.put(name, count);
+        delegate.counted(name, count);
+    }
+
+    @Override
+    public void info(String message) {
+        delegate.info(message);
+    }
+
+    @Override
+    public void warn(String message) {
+        delegate.warn(message);
+    }
+
+    @Override
+    public void warn(String message, Throwable error) {
+        delegate.warn(message, error);
+    }
+
+    /**
+     * Stop the clock and read the peak heap and GC time since the report was started, if it measures the JVM
+     * @return this report
+     */
+    public synchronized AnalysisReport finish() {
+        totalMillis = (System.nanoTime() - started) / 1_000_000;
+        if (!measureJvm) {
+            return this;
+        }
+        // Pools peak at different times, so their sum is an upper bound of the peak heap
+        peakHeapBytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        long[] gc = gcTotals();
+        gcMillis = gc[0] - gcMillisBefore;
+        gcCount = gc[1] - gcCountBefore;
+        return this;
+    }
+
+    private static long[] gcTotals() {
+        long millis = 0;
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return new long[]{millis, count};
+    }
+
+    /**
+     * Write the finished report as JSON
+     * @param file usually {@value #FILE_NAME} in the output directory
+     */
+    public synchronized void write(File file) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("classesPath", classesPath);
+        report.put("startedAt", startedAt.toString());
+        report.put("totalMillis", totalMillis);
+        report.put("phases", phases);
+        report.put("counts", counts);
+        report.put("peakHeapBytes", peakHeapBytes);
+        report.put("gcMillis", gcMillis);
+        report.put("gcCount", gcCount);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    /**
+     * @return milliseconds per finished phase, in the order they finished
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    public synchronized Map<String, Long> getCounts() {
+        return new LinkedHashMap<>(counts);
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public boolean isMeasuringJvm() {
+        return measureJvm;
+    }
+
+    /**
+     * @return the peak heap in bytes, or -1 if not measured
+     */
+    public synchronized long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public synchronized long getGcMillis() {
+        return gcMillis;
+    }
+
+    public synchronized long getGcCount() {
+        return gcCount;
+    }
+}
@@ -0,0 +1,110 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Per-class analysis results of a previous run, keyed by the class file path relative to the classes root.
+ * Each entry holds the content hash of the class file it was computed from, so unchanged classes can be
+ * reused without parsing them again.
+ */
+public class AnalysisSnapshot {
+
+    public static final String FILE_NAME = ".callgraph-snapshot";
+
+    private static final int MAGIC = 0x43475350; // "CGSP"
+    private static final int VERSION = 5;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Read a snapshot written by {@link #save(File)}
+     * @param file the snapshot file
+     * @return the snapshot, or an empty one if the file does not exist or was written by another format version
+     */
+    public static AnalysisSnapshot load(File file) throws IOException {
+        AnalysisSnapshot snapshot = new AnalysisSnapshot();
+        if (!file.isFile()) {
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return snapshot;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = ClassFactsCodec.readString(in);
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                snapshot.entries.put(path, new Entry(hash, ClassFactsCodec.read(in)));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Write the snapshot, replacing any previous file only once it has been written completely
+     * @param file the snapshot file
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                ClassFactsCodec.writeString(out, entry.getKey());
+                out.writeByte(entry.getValue().contentHash.length);
+                out.write(entry.getValue().contentHash);
+                ClassFactsCodec.write(out, entry.getValue().facts);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public void put(String path, byte[] contentHash, ClassFacts facts) {
+        entries.put(path, new Entry(contentHash, facts));
+    }
+
+    public void merge(AnalysisSnapshot other) {
+        entries.putAll(other.entries);
+    }
+
+    public Set<String> getPaths() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Analysis result of one class file
+     */
+    public static class Entry {
+        public final byte[] contentHash;
+        public final ClassFacts facts;
+
+        public Entry(byte[] contentHash, ClassFacts facts) {
+            this.contentHash = contentHash;
+            this.facts = facts;
+        }
+    }
+}
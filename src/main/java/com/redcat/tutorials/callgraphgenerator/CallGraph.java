@@ -1,43 +1,512 @@
 package com.redcat.tutorials.callgraphgenerator;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
+/**
+ * Method call graph over interned method ids.
+ * Edges are appended to primitive buffers while scanning and frozen on first query into a
+ * compressed-sparse-row adjacency: the callees of method {@code m} are
+ * {@code targets[offsets[m] .. offsets[m + 1])}, de-duplicated and sorted by callee name.
+ * Adding edges after a query is allowed; the next query re-freezes the graph. The raw
+ * accessors {@link #calleeStart}, {@link #calleeEnd} and {@link #calleeAt} never freeze,
+ * so edges can be added while iterating them. Each edge carries the number of call sites it
+ * stands for and the deepest loop nesting among them, in an array parallel to the targets.
+ * Given an {@link OffHeapStore}, the frozen arrays are kept there instead of on the heap, and the arrays
+ * replaced by a re-freeze or {@link #removeEdges} are given back to it for reuse.
+ */
 public class CallGraph {
-    private final Map<String, Set<String>> graph = new HashMap<>();
+    private final MethodSymbolTable symbols;
+    private final OffHeapStore store; // null to keep the frozen adjacency on the heap
+
+    // Edges added since the last freeze
+    private int[] pendingCallers = new int[256];
+    private int[] pendingCallees = new int[256];
+    private int[] pendingWeights = new int[256];
+    private int pendingCount;
+
+    // Frozen adjacency
+    private IntArray offsets = IntArray.of(new int[1], 1, null);
+    private IntArray targets = IntArray.EMPTY;
+    private IntArray weights = IntArray.EMPTY; // call sites per edge and their deepest loop nesting, see weight()
+    private int[] nameOrder = new int[0]; // method ids sorted by name
+    private int[] nameRank = new int[0];  // position of each method id in nameOrder
+
+    public CallGraph() {
+        this(new MethodSymbolTable());
+    }
+
+    public CallGraph(MethodSymbolTable symbols) {
+        this(symbols, null);
+    }
+
+    /**
+     * @param symbols the symbol table of the method names
+     * @param store where the frozen adjacency is kept, or null for the heap
+     */
+    public CallGraph(MethodSymbolTable symbols, OffHeapStore store) {
+        this.symbols = symbols;
+        this.store = store;
+    }
 
     public void addEdge(String caller, String callee) {
-        graph.computeIfAbsent(caller, k -> new HashSet<>()).add(callee);
+        addEdge(symbols.intern(caller), symbols.intern(callee));
+    }
+
+    public void addEdge(int caller, int callee) {
+        addEdge(caller, callee, 1, 0);
+    }
+
+    /**
+     * Add an edge standing for one or more call sites; edges added more than once sum their call sites
+     * @param callCount the number of call sites
+     * @param loopDepth the deepest loop nesting among the call sites, 0 outside of loops
+     */
+    public void addEdge(int caller, int callee, int callCount, int loopDepth) {
+        if (pendingCount == pendingCallers.length) {
+            pendingCallers = Arrays.copyOf(pendingCallers, pendingCount * 2);
+            pendingCallees = Arrays.copyOf(pendingCallees, pendingCount * 2);
+            pendingWeights = Arrays.copyOf(pendingWeights, pendingCount * 2);
+        }
+        pendingCallers[pendingCount] = caller;
+        pendingCallees[pendingCount] = callee;
+        pendingWeights[pendingCount] = weight(callCount, loopDepth);
+        pendingCount++;
+    }
+
+    // Call sites in the upper 24 bits, saturating, and loop depth in the lower 8
+    private static int weight(int callCount, int loopDepth) {
+        return (Math.min(callCount, 0xFFFFFF) << 8) | Math.min(loopDepth, 0xFF);
+    }
+
+    private static int combine(int weight, int other) {
+        return weight(Math.min((weight >>> 8) + (other >>> 8), 0xFFFFFF), Math.max(weight & 0xFF, other & 0xFF));
+    }
+
+    /**
+     * Add every edge of another graph to this one, re-interning its method names
+     * @param other the graph to merge in
+     */
+    public void merge(CallGraph other) {
+        other.freeze();
+        int[] idMap = new int[other.symbols.size()];
+        for (int id = 0; id < idMap.length; id++) {
+            idMap[id] = symbols.intern(other.symbols.name(id));
+        }
+        for (int caller = 0; caller < other.offsets.length() - 1; caller++) {
+            for (int i = other.offsets.get(caller); i < other.offsets.get(caller + 1); i++) {
+                addEdge(idMap[caller], idMap[other.targets.get(i)], other.callCountAt(i), other.loopDepthAt(i));
+            }
+        }
+    }
+
+    /**
+     * Fold pending edges into the compressed-sparse-row adjacency
+     * @return this graph
+     */
+    public CallGraph freeze() {
+        int nodeCount = symbols.size();
+        if (pendingCount == 0 && offsets.length() == nodeCount + 1) {
+            return this;
+        }
+
+        nameOrder = IntStream.range(0, nodeCount).boxed()
+                .sorted(symbols::compare)
+                .mapToInt(Integer::intValue).toArray();
+        nameRank = new int[nodeCount];
+        for (int r = 0; r < nodeCount; r++) {
+            nameRank[nameOrder[r]] = r;
+        }
+
+        // Encode each edge as (caller, callee rank) so one primitive sort groups rows and orders callees by name
+        int frozenCount = targets.length();
+        long[] edges = new long[frozenCount + pendingCount];
+        int e = 0;
+        for (int caller = 0; caller < offsets.length() - 1; caller++) {
+            for (int i = offsets.get(caller); i < offsets.get(caller + 1); i++) {
+                edges[e++] = ((long) caller << 32) | nameRank[targets.get(i)];
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            edges[e++] = ((long) pendingCallers[i] << 32) | nameRank[pendingCallees[i]];
+        }
+        Arrays.sort(edges);
+
+        int[] newOffsets = new int[nodeCount + 1];
+        int[] newTargets = new int[edges.length];
+        int edgeCount = 0;
+        long previous = -1;
+        for (long edge : edges) {
+            if (edge == previous) {
+                continue;
+            }
+            previous = edge;
+            newOffsets[(int) (edge >>> 32) + 1]++;
+            newTargets[edgeCount++] = nameOrder[(int) edge];
+        }
+        edges = null;
+        for (int id = 0; id < nodeCount; id++) {
+            newOffsets[id + 1] += newOffsets[id];
+        }
+
+        // Sum call sites into the de-duplicated edges, found by callee rank within each sorted row
+        int[] newWeights = new int[edgeCount];
+        for (int caller = 0; caller < offsets.length() - 1; caller++) {
+            for (int i = offsets.get(caller); i < offsets.get(caller + 1); i++) {
+                int edge = findEdge(newOffsets, newTargets, caller, targets.get(i));
+                newWeights[edge] = combine(newWeights[edge], weights.get(i));
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            int edge = findEdge(newOffsets, newTargets, pendingCallers[i], pendingCallees[i]);
+            newWeights[edge] = combine(newWeights[edge], pendingWeights[i]);
+        }
+
+        releaseAdjacency();
+        offsets = IntArray.of(newOffsets, newOffsets.length, store);
+        targets = IntArray.of(newTargets, edgeCount, store);
+        weights = IntArray.of(newWeights, edgeCount, store);
+        pendingCallers = new int[256];
+        pendingCallees = new int[256];
+        pendingWeights = new int[256];
+        pendingCount = 0;
+        return this;
+    }
+
+    private int findEdge(int[] offsets, int[] targets, int caller, int callee) {
+        int low = offsets[caller];
+        int high = offsets[caller + 1] - 1;
+        int rank = nameRank[callee];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midRank = nameRank[targets[mid]];
+            if (midRank < rank) {
+                low = mid + 1;
+            } else if (midRank > rank) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        throw new IllegalStateException("Edge not found: " + caller + " -> " + callee);
+    }
+
+    /**
+     * Remove every edge matching a predicate; method ids and names are kept
+     * @param filter decides, by caller and callee id, whether an edge is removed
+     * @return the number of edges removed
+     */
+    public int removeEdges(EdgeFilter filter) {
+        freeze();
+        int nodeCount = offsets.length() - 1;
+        int[] newOffsets = new int[nodeCount + 1];
+        int[] newTargets = new int[targets.length()];
+        int[] newWeights = new int[targets.length()];
+        int edgeCount = 0;
+        for (int caller = 0; caller < nodeCount; caller++) {
+            for (int i = offsets.get(caller); i < offsets.get(caller + 1); i++) {
+                int callee = targets.get(i);
+                if (!filter.test(caller, callee)) {
+                    newTargets[edgeCount] = callee;
+                    newWeights[edgeCount++] = weights.get(i);
+                }
+            }
+            newOffsets[caller + 1] = edgeCount;
+        }
+        int removed = targets.length() - edgeCount;
+        releaseAdjacency();
+        offsets = IntArray.of(newOffsets, newOffsets.length, store);
+        targets = IntArray.of(newTargets, edgeCount, store);
+        weights = IntArray.of(newWeights, edgeCount, store);
+        return removed;
+    }
+
+    /**
+     * Give the space of the frozen adjacency back to the store, once it has been copied into the new arrays
+     */
+    private void releaseAdjacency() {
+        offsets.release();
+        targets.release();
+        weights.release();
+    }
+
+    /**
+     * Give the frozen adjacency back to the store, for a graph that has been rebuilt into another one;
+     * the graph must not be used afterwards. Its symbol table is left alone, since graphs may share one.
+     */
+    public void release() {
+        releaseAdjacency();
+        offsets = IntArray.of(new int[1], 1, null);
+        targets = IntArray.EMPTY;
+        weights = IntArray.EMPTY;
+    }
+
+    /**
+     * Selects edges by caller and callee id
+     */
+    @FunctionalInterface
+    public interface EdgeFilter {
+        boolean test(int caller, int callee);
+    }
+
+    public MethodSymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return the store the frozen adjacency is kept in, or null if it is on the heap
+     */
+    public OffHeapStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return the number of distinct methods known to the graph, callers and callees alike
+     */
+    public int getNodeCount() {
+        freeze();
+        return offsets.length() - 1;
+    }
+
+    public int getEdgeCount() {
+        freeze();
+        return targets.length();
+    }
+
+    /**
+     * @param method the fully qualified method name
+     * @return the id of the method, or -1 if it does not appear in the graph
+     */
+    public int idOf(String method) {
+        return symbols.find(method);
+    }
+
+    public String nameOf(int id) {
+        return symbols.name(id);
+    }
+
+    /**
+     * @return the index of the first edge from the method, as of the last freeze; see {@link #calleeAt}
+     */
+    public int calleeStart(int id) {
+        return offsets.get(id);
+    }
+
+    /**
+     * @return one past the index of the last edge from the method, as of the last freeze
+     */
+    public int calleeEnd(int id) {
+        return offsets.get(id + 1);
+    }
+
+    /**
+     * @return the callee of the edge at an index between {@link #calleeStart} and {@link #calleeEnd}
+     */
+    public int calleeAt(int edge) {
+        return targets.get(edge);
+    }
+
+    /**
+     * @return the number of call sites behind the edge at an index
+     */
+    public int callCountAt(int edge) {
+        return weights.get(edge) >>> 8;
+    }
+
+    /**
+     * @return the deepest loop nesting of the call sites behind the edge at an index
+     */
+    public int loopDepthAt(int edge) {
+        return weights.get(edge) & 0xFF;
     }
 
     public Set<String> getCallees(String method) {
-        return graph.getOrDefault(method, Collections.emptySet());
+        int id = idOf(method);
+        if (id < 0) {
+            return Collections.emptySet();
+        }
+        freeze();
+        Set<String> callees = new LinkedHashSet<>();
+        for (int i = offsets.get(id); i < offsets.get(id + 1); i++) {
+            callees.add(symbols.name(targets.get(i)));
+        }
+        return callees;
     }
 
+    /**
+     * @return the names of all methods that call at least one other method
+     */
     public Set<String> getAllMethods() {
-        return graph.keySet();
+        freeze();
+        Set<String> callers = new LinkedHashSet<>();
+        for (int id : nameOrder) {
+            if (offsets.get(id + 1) > offsets.get(id)) {
+                callers.add(symbols.name(id));
+            }
+        }
+        return callers;
     }
 
-    public Map<String, Set<String>> getGraph() {
-        return graph;
+    /**
+     * Collect every method reachable from the entry method
+     * @param entry the id of the entry method
+     * @return the reachable method ids, entry included, sorted by name
+     */
+    public int[] reachableFrom(int entry) {
+        freeze();
+        BitSet visited = new BitSet(offsets.length() - 1);
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = entry;
+        visited.set(entry);
+        while (top > 0) {
+            int current = stack[--top];
+            for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+                int callee = targets.get(i);
+                if (!visited.get(callee)) {
+                    visited.set(callee);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = callee;
+                }
+            }
+        }
+        return sortByName(visited);
     }
 
-    public Map<String, Set<String>> getSubGraphFrom(String entryMethod) {
-        Map<String, Set<String>> subGraph = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        Deque<String> stack = new ArrayDeque<>();
-        stack.push(entryMethod);
+    /**
+     * List the methods reachable from the entry in depth-first pre-order, following callees in name order
+     * @param entry the id of the entry method
+     * @param follow decides whether a callee should be descended into
+     * @return the visited method ids in visiting order
+     */
+    public int[] preorderFrom(int entry, IntPredicate follow) {
+        freeze();
+        BitSet visited = new BitSet(offsets.length() - 1);
+        int[] order = new int[16];
+        int count = 0;
+        // Each frame is a method and the next callee index to look at
+        int[] stackNode = new int[16];
+        int[] stackNext = new int[16];
+        int top = 0;
 
-        while (!stack.isEmpty()) {
-            String current = stack.pop();
-            if (!visited.contains(current)) {
-                visited.add(current);
-                Set<String> callees = getCallees(current);
-                subGraph.put(current, new HashSet<>(callees));
-                stack.addAll(callees);
+        visited.set(entry);
+        order[count++] = entry;
+        stackNode[top] = entry;
+        stackNext[top++] = offsets.get(entry);
+        while (top > 0) {
+            int frame = top - 1;
+            int current = stackNode[frame];
+            if (stackNext[frame] == offsets.get(current + 1)) {
+                top--;
+                continue;
             }
+            int callee = targets.get(stackNext[frame]++);
+            if (visited.get(callee) || !follow.test(callee)) {
+                continue;
+            }
+            visited.set(callee);
+            if (count == order.length) {
+                order = Arrays.copyOf(order, count * 2);
+            }
+            order[count++] = callee;
+            if (top == stackNode.length) {
+                stackNode = Arrays.copyOf(stackNode, top * 2);
+                stackNext = Arrays.copyOf(stackNext, top * 2);
+            }
+            stackNode[top] = callee;
+            stackNext[top++] = offsets.get(callee);
         }
+        return Arrays.copyOf(order, count);
+    }
 
+    public Map<String, Set<String>> getSubGraphFrom(String entryMethod) {
+        Map<String, Set<String>> subGraph = new LinkedHashMap<>();
+        int entry = idOf(entryMethod);
+        if (entry < 0) {
+            subGraph.put(entryMethod, new LinkedHashSet<>());
+            return subGraph;
+        }
+        for (int id : reachableFrom(entry)) {
+            Set<String> callees = new LinkedHashSet<>();
+            for (int i = offsets.get(id); i < offsets.get(id + 1); i++) {
+                callees.add(symbols.name(targets.get(i)));
+            }
+            subGraph.put(symbols.name(id), callees);
+        }
         return subGraph;
     }
-}
 
+    /**
+     * Write the whole graph as a JSON object of caller to callee names; methods without callees are omitted
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        freeze();
+        generator.writeStartObject();
+        for (int id : nameOrder) {
+            if (offsets.get(id + 1) > offsets.get(id)) {
+                writeEntry(generator, id);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the subgraph reachable from an entry method; every reachable method gets an entry
+     */
+    public void writeSubGraphJson(JsonGenerator generator, String entryMethod) throws IOException {
+        int entry = idOf(entryMethod);
+        writeSubGraphJson(generator, entryMethod, entry < 0 ? new int[0] : reachableFrom(entry));
+    }
+
+    /**
+     * Write the subgraph made of the given methods, as already computed by a {@link ReachabilityIndex}
+     * @param entryMethod the entry method, written on its own when it is unknown to the graph
+     * @param methods the reachable method ids in the order they should be written
+     */
+    public void writeSubGraphJson(JsonGenerator generator, String entryMethod, int[] methods) throws IOException {
+        freeze();
+        generator.writeStartObject();
+        if (methods.length == 0) {
+            generator.writeArrayFieldStart(entryMethod);
+            generator.writeEndArray();
+        }
+        for (int id : methods) {
+            writeEntry(generator, id);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeEntry(JsonGenerator generator, int id) throws IOException {
+        generator.writeArrayFieldStart(symbols.name(id));
+        for (int i = offsets.get(id); i < offsets.get(id + 1); i++) {
+            generator.writeString(symbols.name(targets.get(i)));
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Sort method ids by method name, in place
+     * @param ids ids of methods known at the last freeze
+     */
+    public void sortByName(int[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = nameRank[ids[i]];
+        }
+        Arrays.sort(ids);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = nameOrder[ids[i]];
+        }
+    }
+
+    private int[] sortByName(BitSet ids) {
+        int[] sorted = ids.stream().toArray();
+        sortByName(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,406 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One analysis of a project, from class files to a call graph ready to be written out: scans the modules,
+ * builds the call graph over the class hierarchy, folds library calls and trivial methods, and prepares an
+ * {@link EndpointCallGraphBuilder} with method body extraction enabled. Used by {@link JCallGraph} on the
+ * command line and by analysis jobs running inside the server. Options default to the {@code callgraph.*}
+ * system properties; each phase of {@link #run} and the size of what it produced are reported to an optional
+ * {@link PhaseListener}, which is also handed to the builder for the phases of writing the output.
+ * Closing the analysis releases its off-heap store, so the results must not be used afterwards.
+ */
+public class CallGraphAnalysis implements Closeable {
+
+    public static final String PHASE_SCAN = "scan";
+    public static final String PHASE_WALK = "walk";   // part of the scan, overlapping parse
+    public static final String PHASE_PARSE = "parse"; // part of the scan, summed over the parser threads
+    public static final String PHASE_HIERARCHY = "hierarchy";
+    public static final String PHASE_EXPANSION = "expansion";
+    public static final String PHASE_PACKAGES = "packages";
+    public static final String PHASE_PRUNE = "prune";
+    public static final String PHASE_METHOD_BODIES = "methodBodies";
+    public static final String PHASE_REACHABILITY = "reachability";
+    public static final String PHASE_WRITE = "write";
+
+    public static final String COUNT_CLASSES = "classes";
+    public static final String COUNT_METHODS = "methods";
+    public static final String COUNT_EDGES = "edges";
+    public static final String COUNT_ENDPOINTS = "endpoints";
+    public static final String COUNT_BYTES_WRITTEN = "bytesWritten";
+
+    /**
+     * Told about each phase of {@link #run} as it starts and finishes, and about the counts of what it produced.
+     * Walk and parse are only reported as finished, within the scan they are part of. Progress messages and
+     * warnings of the analysis also go here; they are printed to the console unless the listener sends them
+     * elsewhere, as analysis jobs in the server do to tell concurrent jobs apart.
+     */
+    public interface PhaseListener {
+        default void phaseStarted(String phase) {
+        }
+
+        default void phaseFinished(String phase, long millis) {
+        }
+
+        default void counted(String name, long count) {
+        }
+
+        default void info(String message) {
+            System.out.println(message);
+        }
+
+        default void warn(String message) {
+            System.err.println(message);
+        }
+
+        default void warn(String message, Throwable error) {
+            warn(message + ": " + error);
+            error.printStackTrace();
+        }
+    }
+
+    private final String classesPath;
+    private File snapshotDir;
+    private int parallelism = Integer.getInteger("callgraph.parallelism", Runtime.getRuntime().availableProcessors());
+    private List<String> libraryPackages = splitList(System.getProperty("callgraph.libraryPackages", ""));
+    private String includePackages = System.getProperty("callgraph.includePackages");
+    private String excludePackages = System.getProperty("callgraph.excludePackages");
+    private PhaseListener listener = new PhaseListener() {
+    };
+
+    private List<ProjectModule> modules;
+    private ScanShard scan;
+    private CallGraph callGraph;
+    private PackagePolicy packagePolicy;
+    private TrivialMethodPruner pruner;
+    private EndpointCallGraphBuilder builder;
+    private OffHeapStore offHeapStore;
+
+    /**
+     * @param classesPath a comma separated list of exploded classes directories and (Spring Boot) JARs, or of
+     *                    Maven / Gradle build directories whose compiled modules are discovered and scanned together
+     */
+    public CallGraphAnalysis(String classesPath) {
+        this.classesPath = classesPath;
+    }
+
+    /**
+     * Reuse per-class results of the previous run for class files whose content hash is unchanged
+     * @param snapshotDir the directory the analysis snapshot is kept in, or null to parse every class
+     */
+    public void setSnapshotDir(File snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * @param parallelism the number of threads parsing classes and writing endpoint files
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param libraryPackages packages of the dependency classes inside a Boot jar's BOOT-INF/lib to analyze
+     */
+    public void setLibraryPackages(List<String> libraryPackages) {
+        this.libraryPackages = libraryPackages;
+    }
+
+    /**
+     * @param includePackages comma separated project packages, or null to derive them from the scanned classes
+     * @param excludePackages comma separated packages to treat as libraries, or null
+     */
+    public void setPackages(String includePackages, String excludePackages) {
+        this.includePackages = includePackages;
+        this.excludePackages = excludePackages;
+    }
+
+    public void setPhaseListener(PhaseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Scan the classes and build the call graph
+     * @return this analysis, whose results are then available
+     * @throws IllegalArgumentException if the classes path holds nothing that can be scanned
+     */
+    public CallGraphAnalysis run() throws IOException {
+        modules = resolveModules();
+        List<ClassSource> moduleSources = new ArrayList<>();
+        List<String> moduleNames = new ArrayList<>();
+        for (ProjectModule module : modules) {
+            if (module.classesRoot.isDirectory() && !module.classesRoot.setReadable(true, false)) {
+                listener.warn("Failed to set directory as readable: " + module.classesRoot.getAbsolutePath());
+            }
+            try {
+                moduleSources.add(ClassSource.open(module.classesRoot, libraryPackages));
+                moduleNames.add(module.name);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Provided classes path is not a directory or JAR file: " + module.classesRoot, e);
+            }
+        }
+        // A single module keeps its relative paths, and so the analysis snapshot of earlier runs
+        ClassSource classSource = moduleSources.size() == 1 ? moduleSources.get(0)
+                : new CompositeClassSource(moduleSources, moduleNames);
+
+        listener.info("Reading classes from: " + classSource.getLocation());
+        if (modules.size() > 1) {
+            listener.info("Scanning " + modules.size() + " modules into one call graph: " + moduleNames);
+        }
+
+        long started = startPhase(PHASE_SCAN);
+        // Scan class files: a walker feeds a bounded queue drained by parallel ASM parsers
+        ClassFileScanner scanner = new ClassFileScanner(parallelism);
+
+        // Keep class bytes, method names, the call graph's adjacency and rendered bodies in a memory-mapped
+        // temp file rather than on the heap, for builds too large to analyze in a reasonable heap
+        if (Boolean.getBoolean("callgraph.offHeap")) {
+            String offHeapDir = System.getProperty("callgraph.offHeapDir");
+            offHeapStore = new OffHeapStore(offHeapDir != null ? new File(offHeapDir) : null);
+            scanner.setOffHeapStore(offHeapStore);
+        }
+
+        // Reuse per-class results of the previous run for class files whose content hash is unchanged
+        File snapshotFile = snapshotDir != null ? new File(snapshotDir, AnalysisSnapshot.FILE_NAME) : null;
+        AnalysisSnapshot previousSnapshot = new AnalysisSnapshot();
+        if (snapshotFile != null) {
+            try {
+                previousSnapshot = AnalysisSnapshot.load(snapshotFile);
+            } catch (IOException e) {
+                listener.warn("Ignoring unreadable analysis snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+            scanner.setPreviousSnapshot(previousSnapshot);
+        }
+
+        // Dependency jars (Boot jar libraries in the listed packages, plus any given explicitly) are analyzed
+        // once per jar content and linked from a cache shared by all projects. Without any, nothing is written
+        // to the cache directory.
+        List<File> dependencyJars = new ArrayList<>();
+        for (String dependency : System.getProperty("callgraph.dependencies", "").split(",")) {
+            if (dependency.isBlank()) {
+                continue;
+            }
+            File file = new File(dependency.trim());
+            File[] jars = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".jar")) : null;
+            if (jars != null) {
+                Arrays.sort(jars);
+                dependencyJars.addAll(Arrays.asList(jars));
+            } else if (file.isFile()) {
+                dependencyJars.add(file);
+            }
+        }
+        JarAnalysisCache jarCache = null;
+        if (!libraryPackages.isEmpty() || !dependencyJars.isEmpty()) {
+            String jarCachePath = System.getProperty("callgraph.jarCache");
+            jarCache = new JarAnalysisCache(
+                    jarCachePath != null ? new File(jarCachePath) : JarAnalysisCache.defaultDirectory());
+            jarCache.setPhaseListener(listener);
+            scanner.setJarCache(jarCache, libraryPackages);
+            scanner.setDependencyJars(dependencyJars);
+        }
+
+        scan = scanner.scan(classSource);
+        int projectClassCount = scan.getClassCount() - scan.getLibraryClasses().size();
+        listener.info("Analyzed " + projectClassCount + " class files using " + parallelism + " worker(s)");
+        if (classSource instanceof CompositeClassSource composite && composite.getDuplicateCount() > 0) {
+            listener.info("Skipped " + composite.getDuplicateCount() + " classes already found in an earlier module");
+        }
+        if (jarCache != null && jarCache.getHits() + jarCache.getMisses() > 0) {
+            listener.info("Linked " + scan.getLibraryClasses().size() + " classes from "
+                    + (jarCache.getHits() + jarCache.getMisses()) + " dependency jars (" + jarCache.getHits()
+                    + " cached, " + jarCache.getMisses() + " analyzed and cached)");
+        }
+        if (snapshotFile != null) {
+            AnalysisSnapshot snapshot = scan.getSnapshot();
+            long removed = previousSnapshot.getPaths().stream().filter(path -> snapshot.get(path) == null).count();
+            listener.info("Re-parsed " + (projectClassCount - scan.getReusedCount()) + " of " + projectClassCount
+                    + " class files, " + scan.getReusedCount() + " unchanged, " + removed + " removed since the last run");
+            try {
+                snapshotFile.getParentFile().mkdirs();
+                snapshot.save(snapshotFile);
+            } catch (IOException e) {
+                listener.warn("Failed to save analysis snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+        listener.phaseFinished(PHASE_WALK, scanner.getWalkMillis());
+        listener.phaseFinished(PHASE_PARSE, scanner.getParseMillis());
+        listener.counted(COUNT_CLASSES, scan.getClassCount());
+        finishPhase(PHASE_SCAN, started);
+
+        started = startPhase(PHASE_HIERARCHY);
+        boolean rapidTypeAnalysis = Boolean.parseBoolean(System.getProperty("callgraph.rta", "true"));
+        ClassHierarchy hierarchy = new ClassHierarchy(scan.getClasses(), rapidTypeAnalysis);
+        finishPhase(PHASE_HIERARCHY, started);
+
+        started = startPhase(PHASE_EXPANSION);
+        // Resolve every call site against the class hierarchy; virtual calls reach all instantiated overriders
+        callGraph = buildCallGraph(scan.getClasses(), hierarchy, offHeapStore);
+        listener.info("Call graph has " + callGraph.getNodeCount() + " methods and "
+                + callGraph.getEdgeCount() + " edges");
+        if (rapidTypeAnalysis) {
+            listener.info("Rapid type analysis: " + hierarchy.getInstantiatedCount() + " instantiated classes, "
+                    + hierarchy.getPrunedTargets() + " dispatch targets in never instantiated classes dropped");
+        }
+        finishPhase(PHASE_EXPANSION, started);
+
+        started = startPhase(PHASE_PACKAGES);
+        // Fold calls into third-party libraries into one leaf node per library
+        packagePolicy = PackagePolicy.forProject(scan.getProjectClasses(), libraryPackages, includePackages, excludePackages);
+        if (!packagePolicy.getIncludes().isEmpty() || !packagePolicy.getExcludes().isEmpty()) {
+            int methodCount = callGraph.getNodeCount();
+            CallGraph collapsed = packagePolicy.collapse(callGraph);
+            // The full graph is not used again, so its off-heap space goes to what is stored from here on
+            callGraph.release();
+            callGraph.getSymbols().release();
+            callGraph = collapsed;
+            listener.info("Project packages " + packagePolicy.getIncludes()
+                    + (packagePolicy.getExcludes().isEmpty() ? "" : " excluding " + packagePolicy.getExcludes())
+                    + ": collapsed " + packagePolicy.getCollapsedMethods() + " library methods into "
+                    + packagePolicy.getLibraryNodes() + " library nodes (" + methodCount + " -> "
+                    + callGraph.getNodeCount() + " methods, " + callGraph.getEdgeCount() + " edges)");
+        }
+        finishPhase(PHASE_PACKAGES, started);
+
+        started = startPhase(PHASE_PRUNE);
+        // Collapse getters, setters, builder boilerplate, equals, hashCode and toString into leaves, or drop them
+        pruner = new TrivialMethodPruner(TrivialMethodPruner.Mode.parse(System.getProperty("callgraph.prune")));
+        pruner.collect(scan.getClasses());
+        pruner.prune(callGraph);
+        if (pruner.getMode() != TrivialMethodPruner.Mode.OFF) {
+            listener.info(pruner.describe());
+        }
+        listener.counted(COUNT_METHODS, callGraph.getNodeCount());
+        listener.counted(COUNT_EDGES, callGraph.getEdgeCount());
+        finishPhase(PHASE_PRUNE, started);
+
+        started = startPhase(PHASE_METHOD_BODIES);
+        builder = new EndpointCallGraphBuilder(callGraph);
+        builder.setPruner(pruner);
+        builder.setPackagePolicy(packagePolicy);
+        builder.setOffHeapStore(offHeapStore);
+        builder.setParallelism(parallelism);
+        builder.setPhaseListener(listener);
+        try {
+            listener.info("Enabling method body extraction...");
+            builder.enableMethodBodyExtraction(modules, scan.getClasses(), scan.getClassBytes());
+        } catch (Exception e) {
+            listener.warn("Failed to enable method body extraction, continuing without it", e);
+        }
+        listener.counted(COUNT_ENDPOINTS, getEndpoints().size());
+        finishPhase(PHASE_METHOD_BODIES, started);
+        return this;
+    }
+
+    private List<ProjectModule> resolveModules() {
+        List<ProjectModule> resolved = new ArrayList<>();
+        for (String path : classesPath.split(",")) {
+            File classesDir = new File(path.trim());
+            if (ProjectModule.isBuildRoot(classesDir)) {
+                List<ProjectModule> discovered = ProjectModule.discover(classesDir);
+                if (discovered.isEmpty()) {
+                    throw new IllegalArgumentException("No compiled modules found below "
+                            + classesDir.getAbsolutePath() + "; build the project first");
+                }
+                resolved.addAll(discovered);
+            } else {
+                resolved.add(ProjectModule.forClassesRoot(classesDir));
+            }
+        }
+        return resolved;
+    }
+
+    private long startPhase(String phase) {
+        listener.phaseStarted(phase);
+        return System.nanoTime();
+    }
+
+    private void finishPhase(String phase, long started) {
+        listener.phaseFinished(phase, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Build the call graph over descriptor-qualified method ids, resolving each call site through the class hierarchy.
+     * Calls into the JDK are left out. Edges count the call sites behind them and keep their deepest loop nesting.
+     * @param store where method names and the frozen adjacency are kept, or null for the heap
+     */
+    private static CallGraph buildCallGraph(Collection<ClassFacts> classes, ClassHierarchy hierarchy, OffHeapStore store) {
+        CallGraph callGraph = new CallGraph(new MethodSymbolTable(store), store);
+        MethodSymbolTable symbols = callGraph.getSymbols();
+        for (ClassFacts classFacts : classes) {
+            for (ClassFacts.MethodFacts method : classFacts.methods) {
+                int caller = -1; // methods without calls stay out of the graph
+                for (ClassFacts.CallSite call : method.calls) {
+                    if (call.owner.startsWith("java.")) {
+                        continue;
+                    }
+                    for (String callee : hierarchy.resolve(call)) {
+                        if (!callee.startsWith("java.")) {
+                            if (caller < 0) {
+                                caller = symbols.intern(MethodId.of(classFacts.className, method.name, method.descriptor));
+                            }
+                            callGraph.addEdge(caller, symbols.intern(callee), 1, call.loopDepth);
+                        }
+                    }
+                }
+            }
+        }
+        return callGraph.freeze();
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> values = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+
+    public List<ProjectModule> getModules() {
+        return modules;
+    }
+
+    public ScanShard getScan() {
+        return scan;
+    }
+
+    /**
+     * @return the call graph, with library calls folded and trivial methods pruned
+     */
+    public CallGraph getCallGraph() {
+        return callGraph;
+    }
+
+    public Collection<EndpointDetector.Endpoint> getEndpoints() {
+        return scan.getEndpointDetector().getEndpoints();
+    }
+
+    /**
+     * @return the builder of the endpoint files, with method body extraction enabled if it could be
+     */
+    public EndpointCallGraphBuilder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * @return the off-heap store, or null when everything is kept on the heap
+     */
+    public OffHeapStore getOffHeapStore() {
+        return offHeapStore;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (offHeapStore != null) {
+            offHeapStore.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes a call graph and its endpoints in the binary format read by {@link MappedCallGraph}.
+ * Nodes are renumbered in UTF-8 byte order of their names, so node ids double as name order and
+ * names can be looked up by binary search; adjacency rows are delta-encoded varints. Endpoints are
+ * stored in {@link EndpointDetector.Endpoint#ORDER}, so the same graph always gives the same file.
+ */
+public final class CallGraphBinaryWriter {
+
+    private CallGraphBinaryWriter() {
+    }
+
+    public static void write(CallGraph graph, Collection<EndpointDetector.Endpoint> endpoints, File file) throws IOException {
+        graph.freeze();
+        int nodeCount = graph.getNodeCount();
+
+        // Renumber nodes by the byte order of their UTF-8 names
+        byte[][] names = new byte[nodeCount][];
+        Integer[] order = new Integer[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            names[id] = graph.nameOf(id).getBytes(StandardCharsets.UTF_8);
+            order[id] = id;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+        int[] newId = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            newId[order[i]] = i;
+        }
+
+        // String table
+        int[] stringOffsets = new int[nodeCount + 1];
+        ByteSink stringData = new ByteSink();
+        for (int i = 0; i < nodeCount; i++) {
+            stringData.write(names[order[i]]);
+            stringOffsets[i + 1] = checkedSize(stringData.size());
+        }
+
+        // Adjacency rows: callees sorted by new id, delta-encoded
+        int[] adjacencyOffsets = new int[nodeCount + 1];
+        ByteSink adjacencyData = new ByteSink();
+        int[] row = new int[16];
+        for (int i = 0; i < nodeCount; i++) {
+            int id = order[i];
+            int count = graph.calleeEnd(id) - graph.calleeStart(id);
+            if (row.length < count) {
+                row = new int[count];
+            }
+            for (int e = 0; e < count; e++) {
+                row[e] = newId[graph.calleeAt(graph.calleeStart(id) + e)];
+            }
+            Arrays.sort(row, 0, count);
+            int previous = 0;
+            for (int e = 0; e < count; e++) {
+                adjacencyData.writeVarint(row[e] - previous);
+                previous = row[e];
+            }
+            adjacencyOffsets[i + 1] = checkedSize(adjacencyData.size());
+        }
+
+        // Endpoint table, sorted so the file does not depend on the order endpoints were found in
+        List<EndpointDetector.Endpoint> endpointList = new ArrayList<>(endpoints);
+        endpointList.sort(EndpointDetector.Endpoint.ORDER);
+        ByteSink endpointData = new ByteSink();
+        for (EndpointDetector.Endpoint endpoint : endpointList) {
+            endpointData.writeString(endpoint.method);
+            endpointData.writeString(endpoint.path);
+            endpointData.writeString(endpoint.entryMethod);
+        }
+
+        int stringOffsetsPos = MappedCallGraph.HEADER_SIZE;
+        int stringDataPos = checkedSize((long) stringOffsetsPos + 4L * (nodeCount + 1));
+        int adjacencyOffsetsPos = checkedSize((long) stringDataPos + stringData.size());
+        int adjacencyDataPos = checkedSize((long) adjacencyOffsetsPos + 4L * (nodeCount + 1));
+        int endpointsPos = checkedSize((long) adjacencyDataPos + adjacencyData.size());
+        checkedSize((long) endpointsPos + endpointData.size());
+
+        // Written to a temporary file first so readers never map a partial file
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath()), 64 * 1024))) {
+            out.writeInt(MappedCallGraph.MAGIC);
+            out.writeInt(MappedCallGraph.VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(graph.getEdgeCount());
+            out.writeInt(endpointList.size());
+            out.writeInt(stringOffsetsPos);
+            out.writeInt(stringDataPos);
+            out.writeInt(adjacencyOffsetsPos);
+            out.writeInt(adjacencyDataPos);
+            out.writeInt(endpointsPos);
+            for (int offset : stringOffsets) {
+                out.writeInt(offset);
+            }
+            stringData.writeTo(out);
+            for (int offset : adjacencyOffsets) {
+                out.writeInt(offset);
+            }
+            adjacencyData.writeTo(out);
+            endpointData.writeTo(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int checkedSize(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Call graph too large for the binary format: " + size + " bytes");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Growable byte array with varint and string encoding
+     */
+    private static final class ByteSink {
+        private byte[] bytes = new byte[4096];
+        private long size;
+
+        void write(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, (int) size, data.length);
+            size += data.length;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[(int) size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[(int) size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(data.length);
+            write(data);
+        }
+
+        long size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.write(bytes, 0, (int) size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                long capacity = Math.max(bytes.length * 2L, size + extra);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Call graph section exceeds 2 GB");
+                }
+                bytes = Arrays.copyOf(bytes, (int) capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that class entries are read into one after another, so reading a
+ * class does not allocate unless it is larger than every class read before it.
+ */
+class ClassBuffer {
+
+    private byte[] bytes = new byte[64 * 1024];
+
+    /**
+     * Read the stream to its end into the buffer
+     * @param in the stream of one class entry
+     * @param sizeHint the expected size, or -1 if unknown
+     * @return the number of bytes read
+     */
+    int readFully(InputStream in, long sizeHint) throws IOException {
+        // One spare byte lets the end of the stream be detected without growing the buffer
+        if (sizeHint >= bytes.length) {
+            bytes = new byte[(int) sizeHint + 1];
+        }
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int read = in.read(bytes, length, bytes.length - length);
+            if (read == -1) {
+                return length;
+            }
+            length += read;
+        }
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+}
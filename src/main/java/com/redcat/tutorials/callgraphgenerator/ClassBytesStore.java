@@ -0,0 +1,161 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps the bytes of scanned classes, deflated, so method bodies can be rendered later
+ * for just the methods that are actually written out. A store is filled by a single
+ * scanner worker; stores are merged once scanning is done, after which several threads may
+ * {@link #get} classes concurrently. Given an {@link OffHeapStore}, the deflated bytes are kept
+ * there and only their address stays on the heap.
+ */
+public class ClassBytesStore {
+
+    private final OffHeapStore store; // null to keep deflated bytes on the heap
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] scratch = new byte[64 * 1024];
+    private long storedBytes;
+
+    public ClassBytesStore() {
+        this(null);
+    }
+
+    /**
+     * @param store where deflated class bytes are kept, or null for the heap
+     */
+    public ClassBytesStore(OffHeapStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Store the bytes of a class, replacing any earlier class of the same name
+     * @param className the dotted class name
+     * @param classBytes holds the class file in {@code [0, length)}
+     * @param length the length of the class file
+     */
+    public void put(String className, byte[] classBytes, int length) {
+        deflater.reset();
+        deflater.setInput(classBytes, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            }
+            size += deflater.deflate(scratch, size, scratch.length - size);
+        }
+        add(className, length, scratch, size);
+    }
+
+    private void add(String className, int length, byte[] data, int size) {
+        Entry entry = store == null ? new Entry(length, Arrays.copyOf(data, size), 0, size)
+                : new Entry(length, null, store.append(data, 0, size), size);
+        Entry previous = entries.put(className, entry);
+        storedBytes += size - (previous != null ? previous.size : 0);
+    }
+
+    private byte[] data(Entry entry) {
+        return entry.data != null ? entry.data : store.get(entry.address, entry.size);
+    }
+
+    /**
+     * @param className the dotted class name
+     * @return the class file bytes, or null if the class was not scanned
+     */
+    public byte[] get(String className) {
+        Entry entry = entries.get(className);
+        if (entry == null) {
+            return null;
+        }
+        byte[] classBytes = new byte[entry.length];
+        // One inflater per call, so endpoint writers can render bodies concurrently
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data(entry));
+            int size = 0;
+            while (size < entry.length && !inflater.finished()) {
+                size += inflater.inflate(classBytes, size, entry.length - size);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt stored class bytes for " + className, e);
+        } finally {
+            inflater.end();
+        }
+        return classBytes;
+    }
+
+    public void merge(ClassBytesStore other) {
+        other.entries.forEach((className, entry) -> {
+            if (other.store == store) {
+                Entry previous = entries.put(className, entry);
+                storedBytes += entry.size - (previous != null ? previous.size : 0);
+            } else {
+                add(className, entry.length, other.data(entry), entry.size);
+            }
+        });
+    }
+
+    /**
+     * Write the deflated bytes of one class, as read back by {@link #read}
+     * @param className a class held by this store
+     */
+    void write(DataOutputStream out, String className) throws IOException {
+        Entry entry = entries.get(className);
+        out.writeInt(entry.length);
+        out.writeInt(entry.size);
+        out.write(data(entry));
+    }
+
+    /**
+     * Add a class written by {@link #write} without inflating it
+     * @param className the dotted class name
+     */
+    void read(DataInputStream in, String className) throws IOException {
+        int length = in.readInt();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        add(className, length, data, data.length);
+    }
+
+    /**
+     * Step over a class written by {@link #write} without keeping it
+     */
+    static void skip(DataInputStream in) throws IOException {
+        in.readInt();
+        in.skipNBytes(in.readInt());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total size of the deflated class bytes held
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    private static final class Entry {
+        final int length;   // inflated
+        final byte[] data;  // null when kept off-heap
+        final long address;
+        final int size;     // deflated
+
+        Entry(int length, byte[] data, long address, int size) {
+            this.length = length;
+            this.data = data;
+            this.address = address;
+            this.size = size;
+        }
+    }
+}
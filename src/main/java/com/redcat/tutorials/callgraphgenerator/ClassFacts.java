@@ -0,0 +1,102 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the generator needs to know about a single class, collected in one bytecode pass
+ */
+public class ClassFacts {
+    public final String className;
+    public final String superName;
+    public final List<String> interfaces;
+    public final int access;
+    public final List<String> annotations; // class annotation descriptors
+    public final String sourceFile;
+    public final String classFile;
+    public final List<MethodFacts> methods;
+    public final List<EndpointDetector.Endpoint> endpoints;
+
+    public ClassFacts(String className, String superName, List<String> interfaces, int access, List<String> annotations,
+                      String sourceFile, String classFile, List<MethodFacts> methods, List<EndpointDetector.Endpoint> endpoints) {
+        this.className = className;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.access = access;
+        this.annotations = annotations;
+        this.sourceFile = sourceFile;
+        this.classFile = classFile;
+        this.methods = methods;
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * @return these facts for a class file that now lives at another path
+     */
+    public ClassFacts withClassFile(String classFile) {
+        if (classFile.equals(this.classFile)) {
+            return this;
+        }
+        return new ClassFacts(className, superName, interfaces, access, annotations, sourceFile, classFile, methods, endpoints);
+    }
+
+    /**
+     * @return true if the class carries an annotation with the given simple name
+     */
+    public boolean hasAnnotation(String simpleName) {
+        return hasAnnotation(annotations, simpleName);
+    }
+
+    static boolean hasAnnotation(List<String> annotations, String simpleName) {
+        for (String descriptor : annotations) {
+            if (descriptor.endsWith("/" + simpleName + ";") || descriptor.equals("L" + simpleName + ";")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A method declared by the class, with the calls it makes and the classes it instantiates
+     */
+    public static class MethodFacts {
+        public final String name;
+        public final String descriptor;
+        public final int access;
+        public final List<CallSite> calls = new ArrayList<>();
+        public final List<String> instantiations = new ArrayList<>(0); // classes created with NEW
+        public final List<String> annotations = new ArrayList<>(0);    // method annotation descriptors
+        // Set once the method body has been visited; null unless the method is accessor or builder boilerplate
+        public MethodFilterVisitor.Kind trivialKind;
+        public int instructionCount; // bytecode instructions in the body, a size measure for ranking
+
+        public MethodFacts(String name, String descriptor, int access) {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.access = access;
+        }
+
+        public boolean hasAnnotation(String simpleName) {
+            return ClassFacts.hasAnnotation(annotations, simpleName);
+        }
+    }
+
+    /**
+     * A single method invocation instruction, with the number of loops it is nested in
+     */
+    public static class CallSite {
+        public final int opcode;
+        public final String owner;
+        public final String name;
+        public final String descriptor;
+        public final int loopDepth; // 0 outside of any loop
+
+        public CallSite(int opcode, String owner, String name, String descriptor, int loopDepth) {
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.loopDepth = loopDepth;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of {@link ClassFacts} for persisted analysis results
+ */
+public final class ClassFactsCodec {
+
+    private ClassFactsCodec() {
+    }
+
+    public static void write(DataOutputStream out, ClassFacts facts) throws IOException {
+        writeString(out, facts.className);
+        writeString(out, facts.superName);
+        out.writeInt(facts.access);
+        writeStrings(out, facts.annotations);
+        writeString(out, facts.sourceFile);
+        writeString(out, facts.classFile);
+
+        writeStrings(out, facts.interfaces);
+
+        out.writeInt(facts.methods.size());
+        for (ClassFacts.MethodFacts method : facts.methods) {
+            writeString(out, method.name);
+            writeString(out, method.descriptor);
+            out.writeInt(method.access);
+            out.writeByte(method.trivialKind != null ? method.trivialKind.ordinal() : -1);
+            out.writeInt(method.instructionCount);
+            writeStrings(out, method.annotations);
+            writeStrings(out, method.instantiations);
+            out.writeInt(method.calls.size());
+            for (ClassFacts.CallSite call : method.calls) {
+                out.writeShort(call.opcode);
+                writeString(out, call.owner);
+                writeString(out, call.name);
+                writeString(out, call.descriptor);
+                out.writeByte(call.loopDepth);
+            }
+        }
+
+        out.writeInt(facts.endpoints.size());
+        for (EndpointDetector.Endpoint endpoint : facts.endpoints) {
+            writeString(out, endpoint.method);
+            writeString(out, endpoint.path);
+            writeString(out, endpoint.entryMethod);
+        }
+    }
+
+    public static ClassFacts read(DataInputStream in) throws IOException {
+        String className = readString(in);
+        String superName = readString(in);
+        int access = in.readInt();
+        List<String> annotations = readStrings(in);
+        String sourceFile = readString(in);
+        String classFile = readString(in);
+        List<String> interfaces = readStrings(in);
+
+        int methodCount = in.readInt();
+        List<ClassFacts.MethodFacts> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            ClassFacts.MethodFacts method = new ClassFacts.MethodFacts(readString(in), readString(in), in.readInt());
+            int trivialKind = in.readByte();
+            method.trivialKind = trivialKind < 0 ? null : MethodFilterVisitor.Kind.values()[trivialKind];
+            method.instructionCount = in.readInt();
+            method.annotations.addAll(readStrings(in));
+            method.instantiations.addAll(readStrings(in));
+            int callCount = in.readInt();
+            for (int c = 0; c < callCount; c++) {
+                method.calls.add(new ClassFacts.CallSite(in.readShort(), readString(in), readString(in), readString(in), in.readUnsignedByte()));
+            }
+            methods.add(method);
+        }
+
+        int endpointCount = in.readInt();
+        List<EndpointDetector.Endpoint> endpoints = new ArrayList<>(endpointCount);
+        for (int i = 0; i < endpointCount; i++) {
+            endpoints.add(new EndpointDetector.Endpoint(readString(in), readString(in), readString(in)));
+        }
+
+        return new ClassFacts(className, superName, interfaces, access, annotations, sourceFile, classFile, methods, endpoints);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    // Length-prefixed UTF-8, with -1 standing for null (superName, sourceFile), which writeUTF cannot encode
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
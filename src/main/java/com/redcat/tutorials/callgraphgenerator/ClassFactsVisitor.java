@@ -0,0 +1,87 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects hierarchy, endpoint and call information for a class in a single
+ * {@code ClassReader.accept}. Frames are never expanded since nothing downstream reads them.
+ * Trivial methods are classified on the way by a {@link MethodFilterVisitor}.
+ * Method bodies are not rendered here; see {@link MethodBodyExtractor}.
+ */
+public class ClassFactsVisitor extends ClassVisitor {
+
+    private final String classFile;
+    private final EndpointDetector endpointDetector = new EndpointDetector();
+    private final MethodFilterVisitor methodFilter = new MethodFilterVisitor(Opcodes.ASM9);
+    private final List<ClassFacts.MethodFacts> methods = new ArrayList<>();
+    private String className;
+    private String superName;
+    private List<String> interfaces = Collections.emptyList();
+    private int access;
+    private final List<String> annotations = new ArrayList<>(0);
+    private String sourceFile;
+
+    /**
+     * @param classFile path of the class file being visited, kept for source lookup
+     */
+    public ClassFactsVisitor(String classFile) {
+        super(Opcodes.ASM9);
+        this.classFile = classFile;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.className = name.replace('/', '.');
+        this.superName = superName != null ? superName.replace('/', '.') : null;
+        this.access = access;
+        if (interfaces != null) {
+            this.interfaces = new ArrayList<>(interfaces.length);
+            for (String iface : interfaces) {
+                this.interfaces.add(iface.replace('/', '.'));
+            }
+        }
+        endpointDetector.visitClass(className);
+        methodFilter.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public void visitSource(String source, String debug) {
+        this.sourceFile = source;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        annotations.add(descriptor);
+        endpointDetector.visitClassAnnotation(descriptor);
+        methodFilter.visitAnnotation(descriptor, visible);
+        return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        ClassFacts.MethodFacts method = new ClassFacts.MethodFacts(name, descriptor, access);
+        methods.add(method);
+
+        MethodVisitor shapeVisitor = methodFilter.visitMethod(access, name, descriptor, signature, exceptions);
+        MethodVisitor callVisitor = new CustomMethodVisitor(Opcodes.ASM9, shapeVisitor, method);
+        return endpointDetector.visitMethod(access, name, descriptor, signature, exceptions, callVisitor);
+    }
+
+    /**
+     * @return the facts collected once the class has been fully visited
+     */
+    public ClassFacts getFacts() {
+        for (ClassFacts.MethodFacts method : methods) {
+            method.trivialKind = methodFilter.getTrivialKind(method.name, method.descriptor);
+        }
+        return new ClassFacts(className, superName, interfaces, access, annotations, sourceFile, classFile, methods,
+                new ArrayList<>(endpointDetector.getEndpoints()));
+    }
+}
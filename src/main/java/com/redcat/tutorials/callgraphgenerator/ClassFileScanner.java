@@ -0,0 +1,268 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans a {@link ClassSource} (classes directory or JAR) and analyzes every class in it.
+ * The calling thread reads the source and feeds class bytes into a bounded queue,
+ * while a fork-join pool of ASM parsers drains it, each worker filling its own {@link ScanShard}.
+ * The shards are merged once the queue is exhausted. A parallelism of 1 analyzes every
+ * class inline on the calling thread. The time spent reading the source and parsing classes is
+ * measured separately; since both run at once, they add up to more than the scan took.
+ */
+public class ClassFileScanner {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // Marks the end of input for a single worker; compared by identity
+    private static final QueuedClass END_OF_INPUT = new QueuedClass(null, null, null);
+
+    private final int parallelism;
+    private final int queueCapacity;
+    private AnalysisSnapshot previousSnapshot = new AnalysisSnapshot();
+    private JarAnalysisCache jarCache;
+    private List<String> libraryPackages = List.of();
+    private List<File> dependencyJars = List.of();
+    private OffHeapStore offHeapStore;
+    private final AtomicLong walkNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    public ClassFileScanner(int parallelism) {
+        this(parallelism, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ClassFileScanner(int parallelism, int queueCapacity) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1: " + queueCapacity);
+        }
+        this.parallelism = parallelism;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the time the calling thread spent reading the source and linking dependency jars, not counting
+     * the time it waited for a full queue
+     */
+    public long getWalkMillis() {
+        return walkNanos.get() / 1_000_000;
+    }
+
+    /**
+     * @return the time spent parsing classes, summed over all workers
+     */
+    public long getParseMillis() {
+        return parseNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Provide the results of an earlier run so unchanged class files are not parsed again
+     * @param previousSnapshot the snapshot saved by the previous run
+     */
+    public void setPreviousSnapshot(AnalysisSnapshot previousSnapshot) {
+        this.previousSnapshot = previousSnapshot;
+    }
+
+    /**
+     * Link dependency jars against analyses cached by jar content instead of parsing their classes on every run
+     * @param jarCache the cache of dependency jar analyses
+     * @param libraryPackages package prefixes such as {@code com.acme} of the dependency classes to link; empty for all
+     */
+    public void setJarCache(JarAnalysisCache jarCache, List<String> libraryPackages) {
+        this.jarCache = jarCache;
+        this.libraryPackages = libraryPackages;
+    }
+
+    /**
+     * Dependency jars to link in addition to those found in the scanned source; requires a jar cache
+     * @param dependencyJars jar files
+     */
+    public void setDependencyJars(List<File> dependencyJars) {
+        this.dependencyJars = dependencyJars;
+    }
+
+    /**
+     * Keep the bytes of scanned classes off the heap
+     * @param offHeapStore the store shared by all workers, or null for the heap
+     */
+    public void setOffHeapStore(OffHeapStore offHeapStore) {
+        this.offHeapStore = offHeapStore;
+    }
+
+    /**
+     * Scan all class files below the given directory
+     * @param classesDir the root of the compiled classes
+     * @return the merged result of all workers
+     */
+    public ScanShard scan(File classesDir) throws IOException {
+        return scan(new DirectoryClassSource(classesDir));
+    }
+
+    /**
+     * Scan every class of a class source
+     * @param source the classes directory or JAR to read
+     * @return the merged result of all workers
+     */
+    public ScanShard scan(ClassSource source) throws IOException {
+        // Dependency jars are linked on the walking thread while workers parse the project's classes
+        ScanShard libraries = new ScanShard(new AnalysisSnapshot(), offHeapStore);
+        if (jarCache != null) {
+            source.setLibraryJarConsumer((location, buffer, length) ->
+                    jarCache.link(location, buffer, length, libraryPackages, libraries));
+        }
+        ScanShard result = scanClasses(source);
+        long started = System.nanoTime();
+        if (jarCache != null) {
+            for (File jar : dependencyJars) {
+                byte[] jarBytes = Files.readAllBytes(jar.toPath());
+                jarCache.link(jar.getAbsolutePath(), jarBytes, jarBytes.length, libraryPackages, libraries);
+            }
+        }
+        walkNanos.addAndGet(System.nanoTime() - started);
+        result.merge(libraries);
+        return result;
+    }
+
+    private ScanShard scanClasses(ClassSource source) throws IOException {
+        if (parallelism == 1) {
+            // Analyzed in place, so the source's read buffer is never copied
+            ScanShard shard = new ScanShard(previousSnapshot, offHeapStore);
+            long started = System.nanoTime();
+            long parsedBefore = parseNanos.get();
+            source.forEachClass((classFile, relativePath, buffer, length) -> {
+                long parseStarted = System.nanoTime();
+                shard.analyze(classFile, relativePath, buffer, length);
+                parseNanos.addAndGet(System.nanoTime() - parseStarted);
+            });
+            walkNanos.addAndGet(System.nanoTime() - started - (parseNanos.get() - parsedBefore));
+            return shard;
+        }
+
+        BlockingQueue<QueuedClass> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<ScanShard>> workers = new ArrayList<>(parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                workers.add(pool.submit(() -> consume(queue, aborted)));
+            }
+
+            IOException walkFailure = null;
+            long started = System.nanoTime();
+            try {
+                source.forEachClass((classFile, relativePath, buffer, length) -> enqueue(queue,
+                        new QueuedClass(classFile, relativePath, Arrays.copyOf(buffer, length)), aborted));
+            } catch (IOException e) {
+                walkFailure = e;
+            } finally {
+                walkNanos.addAndGet(System.nanoTime() - started);
+                signalEndOfInput(queue, workers);
+            }
+
+            // Joining first surfaces the worker's own failure rather than the walker's abort
+            ScanShard merged = new ScanShard(previousSnapshot, offHeapStore);
+            for (ForkJoinTask<ScanShard> worker : workers) {
+                merged.merge(join(worker));
+            }
+            if (walkFailure != null) {
+                throw walkFailure;
+            }
+            return merged;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ScanShard consume(BlockingQueue<QueuedClass> queue, AtomicBoolean aborted) throws InterruptedException {
+        ScanShard shard = new ScanShard(previousSnapshot, offHeapStore);
+        try {
+            for (QueuedClass queued = queue.take(); queued != END_OF_INPUT; queued = queue.take()) {
+                long started = System.nanoTime();
+                shard.analyze(queued.classFile, queued.relativePath, queued.bytes, queued.bytes.length);
+                parseNanos.addAndGet(System.nanoTime() - started);
+            }
+            return shard;
+        } catch (RuntimeException | InterruptedException e) {
+            aborted.set(true);
+            throw e;
+        }
+    }
+
+    private void enqueue(BlockingQueue<QueuedClass> queue, QueuedClass queued, AtomicBoolean aborted) throws IOException {
+        if (queue.offer(queued)) {
+            return;
+        }
+        // Time spent waiting for the parsers is not walking
+        long started = System.nanoTime();
+        try {
+            while (!queue.offer(queued, 100, TimeUnit.MILLISECONDS)) {
+                if (aborted.get()) {
+                    throw new IOException("Class file scan aborted by a failed worker");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing class files", e);
+        } finally {
+            walkNanos.addAndGet(started - System.nanoTime());
+        }
+    }
+
+    private void signalEndOfInput(BlockingQueue<QueuedClass> queue, List<ForkJoinTask<ScanShard>> workers) throws IOException {
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                while (!queue.offer(END_OF_INPUT, 100, TimeUnit.MILLISECONDS)) {
+                    // Nobody left to drain the queue once every worker has finished or failed
+                    if (workers.stream().allMatch(ForkJoinTask::isDone)) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while stopping scanner workers", e);
+        }
+    }
+
+    private ScanShard join(ForkJoinTask<ScanShard> worker) throws IOException {
+        try {
+            return worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for scanner workers", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to analyze class file: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static final class QueuedClass {
+        final String classFile;
+        final String relativePath;
+        final byte[] bytes;
+
+        QueuedClass(String classFile, String relativePath, byte[] bytes) {
+            this.classFile = classFile;
+            this.relativePath = relativePath;
+            this.bytes = bytes;
+        }
+    }
+}
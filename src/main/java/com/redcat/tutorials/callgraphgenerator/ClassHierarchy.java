@@ -0,0 +1,289 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class hierarchy of the scanned classes, used to resolve call sites to the methods they may dispatch to.
+ * Virtual and interface calls are resolved by class hierarchy analysis over every transitive subclass and
+ * implementation of the receiver type, superclasses and inherited interfaces included. With rapid type
+ * analysis enabled, implementations in classes that are never instantiated are dropped. A class counts as
+ * instantiated when some scanned method creates it with {@code new}, when it carries a Spring stereotype,
+ * or when it is (or extends) the return type of a {@code @Bean} method. Should that leave a call without
+ * any target, for instance because the receiver is created by reflection, all hierarchy targets are kept.
+ */
+public class ClassHierarchy {
+
+    private static final Set<String> CONTAINER_MANAGED = Set.of(
+            "Component", "Service", "Repository", "Controller", "RestController", "Configuration",
+            "ControllerAdvice", "RestControllerAdvice", "SpringBootApplication", "Entity", "Embeddable", "Document");
+
+    private final Map<String, ClassFacts> classes = new HashMap<>();
+    private final Map<String, Map<String, ClassFacts.MethodFacts>> methods = new HashMap<>(); // by name + descriptor
+    private final Map<String, List<String>> directSubtypes = new HashMap<>();
+    private final Map<String, List<String>> subtypes = new HashMap<>();
+    private final Set<String> instantiated = new HashSet<>();
+    private final Map<String, List<String>> resolved = new HashMap<>();
+    private final boolean rapidTypeAnalysis;
+    private int prunedTargets;
+
+    /**
+     * @param classes the scanned classes
+     * @param rapidTypeAnalysis true to drop dispatch targets in classes that are never instantiated
+     */
+    public ClassHierarchy(Collection<ClassFacts> classes, boolean rapidTypeAnalysis) {
+        this.rapidTypeAnalysis = rapidTypeAnalysis;
+        for (ClassFacts classFacts : classes) {
+            this.classes.put(classFacts.className, classFacts);
+            Map<String, ClassFacts.MethodFacts> declared = new HashMap<>();
+            for (ClassFacts.MethodFacts method : classFacts.methods) {
+                declared.put(method.name + method.descriptor, method);
+            }
+            methods.put(classFacts.className, declared);
+            if (classFacts.superName != null) {
+                directSubtypes.computeIfAbsent(classFacts.superName, k -> new ArrayList<>()).add(classFacts.className);
+            }
+            for (String iface : classFacts.interfaces) {
+                directSubtypes.computeIfAbsent(iface, k -> new ArrayList<>()).add(classFacts.className);
+            }
+        }
+
+        List<String> beanTypes = new ArrayList<>();
+        for (ClassFacts classFacts : classes) {
+            for (String annotation : CONTAINER_MANAGED) {
+                if (classFacts.hasAnnotation(annotation)) {
+                    instantiated.add(classFacts.className);
+                    break;
+                }
+            }
+            for (ClassFacts.MethodFacts method : classFacts.methods) {
+                instantiated.addAll(method.instantiations);
+                if (method.hasAnnotation("Bean")) {
+                    Type returnType = Type.getReturnType(method.descriptor);
+                    if (returnType.getSort() == Type.OBJECT) {
+                        beanTypes.add(returnType.getClassName());
+                    }
+                }
+            }
+        }
+        // A bean declared by an interface or base type may be any of its implementations
+        for (String beanType : beanTypes) {
+            instantiated.add(beanType);
+            instantiated.addAll(getSubtypes(beanType));
+        }
+    }
+
+    public ClassFacts getClass(String className) {
+        return classes.get(className);
+    }
+
+    public boolean isInstantiated(String className) {
+        return instantiated.contains(className);
+    }
+
+    /**
+     * @return the number of classes considered instantiated
+     */
+    public int getInstantiatedCount() {
+        return instantiated.size();
+    }
+
+    /**
+     * @return the number of dispatch targets dropped by rapid type analysis so far
+     */
+    public int getPrunedTargets() {
+        return prunedTargets;
+    }
+
+    /**
+     * @return every scanned class extending or implementing the type, directly or not
+     */
+    public List<String> getSubtypes(String className) {
+        List<String> cached = subtypes.get(className);
+        if (cached != null) {
+            return cached;
+        }
+        Set<String> found = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>(directSubtypes.getOrDefault(className, List.of()));
+        while (!pending.isEmpty()) {
+            String subtype = pending.pop();
+            if (found.add(subtype)) {
+                pending.addAll(directSubtypes.getOrDefault(subtype, List.of()));
+            }
+        }
+        List<String> result = new ArrayList<>(found);
+        subtypes.put(className, result);
+        return result;
+    }
+
+    /**
+     * Resolve a call site to the ids of the methods it may invoke
+     * @param call the invocation instruction
+     * @return method ids; calls into unscanned classes resolve to the method as named by the call site
+     */
+    public List<String> resolve(ClassFacts.CallSite call) {
+        boolean virtual = call.opcode == Opcodes.INVOKEVIRTUAL || call.opcode == Opcodes.INVOKEINTERFACE;
+        String key = (virtual ? "v" : "s") + call.owner + "." + call.name + call.descriptor;
+        List<String> targets = resolved.get(key);
+        if (targets == null) {
+            targets = virtual ? resolveVirtual(call.owner, call.name, call.descriptor)
+                    : List.of(resolveStatic(call.owner, call.name, call.descriptor));
+            resolved.put(key, targets);
+        }
+        return targets;
+    }
+
+    /**
+     * Static, constructor, private and super calls: the declaration found walking up from the named class
+     */
+    private String resolveStatic(String owner, String name, String descriptor) {
+        if (name.equals("<init>")) {
+            return MethodId.of(owner, name, descriptor);
+        }
+        String declaring = findImplementation(owner, name, descriptor);
+        return declaring != null ? declaring : findDeclaration(owner, name, descriptor);
+    }
+
+    private List<String> resolveVirtual(String owner, String name, String descriptor) {
+        boolean scanned = classes.containsKey(owner);
+        if (scanned) {
+            ClassFacts.MethodFacts own = methods.get(owner).get(name + descriptor);
+            if (own != null && (own.access & Opcodes.ACC_PRIVATE) != 0) {
+                return List.of(MethodId.of(owner, name, descriptor));
+            }
+        }
+
+        // A library type is kept as a target itself, plus whatever scanned classes override it
+        Set<String> all = new LinkedHashSet<>();
+        Set<String> live = new LinkedHashSet<>();
+        if (!scanned) {
+            all.add(MethodId.of(owner, name, descriptor));
+            live.add(MethodId.of(owner, name, descriptor));
+        }
+        List<String> receivers = new ArrayList<>();
+        if (scanned) {
+            receivers.add(owner);
+        }
+        receivers.addAll(getSubtypes(owner));
+        for (String receiver : receivers) {
+            ClassFacts receiverClass = classes.get(receiver);
+            if ((receiverClass.access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT)) != 0) {
+                continue;
+            }
+            String target = findImplementation(receiver, name, descriptor);
+            if (target != null) {
+                all.add(target);
+                if (instantiated.contains(receiver)) {
+                    live.add(target);
+                }
+            }
+        }
+
+        if (rapidTypeAnalysis && !live.isEmpty()) {
+            prunedTargets += all.size() - live.size();
+            return new ArrayList<>(live);
+        }
+        if (!all.isEmpty()) {
+            return new ArrayList<>(all);
+        }
+        // No implementation at all, e.g. a Spring Data repository method: the abstract declaration
+        return List.of(findDeclaration(owner, name, descriptor));
+    }
+
+    /**
+     * Find the concrete method a receiver of the given class runs: declared by the class or inherited
+     * from a superclass, else a default method of one of its interfaces
+     * @return the method id, an id in the first unscanned superclass if the lookup leaves the scanned
+     * classes, or null if there is no implementation
+     */
+    private String findImplementation(String className, String name, String descriptor) {
+        String current = className;
+        while (current != null) {
+            ClassFacts classFacts = classes.get(current);
+            if (classFacts == null) {
+                return current.equals("java.lang.Object") && !isObjectMethod(name, descriptor)
+                        ? findDefaultMethod(className, name, descriptor)
+                        : MethodId.of(current, name, descriptor);
+            }
+            ClassFacts.MethodFacts method = methods.get(current).get(name + descriptor);
+            if (method != null && (method.access & Opcodes.ACC_ABSTRACT) == 0) {
+                return MethodId.of(current, name, descriptor);
+            }
+            current = classFacts.superName;
+        }
+        return findDefaultMethod(className, name, descriptor);
+    }
+
+    private String findDefaultMethod(String className, String name, String descriptor) {
+        for (String type : supertypes(className)) {
+            Map<String, ClassFacts.MethodFacts> declared = methods.get(type);
+            ClassFacts.MethodFacts method = declared != null ? declared.get(name + descriptor) : null;
+            if (method != null && (method.access & Opcodes.ACC_ABSTRACT) == 0
+                    && (classes.get(type).access & Opcodes.ACC_INTERFACE) != 0) {
+                return MethodId.of(type, name, descriptor);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the nearest declaration of a method, abstract or not, in the class or its supertypes
+     * @return the method id in the declaring class, in the nearest unscanned supertype if none of the
+     * scanned supertypes declares it, or in the named class as a last resort
+     */
+    private String findDeclaration(String className, String name, String descriptor) {
+        String external = null;
+        for (String type : supertypes(className)) {
+            Map<String, ClassFacts.MethodFacts> declared = methods.get(type);
+            if (declared == null) {
+                if (external == null && !type.equals("java.lang.Object")) {
+                    external = type;
+                }
+            } else if (declared.containsKey(name + descriptor)) {
+                return MethodId.of(type, name, descriptor);
+            }
+        }
+        return MethodId.of(external != null ? external : className, name, descriptor);
+    }
+
+    /**
+     * @return the class and all of its supertypes, breadth first: superclasses before interfaces at each level
+     */
+    private List<String> supertypes(String className) {
+        Set<String> found = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(className);
+        while (!pending.isEmpty()) {
+            String type = pending.poll();
+            if (!found.add(type)) {
+                continue;
+            }
+            ClassFacts classFacts = classes.get(type);
+            if (classFacts != null) {
+                if (classFacts.superName != null) {
+                    pending.add(classFacts.superName);
+                }
+                pending.addAll(classFacts.interfaces);
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private static boolean isObjectMethod(String name, String descriptor) {
+        return (name.equals("equals") && descriptor.equals("(Ljava/lang/Object;)Z"))
+                || (name.equals("hashCode") && descriptor.equals("()I"))
+                || (name.equals("toString") && descriptor.equals("()Ljava/lang/String;"))
+                || (name.equals("getClass") && descriptor.equals("()Ljava/lang/Class;"));
+    }
+}
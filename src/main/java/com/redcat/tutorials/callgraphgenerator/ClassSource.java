@@ -0,0 +1,77 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A location compiled classes are read from: an exploded classes directory, a plain JAR,
+ * or a Spring Boot fat jar. Class bytes are streamed out of the source one entry at a time
+ * without extracting anything to disk.
+ */
+public interface ClassSource {
+
+    /**
+     * Pass every class of the source to the consumer, in the order the source stores them.
+     * The buffer handed to the consumer is reused for the next entry, so consumers that keep
+     * the bytes beyond the call must copy them.
+     * @param consumer receives each class
+     */
+    void forEachClass(ClassEntryConsumer consumer) throws IOException;
+
+    /**
+     * @return the path of the directory or archive, for messages
+     */
+    String getLocation();
+
+    /**
+     * Hand dependency jars found in the source to a consumer as a whole, instead of passing their
+     * classes to {@link #forEachClass}. Sources without dependency jars ignore this.
+     * @param consumer receives each dependency jar, or null to stream their classes again
+     */
+    default void setLibraryJarConsumer(LibraryJarConsumer consumer) {
+    }
+
+    /**
+     * Open a classes directory or a JAR file
+     * @param path a directory of .class files, or a .jar / Boot fat jar
+     * @param libraryPackages package prefixes of dependency classes to include from a Boot jar's BOOT-INF/lib;
+     *                        dependency jars are skipped when empty
+     * @return the class source for the path
+     */
+    static ClassSource open(File path, List<String> libraryPackages) throws IOException {
+        if (path.isDirectory()) {
+            return new DirectoryClassSource(path);
+        }
+        if (path.isFile() && path.getName().endsWith(".jar")) {
+            return new JarClassSource(path, libraryPackages);
+        }
+        throw new IOException("Not a classes directory or JAR file: " + path.getAbsolutePath());
+    }
+
+    static ClassSource open(File path) throws IOException {
+        return open(path, Collections.emptyList());
+    }
+
+    @FunctionalInterface
+    interface ClassEntryConsumer {
+        /**
+         * @param classFile where the class was read from, e.g. {@code /app.jar!/BOOT-INF/classes/com/acme/Foo.class}
+         * @param relativePath the path of the class within the source, with '/' separators; unique within the source
+         * @param buffer holds the class bytes in {@code [0, length)}
+         * @param length the number of valid bytes in the buffer
+         */
+        void accept(String classFile, String relativePath, byte[] buffer, int length) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface LibraryJarConsumer {
+        /**
+         * @param location where the jar was read from, e.g. {@code /app.jar!/BOOT-INF/lib/acme-core.jar}
+         * @param buffer holds the jar bytes in {@code [0, length)}; reused for the next jar
+         * @param length the number of valid bytes in the buffer
+         */
+        void accept(String location, byte[] buffer, int length) throws IOException;
+    }
+}
@@ -0,0 +1,67 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * The classes of several modules read as one source, so a multi-module build is analyzed in a single scan.
+ * Relative paths are prefixed with the module name to keep them unique across modules. A class found in
+ * more than one module, e.g. a shared module also packed into a Boot jar, is analyzed only for the first.
+ */
+public class CompositeClassSource implements ClassSource {
+
+    private final List<ClassSource> sources;
+    private final List<String> names;
+    private int duplicateCount;
+
+    /**
+     * @param sources the class source of each module
+     * @param names the module names, one per source
+     */
+    public CompositeClassSource(List<ClassSource> sources, List<String> names) {
+        if (sources.size() != names.size()) {
+            throw new IllegalArgumentException("Expected one name per class source: " + names);
+        }
+        this.sources = sources;
+        this.names = names;
+    }
+
+    @Override
+    public void forEachClass(ClassEntryConsumer consumer) throws IOException {
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < sources.size(); i++) {
+            String prefix = names.get(i) + "/";
+            sources.get(i).forEachClass((classFile, relativePath, buffer, length) -> {
+                // Classes of a Boot jar's nested library jars are keyed by their path inside that jar
+                int nested = relativePath.lastIndexOf("!/");
+                if (seen.add(nested < 0 ? relativePath : relativePath.substring(nested + 2))) {
+                    consumer.accept(classFile, prefix + relativePath, buffer, length);
+                } else {
+                    duplicateCount++;
+                }
+            });
+        }
+    }
+
+    @Override
+    public String getLocation() {
+        StringJoiner locations = new StringJoiner(", ");
+        sources.forEach(source -> locations.add(source.getLocation()));
+        return locations.toString();
+    }
+
+    @Override
+    public void setLibraryJarConsumer(LibraryJarConsumer consumer) {
+        sources.forEach(source -> source.setLibraryJarConsumer(consumer));
+    }
+
+    /**
+     * @return the number of classes skipped by the last scan because an earlier module already had them
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+}
@@ -1,30 +1,152 @@
 package com.redcat.tutorials.callgraphgenerator;
 
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records every method invocation and instantiation made by the visited method, and its annotations.
+ * Instructions are counted as the body is visited; a jump to a label visited earlier closes a loop
+ * spanning the instructions in between, and each call site is given the number of such loops around it.
+ */
 public class CustomMethodVisitor extends MethodVisitor {
 
-    private final String callerMethod;
-    private final CallGraph callGraph;
+    private final ClassFacts.MethodFacts method;
+    private final Map<Label, Integer> labelPositions = new HashMap<>();
+    private final Map<Integer, Integer> loops = new HashMap<>(); // first to last instruction of each loop
+    private final List<ClassFacts.CallSite> calls = new ArrayList<>(); // loop depth is filled in at the end
+    private int[] callPositions = new int[16];
+    private int instructionCount;
+
+    public CustomMethodVisitor(int api, MethodVisitor methodVisitor, ClassFacts.MethodFacts method) {
+        super(api, methodVisitor);
+        this.method = method;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        method.annotations.add(descriptor);
+        return super.visitAnnotation(descriptor, visible);
+    }
+
+    @Override
+    public void visitLabel(Label label) {
+        labelPositions.put(label, instructionCount);
+        super.visitLabel(label);
+    }
 
-    public CustomMethodVisitor(int api, String name, String descriptor, CallGraph callGraph) {
-        super(api);
-        this.callGraph = callGraph;
-        this.callerMethod = null; // Will be set later by the wrapper
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+        Integer target = labelPositions.get(label);
+        if (target != null) {
+            // Every backward jump to the same header, e.g. a continue, belongs to one loop
+            loops.merge(target, instructionCount, Math::max);
+        }
+        instructionCount++;
+        super.visitJumpInsn(opcode, label);
     }
 
-    public CustomMethodVisitor(int api, String owner, String name, String descriptor, CallGraph callGraph) {
-        super(api);
-        this.callGraph = callGraph;
-        this.callerMethod = owner.replace('/', '.') + "." + name;
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+        if (opcode == Opcodes.NEW) {
+            method.instantiations.add(type.replace('/', '.'));
+        }
+        instructionCount++;
+        super.visitTypeInsn(opcode, type);
     }
 
     @Override
     public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-        String callee = owner.replace('/', '.') + "." + name;
-        if (callerMethod != null && !callee.startsWith("java.")) {
-            callGraph.addEdge(callerMethod, callee);
+        if (calls.size() == callPositions.length) {
+            callPositions = Arrays.copyOf(callPositions, calls.size() * 2);
         }
+        callPositions[calls.size()] = instructionCount++;
+        calls.add(new ClassFacts.CallSite(opcode, owner.replace('/', '.'), name, descriptor, 0));
         super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
     }
+
+    @Override
+    public void visitInsn(int opcode) {
+        instructionCount++;
+        super.visitInsn(opcode);
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+        instructionCount++;
+        super.visitIntInsn(opcode, operand);
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int varIndex) {
+        instructionCount++;
+        super.visitVarInsn(opcode, varIndex);
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+        instructionCount++;
+        super.visitFieldInsn(opcode, owner, name, descriptor);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+        instructionCount++;
+        super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+    }
+
+    @Override
+    public void visitLdcInsn(Object value) {
+        instructionCount++;
+        super.visitLdcInsn(value);
+    }
+
+    @Override
+    public void visitIincInsn(int varIndex, int increment) {
+        instructionCount++;
+        super.visitIincInsn(varIndex, increment);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        instructionCount++;
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        instructionCount++;
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+        instructionCount++;
+        super.visitMultiANewArrayInsn(descriptor, numDimensions);
+    }
+
+    @Override
+    public void visitEnd() {
+        method.instructionCount = instructionCount;
+        for (int i = 0; i < calls.size(); i++) {
+            ClassFacts.CallSite call = calls.get(i);
+            int depth = 0;
+            for (Map.Entry<Integer, Integer> loop : loops.entrySet()) {
+                if (loop.getKey() <= callPositions[i] && callPositions[i] <= loop.getValue()) {
+                    depth++;
+                }
+            }
+            method.calls.add(depth == 0 ? call
+                    : new ClassFacts.CallSite(call.opcode, call.owner, call.name, call.descriptor, Math.min(depth, 255)));
+        }
+        super.visitEnd();
+    }
 }
@@ -0,0 +1,47 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * Classes of an exploded classes directory such as {@code target/classes}
+ */
+public class DirectoryClassSource implements ClassSource {
+
+    private final File root;
+    private final ClassBuffer buffer = new ClassBuffer();
+
+    public DirectoryClassSource(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public void forEachClass(ClassEntryConsumer consumer) throws IOException {
+        walk(root, consumer);
+    }
+
+    @Override
+    public String getLocation() {
+        return root.getAbsolutePath();
+    }
+
+    private void walk(File dir, ClassEntryConsumer consumer) throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    walk(file, consumer);
+                } else if (file.getName().endsWith(".class")) {
+                    String relativePath = root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+                    int length;
+                    try (InputStream in = Files.newInputStream(file.toPath())) {
+                        length = buffer.readFully(in, file.length());
+                    }
+                    consumer.accept(file.getAbsolutePath(), relativePath, buffer.bytes(), length);
+                }
+            }
+        }
+    }
+}
@@ -1,28 +1,53 @@
 package com.redcat.tutorials.callgraphgenerator;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 public class EndpointCallGraphBuilder {
 
+    public static final int IN_FLIGHT_PER_WORKER = 4;
+
     private final CallGraph globalGraph;
     private final ObjectMapper objectMapper;
     private String outputDir = "./output"; // Default output directory
     private MethodBodyExtractor methodBodyExtractor; // Add method body extractor
     private boolean extractMethodBodies = false; // Flag to control method body extraction
     private String projectSrcPath; // Source folder path for relative path calculation
+    private boolean prettyPrint = false; // Indent output files
+    private boolean compressOutput = false; // Write .json.gz instead of .json
+    private MethodBodyTable bodyTable; // Bodies referenced by hash from the method bodies files
+    private TrivialMethodPruner pruner; // Trivial methods whose bodies are replaced by a placeholder
+    private PackagePolicy packagePolicy; // Library methods left out of the method bodies files
+    private OffHeapStore offHeapStore; // Where rendered method bodies are spilled, if anywhere
+    private int parallelism = Runtime.getRuntime().availableProcessors(); // Endpoint writer threads
+    private CallGraphAnalysis.PhaseListener listener = new CallGraphAnalysis.PhaseListener() {
+    };
+    private final AtomicLong bytesWritten = new AtomicLong(); // Size of the files moved into place
+    private ReachabilityIndex reachability; // Built on first use, shared by call graph and method bodies files
 
     public EndpointCallGraphBuilder(CallGraph globalGraph) {
         this.globalGraph = globalGraph;
         this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
     }
 
     /**
@@ -33,69 +58,216 @@ public class EndpointCallGraphBuilder {
         this.outputDir = outputDir;
     }
 
+    /**
+     * Indent the JSON output; off by default since output files are meant to be loaded, not read
+     * @param prettyPrint true to indent
+     */
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    /**
+     * Gzip every output file; files are then named *.json.gz, which the data loader reads transparently
+     * @param compressOutput true to compress
+     */
+    public void setCompressOutput(boolean compressOutput) {
+        this.compressOutput = compressOutput;
+    }
+
+    /**
+     * @param parallelism the number of threads writing endpoint files
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @param listener told about the reachability and write phases, the number of bytes written, and progress
+     */
+    public void setPhaseListener(CallGraphAnalysis.PhaseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the total size of the files written so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Replace the bodies of trivial methods collapsed by the pruner with a placeholder
+     * @param pruner the pruner that was applied to the call graph
+     */
+    public void setPruner(TrivialMethodPruner pruner) {
+        this.pruner = pruner;
+        if (methodBodyExtractor != null) {
+            methodBodyExtractor.setPruner(pruner);
+        }
+    }
+
+    /**
+     * Spill rendered method bodies into an off-heap store instead of re-rendering them after cache eviction
+     * @param offHeapStore the store, or null to keep bodies on the heap
+     */
+    public void setOffHeapStore(OffHeapStore offHeapStore) {
+        this.offHeapStore = offHeapStore;
+        if (methodBodyExtractor != null) {
+            methodBodyExtractor.setOffHeapStore(offHeapStore);
+        }
+    }
+
+    /**
+     * Leave methods outside the project packages, i.e. library leaf nodes, out of the method bodies files
+     * @param packagePolicy the policy the call graph was collapsed with
+     */
+    public void setPackagePolicy(PackagePolicy packagePolicy) {
+        this.packagePolicy = packagePolicy;
+        if (methodBodyExtractor != null) {
+            methodBodyExtractor.setPackagePolicy(packagePolicy);
+        }
+    }
+
     /**
      * Enable method body extraction functionality
-     * @param classesDirPath the path to the classes directory
+     * @param modules the modules the classes were scanned from
+     * @param classes the classes found by the scanner
+     * @param classBytes the bytes of those classes, from which bodies are rendered on demand
      */
-    public void enableMethodBodyExtraction(String classesDirPath) {
-        try {
-            this.methodBodyExtractor = new MethodBodyExtractor(classesDirPath);
-            // Try to determine project src path for relative path calculation
-            File classesDir = new File(classesDirPath);
-            File projectDir = classesDir.getParentFile(); // target folder
+    public void enableMethodBodyExtraction(List<ProjectModule> modules, Collection<ClassFacts> classes, ClassBytesStore classBytes) {
+        this.methodBodyExtractor = new MethodBodyExtractor(modules);
+        // Try to determine project src path for relative path calculation
+        if (modules.size() == 1) {
+            File projectDir = modules.get(0).classesRoot.getAbsoluteFile().getParentFile(); // target folder
             if (projectDir != null) {
                 projectDir = projectDir.getParentFile(); // project root
                 if (projectDir != null) {
                     File srcDir = new File(projectDir, "src");
                     if (srcDir.exists() && srcDir.isDirectory()) {
                         this.projectSrcPath = srcDir.getAbsolutePath();
-                        System.out.println("Using project src path: " + this.projectSrcPath);
+                        listener.info("Using project src path: " + this.projectSrcPath);
                     }
                 }
             }
+        } else {
+            // Paths of a multi-module build are made relative to the directory shared by all modules
+            this.projectSrcPath = commonDirectory(modules);
+            listener.info("Using multi-module project path: " + this.projectSrcPath);
+        }
 
-            this.methodBodyExtractor.loadAllClasses();
-            this.extractMethodBodies = true;
-            System.out.println("Method body extraction enabled");
-        } catch (IOException e) {
-            System.err.println("Failed to initialize method body extractor: " + e.getMessage());
-            this.extractMethodBodies = false;
+        this.methodBodyExtractor.setOffHeapStore(offHeapStore);
+        this.methodBodyExtractor.loadClasses(classes, classBytes);
+        listener.info("Indexed " + methodBodyExtractor.getMethodCount() + " methods from " + classes.size() + " class files ("
+                + classBytes.getStoredBytes() / 1024 + " KB of compressed class bytes); bodies are rendered on demand");
+        if (pruner != null) {
+            this.methodBodyExtractor.setPruner(pruner);
+        }
+        if (packagePolicy != null) {
+            this.methodBodyExtractor.setPackagePolicy(packagePolicy);
+        }
+        this.extractMethodBodies = true;
+        listener.info("Method body extraction enabled");
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static String commonDirectory(List<ProjectModule> modules) {
+        File common = modules.get(0).classesRoot.getAbsoluteFile().getParentFile();
+        for (ProjectModule module : modules) {
+            while (common != null && !module.classesRoot.getAbsoluteFile().toPath().startsWith(common.toPath())) {
+                common = common.getParentFile();
+            }
         }
+        return common != null ? common.getAbsolutePath() : null;
     }
 
+    /**
+     * Write the full graph, its binary form, and a call graph and method bodies file per endpoint.
+     * Endpoints are written against the frozen graph by a pool of workers, with at most
+     * {@value #IN_FLIGHT_PER_WORKER} endpoints per worker in flight. Results are collected in endpoint order,
+     * so the shared body table and the log are the same on every run. Every file is written under a
+     * temporary name and renamed into place, so readers never see a partly written file.
+     */
     public void generateEndpointCallGraphs(Iterable<EndpointDetector.Endpoint> endpoints) {
         // Create output directory if it doesn't exist
         File outDir = new File(outputDir);
         if (!outDir.exists() && !outDir.mkdirs()) {
-            System.err.println("Failed to create output directory: " + outputDir);
+            listener.warn("Failed to create output directory: " + outputDir);
             return;
         }
+        listener.phaseStarted(CallGraphAnalysis.PHASE_WRITE);
+        long started = System.nanoTime();
+        long bytesBefore = bytesWritten.get();
 
         // Also generate the full graph
+        File fullGraphFile = outputFile("full_call_graph");
         try {
-            objectMapper.writeValue(new File(outDir, "full_call_graph.json"), globalGraph.getGraph());
-            System.out.println("✅ Wrote full call graph to " + new File(outDir, "full_call_graph.json").getPath());
+            writeJsonAtomically(fullGraphFile, globalGraph::writeJson);
+            listener.info("Wrote full call graph to " + fullGraphFile.getPath());
         } catch (IOException e) {
-            System.err.println("❌ Failed to write full call graph: " + e.getMessage());
+            listener.warn("Failed to write full call graph: " + e.getMessage());
         }
 
-        // Generate individual endpoint call graphs
-        int endpointCount = 0;
-        for (EndpointDetector.Endpoint endpoint : endpoints) {
-            endpointCount++;
-            Map<String, Set<String>> subGraph = globalGraph.getSubGraphFrom(endpoint.entryMethod);
-            String filename = safeFilename(endpoint.method + "_" + endpoint.path + ".json");
+        // Endpoints are written, and their bodies added to the body table, in a fixed order so runs are repeatable
+        List<EndpointDetector.Endpoint> endpointList = new ArrayList<>();
+        endpoints.forEach(endpointList::add);
+        endpointList.sort(EndpointDetector.Endpoint.ORDER);
+
+        // Binary form of the same graph plus endpoints, for readers that memory-map it instead of parsing JSON
+        File binaryGraphFile = new File(outDir, MappedCallGraph.FILE_NAME);
+        try {
+            writeAtomically(binaryGraphFile, temp -> CallGraphBinaryWriter.write(globalGraph, endpointList, temp));
+            listener.info("Wrote binary call graph to " + binaryGraphFile.getPath() + " (" + binaryGraphFile.length() + " bytes)");
+        } catch (IOException e) {
+            listener.warn("Failed to write binary call graph: " + e.getMessage());
+        }
+
+        // Condense the graph once; every endpoint subgraph is then assembled from cached component reach sets
+        listener.phaseStarted(CallGraphAnalysis.PHASE_REACHABILITY);
+        long reachabilityStarted = System.nanoTime();
+        ReachabilityIndex reachability = getReachabilityIndex();
+        long reachabilityNanos = System.nanoTime() - reachabilityStarted;
+        listener.phaseFinished(CallGraphAnalysis.PHASE_REACHABILITY, reachabilityNanos / 1_000_000);
+        listener.info("Condensed " + globalGraph.getNodeCount() + " methods into "
+                + reachability.getComponentCount() + " strongly connected components");
+
+        // Bodies are written once to a shared table; the method bodies files refer to them by hash
+        File bodyTableFile = outputFile(MethodBodyTable.FILE_NAME);
+        File bodyTableTemp = null;
+        if (extractMethodBodies && methodBodyExtractor != null) {
             try {
-                objectMapper.writeValue(new File(outDir, filename), subGraph);
-                System.out.println("✅ Wrote call graph for " + endpoint.method + " " + endpoint.path + " to " + new File(outDir, filename).getPath());
+                bodyTableTemp = temporaryFile(bodyTableFile);
+                bodyTable = new MethodBodyTable(createGenerator(bodyTableTemp));
+            } catch (IOException e) {
+                listener.warn("Failed to create method body table " + bodyTableFile.getPath() + ": " + e.getMessage());
+                extractMethodBodies = false;
+            }
+        }
 
-                // Generate method bodies file if enabled
-                if (extractMethodBodies && methodBodyExtractor != null) {
-                    generateMethodBodiesJsonFile(endpoint, subGraph);
+        // Endpoints mapping to the same file name would overwrite each other; the last one is written
+        Map<String, EndpointDetector.Endpoint> endpointsByFile = new LinkedHashMap<>();
+        for (EndpointDetector.Endpoint endpoint : endpointList) {
+            endpointsByFile.put(safeFilename(endpoint.method + "_" + endpoint.path), endpoint);
+        }
+
+        // Generate individual endpoint call graphs
+        EndpointSummary summary = new EndpointSummary();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Deque<ForkJoinTask<EndpointResult>> inFlight = new ArrayDeque<>();
+            for (Map.Entry<String, EndpointDetector.Endpoint> entry : endpointsByFile.entrySet()) {
+                if (inFlight.size() == parallelism * IN_FLIGHT_PER_WORKER) {
+                    collect(inFlight.poll().join(), summary);
                 }
-            } catch (IOException e) {
-                System.err.println("❌ Failed to write call graph for " + endpoint.path + ": " + e.getMessage());
+                inFlight.add(pool.submit(() -> writeEndpoint(entry.getValue(), entry.getKey(), reachability)));
             }
+            while (!inFlight.isEmpty()) {
+                collect(inFlight.poll().join(), summary);
+            }
+        } finally {
+            pool.shutdownNow();
         }
 
         // Generate method bodies for controller methods that aren't mapped to endpoints
@@ -103,111 +275,347 @@ public class EndpointCallGraphBuilder {
             try {
                 generateControllerMethodBodiesJson();
             } catch (IOException e) {
-                System.err.println("❌ Failed to write controller method bodies: " + e.getMessage());
+                listener.warn("Failed to write controller method bodies: " + e.getMessage());
+            }
+            try {
+                try {
+                    bodyTable.close();
+                    moveIntoPlace(bodyTableTemp, bodyTableFile);
+                } finally {
+                    Files.deleteIfExists(bodyTableTemp.toPath());
+                }
+                listener.info("Wrote " + bodyTable.size() + " distinct method bodies for "
+                        + bodyTable.getReferenceCount() + " references to " + bodyTableFile.getPath());
+            } catch (IOException e) {
+                listener.warn("Failed to write method body table: " + e.getMessage());
+            }
+            if (methodBodyExtractor.getPrunedBodyCount() > 0) {
+                listener.info("Replaced " + methodBodyExtractor.getPrunedBodyCount() + " trivial method bodies with placeholders, saving "
+                        + methodBodyExtractor.getPrunedBodyBytes() / 1024 + " KB");
             }
         }
 
-        System.out.println("✨ Generated call graphs for " + endpointCount + " endpoints");
+        if (endpointsByFile.size() < endpointList.size()) {
+            listener.info((endpointList.size() - endpointsByFile.size())
+                    + " endpoints share their file name with a later endpoint and were not written");
+        }
+        listener.info("Generated call graphs for " + summary.callGraphs + " endpoints"
+                + (summary.methodBodiesFiles > 0 ? " and method bodies for " + summary.methodBodiesFiles
+                        + " (" + summary.methods + " methods)" : "")
+                + " using " + parallelism + " worker(s)"
+                + (summary.failures.isEmpty() ? "" : "; " + summary.failures.size() + " failed:"));
+        // Listed once, in endpoint order, rather than as they happen between the other lines
+        summary.failures.sort(null);
+        summary.failures.forEach(failure -> listener.warn("  " + failure));
+        listener.counted(CallGraphAnalysis.COUNT_BYTES_WRITTEN, bytesWritten.get() - bytesBefore);
+        // Writing is timed without the reachability phase it encloses
+        listener.phaseFinished(CallGraphAnalysis.PHASE_WRITE, (System.nanoTime() - started - reachabilityNanos) / 1_000_000);
+    }
+
+    /**
+     * Write an endpoint's call graph and method bodies files; runs on a worker thread
+     * @return what was written; bodies are left for {@link #collect} to add to the body table in endpoint order
+     */
+    private EndpointResult writeEndpoint(EndpointDetector.Endpoint endpoint, String baseName, ReachabilityIndex reachability) {
+        EndpointResult result = new EndpointResult(endpoint);
+        try {
+            int entry = globalGraph.idOf(endpoint.entryMethod);
+            int[] reachable = entry < 0 ? new int[0] : reachability.reachableFrom(entry);
+            writeJsonAtomically(outputFile(baseName),
+                    generator -> globalGraph.writeSubGraphJson(generator, endpoint.entryMethod, reachable));
+            result.callGraphWritten = true;
+
+            // Generate method bodies file if enabled
+            if (extractMethodBodies && methodBodyExtractor != null) {
+                generateMethodBodiesJsonFile(endpoint, baseName, result);
+            }
+        } catch (IOException e) {
+            result.error = e.getMessage();
+        }
+        return result;
+    }
+
+    /**
+     * Add an endpoint's bodies to the body table and count it in the summary; runs on the calling thread
+     */
+    private void collect(EndpointResult result, EndpointSummary summary) {
+        try {
+            for (int i = 0; i < result.bodyKeys.size(); i++) {
+                bodyTable.add(result.bodyKeys.get(i), result.bodies.get(i));
+            }
+        } catch (IOException e) {
+            result.error = e.getMessage();
+        }
+        summary.callGraphs += result.callGraphWritten ? 1 : 0;
+        summary.methodBodiesFiles += result.methodCount >= 0 ? 1 : 0;
+        summary.methods += Math.max(0, result.methodCount);
+        if (result.error != null) {
+            summary.failures.add(result.endpoint.method + " " + result.endpoint.path + ": " + result.error);
+        }
     }
 
     /**
      * Generate a JSON file containing method bodies for an endpoint's call hierarchy
      */
-    private void generateMethodBodiesJsonFile(EndpointDetector.Endpoint endpoint, Map<String, Set<String>> subGraph) throws IOException {
-        String methodBodiesFilename = safeFilename(endpoint.method + "_" + endpoint.path + "_method_bodies.json");
-        File methodBodiesFile = new File(outputDir, methodBodiesFilename);
+    private void generateMethodBodiesJsonFile(EndpointDetector.Endpoint endpoint, String baseName, EndpointResult result) throws IOException {
+        File methodBodiesFile = outputFile(baseName + "_method_bodies");
+
+        List<HierarchyMethod> methods = extractHierarchy(endpoint.entryMethod);
+
+        writeJsonAtomically(methodBodiesFile, generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("endpoint", endpoint.method + " " + endpoint.path);
+            generator.writeStringField("entryPoint", endpoint.entryMethod);
+            generator.writeStringField("bodyTable", outputFile(MethodBodyTable.FILE_NAME).getName());
+            writeMethods(generator, methods, result::addBody);
+            generator.writeEndObject();
+        });
+        result.methodCount = methods.size();
+    }
+
+    /**
+     * Generate JSON file with method bodies for controller methods that aren't mapped to endpoints
+     */
+    private void generateControllerMethodBodiesJson() throws IOException {
+        File controllerMethodsFile = outputFile("controller_method_bodies");
+
+        // Each controller is written as soon as its hierarchy is extracted
+        writeJsonAtomically(controllerMethodsFile, generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("bodyTable", outputFile(MethodBodyTable.FILE_NAME).getName());
+            generator.writeArrayFieldStart("controllers");
+            for (MethodBodyExtractor.ControllerMethod controllerMethod : findControllerMethods()) {
+                List<HierarchyMethod> methods = extractHierarchy(controllerMethod.fullName);
+
+                generator.writeStartObject();
+                generator.writeStringField("controllerMethod", controllerMethod.fullName);
+                writeMethods(generator, methods, bodyTable::add);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        });
+
+        listener.info("Wrote controller method bodies to " + controllerMethodsFile.getPath());
+    }
+
+    /**
+     * Write a "methods" array with the name, body hash and relative file path of each method, callers before callees,
+     * along with its size, estimated calls per request and importance as ranked by {@link MethodRanker}
+     */
+    private void writeMethods(JsonGenerator generator, List<HierarchyMethod> methods, BodySink bodies) throws IOException {
+        generator.writeArrayFieldStart("methods");
+        for (HierarchyMethod method : methods) {
+            generator.writeStartObject();
+            generator.writeStringField("name", method.name);
+            generator.writeStringField("bodyHash", bodies.add(method.body));
+            generator.writeNumberField("instructions", method.instructions);
+            generator.writeNumberField("frequency", method.frequency);
+            generator.writeNumberField("importance", method.importance);
+            if (method.filePath != null) {
+                generator.writeStringField("filePath", method.filePath);
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * @return whether method bodies can be extracted, see {@link #enableMethodBodyExtraction}
+     */
+    public boolean isMethodBodyExtractionEnabled() {
+        return extractMethodBodies && methodBodyExtractor != null;
+    }
 
-        Map<String, MethodBodyExtractor.MethodInfo> methodInfoMap = methodBodyExtractor.extractMethodHierarchyWithInfo(globalGraph, endpoint.entryMethod);
+    /**
+     * @return the controller methods of the scanned classes, in name order; empty without method body extraction
+     */
+    public List<MethodBodyExtractor.ControllerMethod> findControllerMethods() {
+        return isMethodBodyExtractionEnabled() ? methodBodyExtractor.findControllerMethods() : List.of();
+    }
 
-        // Create JSON structure
-        ObjectNode rootNode = objectMapper.createObjectNode();
-        rootNode.put("endpoint", endpoint.method + " " + endpoint.path);
-        rootNode.put("entryPoint", endpoint.entryMethod);
+    /**
+     * The methods called from an entry method, as written to the method bodies files
+     * @param entryMethod the entry method
+     * @return the methods with callers before callees, entry method first; empty without method body extraction
+     */
+    public List<HierarchyMethod> extractHierarchy(String entryMethod) {
+        if (!isMethodBodyExtractionEnabled()) {
+            return List.of();
+        }
+        return rankHierarchy(methodBodyExtractor.extractMethodHierarchyWithInfo(getReachabilityIndex(), entryMethod));
+    }
 
-        ArrayNode methodsArray = rootNode.putArray("methods");
+    /**
+     * @return the reachability index of the call graph, built on first use
+     */
+    public synchronized ReachabilityIndex getReachabilityIndex() {
+        if (reachability == null) {
+            reachability = new ReachabilityIndex(globalGraph);
+        }
+        return reachability;
+    }
 
+    private List<HierarchyMethod> rankHierarchy(Map<String, MethodBodyExtractor.MethodInfo> methodInfoMap) {
+        int[] ids = new int[methodInfoMap.size()];
+        int[] instructionCounts = new int[ids.length];
+        int index = 0;
+        for (Map.Entry<String, MethodBodyExtractor.MethodInfo> entry : methodInfoMap.entrySet()) {
+            ids[index] = globalGraph.idOf(entry.getKey());
+            instructionCounts[index++] = entry.getValue().instructionCount;
+        }
+        MethodRanker.Ranking ranking = MethodRanker.rank(globalGraph, ids, instructionCounts);
+
+        List<HierarchyMethod> methods = new ArrayList<>(ids.length);
+        index = 0;
         for (Map.Entry<String, MethodBodyExtractor.MethodInfo> entry : methodInfoMap.entrySet()) {
-            String methodName = entry.getKey();
             MethodBodyExtractor.MethodInfo methodInfo = entry.getValue();
 
-            ObjectNode methodNode = objectMapper.createObjectNode();
-            methodNode.put("name", methodName);
-            methodNode.put("body", methodInfo.methodBody);
-
-            // Add relative path if available
-            if (methodInfo.filePath != null) {
-                String relativePath = methodInfo.filePath;
-                if (projectSrcPath != null && relativePath.startsWith(projectSrcPath)) {
-                    relativePath = relativePath.substring(projectSrcPath.length());
-                    if (relativePath.startsWith("/")) {
-                        relativePath = relativePath.substring(1);
-                    }
+            // Relative path if available
+            String relativePath = methodInfo.filePath;
+            if (relativePath != null && projectSrcPath != null && relativePath.startsWith(projectSrcPath)) {
+                relativePath = relativePath.substring(projectSrcPath.length());
+                if (relativePath.startsWith("/")) {
+                    relativePath = relativePath.substring(1);
                 }
-                methodNode.put("filePath", relativePath);
             }
-
-            methodsArray.add(methodNode);
+            methods.add(new HierarchyMethod(entry.getKey(), methodInfo.methodBody, methodInfo.instructionCount,
+                    round(ranking.frequencies[index]), round(ranking.importances[index]), relativePath));
+            index++;
         }
-
-        // Write JSON to file
-        objectMapper.writeValue(methodBodiesFile, rootNode);
-
-        System.out.println("✅ Wrote method bodies (JSON) for " + endpoint.method + " " + endpoint.path +
-            " to " + methodBodiesFile.getPath() + " (" + methodInfoMap.size() + " methods)");
+        return methods;
     }
 
     /**
-     * Generate JSON file with method bodies for controller methods that aren't mapped to endpoints
+     * @param baseName the file name without extension
+     * @return the output file, with a .json or .json.gz extension depending on compression
      */
-    private void generateControllerMethodBodiesJson() throws IOException {
-        File controllerMethodsFile = new File(outputDir, "controller_method_bodies.json");
-
-        // Create root JSON structure
-        ObjectNode rootNode = objectMapper.createObjectNode();
-        ArrayNode controllersArray = rootNode.putArray("controllers");
-
-        for (MethodBodyExtractor.ControllerMethod controllerMethod : methodBodyExtractor.findControllerMethods()) {
-            Map<String, MethodBodyExtractor.MethodInfo> methodInfoMap =
-                methodBodyExtractor.extractMethodHierarchyWithInfo(globalGraph, controllerMethod.fullName);
-
-            ObjectNode controllerNode = objectMapper.createObjectNode();
-            controllerNode.put("controllerMethod", controllerMethod.fullName);
-            ArrayNode methodsArray = controllerNode.putArray("methods");
-
-            for (Map.Entry<String, MethodBodyExtractor.MethodInfo> entry : methodInfoMap.entrySet()) {
-                String methodName = entry.getKey();
-                MethodBodyExtractor.MethodInfo methodInfo = entry.getValue();
-
-                ObjectNode methodNode = objectMapper.createObjectNode();
-                methodNode.put("name", methodName);
-                methodNode.put("body", methodInfo.methodBody);
-
-                // Add relative path if available
-                if (methodInfo.filePath != null) {
-                    String relativePath = methodInfo.filePath;
-                    if (projectSrcPath != null && relativePath.startsWith(projectSrcPath)) {
-                        relativePath = relativePath.substring(projectSrcPath.length());
-                        if (relativePath.startsWith("/")) {
-                            relativePath = relativePath.substring(1);
-                        }
-                    }
-                    methodNode.put("filePath", relativePath);
-                }
+    private File outputFile(String baseName) {
+        return new File(outputDir, baseName + (compressOutput ? ".json.gz" : ".json"));
+    }
 
-                methodsArray.add(methodNode);
+    /**
+     * Write a JSON file under a temporary name and rename it into place once complete
+     */
+    private void writeJsonAtomically(File file, JsonContent content) throws IOException {
+        writeAtomically(file, temp -> {
+            try (JsonGenerator generator = createGenerator(temp)) {
+                content.write(generator);
             }
+        });
+    }
 
-            controllersArray.add(controllerNode);
+    private void writeAtomically(File file, FileContent content) throws IOException {
+        File temp = temporaryFile(file);
+        try {
+            content.write(temp);
+            moveIntoPlace(temp, file);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
         }
+    }
 
-        // Write JSON to file
-        objectMapper.writeValue(controllerMethodsFile, rootNode);
+    /**
+     * @return a new, empty file next to the given one; unique, so concurrent writers never share it
+     */
+    private static File temporaryFile(File file) throws IOException {
+        return File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+    }
 
-        System.out.println("✅ Wrote controller method bodies (JSON) to " + controllerMethodsFile.getPath());
+    private void moveIntoPlace(File temp, File file) throws IOException {
+        long length = temp.length();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        bytesWritten.addAndGet(length);
+    }
+
+    /**
+     * Open a streaming generator on an output file; compact unless pretty printing is on, gzipped if compression is on
+     */
+    private JsonGenerator createGenerator(File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        if (compressOutput) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        if (prettyPrint) {
+            generator.useDefaultPrettyPrinter();
+        }
+        return generator;
     }
 
     private String safeFilename(String input) {
         return input.replaceAll("[^a-zA-Z0-9.\\-_]", "_");
     }
-}
 
+    /**
+     * A method of an entry method's call hierarchy, with its body and its ranking by {@link MethodRanker}
+     */
+    public static class HierarchyMethod {
+        public final String name;
+        public final String body;         // null when neither source nor bytecode was found
+        public final int instructions;
+        public final double frequency;    // estimated calls per call of the entry method
+        public final double importance;
+        public final String filePath;     // relative to the project, null if unknown
+
+        public HierarchyMethod(String name, String body, int instructions, double frequency, double importance, String filePath) {
+            this.name = name;
+            this.body = body;
+            this.instructions = instructions;
+            this.frequency = frequency;
+            this.importance = importance;
+            this.filePath = filePath;
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsonContent {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface FileContent {
+        void write(File file) throws IOException;
+    }
+
+    /**
+     * Takes a method body and returns the hash it is referenced by
+     */
+    @FunctionalInterface
+    private interface BodySink {
+        String add(String body) throws IOException;
+    }
+
+    /**
+     * What a worker wrote for one endpoint, and the bodies it referenced in order
+     */
+    private static final class EndpointResult {
+        final EndpointDetector.Endpoint endpoint;
+        final List<String> bodyKeys = new ArrayList<>();
+        final List<String> bodies = new ArrayList<>();
+        boolean callGraphWritten;
+        int methodCount = -1; // -1 when no method bodies file was written
+        String error;
+
+        EndpointResult(EndpointDetector.Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        String addBody(String body) {
+            if (body == null) {
+                return null;
+            }
+            String key = MethodBodyTable.hash(body);
+            bodyKeys.add(key);
+            bodies.add(body);
+            return key;
+        }
+    }
+
+    private static final class EndpointSummary {
+        int callGraphs;
+        int methodBodiesFiles;
+        long methods;
+        final List<String> failures = new ArrayList<>(); // endpoint and error
+    }
+}
@@ -8,7 +8,7 @@ import java.util.*;
 
 public class EndpointDetector {
 
-    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final Map<String, Endpoint> endpoints = new TreeMap<>(); // by route, so iteration is repeatable
     private String currentClass;
     private boolean isRestController;
 
@@ -17,14 +17,35 @@ public class EndpointDetector {
         this.isRestController = false;
     }
 
+    /**
+     * Record a class-level annotation; controller stereotypes mark every mapped method as an endpoint
+     * @param descriptor the annotation type descriptor
+     */
+    public void visitClassAnnotation(String descriptor) {
+        String annotation = descriptor.replace("/", ".").replace(";", "");
+        if (annotation.endsWith("RestController") || annotation.endsWith("Controller")) {
+            isRestController = true;
+        }
+    }
+
     public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-        return new MethodVisitor(Opcodes.ASM9) {
+        return visitMethod(access, name, descriptor, signature, exceptions, null);
+    }
+
+    /**
+     * Detect mappings on a method while forwarding every event to another visitor
+     * @param methodVisitor the visitor to delegate to, may be null
+     */
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions,
+                                     MethodVisitor methodVisitor) {
+        return new MethodVisitor(Opcodes.ASM9, methodVisitor) {
             boolean isMapped = false;
             String httpMethod = "UNKNOWN";
             String path = "";
 
             @Override
             public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                AnnotationVisitor next = super.visitAnnotation(desc, visible);
                 String annotation = desc.replace("/", ".").replace(";", "");
 
                 if (annotation.endsWith("RestController") || annotation.endsWith("Controller")) {
@@ -41,33 +62,78 @@ public class EndpointDetector {
                     else if (annotation.contains("Delete")) httpMethod = "DELETE";
                     else httpMethod = "REQUEST";
 
-                    return new AnnotationVisitor(Opcodes.ASM9) {
+                    return new AnnotationVisitor(Opcodes.ASM9, next) {
                         @Override
                         public void visit(String name, Object value) {
                             if ("value".equals(name) || "path".equals(name)) {
                                 path = value.toString();
                             }
+                            super.visit(name, value);
+                        }
+
+                        @Override
+                        public AnnotationVisitor visitArray(String name) {
+                            AnnotationVisitor nextArray = super.visitArray(name);
+                            if (!"value".equals(name) && !"path".equals(name)) {
+                                return nextArray;
+                            }
+                            // Mapping paths are declared as String[]; use the first one
+                            return new AnnotationVisitor(Opcodes.ASM9, nextArray) {
+                                @Override
+                                public void visit(String elementName, Object value) {
+                                    if (path.isEmpty()) {
+                                        path = value.toString();
+                                    }
+                                    super.visit(elementName, value);
+                                }
+                            };
                         }
                     };
                 }
-                return null;
+                return next;
             }
 
             @Override
             public void visitEnd() {
                 if (isRestController && isMapped) {
-                    String fqMethod = currentClass + "." + name;
-                    endpoints.put(httpMethod + " " + path, new Endpoint(httpMethod, path, fqMethod));
+                    String fqMethod = MethodId.of(currentClass, name, descriptor);
+                    addEndpoint(new Endpoint(httpMethod, path, fqMethod));
                 }
+                super.visitEnd();
             }
         };
     }
 
+    /**
+     * Fold the endpoints found by another detector into this one
+     * @param other the detector to merge
+     */
+    public void merge(EndpointDetector other) {
+        other.endpoints.values().forEach(this::addEndpoint);
+    }
+
+    /**
+     * Register an endpoint. When two handlers share a route, the one with the smallest entry
+     * method wins so the outcome does not depend on the order classes were scanned in.
+     */
+    public void addEndpoint(Endpoint endpoint) {
+        endpoints.merge(endpoint.method + " " + endpoint.path, endpoint,
+                (existing, candidate) -> existing.entryMethod.compareTo(candidate.entryMethod) <= 0 ? existing : candidate);
+    }
+
+    /**
+     * @return the endpoints ordered by route, the same for any scan order
+     */
     public Collection<Endpoint> getEndpoints() {
         return endpoints.values();
     }
 
     public static class Endpoint {
+        /** By HTTP method, then path, then entry method, an order that does not depend on how classes were scanned */
+        public static final Comparator<Endpoint> ORDER = Comparator.<Endpoint, String>comparing(endpoint -> endpoint.method)
+                .thenComparing(endpoint -> endpoint.path)
+                .thenComparing(endpoint -> endpoint.entryMethod);
+
         public final String method;
         public final String path;
         public final String entryMethod;
@@ -0,0 +1,56 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-length array of ints, either a plain heap array or a copy in an {@link OffHeapStore}
+ */
+final class IntArray {
+
+    static final IntArray EMPTY = new IntArray(new int[0], null, 0, 0);
+
+    private final int[] heap;
+    private final OffHeapStore store;
+    private final long address;
+    private final int length;
+
+    private IntArray(int[] heap, OffHeapStore store, long address, int length) {
+        this.heap = heap;
+        this.store = store;
+        this.address = address;
+        this.length = length;
+    }
+
+    /**
+     * @param values the ints, used as is on the heap or copied into the store
+     * @param length the number of leading ints to keep
+     * @param store the store to copy them to, or null to keep them on the heap
+     */
+    static IntArray of(int[] values, int length, OffHeapStore store) {
+        if (store == null) {
+            return new IntArray(length == values.length ? values : Arrays.copyOf(values, length), null, 0, length);
+        }
+        long address = store.allocate(4L * length);
+        for (int i = 0; i < length; i++) {
+            store.putInt(address + 4L * i, values[i]);
+        }
+        return new IntArray(null, store, address, length);
+    }
+
+    /**
+     * Give the space of an off-heap copy back to its store; the array must not be used afterwards
+     */
+    void release() {
+        if (store != null) {
+            store.free(address, 4L * length);
+        }
+    }
+
+    int get(int index) {
+        return heap != null ? heap[index] : store.getInt(address + 4L * index);
+    }
+
+    int length() {
+        return length;
+    }
+}
@@ -1,159 +1,67 @@
 package com.redcat.tutorials.callgraphgenerator;
 
 import lombok.extern.slf4j.Slf4j;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.Opcodes;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.*;
+import java.util.Collection;
 
 @Slf4j
 public class JCallGraph {
 
     public static void main(String[] args) throws IOException {
 
-        String projectName = "data-explorer/spreadsheet";
-        String classesPath = "/Users/vishal.yadav/IdeaProjects/SpringApiCallGraph/spring-api-callgraph/cloned-projects/" + projectName + "/target/classes";
-        String outputDir = args.length > 1 ? args[1] : "./callgraphs/" + projectName;
-
-        File classesDir = new File(classesPath);
-        if (!classesDir.setReadable(true, false)) {
-            System.err.println("Failed to set directory as readable: " + classesDir.getAbsolutePath());
-        }
-        if (!classesDir.isDirectory()) {
-            System.err.println("Provided classes path is not a directory: " + classesPath);
+        if (args.length < 1) {
+            System.err.println("Usage: JCallGraph <classes path> [output dir]");
             System.exit(1);
+            return;
         }
-
-        System.out.println("Reading classes from: " + classesDir.getAbsolutePath());
-        System.out.println("Output will be written to: " + new File(outputDir).getAbsolutePath());
-
-        // Collect all .class files
-        Set<String> classFiles = new HashSet<>();
-        collectClassFiles(classesDir, classFiles);
-        System.out.println("Found " + classFiles.size() + " class files to analyze");
-
-        // First pass: interface -> implementation mapping
-        Map<String, Set<String>> interfaceToImpls = new HashMap<>();
-        Map<String, String> classNameToFile = new HashMap<>();
-        for (String classFile : classFiles) {
-            try (FileInputStream in = new FileInputStream(classFile)) {
-                ClassReader reader = new ClassReader(in);
-                reader.accept(new ClassVisitor(Opcodes.ASM9) {
-                    String currentClass;
-
-                    @Override
-                    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                        currentClass = name.replace('/', '.');
-                        classNameToFile.put(currentClass, classFile);
-                        if (interfaces != null) {
-                            for (String iface : interfaces) {
-                                String ifaceName = iface.replace('/', '.');
-                                interfaceToImpls.computeIfAbsent(ifaceName, k -> new HashSet<>()).add(currentClass);
-                            }
-                        }
-                    }
-                }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        String classesPath = args[0];
+        String outputDir = args.length > 1 ? args[1] : "./output";
+
+        // The classes path is a comma separated list of exploded classes directories and (Spring Boot) JARs,
+        // or of Maven / Gradle build directories whose compiled modules are discovered and scanned together.
+        // Dependency classes inside a Boot jar's BOOT-INF/lib are only analyzed for the listed packages.
+        // Phase timings, sizes, peak heap and GC time go to analysis-report.json next to the output
+        AnalysisReport report = new AnalysisReport(classesPath);
+        try (CallGraphAnalysis analysis = new CallGraphAnalysis(classesPath)) {
+            analysis.setPhaseListener(report);
+            if (Boolean.parseBoolean(System.getProperty("callgraph.incremental", "true"))) {
+                analysis.setSnapshotDir(new File(outputDir));
             }
-        }
-
-        // Prepare detectors and graph container
-        EndpointDetector endpointDetector = new EndpointDetector();
-        CallGraph globalCallGraph = new CallGraph();
-
-        // Second pass: detect endpoints and build call graph
-        for (String classFile : classFiles) {
-            try (FileInputStream in = new FileInputStream(classFile)) {
-                ClassReader reader = new ClassReader(in);
-                // detect endpoints
-                reader.accept(new ClassVisitor(Opcodes.ASM9) {
-                    @Override
-                    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                        endpointDetector.visitClass(name.replace('/', '.'));
-                    }
-
-                    @Override
-                    public org.objectweb.asm.MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-                        return endpointDetector.visitMethod(access, name, descriptor, signature, exceptions);
-                    }
-                }, ClassReader.EXPAND_FRAMES);
-
-                // record calls
-                reader.accept(new ClassVisitor(Opcodes.ASM9) {
-                    String currentClass;
-
-                    @Override
-                    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                        currentClass = name;
-                    }
-
-                    @Override
-                    public CustomMethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-                        return new CustomMethodVisitor(Opcodes.ASM9, currentClass, name, descriptor, globalCallGraph);
-                    }
-                }, ClassReader.EXPAND_FRAMES);
+            System.out.println("Output will be written to: " + new File(outputDir).getAbsolutePath());
+            try {
+                analysis.run();
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
             }
-        }
 
-        // Expand interface calls to implementations
-        Map<String, Set<String>> expanded = new HashMap<>();
-        for (String caller : globalCallGraph.getAllMethods()) {
-            Set<String> callees = new HashSet<>();
-            for (String callee : globalCallGraph.getCallees(caller)) {
-                callees.add(callee);
-                String className = callee.contains(".") ? callee.substring(0, callee.lastIndexOf('.')) : callee;
-                String methodName = callee.contains(".") ? callee.substring(callee.lastIndexOf('.') + 1) : callee;
-                if (interfaceToImpls.containsKey(className)) {
-                    for (String impl : interfaceToImpls.get(className)) {
-                        callees.add(impl + "." + methodName);
-                    }
-                }
+            // Build and write endpoint call graphs
+            EndpointCallGraphBuilder builder = analysis.getBuilder();
+            builder.setOutputDir(outputDir);
+            builder.setPrettyPrint(Boolean.getBoolean("callgraph.prettyPrint"));
+            builder.setCompressOutput(Boolean.getBoolean("callgraph.gzip"));
+
+            Collection<EndpointDetector.Endpoint> endpoints = analysis.getEndpoints();
+            System.out.println("Detected " + endpoints.size() + " REST endpoints");
+            builder.generateEndpointCallGraphs(endpoints);
+            if (analysis.getOffHeapStore() != null) {
+                OffHeapStore store = analysis.getOffHeapStore();
+                System.out.println("Off-heap store held " + store.size() / 1024 + " KB, of which "
+                        + store.getFreeBytes() / 1024 + " KB free; " + store.getReusedBytes() / 1024
+                        + " KB were given back and reused");
             }
-            expanded.put(caller, callees);
         }
-        globalCallGraph.getGraph().clear();
-        expanded.forEach((c, cl) -> cl.forEach(callee -> globalCallGraph.addEdge(c, callee)));
-
-        // Build and write endpoint call graphs
-        EndpointCallGraphBuilder builder = new EndpointCallGraphBuilder(globalCallGraph);
-        builder.setOutputDir(outputDir);
+        File reportFile = new File(outputDir, AnalysisReport.FILE_NAME);
         try {
-            System.out.println("Enabling method body extraction...");
-            builder.enableMethodBodyExtraction(classesPath);
-        } catch (Exception e) {
-            System.err.println("Failed to enable method body extraction: " + e.getMessage());
-            e.printStackTrace();
-            System.out.println("Continuing without method body extraction");
+            report.finish().write(reportFile);
+            System.out.println("Phase timings " + report.getPhases() + ", peak heap " + report.getPeakHeapBytes() / (1024 * 1024)
+                    + " MB, GC " + report.getGcMillis() + " ms; report written to " + reportFile.getPath());
+        } catch (IOException e) {
+            System.err.println("Failed to write analysis report " + reportFile + ": " + e.getMessage());
         }
-
-        Collection<EndpointDetector.Endpoint> endpoints = endpointDetector.getEndpoints();
-        System.out.println("Detected " + endpoints.size() + " REST endpoints");
-        builder.generateEndpointCallGraphs(endpoints);
         System.out.println("Analysis complete! Results in: " + outputDir);
     }
-
-    private static void collectClassFiles(File dir, Set<String> classFiles) {
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    collectClassFiles(file, classFiles);
-                } else if (file.getName().endsWith(".class")) {
-                    classFiles.add(file.getAbsolutePath());
-                }
-            }
-        }
-    }
-
-    private static MethodFilterVisitor analyzeClassForFiltering(String classFile) throws IOException {
-        try (FileInputStream in = new FileInputStream(classFile)) {
-            ClassReader reader = new ClassReader(in);
-            MethodFilterVisitor filterVisitor = new MethodFilterVisitor(Opcodes.ASM9);
-            reader.accept(filterVisitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
-            return filterVisitor;
-        }
-    }
 }
@@ -0,0 +1,214 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.objectweb.asm.ClassReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * On-disk cache of dependency jar analyses, shared by every project analyzed on the machine.
+ * Entries are keyed by the SHA-256 of the jar and hold the facts of every class in it (hierarchy,
+ * method ids, call sites, endpoints) plus the deflated class bytes for rendering bodies. Call sites
+ * are cached rather than resolved edges: a virtual call inside a jar may dispatch to project classes
+ * overriding library methods, so edges are only resolved once the project is linked against the jar.
+ * Entries start with the packages of the jar, so jars holding none of the requested packages are
+ * skipped without reading their classes.
+ */
+public class JarAnalysisCache {
+
+    private static final int MAGIC = 0x43474a43; // "CGJC"
+    private static final int VERSION = 2;        // bump together with ClassFactsCodec changes
+    private static final String SUFFIX = ".jarfacts";
+
+    private final File directory;
+    private final MessageDigest digest;
+    private final ClassBuffer buffer = new ClassBuffer();
+    private CallGraphAnalysis.PhaseListener listener = new CallGraphAnalysis.PhaseListener() {
+    };
+    private int hits;
+    private int misses;
+    private int linkedClasses;
+
+    /**
+     * @param directory where cache entries are kept; created on first write
+     */
+    public JarAnalysisCache(File directory) {
+        this.directory = directory;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param listener told about cache entries that could not be read
+     */
+    public void setPhaseListener(CallGraphAnalysis.PhaseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the default cache directory, {@code ~/.callgraph/jar-cache}
+     */
+    public static File defaultDirectory() {
+        return new File(System.getProperty("user.home"), ".callgraph/jar-cache");
+    }
+
+    /**
+     * Link a dependency jar into a scan: take its analysis from the cache, analyzing and caching it first
+     * if this jar content has not been seen before
+     * @param location where the jar was read from, used to name the class files of its classes
+     * @param jarBytes holds the jar in {@code [0, length)}
+     * @param length the length of the jar
+     * @param packages package prefixes such as {@code com.acme} of the classes to link; empty for all
+     * @param shard receives the linked classes
+     */
+    public void link(String location, byte[] jarBytes, int length, List<String> packages, ScanShard shard) throws IOException {
+        digest.update(jarBytes, 0, length);
+        File entry = new File(directory, HexFormat.of().formatHex(digest.digest()) + SUFFIX);
+        if (entry.isFile()) {
+            try {
+                load(entry, location, packages, shard);
+                hits++;
+                return;
+            } catch (IOException e) {
+                listener.warn("Ignoring unreadable jar cache entry " + entry + ": " + e.getMessage());
+            }
+        }
+        misses++;
+        save(entry, analyze(location, jarBytes, length));
+        load(entry, location, packages, shard);
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of classes linked into scans so far
+     */
+    public int getLinkedClasses() {
+        return linkedClasses;
+    }
+
+    /**
+     * Analyze every class of a jar, keyed by entry name
+     */
+    private ScanShard analyze(String location, byte[] jarBytes, int length) throws IOException {
+        ScanShard analysis = new ScanShard();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(jarBytes, 0, length))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.endsWith(".class") && !name.endsWith("module-info.class")
+                        && !name.startsWith("META-INF/")) {
+                    int classLength = buffer.readFully(in, entry.getSize());
+                    ClassFactsVisitor visitor = new ClassFactsVisitor(name);
+                    new ClassReader(buffer.bytes(), 0, classLength).accept(visitor, 0);
+                    ClassFacts facts = visitor.getFacts();
+                    analysis.getClassBytes().put(facts.className, buffer.bytes(), classLength);
+                    analysis.add(facts);
+                }
+            }
+        }
+        return analysis;
+    }
+
+    private void save(File file, ScanShard analysis) throws IOException {
+        directory.mkdirs();
+        Set<String> packages = new TreeSet<>();
+        for (ClassFacts facts : analysis.getClasses()) {
+            packages.add(packageOf(facts.className));
+        }
+
+        // Written to a temporary file first, so concurrent runs never read a partial entry
+        File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(packages.size());
+                for (String packageName : packages) {
+                    ClassFactsCodec.writeString(out, packageName);
+                }
+                out.writeInt(analysis.getClassCount());
+                for (ClassFacts facts : analysis.getClasses()) {
+                    ClassFactsCodec.write(out, facts);
+                    analysis.getClassBytes().write(out, facts.className);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private void load(File file, String location, List<String> packages, ScanShard shard) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("written by another format version");
+            }
+            boolean wanted = packages.isEmpty();
+            int packageCount = in.readInt();
+            for (int i = 0; i < packageCount; i++) {
+                wanted |= isWanted(ClassFactsCodec.readString(in), packages);
+            }
+            if (!wanted) {
+                return;
+            }
+
+            // Read in full before linking, so a corrupt entry links nothing
+            ScanShard linked = new ScanShard();
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                ClassFacts facts = ClassFactsCodec.read(in);
+                if (packages.isEmpty() || isWanted(packageOf(facts.className), packages)) {
+                    linked.getClassBytes().read(in, facts.className);
+                    linked.add(facts.withClassFile(location + "!/" + facts.classFile));
+                } else {
+                    ClassBytesStore.skip(in);
+                }
+            }
+            shard.linkLibrary(linked);
+            linkedClasses += linked.getClassCount();
+        }
+    }
+
+    private static boolean isWanted(String packageName, List<String> packages) {
+        for (String prefix : packages) {
+            if (packageName.equals(prefix) || packageName.startsWith(prefix + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String packageOf(String className) {
+        int dot = className.lastIndexOf('.');
+        return dot < 0 ? "" : className.substring(0, dot);
+    }
+}
@@ -0,0 +1,123 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Classes of a JAR file, read straight from the archive.
+ * For a Spring Boot fat jar only the application classes under {@code BOOT-INF/classes/} are
+ * analyzed; the Boot loader classes at the root of the archive are skipped. Dependency jars
+ * under {@code BOOT-INF/lib/} are streamed in place when a package allowlist is given, and
+ * only their classes in the allowed packages are analyzed, or handed as a whole to a
+ * {@link ClassSource.LibraryJarConsumer} such as a {@link JarAnalysisCache}.
+ */
+public class JarClassSource implements ClassSource {
+
+    private static final String BOOT_CLASSES = "BOOT-INF/classes/";
+    private static final String BOOT_LIB = "BOOT-INF/lib/";
+
+    private final File jar;
+    private final List<String> libraryPackages = new ArrayList<>();
+    private final ClassBuffer buffer = new ClassBuffer();
+    private final ClassBuffer jarBuffer = new ClassBuffer();
+    private LibraryJarConsumer libraryJarConsumer;
+
+    /**
+     * @param jar the JAR or Boot fat jar
+     * @param libraryPackages package prefixes such as {@code com.acme} to include from {@code BOOT-INF/lib/} jars
+     */
+    public JarClassSource(File jar, List<String> libraryPackages) {
+        this.jar = jar;
+        for (String libraryPackage : libraryPackages) {
+            this.libraryPackages.add(libraryPackage.replace('.', '/') + "/");
+        }
+    }
+
+    @Override
+    public void forEachClass(ClassEntryConsumer consumer) throws IOException {
+        try (ZipFile zip = new ZipFile(jar)) {
+            boolean bootJar = zip.getEntry(BOOT_CLASSES) != null || zip.stream().anyMatch(e -> e.getName().startsWith(BOOT_CLASSES));
+            String location = jar.getAbsolutePath() + "!/";
+
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                if (bootJar) {
+                    if (name.startsWith(BOOT_CLASSES) && isClass(name)) {
+                        read(zip, entry, location + name, name.substring(BOOT_CLASSES.length()), consumer);
+                    } else if (name.startsWith(BOOT_LIB) && name.endsWith(".jar") && !libraryPackages.isEmpty()) {
+                        if (libraryJarConsumer != null) {
+                            int length;
+                            try (InputStream in = zip.getInputStream(entry)) {
+                                length = jarBuffer.readFully(in, entry.getSize());
+                            }
+                            libraryJarConsumer.accept(location + name, jarBuffer.bytes(), length);
+                            continue;
+                        }
+                        try (ZipInputStream nested = new ZipInputStream(zip.getInputStream(entry))) {
+                            readLibrary(nested, location + name + "!/", name + "!/", consumer);
+                        }
+                    }
+                } else if (isClass(name) && !name.startsWith("META-INF/")) {
+                    read(zip, entry, location + name, name, consumer);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setLibraryJarConsumer(LibraryJarConsumer consumer) {
+        this.libraryJarConsumer = consumer;
+    }
+
+    @Override
+    public String getLocation() {
+        return jar.getAbsolutePath();
+    }
+
+    private void read(ZipFile zip, ZipEntry entry, String classFile, String relativePath, ClassEntryConsumer consumer) throws IOException {
+        int length;
+        try (InputStream in = zip.getInputStream(entry)) {
+            length = buffer.readFully(in, entry.getSize());
+        }
+        consumer.accept(classFile, relativePath, buffer.bytes(), length);
+    }
+
+    /**
+     * Stream the allowed classes of a dependency jar nested in the fat jar, without extracting it
+     */
+    private void readLibrary(ZipInputStream nested, String location, String prefix, ClassEntryConsumer consumer) throws IOException {
+        for (ZipEntry entry = nested.getNextEntry(); entry != null; entry = nested.getNextEntry()) {
+            String name = entry.getName();
+            if (!entry.isDirectory() && isClass(name) && isAllowedLibraryClass(name)) {
+                int length = buffer.readFully(nested, entry.getSize());
+                consumer.accept(location + name, prefix + name, buffer.bytes(), length);
+            }
+        }
+    }
+
+    private boolean isAllowedLibraryClass(String name) {
+        for (String libraryPackage : libraryPackages) {
+            if (name.startsWith(libraryPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class");
+    }
+}
@@ -0,0 +1,473 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Java source file tokenized once into the source ranges of its method bodies.
+ * The scanner is a single linear pass that understands comments, string, text block and char
+ * literals, annotations, generics, records, enums and nested types. Methods are indexed by the
+ * binary name of their declaring type relative to the package (e.g. {@code User$Builder}) and
+ * their name; constructors are indexed as {@code <init>}. Methods of anonymous and local classes
+ * are not indexed.
+ */
+public class JavaSourceFile {
+
+    private final String source;
+    private final Map<String, List<MethodRange>> methods = new HashMap<>();
+
+    private JavaSourceFile(String source) {
+        this.source = source;
+    }
+
+    /**
+     * @param source the contents of a .java file
+     * @return the indexed file
+     */
+    public static JavaSourceFile parse(String source) {
+        JavaSourceFile file = new JavaSourceFile(source);
+        new Parser(file).parseTypeBody(null, null);
+        return file;
+    }
+
+    /**
+     * Find the body of a method, without its enclosing braces.
+     * Overloads are told apart by the simple names of their parameter types; if that is not
+     * conclusive (type variables, synthetic parameters) the parameter count decides.
+     * @param typeName binary name of the declaring type without package, e.g. {@code User$Builder}
+     * @param methodName the method name, {@code <init>} for constructors
+     * @param descriptor the JVM method descriptor, or null to take the first declaration
+     * @return the trimmed body, or null if the method has no body in this file
+     */
+    public String findMethodBody(String typeName, String methodName, String descriptor) {
+        List<MethodRange> candidates = methods.get(typeName + "#" + methodName);
+        if (candidates == null) {
+            return null;
+        }
+        MethodRange match = descriptor != null ? select(candidates, descriptor) : candidates.get(0);
+        return match != null ? source.substring(match.bodyStart, match.bodyEnd).trim() : null;
+    }
+
+    /**
+     * @return the number of indexed method bodies
+     */
+    public int getMethodCount() {
+        return methods.values().stream().mapToInt(List::size).sum();
+    }
+
+    private static MethodRange select(List<MethodRange> candidates, String descriptor) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        List<String> parameterTypes = new ArrayList<>(argumentTypes.length);
+        for (Type type : argumentTypes) {
+            parameterTypes.add(simpleName(type.getClassName()));
+        }
+
+        MethodRange sameCount = null;
+        for (MethodRange candidate : candidates) {
+            if (candidate.parameterTypes.equals(parameterTypes)) {
+                return candidate;
+            }
+            if (sameCount == null && candidate.parameterTypes.size() == parameterTypes.size()) {
+                sameCount = candidate;
+            }
+        }
+        return sameCount;
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private void addMethod(String typeName, String name, List<String> parameterTypes, int bodyStart, int bodyEnd) {
+        methods.computeIfAbsent(typeName + "#" + name, k -> new ArrayList<>(1))
+                .add(new MethodRange(parameterTypes, bodyStart, bodyEnd));
+    }
+
+    private static final class MethodRange {
+        final List<String> parameterTypes; // simple names, arrays and varargs as "[]"
+        final int bodyStart;
+        final int bodyEnd;
+
+        MethodRange(List<String> parameterTypes, int bodyStart, int bodyEnd) {
+            this.parameterTypes = parameterTypes;
+            this.bodyStart = bodyStart;
+            this.bodyEnd = bodyEnd;
+        }
+    }
+
+    /**
+     * Walks member declarations of type bodies. Everything that is not a member declaration
+     * (method bodies, initializer blocks, field initializers, annotation arguments) is skipped
+     * by matching brackets over the token stream, so the whole file is read exactly once.
+     */
+    private static final class Parser {
+
+        private static final int EOF = -1;
+        private static final int IDENT = -2;
+        private static final int LITERAL = -3;
+
+        private final JavaSourceFile file;
+        private final String src;
+        private final int length;
+        private int pos;
+
+        // Current token
+        private int token;
+        private int tokenStart;
+        private int tokenEnd;
+
+        Parser(JavaSourceFile file) {
+            this.file = file;
+            this.src = file.source;
+            this.length = src.length();
+        }
+
+        /**
+         * Parse the members of a type body up to its closing brace, or the whole file at top level
+         * @param typeName binary name of the type relative to the package, null at top level
+         * @param simpleName simple name of the type, used to recognise constructors
+         */
+        void parseTypeBody(String typeName, String simpleName) {
+            int typeTokens = 0;          // modifier and type tokens seen in the current member
+            boolean initializer = false; // after '=' in a field declaration
+            boolean typeKeyword = false; // after class / interface / enum / record
+            String declaredType = null;  // name following the type keyword
+            String lastIdent = null;
+            boolean afterDot = false;
+
+            while (true) {
+                next();
+                switch (token) {
+                    case EOF:
+                    case '}':
+                        return;
+                    case ';':
+                        typeTokens = 0;
+                        initializer = false;
+                        typeKeyword = false;
+                        declaredType = null;
+                        lastIdent = null;
+                        break;
+                    case ',':
+                        if (!typeKeyword) {
+                            typeTokens = 0;
+                        }
+                        break;
+                    case '=':
+                        initializer = true;
+                        break;
+                    case '@':
+                        skipAnnotation();
+                        if (tokenIs("interface")) {
+                            typeKeyword = true;
+                        }
+                        break;
+                    case '(':
+                        if (initializer || typeKeyword || typeName == null || lastIdent == null) {
+                            skipBalanced('(', ')');
+                        } else if (lastIdent.equals(simpleName)) {
+                            parseMethod(typeName, "<init>");
+                            typeTokens = 0;
+                            lastIdent = null;
+                        } else if (typeTokens >= 2) {
+                            // At least a return type besides the name
+                            parseMethod(typeName, lastIdent);
+                            typeTokens = 0;
+                            lastIdent = null;
+                        } else {
+                            // Enum constant arguments
+                            skipBalanced('(', ')');
+                        }
+                        break;
+                    case '{':
+                        if (initializer) {
+                            skipBalanced('{', '}');
+                        } else if (typeKeyword && declaredType != null) {
+                            parseTypeBody(typeName == null ? declaredType : typeName + "$" + declaredType, declaredType);
+                            typeTokens = 0;
+                            typeKeyword = false;
+                            declaredType = null;
+                            lastIdent = null;
+                        } else {
+                            // Initializer block or enum constant body
+                            skipBalanced('{', '}');
+                            typeTokens = 0;
+                            lastIdent = null;
+                        }
+                        break;
+                    case IDENT:
+                        String ident = src.substring(tokenStart, tokenEnd);
+                        if (!afterDot && !initializer && isTypeKeyword(ident)
+                                && (!ident.equals("record") || isRecordHeader())) {
+                            typeKeyword = true;
+                        } else if (typeKeyword && declaredType == null) {
+                            declaredType = ident;
+                        } else {
+                            typeTokens++;
+                            lastIdent = ident;
+                        }
+                        break;
+                    case LITERAL:
+                        break;
+                    default:
+                        typeTokens++;
+                        break;
+                }
+                afterDot = token == '.';
+            }
+        }
+
+        /**
+         * Parse a method or constructor from its parameter list on; the '(' has been read
+         */
+        private void parseMethod(String typeName, String name) {
+            List<String> parameterTypes = parseParameters();
+
+            // Skip array dimensions, throws clauses and annotation defaults up to the body or ';'
+            while (true) {
+                next();
+                if (token == EOF || token == ';' || token == '}') {
+                    return;
+                }
+                if (token == IDENT && tokenIs("default")) {
+                    skipTo(';');
+                    return;
+                }
+                if (token == '{') {
+                    int bodyStart = tokenEnd;
+                    skipBalanced('{', '}');
+                    file.addMethod(typeName, name, parameterTypes, bodyStart, tokenStart);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Read a parameter list up to its closing ')' and return the simple names of the parameter types
+         */
+        private List<String> parseParameters() {
+            List<String> types = new ArrayList<>();
+            String typeName = null; // last identifier before the parameter name
+            String lastIdent = null;
+            int dimensions = 0;
+            int dots = 0;
+            int angleDepth = 0;
+
+            while (true) {
+                next();
+                if (token == EOF) {
+                    return types;
+                }
+                if (token == '@') {
+                    skipAnnotation();
+                    continue;
+                }
+                if (token == '<') {
+                    angleDepth++;
+                } else if (token == '>') {
+                    angleDepth--;
+                } else if (angleDepth == 0) {
+                    if (token == IDENT) {
+                        String ident = src.substring(tokenStart, tokenEnd);
+                        if (!ident.equals("final")) {
+                            typeName = lastIdent;
+                            lastIdent = ident;
+                        }
+                    } else if (token == '[') {
+                        dimensions++;
+                    } else if (token == '.' && ++dots == 3) {
+                        dimensions++;
+                    } else if (token == ',' || token == ')') {
+                        if (typeName != null) {
+                            types.add(typeName + "[]".repeat(dimensions));
+                        }
+                        if (token == ')') {
+                            return types;
+                        }
+                        typeName = null;
+                        lastIdent = null;
+                        dimensions = 0;
+                    }
+                    if (token != '.') {
+                        dots = 0;
+                    }
+                } else if (token == '(') {
+                    skipBalanced('(', ')');
+                }
+            }
+        }
+
+        /**
+         * Skip an annotation after its '@': the qualified name and any arguments.
+         * Leaves the last name token as current token.
+         */
+        private void skipAnnotation() {
+            next();
+            int save = pos;
+            int saveToken = token, saveStart = tokenStart, saveEnd = tokenEnd;
+            while (true) {
+                next();
+                if (token == '.') {
+                    next();
+                    save = pos;
+                    saveToken = token;
+                    saveStart = tokenStart;
+                    saveEnd = tokenEnd;
+                    continue;
+                }
+                if (token == '(') {
+                    skipBalanced('(', ')');
+                    return;
+                }
+                // Not part of the annotation; step back so the caller reads it
+                pos = save;
+                token = saveToken;
+                tokenStart = saveStart;
+                tokenEnd = saveEnd;
+                return;
+            }
+        }
+
+        /**
+         * Skip to the bracket closing the one just read, leaving it as the current token
+         */
+        private void skipBalanced(int open, int close) {
+            int depth = 1;
+            while (depth > 0) {
+                next();
+                if (token == EOF) {
+                    return;
+                }
+                if (token == open) {
+                    depth++;
+                } else if (token == close) {
+                    depth--;
+                }
+            }
+        }
+
+        private void skipTo(int end) {
+            while (true) {
+                next();
+                if (token == EOF || token == end) {
+                    return;
+                }
+                if (token == '{') {
+                    skipBalanced('{', '}');
+                } else if (token == '(') {
+                    skipBalanced('(', ')');
+                }
+            }
+        }
+
+        private boolean tokenIs(String ident) {
+            return token == IDENT && tokenEnd - tokenStart == ident.length() && src.startsWith(ident, tokenStart);
+        }
+
+        /**
+         * {@code record} is only a keyword when followed by a name and a header; otherwise it is an identifier
+         */
+        private boolean isRecordHeader() {
+            int savePos = pos, saveToken = token, saveStart = tokenStart, saveEnd = tokenEnd;
+            next();
+            boolean header = token == IDENT;
+            if (header) {
+                next();
+                header = token == '(' || token == '<';
+            }
+            pos = savePos;
+            token = saveToken;
+            tokenStart = saveStart;
+            tokenEnd = saveEnd;
+            return header;
+        }
+
+        private static boolean isTypeKeyword(String ident) {
+            return ident.equals("class") || ident.equals("interface") || ident.equals("enum") || ident.equals("record");
+        }
+
+        /**
+         * Read the next token, skipping whitespace and comments
+         */
+        private void next() {
+            while (pos < length) {
+                char c = src.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '/' && pos + 1 < length && src.charAt(pos + 1) == '/') {
+                    int end = src.indexOf('\n', pos);
+                    pos = end < 0 ? length : end + 1;
+                } else if (c == '/' && pos + 1 < length && src.charAt(pos + 1) == '*') {
+                    int end = src.indexOf("*/", pos + 2);
+                    pos = end < 0 ? length : end + 2;
+                } else {
+                    break;
+                }
+            }
+            tokenStart = pos;
+            if (pos >= length) {
+                token = EOF;
+                tokenEnd = pos;
+                return;
+            }
+
+            char c = src.charAt(pos);
+            if (Character.isJavaIdentifierStart(c)) {
+                pos++;
+                while (pos < length && Character.isJavaIdentifierPart(src.charAt(pos))) {
+                    pos++;
+                }
+                token = IDENT;
+            } else if (Character.isDigit(c)) {
+                pos++;
+                while (pos < length && (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '_'
+                        || (src.charAt(pos) == '.' && pos + 1 < length && Character.isDigit(src.charAt(pos + 1))))) {
+                    pos++;
+                }
+                token = LITERAL;
+            } else if (c == '"') {
+                if (src.startsWith("\"\"\"", pos)) {
+                    skipQuoted(pos + 3, "\"\"\"");
+                } else {
+                    skipQuoted(pos + 1, "\"");
+                }
+                token = LITERAL;
+            } else if (c == '\'') {
+                skipQuoted(pos + 1, "'");
+                token = LITERAL;
+            } else {
+                pos++;
+                token = c;
+            }
+            tokenEnd = pos;
+        }
+
+        private void skipQuoted(int from, String terminator) {
+            int i = from;
+            while (i < length) {
+                char c = src.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (src.startsWith(terminator, i)) {
+                    pos = i + terminator.length();
+                    return;
+                } else if (c == '\n' && terminator.length() == 1) {
+                    // Unterminated literal; resume on the next line
+                    pos = i;
+                    return;
+                } else {
+                    i++;
+                }
+            }
+            pos = length;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Read-only call graph over a memory-mapped {@code full_call_graph.bin}.
+ * Opening only validates the header; callee and reachability queries decode the mapped
+ * buffer directly, and strings are only created for the names a caller asks for.
+ *
+ * <pre>
+ * header    int magic "CGBF", int version, int nodeCount, int edgeCount, int endpointCount,
+ *           int positions of: string offsets, string data, adjacency offsets, adjacency data, endpoints
+ * strings   int[nodeCount + 1] offsets into UTF-8 names; node ids are in byte order of their names
+ * adjacency int[nodeCount + 1] offsets into rows of delta-encoded varint callee ids
+ * endpoints per endpoint, by method, path and entry method: varint-length UTF-8 method, path and entry method
+ * </pre>
+ * All integers are big-endian.
+ */
+public class MappedCallGraph {
+
+    public static final String FILE_NAME = "full_call_graph.bin";
+    public static final int MAGIC = 0x43474246; // "CGBF"
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int endpointCount;
+    private final int stringOffsetsPos;
+    private final int stringDataPos;
+    private final int adjacencyOffsetsPos;
+    private final int adjacencyDataPos;
+    private final int endpointsPos;
+
+    private MappedCallGraph(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary call graph file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary call graph version " + version + ", expected " + VERSION);
+        }
+        this.nodeCount = buffer.getInt(8);
+        this.edgeCount = buffer.getInt(12);
+        this.endpointCount = buffer.getInt(16);
+        this.stringOffsetsPos = buffer.getInt(20);
+        this.stringDataPos = buffer.getInt(24);
+        this.adjacencyOffsetsPos = buffer.getInt(28);
+        this.adjacencyDataPos = buffer.getInt(32);
+        this.endpointsPos = buffer.getInt(36);
+        if (endpointsPos > buffer.capacity()) {
+            throw new IOException("Truncated binary call graph file");
+        }
+    }
+
+    /**
+     * Map a binary call graph file; the mapping stays valid after the channel is closed
+     * @param file the file written by {@link CallGraphBinaryWriter}
+     */
+    public static MappedCallGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedCallGraph(mapped);
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @param method the fully qualified method name
+     * @return the id of the method, or -1 if it is not in the graph
+     */
+    public int idOf(String method) {
+        byte[] key = method.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareName(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String nameOf(int id) {
+        int start = stringDataPos + buffer.getInt(stringOffsetsPos + 4 * id);
+        int end = stringDataPos + buffer.getInt(stringOffsetsPos + 4 * (id + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the callee ids of a method in name order
+     */
+    public int[] getCallees(int id) {
+        int pos = adjacencyDataPos + buffer.getInt(adjacencyOffsetsPos + 4 * id);
+        int end = adjacencyDataPos + buffer.getInt(adjacencyOffsetsPos + 4 * (id + 1));
+        int[] callees = new int[end - pos]; // upper bound: every varint is at least one byte
+        int count = 0;
+        int previous = 0;
+        int[] cursor = {pos};
+        while (cursor[0] < end) {
+            previous += readVarint(cursor);
+            callees[count++] = previous;
+        }
+        return count == callees.length ? callees : Arrays.copyOf(callees, count);
+    }
+
+    /**
+     * @param method the fully qualified method name
+     * @return the names of the methods it calls, in name order; empty if the method is unknown
+     */
+    public List<String> getCallees(String method) {
+        int id = idOf(method);
+        if (id < 0) {
+            return List.of();
+        }
+        int[] callees = getCallees(id);
+        List<String> names = new ArrayList<>(callees.length);
+        for (int callee : callees) {
+            names.add(nameOf(callee));
+        }
+        return names;
+    }
+
+    /**
+     * @return whether the method calls at least one other method
+     */
+    public boolean hasCallees(int id) {
+        return buffer.getInt(adjacencyOffsetsPos + 4 * id) != buffer.getInt(adjacencyOffsetsPos + 4 * (id + 1));
+    }
+
+    /**
+     * @param entry the id of the entry method
+     * @return every method reachable from the entry, entry included, in name order
+     */
+    public int[] reachableFrom(int entry) {
+        BitSet visited = new BitSet(nodeCount);
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = entry;
+        visited.set(entry);
+        while (top > 0) {
+            for (int callee : getCallees(stack[--top])) {
+                if (!visited.get(callee)) {
+                    visited.set(callee);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = callee;
+                }
+            }
+        }
+        return visited.stream().toArray();
+    }
+
+    /**
+     * @return the endpoints stored with the graph, ordered by HTTP method, path and entry method
+     */
+    public List<EndpointDetector.Endpoint> getEndpoints() {
+        List<EndpointDetector.Endpoint> endpoints = new ArrayList<>(endpointCount);
+        int[] pos = {endpointsPos};
+        for (int i = 0; i < endpointCount; i++) {
+            String method = readString(pos);
+            String path = readString(pos);
+            String entryMethod = readString(pos);
+            endpoints.add(new EndpointDetector.Endpoint(method, path, entryMethod));
+        }
+        return endpoints;
+    }
+
+    private int compareName(int id, byte[] key) {
+        int start = stringDataPos + buffer.getInt(stringOffsetsPos + 4 * id);
+        int end = stringDataPos + buffer.getInt(stringOffsetsPos + 4 * (id + 1));
+        int length = Math.min(end - start, key.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = Byte.toUnsignedInt(buffer.get(start + i)) - Byte.toUnsignedInt(key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return (end - start) - key.length;
+    }
+
+    private int readVarint(int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(pos[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private String readString(int[] pos) {
+        int length = readVarint(pos);
+        byte[] bytes = new byte[length];
+        buffer.get(pos[0], bytes);
+        pos[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,152 +1,283 @@
 package com.redcat.tutorials.callgraphgenerator;
 
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.util.Textifier;
 import org.objectweb.asm.util.TraceMethodVisitor;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Extracts method bodies from class files and organizes them by call hierarchy
+ * Extracts method bodies from class files and organizes them by call hierarchy.
+ * Bodies are rendered on demand, only for methods that end up in a call hierarchy, and kept
+ * in a size-bounded LRU cache keyed by method id (see {@link MethodId}). Bytecode is rendered from the deflated
+ * class bytes kept by the scanner. Methods collapsed by a {@link TrivialMethodPruner} get a
+ * one-line placeholder instead of their body. Given an {@link OffHeapStore}, every rendered body is
+ * spilled there, so a body evicted from the cache is decoded again instead of re-rendered, and the
+ * cache is kept to {@value #OFF_HEAP_BODY_CACHE_SIZE} entries. Once classes are loaded and the setters called,
+ * endpoint writers on several threads can extract hierarchies concurrently: the cache is only locked to look up
+ * and add bodies, and rendering only locks the method being rendered, so a method shared by several endpoints is
+ * rendered once.
  */
 public class MethodBodyExtractor {
 
-    private final File classesDir;
-    private final Map<String, String> methodBodies = new HashMap<>();
-    private final Map<String, MethodInfo> methodInfoMap = new HashMap<>();
+    public static final int DEFAULT_BODY_CACHE_SIZE = 10_000;
+    public static final int OFF_HEAP_BODY_CACHE_SIZE = 256;
+
+    private final List<ProjectModule> modules;
+    private final Map<String, MethodRef> methodIndex = new HashMap<>();
+    private final Map<String, MethodInfo> bodyCache;
     private final Map<String, String> classPathMap = new HashMap<>();
     private final Map<String, String> sourceFileMap = new HashMap<>();
+    private final Map<String, List<File>> sourceRootsCache = new ConcurrentHashMap<>(); // by class file directory
+    private final SourceIndex sourceIndex = new SourceIndex();
+
+    private ClassBytesStore classBytes = new ClassBytesStore();
+    private TrivialMethodPruner pruner = new TrivialMethodPruner(TrivialMethodPruner.Mode.OFF);
+    private PackagePolicy packagePolicy = new PackagePolicy(List.of(), List.of());
+    private final Set<String> prunedBodies = ConcurrentHashMap.newKeySet();
+    private final AtomicLong prunedBodyBytes = new AtomicLong();
+    private OffHeapStore store; // null to keep rendered bodies only in the cache
+
+    public MethodBodyExtractor(List<ProjectModule> modules) {
+        this(modules, Integer.getInteger("callgraph.bodyCacheSize", DEFAULT_BODY_CACHE_SIZE));
+    }
 
-    public MethodBodyExtractor(String classesDirPath) {
-        this.classesDir = new File(classesDirPath);
+    /**
+     * @param modules the modules the classes were scanned from, whose source roots hold their sources
+     * @param bodyCacheSize the maximum number of rendered method bodies to keep
+     */
+    public MethodBodyExtractor(List<ProjectModule> modules, int bodyCacheSize) {
+        this.modules = modules;
+        this.bodyCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MethodInfo> eldest) {
+                return size() > (store != null ? Math.min(bodyCacheSize, OFF_HEAP_BODY_CACHE_SIZE) : bodyCacheSize);
+            }
+        });
     }
 
     /**
-     * Load all class files and extract method bodies
+     * Register the classes found by the scanner; bodies are rendered later, when requested
+     * @param classes the facts collected for each scanned class
+     * @param classBytes the bytes of the scanned classes
      */
-    public void loadAllClasses() throws IOException {
-        Set<String> classFiles = new HashSet<>();
-        collectClassFiles(classesDir, classFiles);
+    public void loadClasses(Collection<ClassFacts> classes, ClassBytesStore classBytes) {
+        this.classBytes = classBytes;
+        bodyCache.clear();
+        for (ClassFacts classFacts : classes) {
+            String className = classFacts.className;
+
+            // Store the path to this class file
+            classPathMap.put(className, classFacts.classFile);
+
+            // Get source file information if available
+            if (classFacts.sourceFile != null) {
+                sourceFileMap.put(className, classFacts.sourceFile);
+            }
 
-        for (String classFile : classFiles) {
-            try (FileInputStream in = new FileInputStream(classFile)) {
-                ClassReader reader = new ClassReader(in);
-                ClassNode classNode = new ClassNode();
-                reader.accept(classNode, 0);
+            for (ClassFacts.MethodFacts method : classFacts.methods) {
+                String methodId = MethodId.of(className, method.name, method.descriptor);
+                // A bridge has the id of the method it forwards to, which is the one to show
+                if ((method.access & Opcodes.ACC_BRIDGE) == 0) {
+                    methodIndex.put(methodId, new MethodRef(classFacts, method));
+                } else {
+                    methodIndex.putIfAbsent(methodId, new MethodRef(classFacts, method));
+                }
+            }
+        }
+    }
 
-                String className = classNode.name.replace('/', '.');
+    /**
+     * @return the number of scanned methods whose bodies can be extracted
+     */
+    public int getMethodCount() {
+        return methodIndex.size();
+    }
 
-                // Store the path to this class file
-                classPathMap.put(className, classFile);
+    /**
+     * @param pruner decides which method bodies are replaced by a placeholder
+     */
+    public void setPruner(TrivialMethodPruner pruner) {
+        this.pruner = pruner;
+        bodyCache.clear();
+    }
 
-                // Get source file information if available
-                if (classNode.sourceFile != null) {
-                    sourceFileMap.put(className, classNode.sourceFile);
-                }
+    /**
+     * @param store where rendered bodies are spilled, or null to keep them only in the cache
+     */
+    public void setOffHeapStore(OffHeapStore store) {
+        this.store = store;
+    }
 
-                for (MethodNode methodNode : classNode.methods) {
-                    String methodName = className + "." + methodNode.name;
+    /**
+     * @param packagePolicy decides which methods belong to the project; others are left out of hierarchies
+     */
+    public void setPackagePolicy(PackagePolicy packagePolicy) {
+        this.packagePolicy = packagePolicy;
+    }
 
-                    // Extract method body using ASM Textifier
-                    Textifier textifier = new Textifier();
-                    MethodVisitor visitor = new TraceMethodVisitor(textifier);
-                    methodNode.accept(visitor);
+    /**
+     * @return the number of distinct trivial method bodies replaced by a placeholder
+     */
+    public int getPrunedBodyCount() {
+        return prunedBodies.size();
+    }
 
-                    StringWriter sw = new StringWriter();
-                    textifier.print(new PrintWriter(sw));
-                    String methodBody = sw.toString();
+    /**
+     * @return the size of the trivial method bodies replaced by a placeholder, less the placeholders
+     */
+    public long getPrunedBodyBytes() {
+        return prunedBodyBytes.get();
+    }
 
-                    // Store method body
-                    methodBodies.put(methodName, methodBody);
+    /**
+     * @return the method info with its body, rendered on first use, or null if the method was not scanned
+     */
+    private MethodInfo getMethodInfo(String methodName) {
+        MethodInfo methodInfo = bodyCache.get(methodName);
+        if (methodInfo != null) {
+            return methodInfo;
+        }
+        MethodRef ref = methodIndex.get(methodName);
+        if (ref == null) {
+            return null;
+        }
+        synchronized (ref) {
+            // Another writer may have rendered the method while this one waited
+            methodInfo = bodyCache.get(methodName);
+            return methodInfo != null ? methodInfo : renderMethodInfo(methodName, ref);
+        }
+    }
 
-                    // Find and read source file if possible for better method body extraction
-                    String sourceBody = tryToReadSourceMethod(className, methodNode.name);
+    /**
+     * Render a method's body, or decode it from the off-heap store, and cache it; called holding the method's lock
+     */
+    private MethodInfo renderMethodInfo(String methodName, MethodRef ref) {
+        String methodBody;
+        if (ref.bodyLength != MethodRef.NOT_RENDERED) {
+            methodBody = ref.bodyLength == MethodRef.NO_BODY ? null
+                    : new String(store.get(ref.bodyAddress, ref.bodyLength), StandardCharsets.UTF_8);
+        } else {
+            // Prefer the source code; fall back to the textified bytecode
+            methodBody = tryToReadSourceMethod(ref.classFacts.className, ref.method.name, ref.method.descriptor);
+            if (methodBody == null) {
+                methodBody = renderBytecode(ref.classFacts.className, ref.method.name, ref.method.descriptor);
+            }
+            if (store != null) {
+                spill(ref, methodBody);
+            }
+        }
+        MethodFilterVisitor.Kind trivialKind = pruner.getKind(methodName);
+        if (trivialKind != null) {
+            String placeholder = "// Trivial " + trivialKind.label + ", body omitted";
+            if (prunedBodies.add(methodName) && methodBody != null) {
+                prunedBodyBytes.addAndGet(Math.max(0, methodBody.getBytes(StandardCharsets.UTF_8).length - placeholder.length()));
+            }
+            methodBody = placeholder;
+        }
+        MethodInfo methodInfo = new MethodInfo(
+                methodName,
+                ref.method.name,
+                ref.method.descriptor,
+                ref.classFacts.className,
+                ref.method.access,
+                ref.classFacts.classFile,
+                methodBody,
+                ref.method.instructionCount
+        );
+        bodyCache.put(methodName, methodInfo);
+        return methodInfo;
+    }
 
-                    // Create method info with source info if available
-                    MethodInfo methodInfo = new MethodInfo(
-                            methodName,
-                            methodNode.name,
-                            methodNode.desc,
-                            className,
-                            methodNode.access,
-                            classFile,
-                            sourceBody != null ? sourceBody : methodBody
-                    );
+    private void spill(MethodRef ref, String methodBody) {
+        if (methodBody == null) {
+            ref.bodyLength = MethodRef.NO_BODY;
+            return;
+        }
+        byte[] encoded = methodBody.getBytes(StandardCharsets.UTF_8);
+        ref.bodyAddress = store.append(encoded, 0, encoded.length);
+        ref.bodyLength = encoded.length;
+    }
 
-                    methodInfoMap.put(methodName, methodInfo);
+    /**
+     * Render a method's bytecode with a Textifier
+     */
+    private String renderBytecode(String className, String methodName, String methodDescriptor) {
+        byte[] bytes = classBytes.get(className);
+        if (bytes == null) {
+            return null;
+        }
+        String[] rendered = new String[1];
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!name.equals(methodName) || !descriptor.equals(methodDescriptor)) {
+                    return null;
                 }
-            } catch (Exception e) {
-                System.err.println("Error processing class file: " + classFile);
-                e.printStackTrace();
+                Textifier textifier = new Textifier();
+                // TraceMethodVisitor is final, so delegate to it to be told when the method ends
+                return new MethodVisitor(Opcodes.ASM9, new TraceMethodVisitor(textifier)) {
+                    @Override
+                    public void visitEnd() {
+                        super.visitEnd();
+                        StringWriter sw = new StringWriter();
+                        textifier.print(new PrintWriter(sw));
+                        rendered[0] = sw.toString();
+                    }
+                };
             }
-        }
-
-        System.out.println("Loaded " + methodBodies.size() + " method bodies from " + classFiles.size() + " class files");
+        }, 0);
+        return rendered[0];
     }
 
     /**
      * Try to read the actual source code for a method
-     * This attempts to find the corresponding .java file by checking common locations
+     * This finds the corresponding .java file in the source roots of the module the class was compiled in,
+     * or in common locations below the nearest project root for classes outside every module,
+     * and looks the method up in its source index, so each file is read and tokenized only once
      */
-    private String tryToReadSourceMethod(String className, String methodName) {
+    private String tryToReadSourceMethod(String className, String methodName, String descriptor) {
         try {
-            // Try to find source file based on className
             String classFilePath = classPathMap.get(className);
             if (classFilePath == null) return null;
-
-            File classFile = new File(classFilePath);
-            String projectRoot = findProjectRoot(classFile);
-            if (projectRoot == null) return null;
-
-            // Build potential source paths
-            List<String> potentialSourcePaths = new ArrayList<>();
-
-            // Convert class name to path format
-            String classPath = className.replace('.', '/');
-
-            // Try src/main/java location
-            potentialSourcePaths.add(projectRoot + "/src/main/java/" + classPath + ".java");
-
-            // Try src location
-            potentialSourcePaths.add(projectRoot + "/src/" + classPath + ".java");
-
-            // Try looking for source file in package structure that matches class file structure
-            String packagePath = className.substring(0, className.lastIndexOf('.'));
-            String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
-
-            // Use sourceFile information if available
+            List<File> sourceRoots = sourceRootsCache.computeIfAbsent(new File(classFilePath).getParent(),
+                    dir -> findSourceRoots(classFilePath));
+            if (sourceRoots.isEmpty()) return null;
+
+            // Nested classes live in the source file of their top-level class, named by the SourceFile attribute
+            int packageEnd = className.lastIndexOf('.');
+            String packagePath = packageEnd < 0 ? "" : className.substring(0, packageEnd).replace('.', '/') + "/";
+            String typeName = className.substring(packageEnd + 1);
             String sourceFile = sourceFileMap.get(className);
             if (sourceFile == null) {
-                sourceFile = simpleClassName + ".java";
+                int nested = typeName.indexOf('$');
+                sourceFile = (nested < 0 ? typeName : typeName.substring(0, nested)) + ".java";
             }
 
-            // Search for source file
-            for (String potentialPath : potentialSourcePaths) {
-                File sourceFile1 = new File(potentialPath);
-                if (sourceFile1.exists()) {
-                    String source = readJavaSourceFile(sourceFile1.getAbsolutePath());
-                    if (source != null) {
-                        String methodBody = extractMethodBody(source, methodName);
-                        if (methodBody != null) {
-                            return methodBody;
-                        }
+            // Try src/main/java, then src
+            for (File sourceRoot : sourceRoots) {
+                JavaSourceFile source = sourceIndex.get(new File(sourceRoot, packagePath + sourceFile));
+                if (source != null) {
+                    String methodBody = source.findMethodBody(typeName, methodName, descriptor);
+                    if (methodBody != null) {
+                        return methodBody;
                     }
                 }
             }
@@ -156,17 +287,21 @@ public class MethodBodyExtractor {
         return null;
     }
 
-    // Extracts the body of a method with the given name from the source code using regex
-    private String extractMethodBody(String source, String methodName) {
-        // This regex matches the method signature and captures the method body (including nested braces)
-        // It works for most standard Java methods, but may not handle all edge cases (e.g., inner classes, lambdas)
-        String regex = "(?s)(?:public|protected|private|static|\\s)+[\\w<>\\[\\]]+\\s+" + methodName + "\\s*\\([^)]*\\)\\s*(?:throws[^{]*)?\\{((?:[^{}]*+|\\{(?:[^{}]*+|\\{[^{}]*+\\})*+\\})*+)\\}";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex);
-        java.util.regex.Matcher matcher = pattern.matcher(source);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+    private List<File> findSourceRoots(String classFilePath) {
+        for (ProjectModule module : modules) {
+            if (module.contains(classFilePath)) {
+                return module.sourceRoots;
+            }
         }
-        return null;
+        String projectRoot = findProjectRoot(new File(classFilePath));
+        if (projectRoot == null) {
+            return List.of();
+        }
+        List<File> sourceRoots = new ArrayList<>();
+        for (String sourceRoot : new String[]{"src/main/java", "src"}) {
+            sourceRoots.add(new File(projectRoot, sourceRoot));
+        }
+        return sourceRoots;
     }
 
     /**
@@ -187,35 +322,23 @@ public class MethodBodyExtractor {
         return null;
     }
 
-    /**
-     * Read a Java source file and return its contents
-     */
-    private String readJavaSourceFile(String path) {
-        try {
-            return new String(Files.readAllBytes(Paths.get(path)));
-        } catch (IOException e) {
-            return null;
-        }
-    }
-
     /**
      * Extract method bodies for a controller endpoint and its call hierarchy
-     * @param callGraph The call graph
+     * @param reachability The reachability index of the call graph
      * @param entryPoint The controller method entry point
      * @return Map of method names to their bodies, ordered by call hierarchy
      */
-    public Map<String, String> extractMethodHierarchy(CallGraph callGraph, String entryPoint) {
+    public Map<String, String> extractMethodHierarchy(ReachabilityIndex reachability, String entryPoint) {
         Map<String, String> result = new LinkedHashMap<>();
-        Set<String> visited = new HashSet<>();
-        List<String> orderedMethods = new ArrayList<>();
 
-        // Use DFS to build ordered list of methods in call hierarchy
-        extractMethodsInOrder(callGraph, entryPoint, visited, orderedMethods);
+        // Callers before callees, from the reachable set shared with the endpoint call graphs
+        List<String> orderedMethods = extractMethodsInOrder(reachability, entryPoint);
 
-        // Build the result map in order
+        // Build the result map in order, from the same cached source or bytecode bodies as the method info
         for (String method : orderedMethods) {
-            if (methodBodies.containsKey(method)) {
-                result.put(method, methodBodies.get(method));
+            MethodInfo methodInfo = getMethodInfo(method);
+            if (methodInfo != null) {
+                result.put(method, methodInfo.methodBody);
             } else {
                 // For methods we don't have bodies for (like from external libraries)
                 result.put(method, "// Method body not available (external library or JDK method)");
@@ -227,32 +350,32 @@ public class MethodBodyExtractor {
 
     /**
      * Extract method info objects for a controller endpoint and its call hierarchy
-     * @param callGraph The call graph
+     * @param reachability The reachability index of the call graph
      * @param entryPoint The controller method entry point
      * @return Map of method names to their MethodInfo objects, ordered by call hierarchy
      */
-    public Map<String, MethodInfo> extractMethodHierarchyWithInfo(CallGraph callGraph, String entryPoint) {
+    public Map<String, MethodInfo> extractMethodHierarchyWithInfo(ReachabilityIndex reachability, String entryPoint) {
         Map<String, MethodInfo> result = new LinkedHashMap<>();
-        Set<String> visited = new HashSet<>();
-        List<String> orderedMethods = new ArrayList<>();
 
-        // Use DFS to build ordered list of methods in call hierarchy
-        extractMethodsInOrder(callGraph, entryPoint, visited, orderedMethods);
+        // Callers before callees, from the reachable set shared with the endpoint call graphs
+        List<String> orderedMethods = extractMethodsInOrder(reachability, entryPoint);
 
         // Build the result map in order
         for (String method : orderedMethods) {
-            if (methodInfoMap.containsKey(method)) {
-                result.put(method, methodInfoMap.get(method));
+            MethodInfo methodInfo = getMethodInfo(method);
+            if (methodInfo != null) {
+                result.put(method, methodInfo);
             } else {
                 // For methods we don't have info for (like from external libraries)
                 result.put(method, new MethodInfo(
                     method,
-                    method.substring(method.lastIndexOf('.') + 1),
+                    MethodId.nameOf(method),
                     "()",
-                    method.substring(0, method.lastIndexOf('.')),
+                    MethodId.classOf(method),
                     0,
                     null,
-                    "// Method body not available (external library or JDK method)"
+                    "// Method body not available (external library or JDK method)",
+                    0
                 ));
             }
         }
@@ -261,28 +384,26 @@ public class MethodBodyExtractor {
     }
 
     /**
-     * Recursively extract methods in call order using DFS
+     * List the methods reachable from an entry point with callers before callees, skipping JDK and library methods.
+     * Those are leaves of the call graph (library calls are collapsed into leaf nodes, and JDK classes are not
+     * scanned), so skipping them leaves out nothing reached only through them.
      */
-    private void extractMethodsInOrder(CallGraph callGraph, String currentMethod, Set<String> visited, List<String> orderedMethods) {
-        if (visited.contains(currentMethod)) {
-            return;
+    private List<String> extractMethodsInOrder(ReachabilityIndex reachability, String entryPoint) {
+        List<String> orderedMethods = new ArrayList<>();
+        CallGraph callGraph = reachability.getGraph();
+        int entry = callGraph.idOf(entryPoint);
+        if (entry < 0) {
+            orderedMethods.add(entryPoint);
+            return orderedMethods;
         }
 
-        visited.add(currentMethod);
-        orderedMethods.add(currentMethod);
-
-        Set<String> callees = callGraph.getCallees(currentMethod);
-        if (callees != null && !callees.isEmpty()) {
-            // Sort callees to ensure consistent ordering
-            List<String> sortedCallees = new ArrayList<>(callees);
-            Collections.sort(sortedCallees);
-
-            for (String callee : sortedCallees) {
-                if (!callee.startsWith("java.") && !callee.startsWith("javax.")) {
-                    extractMethodsInOrder(callGraph, callee, visited, orderedMethods);
-                }
+        for (int id : reachability.callOrderFrom(entry)) {
+            String name = callGraph.nameOf(id);
+            if (id == entry || !name.startsWith("java.") && !name.startsWith("javax.") && packagePolicy.isInternalMethod(name)) {
+                orderedMethods.add(name);
             }
         }
+        return orderedMethods;
     }
 
     /**
@@ -292,33 +413,44 @@ public class MethodBodyExtractor {
     public List<ControllerMethod> findControllerMethods() {
         List<ControllerMethod> controllerMethods = new ArrayList<>();
 
-        for (Map.Entry<String, MethodInfo> entry : methodInfoMap.entrySet()) {
-            MethodInfo methodInfo = entry.getValue();
-            String className = methodInfo.className;
+        for (Map.Entry<String, MethodRef> entry : methodIndex.entrySet()) {
+            MethodRef ref = entry.getValue();
+            String className = ref.classFacts.className;
+            // Constructors, static initializers, lambda bodies and bridges are not handler methods
+            if (ref.method.name.startsWith("<") || (ref.method.access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0) {
+                continue;
+            }
 
             // Check if this is a controller class (simple heuristic)
             if (className.contains(".controllers.") || className.endsWith("Controller")) {
                 controllerMethods.add(new ControllerMethod(
-                    methodInfo.fullName,
-                    methodInfo.name,
+                    entry.getKey(),
+                    ref.method.name,
                     className
                 ));
             }
         }
 
+        // The index is filled in scan order, which varies with the number of scanner workers
+        controllerMethods.sort(Comparator.comparing(controllerMethod -> controllerMethod.fullName));
         return controllerMethods;
     }
 
-    private static void collectClassFiles(File dir, Set<String> classFiles) {
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    collectClassFiles(file, classFiles);
-                } else if (file.getName().endsWith(".class")) {
-                    classFiles.add(file.getAbsolutePath());
-                }
-            }
+    /**
+     * A scanned method whose body has not necessarily been rendered yet; its body fields are guarded by its lock
+     */
+    private static final class MethodRef {
+        static final int NOT_RENDERED = -1;
+        static final int NO_BODY = -2;
+
+        final ClassFacts classFacts;
+        final ClassFacts.MethodFacts method;
+        long bodyAddress; // of the body spilled to the off-heap store
+        int bodyLength = NOT_RENDERED;
+
+        MethodRef(ClassFacts classFacts, ClassFacts.MethodFacts method) {
+            this.classFacts = classFacts;
+            this.method = method;
         }
     }
 
@@ -333,9 +465,10 @@ public class MethodBodyExtractor {
         public final int access;
         public final String filePath;
         public final String methodBody;
+        public final int instructionCount; // 0 when the method was not scanned
 
         public MethodInfo(String fullName, String name, String descriptor, String className, int access,
-                        String filePath, String methodBody) {
+                        String filePath, String methodBody, int instructionCount) {
             this.fullName = fullName;
             this.name = name;
             this.descriptor = descriptor;
@@ -343,6 +476,7 @@ public class MethodBodyExtractor {
             this.access = access;
             this.filePath = filePath;
             this.methodBody = methodBody;
+            this.instructionCount = instructionCount;
         }
     }
 
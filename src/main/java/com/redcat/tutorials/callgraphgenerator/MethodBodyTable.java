@@ -0,0 +1,100 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Content-addressed table of method bodies, written as a JSON object of hash to body.
+ * Every distinct body is written once, the first time it is added; method-bodies files
+ * refer to bodies by hash, so a body shared by many endpoints is stored a single time.
+ * Hashes can be computed on any thread with {@link #hash}; the table itself is written by one thread.
+ */
+public class MethodBodyTable implements Closeable {
+
+    public static final String FILE_NAME = "method_bodies";
+
+    private static final int HASH_BYTES = 16;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final JsonGenerator generator;
+    private final Set<String> written = new HashSet<>();
+    private long referenceCount;
+
+    /**
+     * @param generator the generator of the table file; it is closed with the table
+     */
+    public MethodBodyTable(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        generator.writeStartObject();
+    }
+
+    /**
+     * Reference a body, writing it to the table if it has not been seen before
+     * @param body the method body, may be null
+     * @return the hash of the body, or null for a null body
+     */
+    public String add(String body) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        String key = hash(body);
+        add(key, body);
+        return key;
+    }
+
+    /**
+     * Reference a body whose hash has already been computed, writing it to the table if it has not been seen before
+     * @param key the hash of the body, as returned by {@link #hash}
+     * @param body the method body
+     */
+    public void add(String key, String body) throws IOException {
+        referenceCount++;
+        if (written.add(key)) {
+            generator.writeStringField(key, body);
+        }
+    }
+
+    /**
+     * @param body the method body
+     * @return the key the body is stored under
+     */
+    public static String hash(String body) {
+        byte[] hash = DIGEST.get().digest(body.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash, 0, HASH_BYTES);
+    }
+
+    /**
+     * @return the number of distinct bodies written
+     */
+    public int size() {
+        return written.size();
+    }
+
+    /**
+     * @return the number of times a body has been referenced
+     */
+    public long getReferenceCount() {
+        return referenceCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -1,10 +1,36 @@
 package com.redcat.tutorials.callgraphgenerator;
 
-import ddtrot.org.objectweb.asm.Opcodes;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Detects methods whose bodies carry no information worth following or extracting:
+ * plain field getters and setters, builder boilerplate and {@code equals} / {@code hashCode} /
+ * {@code toString}. Lombok annotations are source-retained and never reach the class file, so
+ * accessors are recognised by the shape of their bytecode rather than by annotations.
+ * Runs as part of the single {@link ClassFactsVisitor} pass.
+ */
 public class MethodFilterVisitor extends ClassVisitor {
+
+    /**
+     * Kinds of trivial method
+     */
+    public enum Kind {
+        GETTER("getter"), SETTER("setter"), BUILDER("builder"), OBJECT_METHOD("equals/hashCode/toString");
+
+        public final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
     private boolean isInterface;
     private boolean containsService;
     private boolean hasDataAnnotation;
@@ -12,6 +38,8 @@ public class MethodFilterVisitor extends ClassVisitor {
     private boolean hasSetterAnnotation;
     private boolean hasBuilderAnnotation;
     private String currentClassName;
+    private String internalName;
+    private final Map<String, Kind> trivialMethods = new HashMap<>();
 
     protected MethodFilterVisitor(int api) {
         super(api);
@@ -21,6 +49,7 @@ public class MethodFilterVisitor extends ClassVisitor {
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
         this.isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
         this.currentClassName = name.replace('/', '.');
+        this.internalName = name;
         this.containsService = currentClassName.toLowerCase().contains("service");
         super.visit(version, access, name, signature, superName, interfaces);
     }
@@ -40,12 +69,36 @@ public class MethodFilterVisitor extends ClassVisitor {
         return super.visitAnnotation(descriptor, visible);
     }
 
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        if (isObjectMethod(name, descriptor)) {
+            trivialMethods.put(name + descriptor, Kind.OBJECT_METHOD);
+            return null;
+        }
+        if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+            return null;
+        }
+        return new ShapeVisitor(name, descriptor, (access & Opcodes.ACC_STATIC) != 0);
+    }
+
+    /**
+     * @return the kind of trivial method, or null if the method does real work; valid once the class has been visited
+     */
+    public Kind getTrivialKind(String methodName, String methodDescriptor) {
+        return trivialMethods.get(methodName + methodDescriptor);
+    }
+
     public boolean shouldSkipMethodBodyExtraction(String methodName, String methodDescriptor) {
         // Skip if class contains "Service" and is an interface
         if (containsService && isInterface) {
             return true;
         }
 
+        // Skip methods whose bytecode is plain accessor or builder boilerplate
+        if (getTrivialKind(methodName, methodDescriptor) != null) {
+            return true;
+        }
+
         // Skip getters, setters, and builders for annotated classes
         if (hasDataAnnotation || hasGetterAnnotation || hasSetterAnnotation || hasBuilderAnnotation) {
             if (isGetterMethod(methodName, methodDescriptor) ||
@@ -58,6 +111,12 @@ public class MethodFilterVisitor extends ClassVisitor {
         return false;
     }
 
+    private static boolean isObjectMethod(String methodName, String descriptor) {
+        return (methodName.equals("equals") && descriptor.equals("(Ljava/lang/Object;)Z"))
+                || (methodName.equals("hashCode") && descriptor.equals("()I"))
+                || (methodName.equals("toString") && descriptor.equals("()Ljava/lang/String;"));
+    }
+
     private boolean isGetterMethod(String methodName, String descriptor) {
         // Typical getter patterns: getName(), isActive(), etc.
         return (methodName.startsWith("get") && methodName.length() > 3 &&
@@ -87,4 +146,182 @@ public class MethodFilterVisitor extends ClassVisitor {
     public boolean isInterface() { return isInterface; }
     public boolean containsService() { return containsService; }
     public String getCurrentClassName() { return currentClassName; }
-}
\ No newline at end of file
+
+    /**
+     * Records the instruction sequence of a method and classifies it at the end. Accessors are a few instructions
+     * long, so recording stops after {@value #MAX_INSTRUCTIONS}, except for builder methods, whose length grows
+     * with the number of fields they copy. Labels, line numbers and frames are not instructions and are ignored.
+     */
+    private final class ShapeVisitor extends MethodVisitor {
+        private static final int MAX_INSTRUCTIONS = 8;
+
+        private final String name;
+        private final String descriptor;
+        private final boolean isStatic;
+        private final boolean builderCandidate;
+        private int[] opcodes = new int[MAX_INSTRUCTIONS];
+        private int count;
+        private boolean ownFieldsOnly = true;     // every field access is to this class
+        private boolean constructorCallsOnly = true; // every invoke is a constructor call
+        private boolean thisOnly = true;          // every local variable access is to "this"
+        private String allocatedType;             // internal name of the last NEW
+        private String constructedType;           // owner of the last constructor call
+        private boolean tooLong;
+
+        ShapeVisitor(String name, String descriptor, boolean isStatic) {
+            super(Opcodes.ASM9);
+            this.name = name;
+            this.descriptor = descriptor;
+            this.isStatic = isStatic;
+            this.builderCandidate = name.equals("builder") || name.equals("toBuilder")
+                    || (name.equals("build") && !isStatic && internalName.endsWith("Builder"));
+        }
+
+        private void add(int opcode) {
+            if (count == opcodes.length) {
+                if (!builderCandidate || tooLong) {
+                    tooLong = true;
+                    return;
+                }
+                opcodes = Arrays.copyOf(opcodes, count * 2);
+            }
+            opcodes[count++] = opcode;
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            add(opcode);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int varIndex) {
+            // Only "this" and the first argument are ever loaded by accessors
+            thisOnly &= varIndex == 0;
+            add(varIndex <= 1 ? opcode : -1);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String fieldName, String fieldDescriptor) {
+            ownFieldsOnly &= owner.equals(internalName);
+            add(opcode);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (opcode == Opcodes.NEW) {
+                allocatedType = type;
+            }
+            add(opcode);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String methodName, String methodDescriptor, boolean isInterface) {
+            constructorCallsOnly &= opcode == Opcodes.INVOKESPECIAL && methodName.equals("<init>");
+            constructedType = owner;
+            add(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            add(-1);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            add(-1);
+        }
+
+        @Override
+        public void visitIincInsn(int varIndex, int increment) {
+            add(-1);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, org.objectweb.asm.Label label) {
+            add(-1);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, org.objectweb.asm.Label dflt, org.objectweb.asm.Label... labels) {
+            add(-1);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(org.objectweb.asm.Label dflt, int[] keys, org.objectweb.asm.Label[] labels) {
+            add(-1);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String methodName, String methodDescriptor, org.objectweb.asm.Handle handle, Object... arguments) {
+            add(-1);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String arrayDescriptor, int dimensions) {
+            add(-1);
+        }
+
+        @Override
+        public void visitEnd() {
+            Kind kind = classify();
+            if (kind != null) {
+                trivialMethods.put(name + descriptor, kind);
+            }
+        }
+
+        private Kind classify() {
+            if (tooLong || !ownFieldsOnly) {
+                return null;
+            }
+            String selfType = "L" + internalName + ";";
+            if (!isStatic && !name.equals("<init>")) {
+                // return this.field
+                if (count == 3 && opcodes[0] == Opcodes.ALOAD && opcodes[1] == Opcodes.GETFIELD
+                        && isReturn(opcodes[2]) && descriptor.startsWith("()")) {
+                    return Kind.GETTER;
+                }
+                // this.field = value
+                if (count == 4 && opcodes[0] == Opcodes.ALOAD && isLoad(opcodes[1]) && opcodes[2] == Opcodes.PUTFIELD
+                        && opcodes[3] == Opcodes.RETURN) {
+                    return Kind.SETTER;
+                }
+                // this.field = value; return this
+                if (count == 5 && opcodes[0] == Opcodes.ALOAD && isLoad(opcodes[1]) && opcodes[2] == Opcodes.PUTFIELD
+                        && opcodes[3] == Opcodes.ALOAD && opcodes[4] == Opcodes.ARETURN && descriptor.endsWith(")" + selfType)) {
+                    return Kind.BUILDER;
+                }
+            }
+            // Builder factories and build(): return new T(this.a, this.b, ...), however many fields are copied
+            if (builderCandidate && constructorCallsOnly && thisOnly && isFieldCopyingAllocation()) {
+                return Kind.BUILDER;
+            }
+            return null;
+        }
+
+        /**
+         * @return whether the method is NEW, DUP, any number of (ALOAD this, GETFIELD) pairs, a call of the
+         * allocated type's constructor and ARETURN, returning the allocated type
+         */
+        private boolean isFieldCopyingAllocation() {
+            if (count < 4 || count % 2 != 0 || opcodes[0] != Opcodes.NEW || opcodes[1] != Opcodes.DUP
+                    || opcodes[count - 2] != Opcodes.INVOKESPECIAL || opcodes[count - 1] != Opcodes.ARETURN
+                    || !allocatedType.equals(constructedType) || !descriptor.endsWith(")L" + allocatedType + ";")) {
+                return false;
+            }
+            for (int i = 2; i < count - 2; i += 2) {
+                if (opcodes[i] != Opcodes.ALOAD || opcodes[i + 1] != Opcodes.GETFIELD) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isLoad(int opcode) {
+            return opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+        }
+
+        private boolean isReturn(int opcode) {
+            return opcode >= Opcodes.IRETURN && opcode <= Opcodes.ARETURN;
+        }
+    }
+}
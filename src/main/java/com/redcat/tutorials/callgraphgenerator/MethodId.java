@@ -0,0 +1,59 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.objectweb.asm.Type;
+
+/**
+ * Method identities used as call graph node names: the declaring class, the method name and the
+ * parameter types in Java notation, e.g. {@code com.acme.UserService.find(java.lang.String,int)}.
+ * Overloads get distinct ids; the return type is left out since Java source cannot overload on it.
+ * Library leaf nodes created by {@link PackagePolicy} have no parameter list.
+ */
+public final class MethodId {
+
+    private MethodId() {
+    }
+
+    /**
+     * @param className the fully qualified, dot separated class name
+     * @param methodName the method name, {@code <init>} for constructors
+     * @param descriptor the JVM method descriptor
+     * @return the method id
+     */
+    public static String of(String className, String methodName, String descriptor) {
+        return className + "." + methodName + parameters(descriptor);
+    }
+
+    private static String parameters(String descriptor) {
+        StringBuilder parameters = new StringBuilder("(");
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            if (i > 0) {
+                parameters.append(',');
+            }
+            parameters.append(argumentTypes[i].getClassName());
+        }
+        return parameters.append(')').toString();
+    }
+
+    /**
+     * @return the declaring class of a method id
+     */
+    public static String classOf(String id) {
+        String qualifiedName = qualifiedName(id);
+        int dot = qualifiedName.lastIndexOf('.');
+        return dot < 0 ? qualifiedName : qualifiedName.substring(0, dot);
+    }
+
+    /**
+     * @return the method name of a method id, without class or parameters
+     */
+    public static String nameOf(String id) {
+        String qualifiedName = qualifiedName(id);
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    private static String qualifiedName(String id) {
+        int parameters = id.indexOf('(');
+        return parameters < 0 ? id : id.substring(0, parameters);
+    }
+}
@@ -0,0 +1,121 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ranks the methods of an endpoint's call hierarchy by how much of a request they account for,
+ * so consumers with a size budget, such as prompt building, can keep the most important ones.
+ * A static frequency estimate is propagated from the entry method: a callee runs as often as its
+ * callers times the number of call sites, and {@value #LOOP_ITERATIONS} times more per enclosing loop.
+ * Recursive calls (edges back to a method still being visited) are ignored. A method's importance is
+ * its estimated frequency times its size in bytecode instructions.
+ */
+public class MethodRanker {
+
+    public static final double LOOP_ITERATIONS = 10;
+    public static final double MAX_FREQUENCY = 1e6;
+
+    /**
+     * Estimated frequency and importance of each method of a hierarchy
+     */
+    public static class Ranking {
+        public final double[] frequencies;
+        public final double[] importances;
+
+        Ranking(double[] frequencies, double[] importances) {
+            this.frequencies = frequencies;
+            this.importances = importances;
+        }
+    }
+
+    private MethodRanker() {
+    }
+
+    /**
+     * @param graph the call graph the hierarchy was taken from
+     * @param methods ids of the methods of the hierarchy, entry method first
+     * @param instructionCounts the size of each method, in the same order; 0 when unknown
+     * @return the ranking, in the order of the given methods
+     */
+    public static Ranking rank(CallGraph graph, int[] methods, int[] instructionCounts) {
+        int count = methods.length;
+        double[] frequencies = new double[count];
+        double[] importances = new double[count];
+        if (count == 0 || methods[0] < 0) {
+            return new Ranking(frequencies, importances);
+        }
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (methods[i] >= 0) {
+                positions.putIfAbsent(methods[i], i);
+            }
+        }
+
+        // Reverse post-order of a DFS from the entry orders callers before callees, recursion aside
+        int[] order = reversePostOrder(graph, methods[0], positions, count);
+        int[] orderIndex = new int[count];
+        Arrays.fill(orderIndex, -1);
+        for (int i = 0; i < order.length; i++) {
+            orderIndex[order[i]] = i;
+        }
+
+        frequencies[0] = 1;
+        for (int position : order) {
+            int caller = methods[position];
+            for (int edge = graph.calleeStart(caller); edge < graph.calleeEnd(caller); edge++) {
+                Integer callee = positions.get(graph.calleeAt(edge));
+                if (callee == null || orderIndex[callee] <= orderIndex[position]) {
+                    continue;
+                }
+                double calls = graph.callCountAt(edge) * Math.pow(LOOP_ITERATIONS, graph.loopDepthAt(edge));
+                frequencies[callee] = Math.min(MAX_FREQUENCY, frequencies[callee] + frequencies[position] * calls);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            importances[i] = frequencies[i] * instructionCounts[i];
+        }
+        return new Ranking(frequencies, importances);
+    }
+
+    private static int[] reversePostOrder(CallGraph graph, int entry, Map<Integer, Integer> positions, int count) {
+        int[] postOrder = new int[count];
+        int finished = 0;
+        boolean[] visited = new boolean[count];
+        int[] stackNode = new int[16];
+        int[] stackNext = new int[16];
+        int top = 0;
+
+        visited[positions.get(entry)] = true;
+        stackNode[top] = entry;
+        stackNext[top++] = graph.calleeStart(entry);
+        while (top > 0) {
+            int frame = top - 1;
+            int current = stackNode[frame];
+            if (stackNext[frame] == graph.calleeEnd(current)) {
+                postOrder[finished++] = positions.get(current);
+                top--;
+                continue;
+            }
+            int callee = graph.calleeAt(stackNext[frame]++);
+            Integer position = positions.get(callee);
+            if (position == null || visited[position]) {
+                continue;
+            }
+            visited[position] = true;
+            if (top == stackNode.length) {
+                stackNode = Arrays.copyOf(stackNode, top * 2);
+                stackNext = Arrays.copyOf(stackNext, top * 2);
+            }
+            stackNode[top] = callee;
+            stackNext[top++] = graph.calleeStart(callee);
+        }
+
+        int[] order = new int[finished];
+        for (int i = 0; i < finished; i++) {
+            order[i] = postOrder[finished - 1 - i];
+        }
+        return order;
+    }
+}
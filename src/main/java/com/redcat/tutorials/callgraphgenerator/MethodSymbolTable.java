@@ -0,0 +1,176 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns fully qualified method names into dense int ids.
+ * Lookups use an open-addressing table of ids, so no boxed keys or map entries are allocated per method.
+ * Given an {@link OffHeapStore}, names are kept there as UTF-8 and only their address, length and hash
+ * stay on the heap; {@link #name} then decodes a new string on every call.
+ */
+public class MethodSymbolTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final OffHeapStore store; // null to keep names on the heap
+    private String[] names;
+    private long[] addresses;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] slots = new int[INITIAL_CAPACITY * 2]; // id + 1, 0 marks a free slot
+    private int size;
+
+    public MethodSymbolTable() {
+        this(null);
+    }
+
+    /**
+     * @param store where names are kept, or null for the heap
+     */
+    public MethodSymbolTable(OffHeapStore store) {
+        this.store = store;
+        if (store == null) {
+            names = new String[INITIAL_CAPACITY];
+        } else {
+            addresses = new long[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+            hashes = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Return the id of a method name, assigning the next free id if it is new
+     * @param name the fully qualified method name
+     * @return the dense id of the name
+     */
+    public int intern(String name) {
+        int hash = name.hashCode();
+        byte[] encoded = store != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (matches(id, name, hash, encoded)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        if (store == null) {
+            if (id == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[id] = name;
+        } else {
+            if (id == addresses.length) {
+                addresses = Arrays.copyOf(addresses, id * 2);
+                lengths = Arrays.copyOf(lengths, id * 2);
+                hashes = Arrays.copyOf(hashes, id * 2);
+            }
+            addresses[id] = store.append(encoded, 0, encoded.length);
+            lengths[id] = encoded.length;
+            hashes[id] = hash;
+        }
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * @param name the fully qualified method name
+     * @return the id of the name, or -1 if it has never been interned
+     */
+    public int find(String name) {
+        int hash = name.hashCode();
+        byte[] encoded = store != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (matches(id, name, hash, encoded)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean matches(int id, String name, int hash, byte[] encoded) {
+        if (store == null) {
+            return names[id].equals(name);
+        }
+        if (hashes[id] != hash || lengths[id] != encoded.length) {
+            return false;
+        }
+        long address = addresses[id];
+        for (int i = 0; i < encoded.length; i++) {
+            if (store.getByte(address + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown method id: " + id);
+        }
+        return store == null ? names[id] : new String(store.get(addresses[id], lengths[id]), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare two names without decoding them. Off-heap names compare by UTF-8 bytes, which orders
+     * them like strings unless they hold characters outside the basic multilingual plane.
+     * @return a negative number, zero or a positive number as the first name sorts before, with or after the second
+     */
+    public int compare(int first, int second) {
+        if (store == null) {
+            return names[first].compareTo(names[second]);
+        }
+        int length = Math.min(lengths[first], lengths[second]);
+        for (int i = 0; i < length; i++) {
+            int a = store.getByte(addresses[first] + i) & 0xFF;
+            int b = store.getByte(addresses[second] + i) & 0xFF;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return lengths[first] - lengths[second];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Give the space of off-heap names back to the store; the table must not be used afterwards
+     */
+    public void release() {
+        if (store != null) {
+            for (int id = 0; id < size; id++) {
+                store.free(addresses[id], lengths[id]);
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(store == null ? names[id].hashCode() : hashes[id]) & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,186 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only storage outside the Java heap, backed by a temporary file mapped into memory
+ * {@value #SEGMENT_SIZE} bytes at a time. Large analysis state (interned method names, frozen call graph
+ * adjacency, deflated class bytes and rendered method bodies) can be kept here instead of in heap objects,
+ * so only small handles such as addresses stay on-heap. The operating system pages the data in and out,
+ * so a monorepo analysis runs in a modest, fixed heap without long GC pauses.
+ * <p>
+ * Space is handed out by a bump pointer. Space given back with {@link #free}, such as the adjacency of a call
+ * graph that was frozen again, is handed out again to later allocations that fit in it, best fit first; the
+ * file is deleted on {@link #close}. Allocation is thread-safe, and threads may read and write separate
+ * allocations concurrently.
+ */
+public class OffHeapStore implements Closeable {
+
+    public static final int SEGMENT_SIZE = 1 << 28; // 256 MB
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final File file;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long size;
+    private final TreeMap<Long, ArrayDeque<Long>> freeBlocks = new TreeMap<>(); // addresses by block size
+    private long freeBytes;
+    private long reusedBytes;
+
+    /**
+     * @param directory where the backing file is created; the system temp directory if null
+     */
+    public OffHeapStore(File directory) throws IOException {
+        this.file = File.createTempFile("callgraph-", ".offheap", directory);
+        this.file.deleteOnExit();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reserve space; ints and longs stay aligned as long as allocations are multiples of 8 bytes
+     * @param bytes the number of bytes
+     * @return the address of the space
+     */
+    public synchronized long allocate(long bytes) {
+        long rounded = (bytes + 7) & ~7L;
+        Map.Entry<Long, ArrayDeque<Long>> block = rounded > 0 ? freeBlocks.ceilingEntry(rounded) : null;
+        if (block != null) {
+            long address = block.getValue().poll();
+            if (block.getValue().isEmpty()) {
+                freeBlocks.remove(block.getKey());
+            }
+            freeBytes -= block.getKey();
+            reusedBytes += rounded;
+            if (block.getKey() > rounded) {
+                addFreeBlock(address + rounded, block.getKey() - rounded);
+            }
+            return address;
+        }
+        long address = size;
+        size += rounded;
+        int lastSegment = (int) ((size - 1) >>> SEGMENT_SHIFT);
+        if (lastSegment >= segments.length) {
+            map(lastSegment);
+        }
+        return address;
+    }
+
+    /**
+     * Give space back for reuse; nothing may read or write it afterwards
+     * @param address the address returned by {@link #allocate} or {@link #append}
+     * @param bytes the number of bytes allocated there
+     */
+    public synchronized void free(long address, long bytes) {
+        long rounded = (bytes + 7) & ~7L;
+        if (rounded > 0) {
+            addFreeBlock(address, rounded);
+        }
+    }
+
+    private void addFreeBlock(long address, long bytes) {
+        freeBlocks.computeIfAbsent(bytes, key -> new ArrayDeque<>()).add(address);
+        freeBytes += bytes;
+    }
+
+    private void map(int lastSegment) {
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, lastSegment + 1);
+        try {
+            for (int i = segments.length; i <= lastSegment; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow off-heap store " + file, e);
+        }
+        segments = grown;
+    }
+
+    /**
+     * Copy bytes into newly allocated space
+     * @return the address of the copy
+     */
+    public long append(byte[] bytes, int offset, int length) {
+        long address = allocate(length);
+        put(address, bytes, offset, length);
+        return address;
+    }
+
+    public void put(long address, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            int inSegment = (int) (address & SEGMENT_MASK);
+            int chunk = Math.min(length, SEGMENT_SIZE - inSegment);
+            segments[(int) (address >>> SEGMENT_SHIFT)].put(inSegment, bytes, offset, chunk);
+            address += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public void get(long address, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            int inSegment = (int) (address & SEGMENT_MASK);
+            int chunk = Math.min(length, SEGMENT_SIZE - inSegment);
+            segments[(int) (address >>> SEGMENT_SHIFT)].get(inSegment, bytes, offset, chunk);
+            address += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public byte[] get(long address, int length) {
+        byte[] bytes = new byte[length];
+        get(address, bytes, 0, length);
+        return bytes;
+    }
+
+    public byte getByte(long address) {
+        return segments[(int) (address >>> SEGMENT_SHIFT)].get((int) (address & SEGMENT_MASK));
+    }
+
+    public int getInt(long address) {
+        return segments[(int) (address >>> SEGMENT_SHIFT)].getInt((int) (address & SEGMENT_MASK));
+    }
+
+    public void putInt(long address, int value) {
+        segments[(int) (address >>> SEGMENT_SHIFT)].putInt((int) (address & SEGMENT_MASK), value);
+    }
+
+    /**
+     * @return the size of the backing file in use, including space given back
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes given back and not handed out again yet
+     */
+    public synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+    /**
+     * @return the number of bytes handed out again after they were given back
+     */
+    public synchronized long getReusedBytes() {
+        return reusedBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments = new MappedByteBuffer[0];
+        channel.close();
+        Files.deleteIfExists(file.toPath());
+    }
+}
@@ -0,0 +1,210 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Decides which classes belong to the analyzed project and which to third-party libraries.
+ * A class is internal when its name starts with an included package and with no excluded one;
+ * by default the included packages are the root packages of the scanned classes. Calls into
+ * everything else are collapsed into one leaf node per library, named after the first
+ * {@value #LIBRARY_PACKAGE_DEPTH} segments of its package, e.g. {@code org.springframework.web.*}.
+ */
+public class PackagePolicy {
+
+    public static final int LIBRARY_PACKAGE_DEPTH = 3;
+
+    private final List<String> includes; // empty to include everything
+    private final List<String> excludes;
+    private int collapsedMethods;
+    private int libraryNodes;
+
+    /**
+     * @param includes package prefixes of the project; empty to treat every class as internal
+     * @param excludes package prefixes treated as external even when included
+     */
+    public PackagePolicy(List<String> includes, List<String> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Build the policy for a scanned project
+     * @param classes the project's own classes, whose root packages are included when no includes are given
+     * @param libraryPackages dependency packages the project opted into analyzing, included along with the roots
+     * @param includes comma separated package prefixes, {@code *} for every package, blank for the project roots
+     * @param excludes comma separated package prefixes, may be blank
+     */
+    public static PackagePolicy forProject(Collection<ClassFacts> classes, List<String> libraryPackages,
+                                           String includes, String excludes) {
+        List<String> includeList = parseList(includes);
+        if (includeList.contains("*")) {
+            includeList = List.of();
+        } else if (includeList.isEmpty()) {
+            Set<String> roots = new TreeSet<>(rootPackages(classes));
+            roots.addAll(libraryPackages);
+            includeList = new ArrayList<>(roots);
+        }
+        return new PackagePolicy(includeList, parseList(excludes));
+    }
+
+    private static List<String> parseList(String value) {
+        List<String> packages = new ArrayList<>();
+        if (value != null) {
+            for (String name : value.split(",")) {
+                if (!name.isBlank()) {
+                    packages.add(name.trim());
+                }
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * The longest common package of the scanned classes within each group sharing their first two
+     * package segments, so {@code com.acme.orders.api} and {@code com.acme.orders.db} give {@code com.acme.orders}
+     */
+    static List<String> rootPackages(Collection<ClassFacts> classes) {
+        Map<String, String[]> roots = new LinkedHashMap<>();
+        for (ClassFacts classFacts : classes) {
+            int packageEnd = classFacts.className.lastIndexOf('.');
+            if (packageEnd < 0) {
+                continue;
+            }
+            String[] segments = classFacts.className.substring(0, packageEnd).split("\\.");
+            String group = segments.length == 1 ? segments[0] : segments[0] + "." + segments[1];
+            roots.merge(group, segments, (root, other) -> {
+                int common = 0;
+                while (common < root.length && common < other.length && root[common].equals(other[common])) {
+                    common++;
+                }
+                return common == root.length ? root : Arrays.copyOf(root, common);
+            });
+        }
+        Set<String> packages = new TreeSet<>();
+        roots.values().forEach(segments -> packages.add(String.join(".", segments)));
+        return new ArrayList<>(packages);
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * @param className a fully qualified class name
+     * @return true if the class belongs to the project
+     */
+    public boolean isInternal(String className) {
+        if (className.indexOf('.') < 0) {
+            return true;
+        }
+        for (String exclude : excludes) {
+            if (inPackage(className, exclude)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (String include : includes) {
+            if (inPackage(className, include)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param method a fully qualified method name
+     * @return true if the declaring class of the method belongs to the project
+     */
+    public boolean isInternalMethod(String method) {
+        return isInternal(MethodId.classOf(method));
+    }
+
+    private static boolean inPackage(String className, String packageName) {
+        return className.startsWith(packageName)
+                && (className.length() == packageName.length() || className.charAt(packageName.length()) == '.');
+    }
+
+    /**
+     * @param className a fully qualified class name
+     * @return the name of the leaf node standing for every method of the class's library
+     */
+    public static String libraryNode(String className) {
+        int end = className.lastIndexOf('.');
+        int start = 0;
+        for (int depth = 0; depth < LIBRARY_PACKAGE_DEPTH && end > 0; depth++) {
+            int dot = className.indexOf('.', start);
+            if (dot < 0 || dot > end) {
+                break;
+            }
+            start = dot + 1;
+        }
+        return className.substring(0, Math.max(start - 1, 0)) + ".*";
+    }
+
+    /**
+     * Rebuild a call graph with every external method replaced by its library's leaf node.
+     * Calls made from external methods are dropped, so library nodes stay leaves.
+     * @param graph the call graph, with call sites already resolved through the class hierarchy
+     * @return the collapsed graph
+     */
+    public CallGraph collapse(CallGraph graph) {
+        graph.freeze();
+        int nodeCount = graph.getNodeCount();
+        CallGraph collapsed = new CallGraph(new MethodSymbolTable(graph.getStore()), graph.getStore());
+        int[] mapped = new int[nodeCount];
+        boolean[] internal = new boolean[nodeCount];
+        int internalCount = 0;
+        for (int id = 0; id < nodeCount; id++) {
+            String name = graph.nameOf(id);
+            internal[id] = isInternalMethod(name);
+            mapped[id] = internal[id] ? collapsed.getSymbols().intern(name) : -1;
+            internalCount += internal[id] ? 1 : 0;
+        }
+
+        int externalMethods = 0;
+        for (int caller = 0; caller < nodeCount; caller++) {
+            if (!internal[caller]) {
+                continue;
+            }
+            for (int i = graph.calleeStart(caller); i < graph.calleeEnd(caller); i++) {
+                int callee = graph.calleeAt(i);
+                if (mapped[callee] < 0) {
+                    mapped[callee] = collapsed.getSymbols().intern(libraryNode(MethodId.classOf(graph.nameOf(callee))));
+                    externalMethods++;
+                }
+                collapsed.addEdge(mapped[caller], mapped[callee], graph.callCountAt(i), graph.loopDepthAt(i));
+            }
+        }
+        collapsed.freeze();
+        collapsedMethods = externalMethods;
+        libraryNodes = collapsed.getNodeCount() - internalCount;
+        return collapsed;
+    }
+
+    /**
+     * @return the number of external methods folded into library nodes by the last {@link #collapse}
+     */
+    public int getCollapsedMethods() {
+        return collapsedMethods;
+    }
+
+    /**
+     * @return the number of library leaf nodes created by the last {@link #collapse}
+     */
+    public int getLibraryNodes() {
+        return libraryNodes;
+    }
+}
@@ -0,0 +1,129 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One module of a Maven or Gradle build: where its compiled classes are and the source roots they were
+ * compiled from. A multi-module build (Maven reactor or Gradle multi-project) is discovered by walking the
+ * build directory for modules with compiled classes, so all of them can be scanned into a single call graph
+ * with cross-module edges.
+ */
+public class ProjectModule {
+
+    private static final String[] BUILD_FILES = {"pom.xml", "build.gradle", "build.gradle.kts", "settings.gradle", "settings.gradle.kts"};
+    private static final String[] CLASS_DIRS = {"target/classes", "build/classes/java/main"};
+    private static final String[] SOURCE_DIRS = {"src/main/java", "src"};
+    private static final Set<String> SKIPPED_DIRS = Set.of("target", "build", "src", "node_modules", "out", "bin");
+    private static final int MAX_DISCOVERY_DEPTH = 6;
+
+    public final String name;
+    public final File classesRoot; // classes directory or JAR
+    public final File moduleDir;   // null when no build file was found above the classes
+    public final List<File> sourceRoots;
+
+    public ProjectModule(String name, File classesRoot, File moduleDir, List<File> sourceRoots) {
+        this.name = name;
+        this.classesRoot = classesRoot;
+        this.moduleDir = moduleDir;
+        this.sourceRoots = sourceRoots;
+    }
+
+    /**
+     * @return true if the directory holds a Maven or Gradle build file, so its modules should be discovered
+     */
+    public static boolean isBuildRoot(File dir) {
+        if (!dir.isDirectory()) {
+            return false;
+        }
+        for (String buildFile : BUILD_FILES) {
+            if (new File(dir, buildFile).isFile()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Describe a classes directory or JAR given directly; its module is the nearest directory above it with
+     * a build file
+     * @param classesRoot the classes directory or JAR
+     */
+    public static ProjectModule forClassesRoot(File classesRoot) {
+        File moduleDir = classesRoot.getAbsoluteFile().getParentFile();
+        for (int depth = 0; moduleDir != null && depth < 5 && !isBuildRoot(moduleDir); depth++) {
+            moduleDir = moduleDir.getParentFile();
+        }
+        if (moduleDir != null && !isBuildRoot(moduleDir)) {
+            moduleDir = null;
+        }
+        String name = moduleDir != null ? moduleDir.getName() : classesRoot.getName();
+        return new ProjectModule(name, classesRoot, moduleDir, moduleDir != null ? sourceRoots(moduleDir) : List.of());
+    }
+
+    /**
+     * Find every module with compiled classes at or below a build directory, in path order
+     * @param buildRoot the directory of the root pom.xml or settings.gradle
+     * @return the modules, empty if nothing has been compiled yet
+     */
+    public static List<ProjectModule> discover(File buildRoot) {
+        List<ProjectModule> modules = new ArrayList<>();
+        discover(buildRoot.getAbsoluteFile(), buildRoot.getAbsoluteFile(), 0, modules);
+        return modules;
+    }
+
+    private static void discover(File root, File dir, int depth, List<ProjectModule> modules) {
+        if (isBuildRoot(dir)) {
+            for (String classDir : CLASS_DIRS) {
+                File classesRoot = new File(dir, classDir);
+                if (classesRoot.isDirectory()) {
+                    String name = dir.equals(root) ? dir.getName()
+                            : root.toPath().relativize(dir.toPath()).toString().replace(File.separatorChar, '/');
+                    modules.add(new ProjectModule(name, classesRoot, dir, sourceRoots(dir)));
+                    break;
+                }
+            }
+        }
+        if (depth == MAX_DISCOVERY_DEPTH) {
+            return;
+        }
+        File[] children = dir.listFiles(File::isDirectory);
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                if (!child.getName().startsWith(".") && !SKIPPED_DIRS.contains(child.getName())) {
+                    discover(root, child, depth + 1, modules);
+                }
+            }
+        }
+    }
+
+    private static List<File> sourceRoots(File moduleDir) {
+        List<File> roots = new ArrayList<>();
+        for (String sourceDir : SOURCE_DIRS) {
+            File sourceRoot = new File(moduleDir, sourceDir);
+            if (sourceRoot.isDirectory()) {
+                roots.add(sourceRoot);
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @param classFile the class file path recorded by the scanner
+     * @return true if the class was read from this module's classes
+     */
+    public boolean contains(String classFile) {
+        String root = classesRoot.getAbsolutePath();
+        return classFile.startsWith(root) && classFile.length() > root.length()
+                && (classFile.charAt(root.length()) == File.separatorChar || classFile.charAt(root.length()) == '!');
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + classesRoot.getPath() + ")";
+    }
+}
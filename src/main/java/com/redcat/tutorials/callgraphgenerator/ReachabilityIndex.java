@@ -0,0 +1,326 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Answers "which methods are reachable from here" for many entry points over one frozen {@link CallGraph}.
+ * The graph is condensed once into strongly connected components (Tarjan). Reachable sets are then
+ * computed per component over the condensation DAG and memoized as bitsets for components that are
+ * shared by more than one caller and for queried roots, so service and repository layers are usually
+ * only traversed once no matter how many endpoints reach them. The memoized sets are kept in an LRU
+ * cache bounded by {@code -Dcallgraph.reachabilityCacheMb} (default {@value #DEFAULT_CACHE_MB} MB); an
+ * evicted set is recomputed from its successors when needed again. Queries may come from several threads.
+ */
+public class ReachabilityIndex {
+
+    public static final int DEFAULT_CACHE_MB = 64;
+
+    private final CallGraph graph;
+    private final int[] component;       // component id of each method; successors always have smaller ids
+    private final int componentCount;
+    private final int[] position;        // methods numbered by component, so reachable sets stay compact
+    private final int[] methodAt;        // inverse of position
+    private final int[] memberStart;     // positions of the members of component c: [memberStart[c], memberStart[c + 1])
+    private final int[] successorOffsets;
+    private final int[] successors;
+    private final boolean[] shared;      // more than one predecessor component
+    private final Map<Integer, BitSet> cache; // reachable positions per component, least recently used first
+    private final long cacheCapacityBytes;
+    private long cachedBytes;
+
+    public ReachabilityIndex(CallGraph graph) {
+        this(graph, (long) Integer.getInteger("callgraph.reachabilityCacheMb", DEFAULT_CACHE_MB) * 1024 * 1024);
+    }
+
+    /**
+     * @param graph the call graph, frozen if it is not yet
+     * @param cacheCapacityBytes the most memory the memoized reachable sets may take
+     */
+    public ReachabilityIndex(CallGraph graph, long cacheCapacityBytes) {
+        this.graph = graph.freeze();
+        this.cacheCapacityBytes = Math.max(0, cacheCapacityBytes);
+        int methodCount = graph.getNodeCount();
+
+        // Roots and callees are visited in name order, so components are numbered the same on every run
+        int[] byName = new int[methodCount];
+        for (int method = 0; method < methodCount; method++) {
+            byName[method] = method;
+        }
+        graph.sortByName(byName);
+
+        this.component = new int[methodCount];
+        this.componentCount = condense(byName);
+
+        // Number methods by component so a component's reachable set only uses positions below its own members
+        this.memberStart = new int[componentCount + 1];
+        for (int method = 0; method < methodCount; method++) {
+            memberStart[component[method] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberStart[c + 1] += memberStart[c];
+        }
+        this.position = new int[methodCount];
+        this.methodAt = new int[methodCount];
+        int[] fill = Arrays.copyOf(memberStart, componentCount);
+        for (int method : byName) {
+            int p = fill[component[method]]++;
+            position[method] = p;
+            methodAt[p] = method;
+        }
+
+        // Condensation DAG edges, de-duplicated
+        long[] edges = new long[graph.getEdgeCount()];
+        int edgeCount = 0;
+        for (int method = 0; method < methodCount; method++) {
+            for (int i = graph.calleeStart(method); i < graph.calleeEnd(method); i++) {
+                int from = component[method];
+                int to = component[graph.calleeAt(i)];
+                if (from != to) {
+                    edges[edgeCount++] = ((long) from << 32) | to;
+                }
+            }
+        }
+        Arrays.sort(edges, 0, edgeCount);
+        this.successorOffsets = new int[componentCount + 1];
+        int[] succ = new int[edgeCount];
+        int[] predecessorCount = new int[componentCount];
+        int count = 0;
+        long previous = -1;
+        for (int i = 0; i < edgeCount; i++) {
+            if (edges[i] == previous) {
+                continue;
+            }
+            previous = edges[i];
+            int to = (int) edges[i];
+            successorOffsets[(int) (edges[i] >>> 32) + 1]++;
+            succ[count++] = to;
+            predecessorCount[to]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            successorOffsets[c + 1] += successorOffsets[c];
+        }
+        this.successors = Arrays.copyOf(succ, count);
+
+        this.shared = new boolean[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            shared[c] = predecessorCount[c] > 1;
+        }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public CallGraph getGraph() {
+        return graph;
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return the memory currently taken by memoized reachable sets
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @param entry the id of the entry method
+     * @return every method reachable from the entry, entry included, sorted by name
+     */
+    public int[] reachableFrom(int entry) {
+        BitSet reachable;
+        synchronized (this) {
+            reachable = reach(component[entry]); // never modified once cached
+        }
+        int[] methods = new int[reachable.cardinality()];
+        int count = 0;
+        for (int p = reachable.nextSetBit(0); p >= 0; p = reachable.nextSetBit(p + 1)) {
+            methods[count++] = methodAt[p];
+        }
+        graph.sortByName(methods);
+        return methods;
+    }
+
+    /**
+     * List the methods reachable from an entry so that callers come before their callees: the entry first, then
+     * the rest of its component, then the other components in topological order of the condensation. Members of
+     * one component, which call each other, are listed in name order.
+     * @param entry the id of the entry method
+     * @return every method reachable from the entry, entry included
+     */
+    public int[] callOrderFrom(int entry) {
+        BitSet reachable;
+        synchronized (this) {
+            reachable = reach(component[entry]);
+        }
+        int[] positions = reachable.stream().toArray();
+        int[] methods = new int[positions.length];
+        methods[0] = entry;
+        int count = 1;
+        // Components with higher ids call those with lower ids, and each component's positions are contiguous
+        int end = positions.length;
+        while (end > 0) {
+            int c = component[methodAt[positions[end - 1]]];
+            int start = end - 1;
+            while (start > 0 && component[methodAt[positions[start - 1]]] == c) {
+                start--;
+            }
+            for (int i = start; i < end; i++) {
+                int method = methodAt[positions[i]];
+                if (method != entry) {
+                    methods[count++] = method;
+                }
+            }
+            end = start;
+        }
+        return methods;
+    }
+
+    /**
+     * Reachable positions of a component, computed bottom-up over the condensation DAG.
+     * Components with a single predecessor are only ever needed by that predecessor, so only
+     * shared components and queried roots are kept in the cache.
+     */
+    private BitSet reach(int root) {
+        BitSet cached = cache.get(root);
+        if (cached != null) {
+            return cached;
+        }
+
+        int[] frameComponent = new int[16];
+        int[] frameNext = new int[16];
+        BitSet[] frameReach = new BitSet[16];
+        int top = 0;
+        frameComponent[top] = root;
+        frameNext[top] = successorOffsets[root];
+        frameReach[top++] = members(root);
+
+        while (true) {
+            int frame = top - 1;
+            int c = frameComponent[frame];
+            if (frameNext[frame] < successorOffsets[c + 1]) {
+                int s = successors[frameNext[frame]++];
+                BitSet successorReach = cache.get(s);
+                if (successorReach != null) {
+                    frameReach[frame].or(successorReach);
+                } else {
+                    if (top == frameComponent.length) {
+                        frameComponent = Arrays.copyOf(frameComponent, top * 2);
+                        frameNext = Arrays.copyOf(frameNext, top * 2);
+                        frameReach = Arrays.copyOf(frameReach, top * 2);
+                    }
+                    frameComponent[top] = s;
+                    frameNext[top] = successorOffsets[s];
+                    frameReach[top++] = members(s);
+                }
+                continue;
+            }
+
+            BitSet result = frameReach[frame];
+            frameReach[frame] = null;
+            top--;
+            if (shared[c] || c == root) {
+                remember(c, result);
+            }
+            if (top == 0) {
+                return result;
+            }
+            frameReach[top - 1].or(result);
+        }
+    }
+
+    /**
+     * Memoize a component's reachable set, evicting the least recently used sets beyond the capacity
+     */
+    private void remember(int c, BitSet reachable) {
+        long bytes = reachable.size() / 8;
+        if (bytes > cacheCapacityBytes) {
+            return;
+        }
+        BitSet previous = cache.put(c, reachable);
+        cachedBytes += bytes - (previous != null ? previous.size() / 8 : 0);
+        Iterator<Map.Entry<Integer, BitSet>> eldest = cache.entrySet().iterator();
+        while (cachedBytes > cacheCapacityBytes && eldest.hasNext()) {
+            BitSet evicted = eldest.next().getValue();
+            if (evicted == reachable) {
+                break;
+            }
+            cachedBytes -= evicted.size() / 8;
+            eldest.remove();
+        }
+    }
+
+    private BitSet members(int c) {
+        BitSet bits = new BitSet(memberStart[c + 1]);
+        bits.set(memberStart[c], memberStart[c + 1]);
+        return bits;
+    }
+
+    /**
+     * Iterative Tarjan over the frozen adjacency. Components are numbered in the order they are
+     * completed, which is a reverse topological order of the condensation.
+     * @param roots every method, in the order to start traversals from
+     */
+    private int condense(int[] roots) {
+        int methodCount = roots.length;
+        int[] index = new int[methodCount];
+        int[] lowLink = new int[methodCount];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[methodCount];
+        int[] sccStack = new int[methodCount];
+        int sccTop = 0;
+        int[] callMethod = new int[methodCount];
+        int[] callEdge = new int[methodCount];
+        int callTop = 0;
+        int nextIndex = 0;
+        int components = 0;
+
+        for (int root : roots) {
+            if (index[root] != -1) {
+                continue;
+            }
+            index[root] = lowLink[root] = nextIndex++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+            callMethod[callTop] = root;
+            callEdge[callTop++] = graph.calleeStart(root);
+
+            while (callTop > 0) {
+                int v = callMethod[callTop - 1];
+                if (callEdge[callTop - 1] < graph.calleeEnd(v)) {
+                    int w = graph.calleeAt(callEdge[callTop - 1]++);
+                    if (index[w] == -1) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callMethod[callTop] = w;
+                        callEdge[callTop++] = graph.calleeStart(w);
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                callTop--;
+                if (lowLink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = sccStack[--sccTop];
+                        onStack[w] = false;
+                        component[w] = components;
+                    } while (w != v);
+                    components++;
+                }
+                if (callTop > 0) {
+                    int parent = callMethod[callTop - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+            }
+        }
+        return components;
+    }
+}
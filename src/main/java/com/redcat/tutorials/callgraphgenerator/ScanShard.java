@@ -0,0 +1,173 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.objectweb.asm.ClassReader;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Partial scan result built by a single scanner worker.
+ * Shards are never shared between threads; they are merged once all workers have finished.
+ */
+public class ScanShard {
+
+    private final EndpointDetector endpointDetector = new EndpointDetector();
+    private final List<ClassFacts> classes = new ArrayList<>();
+    private final List<ClassFacts> libraryClasses = new ArrayList<>();
+    private final ClassBytesStore classBytes;
+    private final AnalysisSnapshot previous;
+    private final AnalysisSnapshot snapshot = new AnalysisSnapshot();
+    private final MessageDigest digest;
+    private int reusedCount;
+
+    public ScanShard() {
+        this(new AnalysisSnapshot());
+    }
+
+    /**
+     * @param previous results of an earlier run; classes whose content hash is unchanged are not parsed again
+     */
+    public ScanShard(AnalysisSnapshot previous) {
+        this(previous, null);
+    }
+
+    /**
+     * @param previous results of an earlier run; classes whose content hash is unchanged are not parsed again
+     * @param store where class bytes are kept, or null for the heap
+     */
+    public ScanShard(AnalysisSnapshot previous, OffHeapStore store) {
+        this.previous = previous;
+        this.classBytes = new ClassBytesStore(store);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Analyze a single class file in one bytecode pass and record its facts and endpoints.
+     * Call sites are resolved into edges only once every class is known; see {@link ClassHierarchy}.
+     * If the previous snapshot holds facts for the same path and content, those are reused instead.
+     * @param classFile the path of the .class file
+     * @param relativePath the path of the class within its class source, used as snapshot key
+     * @param classBytes holds the raw bytes of the .class file in {@code [0, length)}
+     * @param length the length of the class file
+     */
+    public void analyze(String classFile, String relativePath, byte[] classBytes, int length) {
+        digest.update(classBytes, 0, length);
+        byte[] hash = digest.digest();
+        AnalysisSnapshot.Entry entry = previous.get(relativePath);
+
+        ClassFacts facts;
+        if (entry != null && Arrays.equals(entry.contentHash, hash)) {
+            facts = entry.facts.withClassFile(classFile);
+            reusedCount++;
+        } else {
+            ClassFactsVisitor visitor = new ClassFactsVisitor(classFile);
+            new ClassReader(classBytes, 0, length).accept(visitor, 0);
+            facts = visitor.getFacts();
+        }
+
+        snapshot.put(relativePath, hash, facts);
+        this.classBytes.put(facts.className, classBytes, length);
+        add(facts);
+    }
+
+    /**
+     * Record the facts of an already analyzed class
+     * @param facts the class facts
+     */
+    public void add(ClassFacts facts) {
+        classes.add(facts);
+        facts.endpoints.forEach(endpointDetector::addEndpoint);
+    }
+
+    /**
+     * Add the classes of a dependency jar, analyzed earlier and kept in a {@link JarAnalysisCache}.
+     * They take part in the call graph but not in the snapshot of this scan.
+     * @param library the classes, class bytes and endpoints of the jar; it must not be used afterwards
+     */
+    public void linkLibrary(ScanShard library) {
+        library.classes.forEach(this::add);
+        libraryClasses.addAll(library.classes);
+        classBytes.merge(library.classBytes);
+    }
+
+    /**
+     * Fold another shard into this one
+     * @param other the shard to merge; it must not be used afterwards
+     */
+    public void merge(ScanShard other) {
+        endpointDetector.merge(other.endpointDetector);
+        classes.addAll(other.classes);
+        libraryClasses.addAll(other.libraryClasses);
+        classBytes.merge(other.classBytes);
+        snapshot.merge(other.snapshot);
+        reusedCount += other.reusedCount;
+    }
+
+    public EndpointDetector getEndpointDetector() {
+        return endpointDetector;
+    }
+
+    /**
+     * @return every class, project and linked library classes alike
+     */
+    public List<ClassFacts> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return the classes scanned from the project itself, without linked library classes
+     */
+    public List<ClassFacts> getProjectClasses() {
+        Set<ClassFacts> linked = Collections.newSetFromMap(new IdentityHashMap<>());
+        linked.addAll(libraryClasses);
+        List<ClassFacts> projectClasses = new ArrayList<>(classes.size() - linked.size());
+        for (ClassFacts facts : classes) {
+            if (!linked.contains(facts)) {
+                projectClasses.add(facts);
+            }
+        }
+        return projectClasses;
+    }
+
+    /**
+     * @return the classes linked from dependency jars
+     */
+    public List<ClassFacts> getLibraryClasses() {
+        return libraryClasses;
+    }
+
+    /**
+     * @return the deflated bytes of every scanned class, for rendering method bodies on demand
+     */
+    public ClassBytesStore getClassBytes() {
+        return classBytes;
+    }
+
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    /**
+     * @return the snapshot describing this scan, to be saved for the next run
+     */
+    public AnalysisSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the number of classes taken from the previous snapshot without parsing
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+}
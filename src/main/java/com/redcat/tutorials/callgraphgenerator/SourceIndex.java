@@ -0,0 +1,51 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and tokenizes each Java source file at most once. Files that do not exist or cannot
+ * be read are remembered as missing, so repeated lookups never touch the disk again.
+ * Lookups are thread-safe; a file looked up by several threads at once is still parsed once.
+ */
+public class SourceIndex {
+
+    private final Map<String, Optional<JavaSourceFile>> files = new ConcurrentHashMap<>();
+    private final AtomicInteger parsedCount = new AtomicInteger();
+
+    /**
+     * @param sourceFile the .java file
+     * @return the indexed file, or null if it does not exist or cannot be read
+     */
+    public JavaSourceFile get(File sourceFile) {
+        return files.computeIfAbsent(sourceFile.getAbsolutePath(), path -> Optional.ofNullable(parse(sourceFile)))
+                .orElse(null);
+    }
+
+    private JavaSourceFile parse(File sourceFile) {
+        if (!sourceFile.isFile()) {
+            return null;
+        }
+        try {
+            JavaSourceFile parsed = JavaSourceFile.parse(new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8));
+            parsedCount.incrementAndGet();
+            return parsed;
+        } catch (IOException e) {
+            // Treated as missing; bytecode is used instead
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of source files read and tokenized so far
+     */
+    public int getParsedCount() {
+        return parsedCount.get();
+    }
+}
@@ -0,0 +1,138 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Removes trivial methods found by {@link MethodFilterVisitor} (getters, setters, builder boilerplate,
+ * {@code equals}, {@code hashCode} and {@code toString}) from the call graph.
+ * In {@link Mode#COLLAPSE} they stay in the graph as leaves and their bodies are replaced by a one-line
+ * placeholder; in {@link Mode#DROP} every edge into or out of them is removed, so they no longer appear
+ * in any subgraph or method bodies file.
+ */
+public class TrivialMethodPruner {
+
+    public enum Mode {
+        OFF, COLLAPSE, DROP;
+
+        /**
+         * @param value the mode name, case-insensitive; null for the default
+         */
+        public static Mode parse(String value) {
+            return value == null || value.isBlank() ? COLLAPSE : valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Mode mode;
+    private final Map<String, MethodFilterVisitor.Kind> trivialMethods = new HashMap<>();
+    private final Map<MethodFilterVisitor.Kind, Integer> prunedByKind = new EnumMap<>(MethodFilterVisitor.Kind.class);
+    private int prunedNodes;
+    private int removedEdges;
+    private long removedGraphBytes;
+
+    public TrivialMethodPruner(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Collect the trivial methods of the scanned classes
+     * @param classes the facts collected for each scanned class
+     */
+    public void collect(Collection<ClassFacts> classes) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        for (ClassFacts classFacts : classes) {
+            for (ClassFacts.MethodFacts method : classFacts.methods) {
+                if (method.trivialKind != null) {
+                    trivialMethods.put(MethodId.of(classFacts.className, method.name, method.descriptor), method.trivialKind);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the outgoing edges of trivial methods, and in {@link Mode#DROP} their incoming edges too
+     * @param graph the call graph, with call sites already resolved through the class hierarchy
+     */
+    public void prune(CallGraph graph) {
+        if (mode == Mode.OFF || trivialMethods.isEmpty()) {
+            return;
+        }
+        graph.freeze();
+        int nodeCount = graph.getNodeCount();
+        boolean[] trivial = new boolean[nodeCount];
+        for (Map.Entry<String, MethodFilterVisitor.Kind> entry : trivialMethods.entrySet()) {
+            int id = graph.idOf(entry.getKey());
+            if (id >= 0) {
+                trivial[id] = true;
+                prunedNodes++;
+                prunedByKind.merge(entry.getValue(), 1, Integer::sum);
+            }
+        }
+
+        // Bytes the removed edges took in the full call graph JSON: a quoted name and a separator each,
+        // plus the whole entry of a caller left without callees
+        for (int caller = 0; caller < nodeCount; caller++) {
+            int kept = 0;
+            for (int i = graph.calleeStart(caller); i < graph.calleeEnd(caller); i++) {
+                if (isRemoved(trivial, caller, graph.calleeAt(i))) {
+                    removedGraphBytes += utf8Length(graph.nameOf(graph.calleeAt(i))) + 3;
+                } else {
+                    kept++;
+                }
+            }
+            if (kept == 0 && graph.calleeEnd(caller) > graph.calleeStart(caller)) {
+                removedGraphBytes += utf8Length(graph.nameOf(caller)) + 6;
+            }
+        }
+        removedEdges = graph.removeEdges((caller, callee) -> isRemoved(trivial, caller, callee));
+    }
+
+    private boolean isRemoved(boolean[] trivial, int caller, int callee) {
+        return trivial[caller] || (mode == Mode.DROP && trivial[callee]);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * @return the kind of trivial method, or null if the method is kept as is
+     */
+    public MethodFilterVisitor.Kind getKind(String method) {
+        return mode == Mode.OFF ? null : trivialMethods.get(method);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getPrunedNodes() {
+        return prunedNodes;
+    }
+
+    public int getRemovedEdges() {
+        return removedEdges;
+    }
+
+    public long getRemovedGraphBytes() {
+        return removedGraphBytes;
+    }
+
+    /**
+     * @return a one-line summary of what was pruned
+     */
+    public String describe() {
+        StringBuilder kinds = new StringBuilder();
+        prunedByKind.forEach((kind, count) -> kinds.append(kinds.length() == 0 ? "" : ", ")
+                .append(count).append(' ').append(kind.label));
+        return (mode == Mode.DROP ? "Dropped " : "Collapsed ") + prunedNodes + " trivial methods"
+                + (kinds.length() > 0 ? " (" + kinds + ")" : "") + ", removing " + removedEdges + " edges and "
+                + removedGraphBytes / 1024 + " KB of full call graph JSON";
+    }
+}
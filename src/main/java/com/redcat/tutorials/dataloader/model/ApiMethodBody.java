@@ -14,7 +14,7 @@ import java.util.List;
  */
 @Document(collection = "api_method_bodies")
 @CompoundIndexes({
-    @CompoundIndex(name = "projectName_controllerMethod", def = "{'projectName': 1, 'controllerMethod': 1}", unique = false)
+    @CompoundIndex(name = "projectName_generation_controllerMethod", def = "{'projectName': 1, 'generation': 1, 'controllerMethod': 1}", unique = true)
 })
 @Setter
 public class ApiMethodBody {
@@ -29,6 +29,9 @@ public class ApiMethodBody {
     @Indexed
     private String projectName;
 
+    // The load that wrote the document, see ProjectDataset
+    private Long generation;
+
     public ApiMethodBody() {
     }
 
@@ -63,4 +66,12 @@ public class ApiMethodBody {
     public void setProjectName(String projectName) {
         this.projectName = projectName;
     }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
 }
@@ -13,7 +13,7 @@ import java.util.List;
  */
 @Document(collection = "full_call_graph")
 @CompoundIndexes({
-    @CompoundIndex(name = "projectName_fullMethodPath", def = "{'projectName': 1, 'fullMethodPath': 1}", unique = true)
+    @CompoundIndex(name = "projectName_generation_fullMethodPath", def = "{'projectName': 1, 'generation': 1, 'fullMethodPath': 1}", unique = true)
 })
 public class FullCallGraph {
 
@@ -23,6 +23,9 @@ public class FullCallGraph {
     @Indexed
     private String projectName;
 
+    // The load that wrote the document, see ProjectDataset
+    private Long generation;
+
     @Indexed
     private String fullMethodPath;
 
@@ -47,6 +50,14 @@ public class FullCallGraph {
         this.projectName = projectName;
     }
 
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
     public String getFullMethodPath() {
         return fullMethodPath;
     }
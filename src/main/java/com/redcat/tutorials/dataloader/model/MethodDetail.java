@@ -13,6 +13,8 @@ public class MethodDetail {
     private String name;
     private String body;
     private String filePath;
+    private Integer instructions; // bytecode size, null for output of older generators
+    private Double importance;    // estimated frequency times size within the endpoint's hierarchy
 
     public String getName() {
         return name;
@@ -37,4 +39,20 @@ public class MethodDetail {
     public void setFilePath(String filePath) {
         this.filePath = filePath;
     }
+
+    public Integer getInstructions() {
+        return instructions;
+    }
+
+    public void setInstructions(Integer instructions) {
+        this.instructions = instructions;
+    }
+
+    public Double getImportance() {
+        return importance;
+    }
+
+    public void setImportance(Double importance) {
+        this.importance = importance;
+    }
 }
@@ -0,0 +1,62 @@
+package com.redcat.tutorials.dataloader.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Which generation of a project's method bodies and call graph readers see. Every load writes a new
+ * generation next to the active one and is switched to by updating this document once it is complete.
+ */
+@Document(collection = "projects")
+public class ProjectDataset {
+
+    public static final long NO_GENERATION = -1;
+
+    @Id
+    private String projectName;
+
+    // The generation readers see, or NO_GENERATION before the first load completed
+    private long activeGeneration = NO_GENERATION;
+
+    // The last generation handed out to a load
+    private long lastGeneration;
+
+    private Instant activatedAt;
+
+    public ProjectDataset() {
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public long getActiveGeneration() {
+        return activeGeneration;
+    }
+
+    public void setActiveGeneration(long activeGeneration) {
+        this.activeGeneration = activeGeneration;
+    }
+
+    public long getLastGeneration() {
+        return lastGeneration;
+    }
+
+    public void setLastGeneration(long lastGeneration) {
+        this.lastGeneration = lastGeneration;
+    }
+
+    public Instant getActivatedAt() {
+        return activatedAt;
+    }
+
+    public void setActivatedAt(Instant activatedAt) {
+        this.activatedAt = activatedAt;
+    }
+}
@@ -5,7 +5,6 @@ import com.redcat.tutorials.dataloader.model.FullCallGraph;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,41 +14,35 @@ import java.util.Optional;
 public interface ApiMethodBodyRepository extends MongoRepository<ApiMethodBody, String> {
 
     /**
-     * Find all API method bodies for a specific project
+     * Find all API method bodies of one generation of a project
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @return list of API method bodies
      */
-    List<ApiMethodBody> findByProjectName(String projectName);
+    List<ApiMethodBody> findByProjectNameAndGeneration(String projectName, Long generation);
 
     /**
-     * Find all API method bodies for a specific project with pagination and sorting
+     * Find all API method bodies of one generation of a project with pagination and sorting
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @param pageable the pagination information
      * @return paged list of API method bodies
      */
-    Page<ApiMethodBody> findByProjectName(String projectName, Pageable pageable);
+    Page<ApiMethodBody> findByProjectNameAndGeneration(String projectName, Long generation, Pageable pageable);
 
     /**
-     * Find a specific controller method in a project
+     * Find a specific controller method in one generation of a project
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @param controllerMethod the controller method path
      * @return the ApiMethodBody if found
      */
-    Optional<ApiMethodBody> findByProjectNameAndControllerMethod(String projectName, String controllerMethod);
+    Optional<ApiMethodBody> findByProjectNameAndGenerationAndControllerMethod(String projectName, Long generation, String controllerMethod);
 
-    /**
-     * Check if a project exists
-     *
-     * @param projectName the name of the project
-     * @return true if the project exists
-     */
-    boolean existsByProjectName(String projectName);
-
-    Optional<List<ApiMethodBody>> findByProjectNameAndControllerMethodLikeIgnoreCase(String projectName, String controllerMethod);
+    Optional<List<ApiMethodBody>> findByProjectNameAndGenerationAndControllerMethodLikeIgnoreCase(String projectName, Long generation, String controllerMethod);
 
-    @Query(value = "{}", fields = "{ 'id': 1, 'controllerMethod': 1, 'projectName': 1 }")
-    List<ApiMethodBody> findAllWithoutMethods();
+    long countByProjectNameAndGeneration(String projectName, Long generation);
 }
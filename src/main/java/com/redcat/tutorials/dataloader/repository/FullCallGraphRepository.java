@@ -13,57 +13,46 @@ import java.util.Optional;
 public interface FullCallGraphRepository extends MongoRepository<FullCallGraph, String> {
 
     /**
-     * Find all call graph nodes for a specific project
-     *
-     * @param projectName the name of the project
-     * @return list of call graph nodes
-     */
-    List<FullCallGraph> findByProjectName(String projectName);
-
-    /**
-     * Find all call graph nodes for a specific project with pagination and sorting
+     * Find all call graph nodes of one generation of a project with pagination and sorting
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @param pageable the pagination information
      * @return paged list of call graph nodes
      */
-    Page<FullCallGraph> findByProjectName(String projectName, Pageable pageable);
+    Page<FullCallGraph> findByProjectNameAndGeneration(String projectName, Long generation, Pageable pageable);
 
     /**
-     * Find a specific method in a project's call graph
+     * Find a specific method in one generation of a project's call graph
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @param fullMethodPath the full method path
      * @return the FullCallGraph if found
      */
-    Optional<FullCallGraph> findByProjectNameAndFullMethodPath(String projectName, String fullMethodPath);
+    Optional<FullCallGraph> findByProjectNameAndGenerationAndFullMethodPath(String projectName, Long generation, String fullMethodPath);
 
-    Optional<List<FullCallGraph>> findByProjectNameAndFullMethodPathLike(String projectName, String fullMethodPathPattern);
-
-    /**
-     * Check if a project exists in the call graph
-     *
-     * @param projectName the name of the project
-     * @return true if the project exists
-     */
-    boolean existsByProjectName(String projectName);
+    Optional<List<FullCallGraph>> findByProjectNameAndGenerationAndFullMethodPathLike(String projectName, Long generation, String fullMethodPathPattern);
 
     /**
-     * Find all methods that have a given method as a child method
+     * Find all methods of one generation of a project that have a given method as a child method
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @param childMethod the child method to search for
      * @return list of call graph nodes that have the specified child method
      */
-    List<FullCallGraph> findByProjectNameAndChildMethodsContaining(String projectName, String childMethod);
+    List<FullCallGraph> findByProjectNameAndGenerationAndChildMethodsContaining(String projectName, Long generation, String childMethod);
 
     /**
-     * Find all methods that have a given method as a child method with pagination and sorting
+     * Find all methods of one generation of a project that have a given method as a child method with pagination
+     * and sorting
      *
      * @param projectName the name of the project
+     * @param generation the generation, usually the project's active one
      * @param childMethod the child method to search for
      * @param pageable the pagination information
      * @return paged list of call graph nodes that have the specified child method
      */
-    Page<FullCallGraph> findByProjectNameAndChildMethodsContaining(String projectName, String childMethod, Pageable pageable);
+    Page<FullCallGraph> findByProjectNameAndGenerationAndChildMethodsContaining(String projectName, Long generation, String childMethod, Pageable pageable);
 }
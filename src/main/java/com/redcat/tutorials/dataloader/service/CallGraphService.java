@@ -3,9 +3,7 @@ package com.redcat.tutorials.dataloader.service;
 import com.redcat.tutorials.dataloader.dto.CallGraphResponse;
 import com.redcat.tutorials.dataloader.dto.PaginatedResponse;
 import com.redcat.tutorials.dataloader.exception.MethodNotFoundException;
-import com.redcat.tutorials.dataloader.exception.ProjectNotFoundException;
 import com.redcat.tutorials.dataloader.model.FullCallGraph;
-import com.redcat.tutorials.dataloader.repository.ApiMethodBodyRepository;
 import com.redcat.tutorials.dataloader.repository.FullCallGraphRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,15 +21,15 @@ import java.util.stream.Collectors;
 public class CallGraphService {
     private static final Logger logger = LoggerFactory.getLogger(CallGraphService.class);
 
-    private final ApiMethodBodyRepository apiMethodBodyRepository;
     private final FullCallGraphRepository fullCallGraphRepository;
+    private final ProjectGenerationService projectGenerationService;
 
     @Autowired
     public CallGraphService(
-            ApiMethodBodyRepository apiMethodBodyRepository,
-            FullCallGraphRepository fullCallGraphRepository) {
-        this.apiMethodBodyRepository = apiMethodBodyRepository;
+            FullCallGraphRepository fullCallGraphRepository,
+            ProjectGenerationService projectGenerationService) {
         this.fullCallGraphRepository = fullCallGraphRepository;
+        this.projectGenerationService = projectGenerationService;
     }
 
     /**
@@ -42,14 +40,12 @@ public class CallGraphService {
      * @return Call graph response with direct and transitive method calls
      */
     public CallGraphResponse getMethodCallGraph(String projectName, String methodName) {
-        // Verify project exists
-        if (!fullCallGraphRepository.existsByProjectName(projectName)) {
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Verify project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Find the method in the project's call graph
         List<FullCallGraph> methodNode = fullCallGraphRepository
-                .findByProjectNameAndFullMethodPathLike(projectName, methodName)
+                .findByProjectNameAndGenerationAndFullMethodPathLike(projectName, generation, methodName)
                 .orElseThrow(() -> new MethodNotFoundException(methodName, projectName));
 
         // Build the call graph response
@@ -66,7 +62,7 @@ public class CallGraphService {
         response.setFound(true);
 
 // Generate the transitive call graph
-        Map<String, List<String>> fullGraph = buildTransitiveCallGraph(projectName, methodName);
+        Map<String, List<String>> fullGraph = buildTransitiveCallGraph(projectName, generation, methodName);
         response.setFullCallGraph(fullGraph);
         response.setMessage("Call graph retrieved successfully");
 
@@ -81,14 +77,12 @@ public class CallGraphService {
      * @return List of methods that call the specified method
      */
     public List<String> findCallers(String projectName, String methodName) {
-        // Verify project exists
-        if (!fullCallGraphRepository.existsByProjectName(projectName)) {
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Verify project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Find all methods that contain the target method in their child methods
         List<FullCallGraph> callerNodes = fullCallGraphRepository
-                .findByProjectNameAndChildMethodsContaining(projectName, methodName);
+                .findByProjectNameAndGenerationAndChildMethodsContaining(projectName, generation, methodName);
 
         return callerNodes.stream()
                 .map(FullCallGraph::getFullMethodPath)
@@ -109,10 +103,8 @@ public class CallGraphService {
     public PaginatedResponse<String> findCallersPaginated(
             String projectName, String methodName, int page, int size, String sortBy, String sortDirection) {
 
-        // Verify project exists
-        if (!fullCallGraphRepository.existsByProjectName(projectName)) {
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Verify project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Create sort and pageable objects
         Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) ? Sort.Direction.DESC : Sort.Direction.ASC;
@@ -121,7 +113,7 @@ public class CallGraphService {
 
         // Find all methods that contain the target method in their child methods with pagination
         Page<FullCallGraph> callerNodesPage = fullCallGraphRepository
-                .findByProjectNameAndChildMethodsContaining(projectName, methodName, pageable);
+                .findByProjectNameAndGenerationAndChildMethodsContaining(projectName, generation, methodName, pageable);
 
         List<String> callers = callerNodesPage.getContent().stream()
                 .map(FullCallGraph::getFullMethodPath)
@@ -152,10 +144,8 @@ public class CallGraphService {
     public PaginatedResponse<FullCallGraph> getCallGraphNodesPaginated(
             String projectName, int page, int size, String sortBy, String sortDirection) {
 
-        // Verify project exists
-        if (!fullCallGraphRepository.existsByProjectName(projectName)) {
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Verify project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Create sort and pageable objects
         Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) ? Sort.Direction.DESC : Sort.Direction.ASC;
@@ -163,7 +153,7 @@ public class CallGraphService {
         Pageable pageable = PageRequest.of(page, size, sort);
 
         // Find all call graph nodes for the project with pagination
-        Page<FullCallGraph> nodesPage = fullCallGraphRepository.findByProjectName(projectName, pageable);
+        Page<FullCallGraph> nodesPage = fullCallGraphRepository.findByProjectNameAndGeneration(projectName, generation, pageable);
 
         // Build the paginated response
         PaginatedResponse<FullCallGraph> response = new PaginatedResponse<>();
@@ -181,10 +171,11 @@ public class CallGraphService {
      * Build a transitive call graph starting from a method
      *
      * @param projectName Name of the project
+     * @param generation Generation of the project to read
      * @param methodName Starting method
      * @return Map representing the full call graph
      */
-    private Map<String, List<String>> buildTransitiveCallGraph(String projectName, String methodName) {
+    private Map<String, List<String>> buildTransitiveCallGraph(String projectName, long generation, String methodName) {
         Map<String, List<String>> graph = new HashMap<>();
         Set<String> visited = new HashSet<>();
         Queue<String> queue = new LinkedList<>();
@@ -205,7 +196,7 @@ public class CallGraphService {
 
             // Get direct calls for this method
             Optional<FullCallGraph> methodNodeOpt =
-                    fullCallGraphRepository.findByProjectNameAndFullMethodPath(projectName, currentMethod);
+                    fullCallGraphRepository.findByProjectNameAndGenerationAndFullMethodPath(projectName, generation, currentMethod);
 
             if (methodNodeOpt.isPresent()) {
                 FullCallGraph methodNode = methodNodeOpt.get();
@@ -231,9 +222,6 @@ public class CallGraphService {
      * @return List of project names
      */
     public List<String> getAllProjects() {
-        return fullCallGraphRepository.findAll().stream()
-                .map(FullCallGraph::getProjectName)
-                .distinct()
-                .collect(Collectors.toList());
+        return new ArrayList<>(projectGenerationService.getActiveProjects().keySet());
     }
 }
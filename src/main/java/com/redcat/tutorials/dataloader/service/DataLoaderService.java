@@ -1,46 +1,97 @@
 package com.redcat.tutorials.dataloader.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redcat.tutorials.callgraphgenerator.CallGraph;
+import com.redcat.tutorials.callgraphgenerator.CallGraphAnalysis;
+import com.redcat.tutorials.callgraphgenerator.EndpointCallGraphBuilder;
+import com.redcat.tutorials.callgraphgenerator.MappedCallGraph;
+import com.redcat.tutorials.callgraphgenerator.MethodBodyExtractor;
 import com.redcat.tutorials.dataloader.dto.LoadDataResponse;
 import com.redcat.tutorials.dataloader.model.ApiMethodBody;
 import com.redcat.tutorials.dataloader.model.FullCallGraph;
 import com.redcat.tutorials.dataloader.model.MethodDetail;
-import com.redcat.tutorials.dataloader.repository.ApiMethodBodyRepository;
-import com.redcat.tutorials.dataloader.repository.FullCallGraphRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Loads generator output into MongoDB. Output files are streamed with the Jackson parser, one controller or
+ * call graph node at a time, and stored in fixed-size batches, so the heap used does not grow with the file.
+ * Batches are upserted on the documents' natural keys by a pool of writers. Every load writes a new generation
+ * of the project, which {@link ProjectGenerationService} activates once both collections are written, so
+ * readers keep seeing the previous load until then and a failed load leaves it untouched.
+ */
 @Service
 @Slf4j
 public class DataLoaderService {
 
-    private final ApiMethodBodyRepository apiMethodBodyRepository;
-    private final FullCallGraphRepository fullCallGraphRepository;
+    private static final TypeReference<List<Map<String, String>>> LEGACY_METHODS = new TypeReference<>() {};
+    private static final TypeReference<List<String>> CHILD_METHODS = new TypeReference<>() {};
+    private static final String PROJECT_NAME = "projectName";
+    private static final String GENERATION = "generation";
+
+    private final MongoTemplate mongoTemplate;
     private final ObjectMapper objectMapper;
+    private final ProjectGenerationService projectGenerationService;
+    private final int batchSize;
+    private final ExecutorService writers;
+    private final int maxInFlightBatches;
 
     @Autowired
     public DataLoaderService(
-            ApiMethodBodyRepository apiMethodBodyRepository,
-            FullCallGraphRepository fullCallGraphRepository,
-            ObjectMapper objectMapper) {
-        this.apiMethodBodyRepository = apiMethodBodyRepository;
-        this.fullCallGraphRepository = fullCallGraphRepository;
+            MongoTemplate mongoTemplate,
+            ObjectMapper objectMapper,
+            ProjectGenerationService projectGenerationService,
+            @Value("${dataloader.batch-size:500}") int batchSize,
+            @Value("${dataloader.writers:4}") int writers) {
+        this.mongoTemplate = mongoTemplate;
         this.objectMapper = objectMapper;
+        this.projectGenerationService = projectGenerationService;
+        this.batchSize = Math.max(1, batchSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writers), runnable -> {
+            Thread thread = new Thread(runnable, "data-loader-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One batch queued per writer while the others are being written
+        this.maxInFlightBatches = 2 * Math.max(1, writers);
     }
 
     /**
@@ -52,6 +103,7 @@ public class DataLoaderService {
     public LoadDataResponse loadDataFromJsonFiles(String directoryPath, String projectName) {
         LoadDataResponse response = new LoadDataResponse();
         response.setSuccess(false);
+        Long generation = null;
 
         try {
             // Resolve the directory path relative to the project path
@@ -61,131 +113,481 @@ public class DataLoaderService {
                 response.setMessage("Directory not found: " + dir);
                 return response;
             }
+            generation = projectGenerationService.begin(projectName);
 
             // Load controller method bodies
-            Path methodBodiesPath = dir.resolve("controller_method_bodies.json");
+            Path methodBodiesPath = resolveOutputFile(dir, "controller_method_bodies");
             if (Files.exists(methodBodiesPath)) {
-                int methodBodiesCount = loadControllerMethodBodies(methodBodiesPath, projectName);
+                int methodBodiesCount = loadControllerMethodBodies(methodBodiesPath, projectName, generation);
                 response.setMethodBodiesLoaded(methodBodiesCount);
                 log.info("Loaded {} controller method bodies", methodBodiesCount);
             } else {
-                log.warn("controller_method_bodies.json not found in {}", dir);
+                log.warn("controller_method_bodies.json(.gz) not found in {}", dir);
             }
 
-            // Load full call graph
-            Path callGraphPath = dir.resolve("full_call_graph.json");
-            if (Files.exists(callGraphPath)) {
-                int callGraphCount = loadFullCallGraph(callGraphPath, projectName);
+            // Load full call graph, preferring the memory-mapped binary form over JSON
+            Path binaryCallGraphPath = dir.resolve(MappedCallGraph.FILE_NAME);
+            Path callGraphPath = resolveOutputFile(dir, "full_call_graph");
+            if (Files.exists(binaryCallGraphPath)) {
+                int callGraphCount = loadFullCallGraphBinary(binaryCallGraphPath, projectName, generation);
+                response.setCallGraphNodesLoaded(callGraphCount);
+                log.info("Loaded {} call graph nodes from {}", callGraphCount, binaryCallGraphPath.getFileName());
+            } else if (Files.exists(callGraphPath)) {
+                int callGraphCount = loadFullCallGraph(callGraphPath, projectName, generation);
                 response.setCallGraphNodesLoaded(callGraphCount);
                 log.info("Loaded {} call graph nodes", callGraphCount);
             } else {
-                log.warn("full_call_graph.json not found in {}", dir);
+                log.warn("full_call_graph.json(.gz) not found in {}", dir);
             }
 
+            if (!projectGenerationService.activate(projectName, generation)) {
+                response.setMessage("A later load of project " + projectName + " completed first");
+                return response;
+            }
             response.setSuccess(true);
             response.setMessage("Data loaded successfully");
 
         } catch (Exception e) {
             log.error("Error loading data", e);
             response.setMessage("Error loading data: " + e.getMessage());
+            if (generation != null) {
+                projectGenerationService.abandon(projectName, generation);
+            }
         }
 
         return response;
     }
 
-    private int loadControllerMethodBodies(Path filePath, String projectName) throws IOException {
-        String content = Files.readString(filePath);
-        log.debug("Reading JSON content from file: {}", filePath);
+    /**
+     * Load the results of an in-process analysis into MongoDB, without writing or parsing generator output files
+     * @param analysis an analysis that has been run and not yet closed
+     * @param projectName Name of the project for metadata
+     * @return Response with status and counts of loaded data
+     */
+    public LoadDataResponse loadAnalysis(CallGraphAnalysis analysis, String projectName) {
+        long generation = projectGenerationService.begin(projectName);
+        try {
+            LoadDataResponse response = loadAnalysis(analysis, projectName, generation);
+            if (!projectGenerationService.activate(projectName, generation)) {
+                response.setSuccess(false);
+                response.setMessage("A later load of project " + projectName + " completed first");
+            }
+            return response;
+        } catch (RuntimeException e) {
+            projectGenerationService.abandon(projectName, generation);
+            throw e;
+        }
+    }
 
-        // First try to parse the overall structure to understand it better
-        JsonNode rootNode = objectMapper.readTree(content);
+    private LoadDataResponse loadAnalysis(CallGraphAnalysis analysis, String projectName, long generation) {
+        LoadDataResponse response = new LoadDataResponse();
+        EndpointCallGraphBuilder builder = analysis.getBuilder();
 
-        List<ApiMethodBody> apiMethodBodies = new ArrayList<>();
+        BulkUpsert<ApiMethodBody> apiMethodBodies = apiMethodBodyUpsert(projectName, generation);
+        for (MethodBodyExtractor.ControllerMethod controllerMethod : builder.findControllerMethods()) {
+            List<MethodDetail> methodDetails = new ArrayList<>();
+            for (EndpointCallGraphBuilder.HierarchyMethod method : builder.extractHierarchy(controllerMethod.fullName)) {
+                MethodDetail detail = new MethodDetail();
+                detail.setName(method.name);
+                detail.setBody(method.body != null ? method.body : "");
+                detail.setFilePath(method.filePath != null ? method.filePath : "");
+                detail.setInstructions(method.instructions);
+                detail.setImportance(method.importance);
+                methodDetails.add(detail);
+            }
+            ApiMethodBody apiMethodBody = new ApiMethodBody();
+            apiMethodBody.setControllerMethod(controllerMethod.fullName);
+            apiMethodBody.setProjectName(projectName);
+            apiMethodBody.setMethods(methodDetails);
+            apiMethodBodies.add(apiMethodBody);
+        }
+        int methodBodiesCount = apiMethodBodies.finish();
+        response.setMethodBodiesLoaded(methodBodiesCount);
+        log.info("Loaded {} controller method bodies", methodBodiesCount);
 
-        // Check if the root is an object with a "controllers" key
-        if (rootNode.has("controllers") && rootNode.get("controllers").isArray()) {
-            // Handle structure with "controllers" array
-            JsonNode controllers = rootNode.get("controllers");
-            for (JsonNode controller : controllers) {
-                ApiMethodBody apiMethodBody = new ApiMethodBody();
-                // Add null checks before accessing values
-                if (controller.has("controllerMethod")) {
-                    apiMethodBody.setControllerMethod(controller.get("controllerMethod").asText());
-                } else {
-                    log.warn("Controller missing name field, using placeholder");
-                    apiMethodBody.setControllerMethod("unnamed-controller");
-                }
-                apiMethodBody.setProjectName(projectName);
-
-                List<MethodDetail> methodDetails = new ArrayList<>();
-                // Only process methods if they exist
-                if (controller.has("methods")) {
-                    JsonNode methods = controller.get("methods");
-
-                    if (methods != null && methods.isArray()) {
-                        for (JsonNode methodNode : methods) {
-                             MethodDetail detail = new  MethodDetail();
-                            detail.setName(methodNode.has("name") ? methodNode.get("name").asText() : "");
-                            detail.setBody(methodNode.has("body") ? methodNode.get("body").asText() : "");
-                            detail.setFilePath(methodNode.has("filePath") ? methodNode.get("filePath").asText() : "");
-                            methodDetails.add(detail);
+        // Only methods with callees are stored, as with the generator's output files
+        CallGraph callGraph = analysis.getCallGraph();
+        BulkUpsert<FullCallGraph> fullCallGraphs = fullCallGraphUpsert(projectName, generation);
+        for (int id = 0; id < callGraph.getNodeCount(); id++) {
+            if (callGraph.calleeStart(id) == callGraph.calleeEnd(id)) {
+                continue;
+            }
+            List<String> childMethods = new ArrayList<>();
+            for (int edge = callGraph.calleeStart(id); edge < callGraph.calleeEnd(id); edge++) {
+                childMethods.add(callGraph.nameOf(callGraph.calleeAt(edge)));
+            }
+            fullCallGraphs.add(toFullCallGraph(callGraph.nameOf(id), childMethods, projectName));
+        }
+        int callGraphCount = fullCallGraphs.finish();
+        response.setCallGraphNodesLoaded(callGraphCount);
+        log.info("Loaded {} call graph nodes", callGraphCount);
+
+        response.setSuccess(true);
+        response.setMessage("Data loaded successfully");
+        return response;
+    }
+
+    /**
+     * Stream the controller method bodies file, storing one controller at a time in batches. Controllers that
+     * refer to their bodies by hash go through the body table the file names, which the generator writes ahead
+     * of the controllers.
+     */
+    private int loadControllerMethodBodies(Path filePath, String projectName, long generation) throws IOException {
+        log.debug("Streaming controller method bodies from file: {}", filePath);
+        BulkUpsert<ApiMethodBody> batch = apiMethodBodyUpsert(projectName, generation);
+        BodyTable bodyTable = null;
+
+        try (InputStream in = openOutputFile(filePath); JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object in " + filePath);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("bodyTable".equals(field) && value == JsonToken.VALUE_STRING) {
+                    // Newer generator output refers to bodies by hash in a separate content-addressed table
+                    bodyTable = new BodyTable(filePath.resolveSibling(parser.getText()), batch);
+                } else if ("controllers".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode controller = objectMapper.readTree(parser);
+                        ApiMethodBody apiMethodBody = toApiMethodBody(controller, projectName, bodyTable);
+                        if (bodyTable != null) {
+                            bodyTable.add(apiMethodBody);
+                        } else {
+                            batch.add(apiMethodBody);
                         }
                     }
+                } else if (value == JsonToken.START_ARRAY) {
+                    // Older generator output maps each controller method straight to its methods
+                    List<Map<String, String>> methods = objectMapper.readValue(parser, LEGACY_METHODS);
+                    batch.add(toApiMethodBody(field, methods, projectName));
                 } else {
-                    log.warn("Controller missing methods field");
+                    parser.skipChildren();
                 }
-
-                apiMethodBody.setMethods(methodDetails);
-                apiMethodBodies.add(apiMethodBody);
             }
+        }
+        if (bodyTable != null) {
+            bodyTable.finish();
+        }
+        return batch.finish();
+    }
+
+    /**
+     * @param bodyTable resolves the bodies referred to by hash, or null if the file names no table
+     */
+    private ApiMethodBody toApiMethodBody(JsonNode controller, String projectName, BodyTable bodyTable) {
+        ApiMethodBody apiMethodBody = new ApiMethodBody();
+        // Add null checks before accessing values
+        if (controller.has("controllerMethod")) {
+            apiMethodBody.setControllerMethod(controller.get("controllerMethod").asText());
         } else {
-            // Fall back to original approach for direct map structure
-            try {
-                Map<String, List<Map<String, String>>> methodBodiesMap =
-                        objectMapper.readValue(content, new TypeReference<Map<String, List<Map<String, String>>>>() {});
-
-                for (Map.Entry<String, List<Map<String, String>>> entry : methodBodiesMap.entrySet()) {
-                    ApiMethodBody apiMethodBody = new ApiMethodBody();
-                    apiMethodBody.setControllerMethod(entry.getKey());
-                    apiMethodBody.setProjectName(projectName);
-
-                    List< MethodDetail> methodDetails = new ArrayList<>();
-                    for (Map<String, String> methodMap : entry.getValue()) {
-                         MethodDetail detail = new  MethodDetail();
-                        detail.setName(methodMap.get("name"));
-                        detail.setBody(methodMap.get("body"));
-                        detail.setFilePath(methodMap.get("filePath"));
-                        methodDetails.add(detail);
+            log.warn("Controller missing name field, using placeholder");
+            apiMethodBody.setControllerMethod("unnamed-controller");
+        }
+        apiMethodBody.setProjectName(projectName);
+
+        List<MethodDetail> methodDetails = new ArrayList<>();
+        // Only process methods if they exist
+        if (controller.has("methods")) {
+            JsonNode methods = controller.get("methods");
+
+            if (methods != null && methods.isArray()) {
+                for (JsonNode methodNode : methods) {
+                    MethodDetail detail = new MethodDetail();
+                    detail.setName(methodNode.has("name") ? methodNode.get("name").asText() : "");
+                    if (methodNode.hasNonNull("bodyHash")) {
+                        if (bodyTable != null) {
+                            bodyTable.refer(methodNode.get("bodyHash").asText(), detail);
+                        } else {
+                            detail.setBody("");
+                        }
+                    } else {
+                        detail.setBody(methodNode.has("body") ? methodNode.get("body").asText() : "");
                     }
-                    apiMethodBody.setMethods(methodDetails);
-                    apiMethodBodies.add(apiMethodBody);
+                    detail.setFilePath(methodNode.has("filePath") ? methodNode.get("filePath").asText() : "");
+                    if (methodNode.has("importance")) {
+                        detail.setInstructions(methodNode.get("instructions").asInt());
+                        detail.setImportance(methodNode.get("importance").asDouble());
+                    }
+                    methodDetails.add(detail);
                 }
-            } catch (JsonProcessingException e) {
-                log.error("Error parsing JSON content as Map structure: {}", e.getMessage());
-                throw e;
             }
+        } else {
+            log.warn("Controller missing methods field");
         }
 
-        apiMethodBodyRepository.saveAll(apiMethodBodies);
-        return apiMethodBodies.size();
+        apiMethodBody.setMethods(methodDetails);
+        return apiMethodBody;
+    }
+
+    private ApiMethodBody toApiMethodBody(String controllerMethod, List<Map<String, String>> methods, String projectName) {
+        ApiMethodBody apiMethodBody = new ApiMethodBody();
+        apiMethodBody.setControllerMethod(controllerMethod);
+        apiMethodBody.setProjectName(projectName);
+
+        List<MethodDetail> methodDetails = new ArrayList<>();
+        for (Map<String, String> methodMap : methods) {
+            MethodDetail detail = new MethodDetail();
+            detail.setName(methodMap.get("name"));
+            detail.setBody(methodMap.get("body"));
+            detail.setFilePath(methodMap.get("filePath"));
+            methodDetails.add(detail);
+        }
+        apiMethodBody.setMethods(methodDetails);
+        return apiMethodBody;
     }
 
-    private int loadFullCallGraph(Path filePath, String projectName) throws IOException {
-        String content = Files.readString(filePath);
-        Map<String, List<String>> callGraphMap =
-                objectMapper.readValue(content, new TypeReference<Map<String, List<String>>>() {});
+    /**
+     * Stream the full call graph file, storing one method and its callees at a time in batches
+     */
+    private int loadFullCallGraph(Path filePath, String projectName, long generation) throws IOException {
+        BulkUpsert<FullCallGraph> batch = fullCallGraphUpsert(projectName, generation);
+        try (InputStream in = openOutputFile(filePath); JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object in " + filePath);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String method = parser.currentName();
+                parser.nextToken();
+                List<String> childMethods = objectMapper.readValue(parser, CHILD_METHODS);
+                batch.add(toFullCallGraph(method, childMethods, projectName));
+            }
+        }
+        return batch.finish();
+    }
 
-        List<FullCallGraph> fullCallGraphs = new ArrayList<>();
+    /**
+     * Load the full call graph from the binary file; only methods with callees are stored, as with the JSON file
+     */
+    private int loadFullCallGraphBinary(Path filePath, String projectName, long generation) throws IOException {
+        MappedCallGraph callGraph = MappedCallGraph.open(filePath);
 
-        for (Map.Entry<String, List<String>> entry : callGraphMap.entrySet()) {
-            FullCallGraph fullCallGraph = new FullCallGraph();
-            fullCallGraph.setFullMethodPath(entry.getKey());
-            fullCallGraph.setChildMethods(entry.getValue());
-            fullCallGraph.setProjectName(projectName);
-            fullCallGraphs.add(fullCallGraph);
+        BulkUpsert<FullCallGraph> batch = fullCallGraphUpsert(projectName, generation);
+        for (int id = 0; id < callGraph.getNodeCount(); id++) {
+            if (!callGraph.hasCallees(id)) {
+                continue;
+            }
+            List<String> childMethods = new ArrayList<>();
+            for (int callee : callGraph.getCallees(id)) {
+                childMethods.add(callGraph.nameOf(callee));
+            }
+            batch.add(toFullCallGraph(callGraph.nameOf(id), childMethods, projectName));
         }
+        return batch.finish();
+    }
+
+    private static FullCallGraph toFullCallGraph(String fullMethodPath, List<String> childMethods, String projectName) {
+        FullCallGraph fullCallGraph = new FullCallGraph();
+        fullCallGraph.setFullMethodPath(fullMethodPath);
+        fullCallGraph.setChildMethods(childMethods);
+        fullCallGraph.setProjectName(projectName);
+        return fullCallGraph;
+    }
 
-        fullCallGraphRepository.saveAll(fullCallGraphs);
-        return fullCallGraphs.size();
+    /**
+     * Find a generator output file, which is either plain JSON or gzipped JSON
+     * @param dir the output directory of the generator
+     * @param baseName the file name without extension
+     * @return the .json file if present, otherwise the .json.gz file if present, otherwise the .json path
+     */
+    private Path resolveOutputFile(Path dir, String baseName) {
+        Path json = dir.resolve(baseName + ".json");
+        Path gzipped = dir.resolve(baseName + ".json.gz");
+        return !Files.exists(json) && Files.exists(gzipped) ? gzipped : json;
+    }
+
+    private BulkUpsert<ApiMethodBody> apiMethodBodyUpsert(String projectName, long generation) {
+        return new BulkUpsert<>(ApiMethodBody.class, projectName, generation,
+                apiMethodBody -> Criteria.where("controllerMethod").is(apiMethodBody.getControllerMethod()));
+    }
+
+    private BulkUpsert<FullCallGraph> fullCallGraphUpsert(String projectName, long generation) {
+        return new BulkUpsert<>(FullCallGraph.class, projectName, generation,
+                fullCallGraph -> Criteria.where("fullMethodPath").is(fullCallGraph.getFullMethodPath()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    /**
+     * Open a generator output file for streaming, decompressing it if it is gzipped
+     */
+    private InputStream openOutputFile(Path filePath) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(filePath), 64 * 1024);
+        return filePath.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    /**
+     * The content-addressed method body table written next to the method bodies files. Controllers referring to
+     * it are held back {@code dataloader.batch-size} at a time, and the bodies of a batch are picked out in one
+     * streaming pass over the table, so only the bodies of the batch are ever in memory and not the table.
+     */
+    private final class BodyTable {
+        private final Path filePath;
+        private final BulkUpsert<ApiMethodBody> upsert;
+        private final List<ApiMethodBody> pending = new ArrayList<>();
+        private final Map<String, List<MethodDetail>> unresolved = new HashMap<>(); // by body hash
+        private int resolved;
+        private int passes;
+
+        /**
+         * @param filePath the table file, plain or gzipped
+         * @param upsert stores the controllers once their bodies are resolved
+         */
+        BodyTable(Path filePath, BulkUpsert<ApiMethodBody> upsert) {
+            this.filePath = filePath;
+            this.upsert = upsert;
+        }
+
+        /**
+         * Resolve the body of a method of the controller about to be added
+         */
+        void refer(String hash, MethodDetail detail) {
+            unresolved.computeIfAbsent(hash, h -> new ArrayList<>()).add(detail);
+        }
+
+        void add(ApiMethodBody apiMethodBody) throws IOException {
+            pending.add(apiMethodBody);
+            if (pending.size() == batchSize) {
+                resolve();
+            }
+        }
+
+        /**
+         * Resolve and store the controllers still held back
+         */
+        void finish() throws IOException {
+            resolve();
+            log.info("Read {} method bodies in {} passes over {}", resolved, passes, filePath);
+        }
+
+        private void resolve() throws IOException {
+            if (!unresolved.isEmpty()) {
+                passes++;
+                try (InputStream in = openOutputFile(filePath); JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        throw new IOException("Expected a JSON object in " + filePath);
+                    }
+                    while (!unresolved.isEmpty() && parser.nextToken() == JsonToken.FIELD_NAME) {
+                        List<MethodDetail> details = unresolved.remove(parser.currentName());
+                        parser.nextToken();
+                        if (details != null) {
+                            String body = parser.getText();
+                            details.forEach(detail -> detail.setBody(body));
+                            resolved++;
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                // Hashes missing from the table
+                unresolved.values().forEach(details -> details.forEach(detail -> detail.setBody("")));
+                unresolved.clear();
+            }
+            pending.forEach(upsert::add);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Upserts one generation of a project's documents of one collection, keyed on their natural key, in unordered
+     * bulk writes of {@code dataloader.batch-size} documents submitted to the writer pool. Upserting rather than
+     * inserting lets a generation be written again after a retried batch without duplicating documents.
+     */
+    private final class BulkUpsert<T> {
+        private final Class<T> type;
+        private final String projectName;
+        private final long generation;
+        private final Function<T, Criteria> key;
+        private final Semaphore inFlight = new Semaphore(maxInFlightBatches);
+        private final List<CompletableFuture<Void>> submitted = new ArrayList<>();
+        private List<T> items;
+        private int count;
+
+        /**
+         * @param key the natural key of a document within the project
+         */
+        BulkUpsert(Class<T> type, String projectName, long generation, Function<T, Criteria> key) {
+            this.type = type;
+            this.projectName = projectName;
+            this.generation = generation;
+            this.key = key;
+            this.items = new ArrayList<>(batchSize);
+        }
+
+        void add(T item) {
+            items.add(item);
+            count++;
+            if (items.size() == batchSize) {
+                submit();
+            }
+        }
+
+        /**
+         * Wait for every batch
+         * @return the number of documents written
+         */
+        int finish() {
+            submit();
+            for (CompletableFuture<Void> future : submitted) {
+                join(future);
+            }
+            return count;
+        }
+
+        private void submit() {
+            if (items.isEmpty()) {
+                return;
+            }
+            List<T> batch = items;
+            items = new ArrayList<>(batchSize);
+            // Bounds the documents held in memory by queued batches
+            inFlight.acquireUninterruptibly();
+            try {
+                submitted.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        write(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                }, writers));
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+            // Stop reading input as soon as a batch failed
+            Iterator<CompletableFuture<Void>> iterator = submitted.iterator();
+            while (iterator.hasNext()) {
+                CompletableFuture<Void> future = iterator.next();
+                if (future.isDone()) {
+                    join(future);
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void join(CompletableFuture<Void> future) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        private void write(List<T> batch) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            for (T item : batch) {
+                Document document = new Document();
+                mongoTemplate.getConverter().write(item, document);
+                document.remove("_id");
+                document.put(GENERATION, generation);
+                bulk.replaceOne(Query.query(key.apply(item).and(PROJECT_NAME).is(projectName)
+                                .and(GENERATION).is(generation)), document,
+                        FindAndReplaceOptions.options().upsert());
+            }
+            bulk.execute();
+        }
     }
 }
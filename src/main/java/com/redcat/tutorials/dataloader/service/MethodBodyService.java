@@ -2,7 +2,6 @@ package com.redcat.tutorials.dataloader.service;
 
 import com.redcat.tutorials.dataloader.dto.*;
 import com.redcat.tutorials.dataloader.exception.ControllerMethodNotFoundException;
-import com.redcat.tutorials.dataloader.exception.ProjectNotFoundException;
 import com.redcat.tutorials.dataloader.model.ApiMethodBody;
 import com.redcat.tutorials.dataloader.repository.ApiMethodBodyRepository;
 import lombok.extern.slf4j.Slf4j;
@@ -23,10 +22,13 @@ import java.util.stream.Collectors;
 public class MethodBodyService {
 
     private final ApiMethodBodyRepository apiMethodBodyRepository;
+    private final ProjectGenerationService projectGenerationService;
 
     @Autowired
-    public MethodBodyService(ApiMethodBodyRepository apiMethodBodyRepository) {
+    public MethodBodyService(ApiMethodBodyRepository apiMethodBodyRepository,
+                             ProjectGenerationService projectGenerationService) {
         this.apiMethodBodyRepository = apiMethodBodyRepository;
+        this.projectGenerationService = projectGenerationService;
     }
 
     /**
@@ -38,14 +40,11 @@ public class MethodBodyService {
     public List<MethodBodyResponse> getAllMethodBodiesForProject(String projectName) {
         log.info("Retrieving all method bodies for project: {}", projectName);
 
-        // Check if project exists
-        if (!apiMethodBodyRepository.existsByProjectName(projectName)) {
-            log.warn("Project not found: {}", projectName);
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Check if project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Get all method bodies for the project
-        List<ApiMethodBody> apiMethodBodies = apiMethodBodyRepository.findByProjectName(projectName);
+        List<ApiMethodBody> apiMethodBodies = apiMethodBodyRepository.findByProjectNameAndGeneration(projectName, generation);
 
         // Convert to response DTOs
         return apiMethodBodies.stream()
@@ -69,11 +68,8 @@ public class MethodBodyService {
         log.info("Retrieving paginated method bodies for project: {}, page: {}, size: {}",
                 projectName, page, size);
 
-        // Check if project exists
-        if (!apiMethodBodyRepository.existsByProjectName(projectName)) {
-            log.warn("Project not found: {}", projectName);
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Check if project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Create sort and pageable objects
         Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) ? Sort.Direction.DESC : Sort.Direction.ASC;
@@ -81,7 +77,7 @@ public class MethodBodyService {
         Pageable pageable = PageRequest.of(page, size, sort);
 
         // Get paginated method bodies
-        Page<ApiMethodBody> methodBodiesPage = apiMethodBodyRepository.findByProjectName(projectName, pageable);
+        Page<ApiMethodBody> methodBodiesPage = apiMethodBodyRepository.findByProjectNameAndGeneration(projectName, generation, pageable);
 
         // Convert to response DTOs
         List<MethodBodyResponse> methodBodyResponses = methodBodiesPage.getContent().stream()
@@ -110,14 +106,11 @@ public class MethodBodyService {
     public MethodBodyResponse getMethodBodyForController(String projectName, String controllerMethod) {
         log.info("Retrieving method body for controller: {} in project: {}", controllerMethod, projectName);
 
-        // Check if project exists
-        if (!apiMethodBodyRepository.existsByProjectName(projectName)) {
-            log.warn("Project not found: {}", projectName);
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Check if project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Get method body for the controller
-        return apiMethodBodyRepository.findByProjectNameAndControllerMethod(projectName, controllerMethod)
+        return apiMethodBodyRepository.findByProjectNameAndGenerationAndControllerMethod(projectName, generation, controllerMethod)
                 .map(this::convertToMethodBodyResponse)
                 .orElseThrow(() -> {
                     log.warn("Controller method not found: {} in project: {}", controllerMethod, projectName);
@@ -156,8 +149,22 @@ public class MethodBodyService {
 
 
     public List<ApiMethodBody> getAllTheControllerEndpoints(String projectName) {
-        return apiMethodBodyRepository.findByProjectName(projectName).stream()
-                .collect(Collectors.toList());
+        return projectGenerationService.activeGeneration(projectName)
+                .map(generation -> apiMethodBodyRepository.findByProjectNameAndGeneration(projectName, generation))
+                .orElseGet(List::of);
+    }
+
+    /**
+     * Find a controller method in the active generation of a project
+     *
+     * @param projectName Name of the project
+     * @param controllerMethod Controller method path
+     * @return the method body, or empty if the project or the controller method does not exist
+     */
+    public Optional<ApiMethodBody> findControllerMethod(String projectName, String controllerMethod) {
+        return projectGenerationService.activeGeneration(projectName)
+                .flatMap(generation -> apiMethodBodyRepository
+                        .findByProjectNameAndGenerationAndControllerMethod(projectName, generation, controllerMethod));
     }
 
     private MethodDetailsResponse convertToMethodDetails(ApiMethodBody apiMethodBody) {
@@ -171,14 +178,11 @@ public class MethodBodyService {
     public MethodBodyResponse getAllMethodBodiesForCallGraph(String projectName, String endpointMethod) {
         log.info("Retrieving all method bodies for call graph for project: {}, endpoint: {}", projectName, endpointMethod);
 
-        // Check if project exists
-        if (!apiMethodBodyRepository.existsByProjectName(projectName)) {
-            log.warn("Project not found: {}", projectName);
-            throw new ProjectNotFoundException(projectName);
-        }
+        // Check if project exists, and read the generation its last completed load wrote
+        long generation = projectGenerationService.requireActiveGeneration(projectName);
 
         // Get method bodies for the specified endpoint
-        Optional<List<ApiMethodBody>> apiMethodBodies = apiMethodBodyRepository.findByProjectNameAndControllerMethodLikeIgnoreCase(projectName, "*"+endpointMethod+"*");
+        Optional<List<ApiMethodBody>> apiMethodBodies = apiMethodBodyRepository.findByProjectNameAndGenerationAndControllerMethodLikeIgnoreCase(projectName, generation, "*"+endpointMethod+"*");
 
         // Convert to response DTOs
         return apiMethodBodies.map(apiMethodBody -> {
@@ -205,7 +209,7 @@ public class MethodBodyService {
             return false;
         }
 
-        boolean exists = apiMethodBodyRepository.existsByProjectName(projectName);
+        boolean exists = projectGenerationService.activeGeneration(projectName).isPresent();
 
         if (exists) {
             log.info("Project exists: {}", projectName);
@@ -231,14 +235,14 @@ public class MethodBodyService {
         }
         
         // Check if project exists
-        if (!apiMethodBodyRepository.existsByProjectName(projectName)) {
+        Optional<Long> generation = projectGenerationService.activeGeneration(projectName);
+        if (generation.isEmpty()) {
             log.warn("Project not found when counting endpoints: {}", projectName);
             return 0;
         }
         
-        // Get all controller methods for the project and count them
-        List<ApiMethodBody> apiMethodBodies = apiMethodBodyRepository.findByProjectName(projectName);
-        int count = apiMethodBodies.size();
+        // Count the controller methods of the project
+        int count = (int) apiMethodBodyRepository.countByProjectNameAndGeneration(projectName, generation.get());
         
         log.info("Found {} controller endpoints for project: {}", count, projectName);
         return count;
@@ -0,0 +1,215 @@
+package com.redcat.tutorials.dataloader.service;
+
+import com.redcat.tutorials.dataloader.exception.ProjectNotFoundException;
+import com.redcat.tutorials.dataloader.model.ApiMethodBody;
+import com.redcat.tutorials.dataloader.model.FullCallGraph;
+import com.redcat.tutorials.dataloader.model.ProjectDataset;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps each project's method bodies and call graph in generations. A load writes its documents tagged with a
+ * new generation, next to the active one, and activates it once complete by a single update of the project's
+ * {@link ProjectDataset}; readers only see the active generation, so they never see a half-loaded project and a
+ * failed load leaves the previous one in place. Superseded and abandoned generations are removed in the
+ * background, after a delay that lets readers still holding the old generation finish.
+ */
+@Service
+@Slf4j
+public class ProjectGenerationService {
+
+    private static final String PROJECT_NAME = "projectName";
+    private static final String GENERATION = "generation";
+    private static final String ACTIVE_GENERATION = "activeGeneration";
+    private static final String LAST_GENERATION = "lastGeneration";
+    private static final List<Class<?>> DATASET_TYPES = List.of(ApiMethodBody.class, FullCallGraph.class);
+    // Unique per project, so they reject a second generation of the same method
+    private static final Map<Class<?>, String> LEGACY_INDEXES = Map.of(
+            ApiMethodBody.class, "projectName_controllerMethod",
+            FullCallGraph.class, "projectName_fullMethodPath");
+
+    private final MongoTemplate mongoTemplate;
+    private final long gcDelaySeconds;
+    private final long cacheMillis;
+    private final ScheduledExecutorService collector;
+    private final Map<String, CachedGeneration> cache = new ConcurrentHashMap<>();
+
+    private record CachedGeneration(long generation, long expiresAt) {
+    }
+
+    @Autowired
+    public ProjectGenerationService(
+            MongoTemplate mongoTemplate,
+            @Value("${dataloader.generation-gc-delay-seconds:60}") long gcDelaySeconds,
+            @Value("${dataloader.generation-cache-millis:2000}") long cacheMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.gcDelaySeconds = Math.max(0, gcDelaySeconds);
+        this.cacheMillis = Math.max(0, cacheMillis);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.collector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "generation-collector-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Allocate a new generation of a project for a load to write into
+     * @param projectName Name of the project, created if it has never been loaded
+     * @return the generation, greater than any handed out before
+     */
+    public long begin(String projectName) {
+        ProjectDataset dataset = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(projectName)),
+                new Update().inc(LAST_GENERATION, 1).setOnInsert(ACTIVE_GENERATION, ProjectDataset.NO_GENERATION),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                ProjectDataset.class);
+        long generation = dataset.getLastGeneration();
+        log.info("Loading generation {} of project {}", generation, projectName);
+        return generation;
+    }
+
+    /**
+     * Make a completely written generation the one readers see, and schedule removal of the older ones.
+     * A generation older than the active one is not activated, so of two concurrent loads the later one wins.
+     * @return true if the generation was activated
+     */
+    public boolean activate(String projectName, long generation) {
+        boolean activated = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(projectName).and(ACTIVE_GENERATION).lt(generation)),
+                new Update().set(ACTIVE_GENERATION, generation).set("activatedAt", Instant.now()),
+                ProjectDataset.class).getModifiedCount() > 0;
+        if (!activated) {
+            log.warn("Generation {} of project {} was superseded before it completed", generation, projectName);
+            abandon(projectName, generation);
+            return false;
+        }
+        cache.put(projectName, new CachedGeneration(generation, System.currentTimeMillis() + cacheMillis));
+        log.info("Activated generation {} of project {}", generation, projectName);
+        schedule(projectName, Criteria.where(GENERATION).lt(generation));
+        return true;
+    }
+
+    /**
+     * Schedule removal of a generation whose load failed or was superseded
+     */
+    public void abandon(String projectName, long generation) {
+        log.info("Abandoning generation {} of project {}", generation, projectName);
+        schedule(projectName, Criteria.where(GENERATION).is(generation));
+    }
+
+    /**
+     * The generation readers should query, cached for {@code dataloader.generation-cache-millis}. The cache
+     * expires well before superseded generations are removed, so a reader never queries a removed generation.
+     * @return the active generation, or empty if the project has no completed load
+     */
+    public Optional<Long> activeGeneration(String projectName) {
+        long now = System.currentTimeMillis();
+        CachedGeneration cached = cache.get(projectName);
+        if (cached == null || cached.expiresAt() <= now) {
+            ProjectDataset dataset = mongoTemplate.findById(projectName, ProjectDataset.class);
+            long generation = dataset != null ? dataset.getActiveGeneration() : ProjectDataset.NO_GENERATION;
+            cached = new CachedGeneration(generation, now + cacheMillis);
+            cache.put(projectName, cached);
+        }
+        return cached.generation() == ProjectDataset.NO_GENERATION ? Optional.empty() : Optional.of(cached.generation());
+    }
+
+    /**
+     * @return the active generation of the project
+     * @throws ProjectNotFoundException if the project has no completed load
+     */
+    public long requireActiveGeneration(String projectName) {
+        return activeGeneration(projectName).orElseThrow(() -> {
+            log.warn("Project not found: {}", projectName);
+            return new ProjectNotFoundException(projectName);
+        });
+    }
+
+    /**
+     * @return the active generation of every project with a completed load, by project name
+     */
+    public Map<String, Long> getActiveProjects() {
+        Map<String, Long> projects = new LinkedHashMap<>();
+        for (ProjectDataset dataset : mongoTemplate.find(
+                Query.query(Criteria.where(ACTIVE_GENERATION).gt(ProjectDataset.NO_GENERATION)), ProjectDataset.class)) {
+            projects.put(dataset.getProjectName(), dataset.getActiveGeneration());
+        }
+        return projects;
+    }
+
+    /**
+     * Adopt documents loaded before projects had generations as generation 0 of their project, and drop the
+     * unique indexes that predate generations. Runs while the service is created, so before any load can use it.
+     */
+    @PostConstruct
+    public void migrateLegacyDocuments() {
+        for (Class<?> type : DATASET_TYPES) {
+            dropLegacyIndex(type, LEGACY_INDEXES.get(type));
+            Query legacy = Query.query(Criteria.where(GENERATION).exists(false));
+            for (String projectName : mongoTemplate.findDistinct(legacy, PROJECT_NAME, type, String.class)) {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(projectName)),
+                        new Update().setOnInsert(ACTIVE_GENERATION, 0L).setOnInsert(LAST_GENERATION, 0L)
+                                .setOnInsert("activatedAt", Instant.now()),
+                        ProjectDataset.class);
+            }
+            long migrated = mongoTemplate.updateMulti(legacy, new Update().set(GENERATION, 0L), type).getModifiedCount();
+            if (migrated > 0) {
+                log.info("Moved {} {} documents into generation 0", migrated, type.getSimpleName());
+            }
+        }
+    }
+
+    private void dropLegacyIndex(Class<?> type, String indexName) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(type);
+        if (indexOperations.getIndexInfo().stream().anyMatch(index -> index.getName().equals(indexName))) {
+            indexOperations.dropIndex(indexName);
+            log.info("Dropped index {} of {}, which predates generations", indexName, type.getSimpleName());
+        }
+    }
+
+    private void schedule(String projectName, Criteria generations) {
+        collector.schedule(() -> {
+            try {
+                for (Class<?> type : DATASET_TYPES) {
+                    long removed = mongoTemplate.remove(
+                            Query.query(Criteria.where(PROJECT_NAME).is(projectName).andOperator(generations)), type)
+                            .getDeletedCount();
+                    if (removed > 0) {
+                        log.info("Removed {} {} documents of old generations of project {}",
+                                removed, type.getSimpleName(), projectName);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Left for the next load of the project to remove
+                log.error("Error removing old generations of project {}", projectName, e);
+            }
+        }, gcDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        collector.shutdownNow();
+    }
+}
@@ -2,7 +2,7 @@ package com.redcat.tutorials.embedder.service;
 
 import com.redcat.tutorials.dataloader.model.ApiMethodBody;
 import com.redcat.tutorials.dataloader.model.MethodDetail;
-import com.redcat.tutorials.dataloader.repository.ApiMethodBodyRepository;
+import com.redcat.tutorials.dataloader.service.MethodBodyService;
 import com.redcat.tutorials.embedder.dto.*;
 import com.redcat.tutorials.summariser.model.CodeSummaryContentEntity;
 import com.redcat.tutorials.summariser.model.CodeSummaryContentStatus;
@@ -27,16 +27,16 @@ public class SummaryEmbeddingService {
     private final CodeSummaryContentRepository contentRepo;
     private final CodeSummaryContentStatusRepository contentSummaryRepository;
     private final VectorStore vectorStore;
-    private final ApiMethodBodyRepository apiMethodBodyRepository;
+    private final MethodBodyService methodBodyService;
 
     public SummaryEmbeddingService(CodeSummaryContentRepository contentRepo,
                                    CodeSummaryContentStatusRepository contentSummaryRepository,
                                    VectorStore vectorStore,
-                                   ApiMethodBodyRepository apiMethodBodyRepository) {
+                                   MethodBodyService methodBodyService) {
         this.contentRepo = contentRepo;
         this.contentSummaryRepository = contentSummaryRepository;
         this.vectorStore = vectorStore;
-        this.apiMethodBodyRepository = apiMethodBodyRepository;
+        this.methodBodyService = methodBodyService;
     }
 
     private List<String> chunkText(String text, int maxTokens) {
@@ -129,7 +129,7 @@ public class SummaryEmbeddingService {
                         String controllerMethod = cdOptional.get().getControllerMethod();
                         List<String> filePaths = new ArrayList<>();
                         Set<String> uniqueFilePaths = new HashSet<>();
-                        Optional<ApiMethodBody> apiMethodBodyOptional = apiMethodBodyRepository.findByProjectNameAndControllerMethod(request.getProjectName(), controllerMethod);
+                        Optional<ApiMethodBody> apiMethodBodyOptional = methodBodyService.findControllerMethod(request.getProjectName(), controllerMethod);
                         if(apiMethodBodyOptional.isPresent()) {
                             apiMethodBodyOptional.get().getMethods().parallelStream().map(MethodDetail::getFilePath)
                                     .map(fPath -> fPath.replaceAll(".*/target/classes/(.+)\\.class$", "$1.java"))
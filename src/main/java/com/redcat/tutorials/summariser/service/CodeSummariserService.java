@@ -2,8 +2,6 @@ package com.redcat.tutorials.summariser.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.redcat.tutorials.dataloader.model.ApiMethodBody;
-import com.redcat.tutorials.dataloader.model.MethodDetail;
-import com.redcat.tutorials.dataloader.repository.ApiMethodBodyRepository;
 import com.redcat.tutorials.dataloader.service.MethodBodyService;
 import com.redcat.tutorials.summariser.dto.summary.CodeSummaryStatusResponse;
 import com.redcat.tutorials.summariser.model.CodeSummaryContentEntity;
@@ -41,25 +39,26 @@ public class CodeSummariserService {
     private final CodeSummaryContentRepository contentRepository;
     private final ObjectMapper objectMapper;
     private final MethodBodyService methodBodyService;
-    private final ApiMethodBodyRepository apiMethodBodyRepository;
 
     @Value("${google.api.key}")
     private String apiKey;
 
+    // Tokens of method bodies per prompt; 0 to send every body of the hierarchy
+    @Value("${summariser.prompt.token-budget:100000}")
+    private int promptTokenBudget;
+
     public CodeSummariserService(GoogleGeminiService googleGeminiService,
                                  CodeSummaryStatusRepo codeSummaryStatusRepo,
                                  CodeSummaryContentStatusRepository contentStatusRepository,
                                  CodeSummaryContentRepository contentRepository,
                                  ObjectMapper objectMapper,
-                                 MethodBodyService methodBodyService,
-                                 ApiMethodBodyRepository apiMethodBodyRepository) {
+                                 MethodBodyService methodBodyService) {
         this.googleGeminiService = googleGeminiService;
         this.codeSummaryStatusRepo = codeSummaryStatusRepo;
         this.contentStatusRepository = contentStatusRepository;
         this.contentRepository = contentRepository;
         this.objectMapper = objectMapper;
         this.methodBodyService = methodBodyService;
-        this.apiMethodBodyRepository = apiMethodBodyRepository;
     }
 
     public CodeSummaryStatusResponse summariseCode(String projectName) {
@@ -165,20 +164,17 @@ public class CodeSummariserService {
 
             CodeSummaryContentStatus savedContentStatus = contentStatusRepository.save(contentStatus);
 
-            StringBuilder combinedMethodBody = new StringBuilder();
-
             if(apiMethodBody.getMethods() == null || apiMethodBody.getMethods().isEmpty()) {
                 log.warn("No methods found for controller: {}", controllerMethod);
                 savedContentStatus.setStatus(CodeSummaryStatus.FINISHED);
                 contentStatusRepository.save(savedContentStatus);
                 return Mono.empty();
             }
-            for (MethodDetail method : apiMethodBody.getMethods()) {
-                combinedMethodBody.append("Method: ").append(method.getName()).append("\n");
-                combinedMethodBody.append("```\n").append(method.getBody()).append("\n```\n\n");
-            }
 
-            String prompt = preparePromptForCodeSummary(controllerMethod, combinedMethodBody.toString());
+            // Most important method bodies first, within the prompt token budget
+            String combinedMethodBody = MethodBodySelector.combine(apiMethodBody.getMethods(), promptTokenBudget);
+
+            String prompt = preparePromptForCodeSummary(controllerMethod, combinedMethodBody);
 
             return googleGeminiService.generateContent(apiKey, prompt)
                     .flatMap(response -> {
@@ -314,7 +310,7 @@ public class CodeSummariserService {
             contentStatusRepository.save(failedContent);
 
             // Find the method body for this controller method
-            Optional<ApiMethodBody> apiMethodBodyOpt = apiMethodBodyRepository.findByProjectNameAndControllerMethod(
+            Optional<ApiMethodBody> apiMethodBodyOpt = methodBodyService.findControllerMethod(
                     contentProjectName, controllerMethod);
 
             if (apiMethodBodyOpt.isEmpty()) {
@@ -326,15 +322,11 @@ public class CodeSummariserService {
 
             ApiMethodBody apiMethodBody = apiMethodBodyOpt.get();
 
-            // Combine all method bodies into a single string
-            StringBuilder combinedMethodBody = new StringBuilder();
-            for (MethodDetail method : apiMethodBody.getMethods()) {
-                combinedMethodBody.append("Method: ").append(method.getName()).append("\n");
-                combinedMethodBody.append("```\n").append(method.getBody()).append("\n```\n\n");
-            }
+            // Combine the method bodies into a single string, most important first within the budget
+            String combinedMethodBody = MethodBodySelector.combine(apiMethodBody.getMethods(), promptTokenBudget);
 
             // Generate the prompt for this endpoint
-            String prompt = preparePromptForCodeSummary(controllerMethod, combinedMethodBody.toString());
+            String prompt = preparePromptForCodeSummary(controllerMethod, combinedMethodBody);
 
             // Call Gemini API to generate the summary in a reactive way (no blocking)
             // Call Gemini API to generate the summary in a non-blocking way
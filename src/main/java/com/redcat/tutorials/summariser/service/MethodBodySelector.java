@@ -0,0 +1,79 @@
+package com.redcat.tutorials.summariser.service;
+
+import com.redcat.tutorials.dataloader.model.MethodDetail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds the method listing of a summary prompt within a token budget.
+ * Bodies are included in order of the importance the generator estimated for each method (estimated calls
+ * per request times bytecode size), the entry method always first, until the budget is spent. Every method
+ * is still listed in call order; those that did not fit are named without their body, so the model sees
+ * the whole hierarchy. Tokens are approximated as {@value #CHARS_PER_TOKEN} characters each.
+ */
+public final class MethodBodySelector {
+
+    public static final int CHARS_PER_TOKEN = 4;
+
+    private MethodBodySelector() {
+    }
+
+    /**
+     * @param methods the methods of an endpoint hierarchy, in call order, entry method first
+     * @param tokenBudget the most tokens the listing may take; 0 or less for no limit
+     * @return the listing to put into the prompt
+     */
+    public static String combine(List<MethodDetail> methods, int tokenBudget) {
+        boolean[] included = new boolean[methods.size()];
+        if (tokenBudget <= 0) {
+            Arrays.fill(included, true);
+        } else {
+            // Names are always listed, so they are paid for first
+            long remaining = (long) tokenBudget * CHARS_PER_TOKEN;
+            for (MethodDetail method : methods) {
+                remaining -= omittedEntry(method).length();
+            }
+            List<Integer> ranked = new ArrayList<>();
+            for (int i = 0; i < methods.size(); i++) {
+                ranked.add(i);
+            }
+            // Stable sort: without importances (older generator output) call order decides
+            ranked.sort(Comparator.comparing((Integer i) -> i == 0 ? Double.MAX_VALUE : importance(methods.get(i))).reversed());
+            for (int i : ranked) {
+                MethodDetail method = methods.get(i);
+                int extra = entry(method).length() - omittedEntry(method).length();
+                if (extra <= remaining) {
+                    included[i] = true;
+                    remaining -= extra;
+                }
+            }
+        }
+
+        StringBuilder combined = new StringBuilder();
+        int omitted = 0;
+        for (int i = 0; i < methods.size(); i++) {
+            combined.append(included[i] ? entry(methods.get(i)) : omittedEntry(methods.get(i)));
+            omitted += included[i] ? 0 : 1;
+        }
+        if (omitted > 0) {
+            combined.append("(").append(omitted).append(" of ").append(methods.size())
+                    .append(" method bodies omitted to fit the prompt budget)\n");
+        }
+        return combined.toString();
+    }
+
+    private static double importance(MethodDetail method) {
+        return method.getImportance() != null ? method.getImportance() : 0;
+    }
+
+    private static String entry(MethodDetail method) {
+        return "Method: " + method.getName() + "\n```\n" + method.getBody() + "\n```\n\n";
+    }
+
+    private static String omittedEntry(MethodDetail method) {
+        return "Method: " + method.getName() + " (body omitted)\n\n";
+    }
+}
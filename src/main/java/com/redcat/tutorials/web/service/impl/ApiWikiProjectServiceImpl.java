@@ -1,6 +1,7 @@
 package com.redcat.tutorials.web.service.impl;
 
 import com.redcat.tutorials.dataloader.repository.ApiMethodBodyRepository;
+import com.redcat.tutorials.dataloader.service.ProjectGenerationService;
 import com.redcat.tutorials.summariser.model.CodeSummaryContentEntity;
 import com.redcat.tutorials.summariser.model.CodeSummaryContentStatus;
 import com.redcat.tutorials.summariser.model.CodeSummaryStatus;
@@ -10,7 +11,6 @@ import com.redcat.tutorials.web.model.CodeSummaryResponseDto;
 import com.redcat.tutorials.web.model.ProjectDto;
 import com.redcat.tutorials.web.service.ApiWikiProjectService;
 import org.springframework.stereotype.Service;
-import com.redcat.tutorials.dataloader.model.ApiMethodBody;
 
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -26,22 +26,22 @@ public class ApiWikiProjectServiceImpl implements ApiWikiProjectService {
 
     private final CodeSummaryContentRepository codeSummaryContentRepository;
 
+    private final ProjectGenerationService projectGenerationService;
+
     public ApiWikiProjectServiceImpl(ApiMethodBodyRepository apiMethodBodyRepository,
                                      CodeSummaryContentStatusRepository codeSummaryContentStatusRepository,
-                                     CodeSummaryContentRepository codeSummaryContentRepository) {
+                                     CodeSummaryContentRepository codeSummaryContentRepository,
+                                     ProjectGenerationService projectGenerationService) {
         this.apiMethodBodyRepository = apiMethodBodyRepository;
         this.codeSummaryContentStatusRepository = codeSummaryContentStatusRepository;
         this.codeSummaryContentRepository = codeSummaryContentRepository;
+        this.projectGenerationService = projectGenerationService;
     }
 
     @Override
     public List<ProjectDto> getAllProjects() {
-        // Fetch all ApiMethodBody entries
-        List<ApiMethodBody> allApiMethods = apiMethodBodyRepository.findAllWithoutMethods();
-        // Group by projectName and map to ProjectDto
-        return allApiMethods.stream()
-                .collect(Collectors.groupingBy(ApiMethodBody::getProjectName))
-                .entrySet().stream()
+        // Count the ApiMethodBody entries of each project's active generation and map to ProjectDto
+        return projectGenerationService.getActiveProjects().entrySet().stream()
                 .map(entry -> ProjectDto.builder()
                         .name(entry.getKey())
                         .description("") // No description in model
@@ -49,7 +49,7 @@ public class ApiWikiProjectServiceImpl implements ApiWikiProjectService {
                         .createdAt("") // No createdAt in model
                         .updatedAt("") // No updatedAt in model
                         .gitUrl("") // No gitUrl in model
-                        .totalApis(entry.getValue().size())
+                        .totalApis((int) apiMethodBodyRepository.countByProjectNameAndGeneration(entry.getKey(), entry.getValue()))
                         .build())
                 .collect(Collectors.toList());
     }
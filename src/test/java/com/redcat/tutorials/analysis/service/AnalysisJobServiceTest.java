@@ -0,0 +1,104 @@
+package com.redcat.tutorials.analysis.service;
+
+import com.redcat.tutorials.analysis.dto.AnalysisJobRequest;
+import com.redcat.tutorials.analysis.dto.AnalysisJobResponse;
+import com.redcat.tutorials.callgraphgenerator.CallGraphAnalysis;
+import com.redcat.tutorials.dataloader.dto.LoadDataResponse;
+import com.redcat.tutorials.dataloader.service.DataLoaderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnalysisJobServiceTest {
+
+    @TempDir
+    File tempDir;
+
+    private DataLoaderService dataLoaderService;
+    private SimpleMeterRegistry meterRegistry;
+    private AnalysisJobService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // One class with one call, enough for the analysis to run through every phase
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "com/acme/App", null, "java/lang/Object", null);
+        MethodVisitor run = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+        run.visitCode();
+        run.visitMethodInsn(Opcodes.INVOKESTATIC, "com/acme/App", "run", "()V", false);
+        run.visitInsn(Opcodes.RETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+        writer.visitEnd();
+        File classFile = new File(tempDir, "classes/com/acme/App.class");
+        classFile.getParentFile().mkdirs();
+        Files.write(classFile.toPath(), writer.toByteArray());
+
+        dataLoaderService = mock(DataLoaderService.class);
+        when(dataLoaderService.loadAnalysis(any(CallGraphAnalysis.class), eq("shop")))
+                .thenReturn(new LoadDataResponse(true, "Data loaded successfully"));
+        meterRegistry = new SimpleMeterRegistry();
+        service = new AnalysisJobService(dataLoaderService, meterRegistry, 1, 4, 1, 10, "");
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private AnalysisJobResponse runJob() throws InterruptedException {
+        String id = service.submit(new AnalysisJobRequest(new File(tempDir, "classes").getPath(), "shop", null, null, null)).getId();
+        for (int i = 0; i < 600; i++) {
+            AnalysisJobResponse job = service.getJob(id);
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Analysis job did not finish");
+    }
+
+    @Test
+    void finishesJobWhoseResultsWereLoaded() throws Exception {
+        AnalysisJobResponse job = runJob();
+        assertThat(job.getStatus()).isEqualTo("FINISHED");
+        assertThat(job.getCompletedPhases()).isEqualTo(job.getTotalPhases());
+        assertThat(meterRegistry.find(AnalysisJobService.METRIC_PREFIX + ".peak.heap").tag("project", "shop")
+                .summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void leavesHeapAndGcOutWithConcurrentWorkers() throws Exception {
+        service.shutdown();
+        service = new AnalysisJobService(dataLoaderService, meterRegistry, 2, 4, 1, 10, "");
+
+        assertThat(runJob().getStatus()).isEqualTo("FINISHED");
+        assertThat(meterRegistry.find(AnalysisJobService.METRIC_PREFIX + ".duration").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.find(AnalysisJobService.METRIC_PREFIX + ".peak.heap").meter()).isNull();
+        assertThat(meterRegistry.find(AnalysisJobService.METRIC_PREFIX + ".gc").meter()).isNull();
+    }
+
+    @Test
+    void failsJobWhoseLoadWasSuperseded() throws Exception {
+        when(dataLoaderService.loadAnalysis(any(CallGraphAnalysis.class), eq("shop")))
+                .thenReturn(new LoadDataResponse(false, "A later load of project shop completed first"));
+
+        AnalysisJobResponse job = runJob();
+        assertThat(job.getStatus()).isEqualTo("FAILED");
+        assertThat(job.getMessage()).isEqualTo("A later load of project shop completed first");
+    }
+}
@@ -0,0 +1,105 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassFactsCodecTest {
+
+    @TempDir
+    File tempDir;
+
+    private static ClassFacts sampleFacts() {
+        ClassFacts.MethodFacts getter = new ClassFacts.MethodFacts("getName", "()Ljava/lang/String;", Opcodes.ACC_PUBLIC);
+        getter.trivialKind = MethodFilterVisitor.Kind.GETTER;
+        getter.instructionCount = 3;
+
+        ClassFacts.MethodFacts handler = new ClassFacts.MethodFacts("list", "(I)Ljava/util/List;", Opcodes.ACC_PUBLIC);
+        handler.instructionCount = 42;
+        handler.annotations.add("Lorg/springframework/web/bind/annotation/GetMapping;");
+        handler.instantiations.add("java/util/ArrayList");
+        handler.calls.add(new ClassFacts.CallSite(Opcodes.INVOKEINTERFACE, "com/acme/service/UserService", "findAll",
+                "()Ljava/util/List;", 0));
+        handler.calls.add(new ClassFacts.CallSite(Opcodes.INVOKEVIRTUAL, "com/acme/Mapper", "map",
+                "(Ljava/lang/Object;)Ljava/lang/Object;", 255));
+
+        return new ClassFacts("com.acme.web.UserController", null, List.of("com/acme/web/Api"), Opcodes.ACC_PUBLIC,
+                List.of("Lorg/springframework/web/bind/annotation/RestController;"), "UserController.java",
+                "/build/classes/com/acme/web/UserController.class", List.of(getter, handler),
+                List.of(new EndpointDetector.Endpoint("GET", "/users/{id}", "com.acme.web.UserController.list(int)")));
+    }
+
+    private static ClassFacts roundTrip(ClassFacts facts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            ClassFactsCodec.write(out, facts);
+        }
+        return ClassFactsCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static void assertSameFacts(ClassFacts actual, ClassFacts expected) {
+        assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+    }
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        ClassFacts facts = sampleFacts();
+
+        ClassFacts read = roundTrip(facts);
+
+        assertSameFacts(read, facts);
+        assertThat(read.superName).isNull();
+        assertThat(read.methods.get(0).trivialKind).isEqualTo(MethodFilterVisitor.Kind.GETTER);
+        assertThat(read.methods.get(1).trivialKind).isNull();
+        assertThat(read.methods.get(1).calls.get(1).loopDepth).isEqualTo(255);
+    }
+
+    @Test
+    void roundTripsStringsBeyondWriteUtfLimit() throws IOException {
+        String longName = "é中".repeat(40_000); // over 64 KB of UTF-8
+        ClassFacts facts = new ClassFacts(longName, "java/lang/Object", List.of(), 0, List.of(), null, "x.class",
+                List.of(), List.of());
+
+        assertThat(roundTrip(facts).className).isEqualTo(longName);
+    }
+
+    @Test
+    void snapshotSurvivesSaveAndLoad() throws IOException {
+        File file = new File(tempDir, AnalysisSnapshot.FILE_NAME);
+        AnalysisSnapshot snapshot = new AnalysisSnapshot();
+        byte[] hash = {1, 2, 3, 4};
+        snapshot.put("com/acme/web/UserController.class", hash, sampleFacts());
+        snapshot.save(file);
+
+        AnalysisSnapshot loaded = AnalysisSnapshot.load(file);
+
+        assertThat(loaded.getPaths()).containsExactly("com/acme/web/UserController.class");
+        AnalysisSnapshot.Entry entry = loaded.get("com/acme/web/UserController.class");
+        assertThat(entry.contentHash).isEqualTo(hash);
+        assertSameFacts(entry.facts, sampleFacts());
+    }
+
+    @Test
+    void snapshotOfAnotherVersionLoadsEmpty() throws IOException {
+        File file = new File(tempDir, AnalysisSnapshot.FILE_NAME);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(0x43475350);
+            out.writeInt(-1);
+        }
+
+        assertThat(AnalysisSnapshot.load(file).size()).isZero();
+        assertThat(AnalysisSnapshot.load(new File(tempDir, "missing")).size()).isZero();
+    }
+}
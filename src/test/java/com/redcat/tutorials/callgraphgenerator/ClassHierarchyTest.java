@@ -0,0 +1,157 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClassHierarchyTest {
+
+    private static final int INTERFACE = Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT;
+    private static final int ABSTRACT = Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT;
+    private static final String REPOSITORY = "Lorg/springframework/stereotype/Repository;";
+    private static final String COMPONENT = "Lorg/springframework/stereotype/Component;";
+    private static final String CONFIGURATION = "Lorg/springframework/context/annotation/Configuration;";
+    private static final String SAVE = "(Ljava/lang/String;)V";
+
+    private static ClassFacts.MethodFacts method(String name, String descriptor, int access) {
+        return new ClassFacts.MethodFacts(name, descriptor, access);
+    }
+
+    private static ClassFacts.MethodFacts method(String name, String descriptor) {
+        return method(name, descriptor, Opcodes.ACC_PUBLIC);
+    }
+
+    private static ClassFacts type(String name, String superName, List<String> interfaces, int access,
+                                   List<String> annotations, ClassFacts.MethodFacts... methods) {
+        return new ClassFacts(name, superName, interfaces, access, annotations, null, name.replace('.', '/') + ".class",
+                new ArrayList<>(List.of(methods)), List.of());
+    }
+
+    private static ClassFacts concrete(String name, String superName, List<String> interfaces, List<String> annotations,
+                                       ClassFacts.MethodFacts... methods) {
+        return type(name, superName, interfaces, Opcodes.ACC_PUBLIC, annotations, methods);
+    }
+
+    /**
+     * Store is implemented by a repository, by a class nothing creates and, through inheritance, by a subclass
+     * of the repository; Job is created with new and inherits from an abstract base; Person inherits a default
+     * method; Task implements a JDK interface; OrderRepository has no implementation at all.
+     */
+    private static List<ClassFacts> classes() {
+        ClassFacts.MethodFacts scheduler = method("schedule", "()V");
+        scheduler.instantiations.add("com.acme.Job");
+        return List.of(
+                type("com.acme.Store", "java.lang.Object", List.of(), INTERFACE, List.of(),
+                        method("save", SAVE, ABSTRACT)),
+                concrete("com.acme.SqlStore", "java.lang.Object", List.of("com.acme.Store"), List.of(REPOSITORY),
+                        method("save", SAVE)),
+                concrete("com.acme.MemoryStore", "java.lang.Object", List.of("com.acme.Store"), List.of(),
+                        method("save", SAVE)),
+                concrete("com.acme.CachingStore", "com.acme.SqlStore", List.of(), List.of()),
+                type("com.acme.Base", "java.lang.Object", List.of(), ABSTRACT, List.of(),
+                        method("run", "()V", ABSTRACT), method("helper", "()V")),
+                concrete("com.acme.Job", "com.acme.Base", List.of(), List.of(), method("run", "()V")),
+                concrete("com.acme.Scheduler", "java.lang.Object", List.of(), List.of(COMPONENT), scheduler),
+                type("com.acme.Named", "java.lang.Object", List.of(), INTERFACE, List.of(),
+                        method("name", "()Ljava/lang/String;")),
+                concrete("com.acme.Person", "java.lang.Object", List.of("com.acme.Named"), List.of(COMPONENT)),
+                concrete("com.acme.Task", "java.lang.Object", List.of("java.lang.Runnable"), List.of(COMPONENT),
+                        method("run", "()V")),
+                type("com.acme.OrderRepository", "java.lang.Object", List.of(), INTERFACE, List.of(),
+                        method("findAll", "()Ljava/util/List;", ABSTRACT)));
+    }
+
+    private static ClassFacts.CallSite call(int opcode, String owner, String name, String descriptor) {
+        return new ClassFacts.CallSite(opcode, owner, name, descriptor, 0);
+    }
+
+    @Test
+    void resolvesInterfaceCallsToEveryImplementation() {
+        ClassHierarchy hierarchy = new ClassHierarchy(classes(), false);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEINTERFACE, "com.acme.Store", "save", SAVE)))
+                .containsExactlyInAnyOrder("com.acme.SqlStore.save(java.lang.String)", "com.acme.MemoryStore.save(java.lang.String)");
+        // CachingStore runs the method it inherits
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEVIRTUAL, "com.acme.CachingStore", "save", SAVE)))
+                .containsExactly("com.acme.SqlStore.save(java.lang.String)");
+        assertThat(hierarchy.getSubtypes("com.acme.Store"))
+                .containsExactlyInAnyOrder("com.acme.SqlStore", "com.acme.MemoryStore", "com.acme.CachingStore");
+    }
+
+    @Test
+    void rapidTypeAnalysisDropsClassesNeverInstantiated() {
+        ClassHierarchy hierarchy = new ClassHierarchy(classes(), true);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEINTERFACE, "com.acme.Store", "save", SAVE)))
+                .containsExactly("com.acme.SqlStore.save(java.lang.String)");
+        assertThat(hierarchy.getPrunedTargets()).isEqualTo(1);
+        // Created with new by Scheduler
+        assertThat(hierarchy.isInstantiated("com.acme.Job")).isTrue();
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEVIRTUAL, "com.acme.Base", "run", "()V")))
+                .containsExactly("com.acme.Job.run()");
+    }
+
+    @Test
+    void keepsAllTargetsWhenNoneIsInstantiated() {
+        List<ClassFacts> classes = new ArrayList<>(classes());
+        classes.removeIf(classFacts -> classFacts.className.equals("com.acme.SqlStore"));
+        classes.add(concrete("com.acme.SqlStore", "java.lang.Object", List.of("com.acme.Store"), List.of(),
+                method("save", SAVE)));
+        ClassHierarchy hierarchy = new ClassHierarchy(classes, true);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEINTERFACE, "com.acme.Store", "save", SAVE)))
+                .containsExactlyInAnyOrder("com.acme.SqlStore.save(java.lang.String)", "com.acme.MemoryStore.save(java.lang.String)");
+        assertThat(hierarchy.getPrunedTargets()).isZero();
+    }
+
+    @Test
+    void beanMethodsInstantiateEverySubtypeOfTheirReturnType() {
+        ClassFacts.MethodFacts bean = method("store", "()Lcom/acme/Store;");
+        bean.annotations.add("Lorg/springframework/context/annotation/Bean;");
+        List<ClassFacts> classes = new ArrayList<>(classes());
+        classes.add(concrete("com.acme.StoreConfiguration", "java.lang.Object", List.of(), List.of(CONFIGURATION), bean));
+        ClassHierarchy hierarchy = new ClassHierarchy(classes, true);
+
+        assertThat(hierarchy.isInstantiated("com.acme.MemoryStore")).isTrue();
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEINTERFACE, "com.acme.Store", "save", SAVE)))
+                .containsExactlyInAnyOrder("com.acme.SqlStore.save(java.lang.String)", "com.acme.MemoryStore.save(java.lang.String)");
+    }
+
+    @Test
+    void resolvesStaticAndSuperCallsToTheInheritedDeclaration() {
+        ClassHierarchy hierarchy = new ClassHierarchy(classes(), true);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKESPECIAL, "com.acme.Job", "helper", "()V")))
+                .containsExactly("com.acme.Base.helper()");
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKESPECIAL, "com.acme.Job", "<init>", "()V")))
+                .containsExactly("com.acme.Job.<init>()");
+    }
+
+    @Test
+    void resolvesInheritedDefaultMethods() {
+        ClassHierarchy hierarchy = new ClassHierarchy(classes(), true);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEVIRTUAL, "com.acme.Person", "name", "()Ljava/lang/String;")))
+                .containsExactly("com.acme.Named.name()");
+    }
+
+    @Test
+    void libraryTypesAlsoReachScannedOverrides() {
+        ClassHierarchy hierarchy = new ClassHierarchy(classes(), true);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEINTERFACE, "java.lang.Runnable", "run", "()V")))
+                .containsExactlyInAnyOrder("java.lang.Runnable.run()", "com.acme.Task.run()");
+    }
+
+    @Test
+    void fallsBackToTheAbstractDeclaration() {
+        ClassHierarchy hierarchy = new ClassHierarchy(classes(), true);
+
+        assertThat(hierarchy.resolve(call(Opcodes.INVOKEINTERFACE, "com.acme.OrderRepository", "findAll", "()Ljava/util/List;")))
+                .containsExactly("com.acme.OrderRepository.findAll()");
+    }
+}
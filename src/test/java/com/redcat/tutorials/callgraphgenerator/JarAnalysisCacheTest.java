@@ -0,0 +1,137 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JarAnalysisCacheTest {
+
+    private static final String LOCATION = "/deps/acme-core.jar";
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * A class whose run() calls run() of the given class, or nothing
+     */
+    private static byte[] type(String internalName, String callee) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+        MethodVisitor run = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+        run.visitCode();
+        if (callee != null) {
+            run.visitMethodInsn(Opcodes.INVOKESTATIC, callee, "run", "()V", false);
+        }
+        run.visitInsn(Opcodes.RETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * The classes outside com.acme.core come first, so linking that package skips their entries before reading
+     */
+    private static Map<String, byte[]> classes() {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("org/lib/Thing", type("org/lib/Thing", null));
+        classes.put("com/acme/other/Helper", type("com/acme/other/Helper", "org/lib/Thing"));
+        classes.put("com/acme/core/Util", type("com/acme/core/Util", "com/acme/other/Helper"));
+        return classes;
+    }
+
+    private static byte[] jar(Map<String, byte[]> classes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.closeEntry();
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ScanShard link(JarAnalysisCache cache, byte[] jar, List<String> packages) throws IOException {
+        ScanShard shard = new ScanShard();
+        cache.link(LOCATION, jar, jar.length, packages, shard);
+        return shard;
+    }
+
+    @Test
+    void linksRequestedPackagesFromCachedEntry() throws IOException {
+        Map<String, byte[]> classes = classes();
+        byte[] jar = jar(classes);
+        JarAnalysisCache cache = new JarAnalysisCache(tempDir);
+
+        ScanShard analyzed = link(cache, jar, List.of("com.acme.core"));
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(tempDir.listFiles((dir, name) -> name.endsWith(".jarfacts"))).hasSize(1);
+
+        // Read back by another run; the skipped classes' bytes must be stepped over exactly
+        JarAnalysisCache later = new JarAnalysisCache(tempDir);
+        ScanShard linked = link(later, jar, List.of("com.acme.core"));
+        assertThat(later.getHits()).isEqualTo(1);
+        assertThat(later.getMisses()).isZero();
+        for (ScanShard shard : List.of(analyzed, linked)) {
+            assertThat(shard.getLibraryClasses()).hasSize(1);
+            ClassFacts util = shard.getLibraryClasses().get(0);
+            assertThat(util.className).isEqualTo("com.acme.core.Util");
+            assertThat(util.classFile).isEqualTo(LOCATION + "!/com/acme/core/Util.class");
+            assertThat(util.methods.get(0).calls).extracting(call -> call.owner).containsExactly("com.acme.other.Helper");
+            assertThat(shard.getClassBytes().get("com.acme.core.Util")).isEqualTo(classes.get("com/acme/core/Util"));
+        }
+    }
+
+    @Test
+    void linksEveryClassWithoutPackages() throws IOException {
+        Map<String, byte[]> classes = classes();
+        byte[] jar = jar(classes);
+        link(new JarAnalysisCache(tempDir), jar, List.of());
+
+        ScanShard linked = link(new JarAnalysisCache(tempDir), jar, List.of());
+        assertThat(linked.getLibraryClasses()).extracting(facts -> facts.className)
+                .containsExactlyInAnyOrder("org.lib.Thing", "com.acme.other.Helper", "com.acme.core.Util");
+        assertThat(linked.getClassBytes().get("org.lib.Thing")).isEqualTo(classes.get("org/lib/Thing"));
+    }
+
+    @Test
+    void skipsJarsWithoutRequestedPackages() throws IOException {
+        byte[] jar = jar(classes());
+        link(new JarAnalysisCache(tempDir), jar, List.of("com.acme"));
+
+        JarAnalysisCache later = new JarAnalysisCache(tempDir);
+        assertThat(link(later, jar, List.of("net.other")).getClassCount()).isZero();
+        assertThat(later.getHits()).isEqualTo(1);
+        assertThat(later.getLinkedClasses()).isZero();
+    }
+
+    @Test
+    void replacesUnreadableEntry() throws IOException {
+        byte[] jar = jar(classes());
+        link(new JarAnalysisCache(tempDir), jar, List.of());
+        File entry = tempDir.listFiles((dir, name) -> name.endsWith(".jarfacts"))[0];
+        Files.write(entry.toPath(), new byte[]{1, 2, 3});
+
+        JarAnalysisCache later = new JarAnalysisCache(tempDir);
+        assertThat(link(later, jar, List.of("com.acme")).getClassCount()).isEqualTo(2);
+        assertThat(later.getMisses()).isEqualTo(1);
+        assertThat(link(new JarAnalysisCache(tempDir), jar, List.of("com.acme")).getClassCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,116 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JarClassSourceTest {
+
+    @TempDir
+    File tempDir;
+
+    private byte[] libraryJar;
+
+    /**
+     * The source only hands class bytes on, so any content identifies an entry
+     */
+    private static byte[] content(String name) {
+        return ("bytes of " + name).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(content(name));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private File bootJar() throws IOException {
+        libraryJar = zip("com/acme/core/Util.class", "org/other/Lib.class", "META-INF/MANIFEST.MF");
+        File jar = new File(tempDir, "app.jar");
+        try (OutputStream out = Files.newOutputStream(jar.toPath()); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (String name : List.of("META-INF/MANIFEST.MF", "org/springframework/boot/loader/launch/JarLauncher.class",
+                    "BOOT-INF/classes/com/acme/App.class", "BOOT-INF/classes/com/acme/web/OrderController.class",
+                    "BOOT-INF/classes/application.properties")) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(content(name));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("BOOT-INF/lib/acme-core.jar"));
+            zip.write(libraryJar);
+            zip.closeEntry();
+        }
+        return jar;
+    }
+
+    /**
+     * @return the bytes of every class passed on, by relative path, with their class file location checked
+     */
+    private static Map<String, byte[]> classes(ClassSource source) throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        source.forEachClass((classFile, relativePath, buffer, length) -> {
+            assertThat(classFile).startsWith(source.getLocation() + "!/").endsWith(relativePath);
+            classes.put(relativePath, Arrays.copyOf(buffer, length));
+        });
+        return classes;
+    }
+
+    @Test
+    void readsOnlyApplicationClassesOfBootJar() throws IOException {
+        Map<String, byte[]> classes = classes(new JarClassSource(bootJar(), List.of()));
+
+        assertThat(classes).containsOnlyKeys("com/acme/App.class", "com/acme/web/OrderController.class");
+        assertThat(classes.get("com/acme/App.class")).isEqualTo(content("BOOT-INF/classes/com/acme/App.class"));
+    }
+
+    @Test
+    void streamsAllowedPackagesOfNestedLibraryJars() throws IOException {
+        Map<String, byte[]> classes = classes(new JarClassSource(bootJar(), List.of("com.acme.core")));
+
+        assertThat(classes).containsOnlyKeys("com/acme/App.class", "com/acme/web/OrderController.class",
+                "BOOT-INF/lib/acme-core.jar!/com/acme/core/Util.class");
+        assertThat(classes.get("BOOT-INF/lib/acme-core.jar!/com/acme/core/Util.class"))
+                .isEqualTo(content("com/acme/core/Util.class"));
+    }
+
+    @Test
+    void handsLibraryJarsToConsumerWhole() throws IOException {
+        JarClassSource source = new JarClassSource(bootJar(), List.of("com.acme.core"));
+        Map<String, byte[]> jars = new LinkedHashMap<>();
+        source.setLibraryJarConsumer((location, buffer, length) -> jars.put(location, Arrays.copyOf(buffer, length)));
+
+        assertThat(classes(source)).containsOnlyKeys("com/acme/App.class", "com/acme/web/OrderController.class");
+        assertThat(jars).containsOnlyKeys(source.getLocation() + "!/BOOT-INF/lib/acme-core.jar");
+        assertThat(jars.values().iterator().next()).isEqualTo(libraryJar);
+    }
+
+    @Test
+    void readsEveryClassOfPlainJar() throws IOException {
+        File jar = new File(tempDir, "plain.jar");
+        Files.write(jar.toPath(), zip("META-INF/MANIFEST.MF", "META-INF/versions/17/com/acme/Util.class",
+                "module-info.class", "com/acme/Util.class", "com/acme/Util$Inner.class"));
+
+        ClassSource source = ClassSource.open(jar);
+        assertThat(source).isInstanceOf(JarClassSource.class);
+        assertThat(classes(source)).containsOnlyKeys("com/acme/Util.class", "com/acme/Util$Inner.class");
+    }
+}
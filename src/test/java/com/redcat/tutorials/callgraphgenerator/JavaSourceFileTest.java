@@ -0,0 +1,181 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JavaSourceFileTest {
+
+    /**
+     * Braces, parentheses and quotes turn up in comments, literals and annotation arguments; none of them may
+     * throw the member boundaries off
+     */
+    private static final String SOURCE = """
+            package com.acme;
+
+            import java.util.List;
+            import java.util.Map;
+
+            /**
+             * Serves orders { and quotes " in a comment
+             */
+            @RestController
+            @RequestMapping(value = "/orders", produces = {"application/json"})
+            public class OrderController {
+
+                private static final String QUERY = \"""
+                        select * from orders where note = "}" and id = '{' -- )
+                        \""";
+                private final Map<String, List<Integer>> totals = Map.of();
+                private final Runnable task = new Runnable() {
+                    public void run() {
+                        System.out.println("anonymous");
+                    }
+                };
+
+                static {
+                    System.out.println("{ initializer");
+                }
+
+                public OrderController() {
+                    this(0);
+                }
+
+                public OrderController(int size) {
+                    // only a comment }
+                }
+
+                @GetMapping(value = "/{id}", params = {"a=(", "b"})
+                public Order find(@PathVariable("id") long id, @RequestParam(required = false) final String note) {
+                    return new Order(id, note);
+                }
+
+                public int total(Map<String, List<Integer>> byCustomer, int... extra) {
+                    return extra.length;
+                }
+
+                public int total(String customer) {
+                    return customer.length() + '}';
+                }
+
+                public int total(String[] customers) {
+                    return customers.length;
+                }
+
+                public <T extends Comparable<T>> T max(List<? extends T> values) {
+                    return values.get(0);
+                }
+
+                String record(String record) {
+                    return record;
+                }
+
+                record Order(long id, String note) {
+                    String label() {
+                        return id + note;
+                    }
+                }
+
+                enum Status {
+                    OPEN("o") {
+                        @Override
+                        String code() {
+                            return "open";
+                        }
+                    },
+                    CLOSED("c");
+
+                    private final String value;
+
+                    Status(String value) {
+                        this.value = value;
+                    }
+
+                    String code() {
+                        return value;
+                    }
+                }
+
+                static class Builder {
+                    class Step {
+                        void apply() {
+                            step();
+                        }
+                    }
+                }
+
+                interface Handler {
+                    void handle(String value);
+
+                    default String name() {
+                        return "handler";
+                    }
+                }
+
+                @interface Audited {
+                    String value() default "}";
+                }
+            }
+            """;
+
+    private final JavaSourceFile file = JavaSourceFile.parse(SOURCE);
+
+    @Test
+    void skipsCommentsTextBlocksAndAnnotationArguments() {
+        assertThat(file.findMethodBody("OrderController", "find",
+                "(JLjava/lang/String;)Lcom/acme/OrderController$Order;")).isEqualTo("return new Order(id, note);");
+    }
+
+    @Test
+    void indexesConstructorsAsInit() {
+        assertThat(file.findMethodBody("OrderController", "<init>", "()V")).isEqualTo("this(0);");
+        assertThat(file.findMethodBody("OrderController", "<init>", "(I)V")).isEqualTo("// only a comment }");
+    }
+
+    @Test
+    void selectsOverloadsByParameterTypes() {
+        // Generic arguments and varargs
+        assertThat(file.findMethodBody("OrderController", "total", "(Ljava/util/Map;[I)I")).isEqualTo("return extra.length;");
+        assertThat(file.findMethodBody("OrderController", "total", "(Ljava/lang/String;)I"))
+                .isEqualTo("return customer.length() + '}';");
+        assertThat(file.findMethodBody("OrderController", "total", "([Ljava/lang/String;)I"))
+                .isEqualTo("return customers.length;");
+        // Without a descriptor, the first declaration
+        assertThat(file.findMethodBody("OrderController", "total", null)).isEqualTo("return extra.length;");
+    }
+
+    @Test
+    void fallsBackToParameterCountForTypeVariables() {
+        assertThat(file.findMethodBody("OrderController", "max", "(Ljava/util/List;)Ljava/lang/Comparable;"))
+                .isEqualTo("return values.get(0);");
+    }
+
+    @Test
+    void indexesRecordsButNotRecordAsIdentifier() {
+        assertThat(file.findMethodBody("OrderController$Order", "label", "()Ljava/lang/String;")).isEqualTo("return id + note;");
+        assertThat(file.findMethodBody("OrderController", "record", "(Ljava/lang/String;)Ljava/lang/String;"))
+                .isEqualTo("return record;");
+    }
+
+    @Test
+    void skipsEnumConstantBodies() {
+        assertThat(file.findMethodBody("OrderController$Status", "code", "()Ljava/lang/String;")).isEqualTo("return value;");
+        assertThat(file.findMethodBody("OrderController$Status", "<init>", "(Ljava/lang/String;)V"))
+                .isEqualTo("this.value = value;");
+    }
+
+    @Test
+    void indexesNestedTypesByBinaryName() {
+        assertThat(file.findMethodBody("OrderController$Builder$Step", "apply", "()V")).isEqualTo("step();");
+        assertThat(file.findMethodBody("OrderController$Handler", "name", "()Ljava/lang/String;")).isEqualTo("return \"handler\";");
+    }
+
+    @Test
+    void leavesOutMethodsWithoutBodiesAndOfAnonymousClasses() {
+        assertThat(file.findMethodBody("OrderController$Handler", "handle", "(Ljava/lang/String;)V")).isNull();
+        assertThat(file.findMethodBody("OrderController$Audited", "value", "()Ljava/lang/String;")).isNull();
+        assertThat(file.findMethodBody("OrderController", "run", "()V")).isNull();
+        // find, 2 constructors, 3 totals, max, record, label, 2 in Status, apply, name
+        assertThat(file.getMethodCount()).isEqualTo(13);
+    }
+}
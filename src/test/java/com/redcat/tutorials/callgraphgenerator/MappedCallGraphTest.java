@@ -0,0 +1,124 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedCallGraphTest {
+
+    @TempDir
+    File tempDir;
+
+    private static final List<EndpointDetector.Endpoint> ENDPOINTS = List.of(
+            new EndpointDetector.Endpoint("POST", "/orders", "com.acme.OrderController.create()"),
+            new EndpointDetector.Endpoint("GET", "/orders/{id}", "com.acme.OrderController.get(long)"),
+            new EndpointDetector.Endpoint("GET", "/orders", "com.acme.OrderController.list()"));
+
+    /**
+     * Added callee first so interned ids differ from name order; service and repository call each other
+     */
+    private static CallGraph graph() {
+        CallGraph graph = new CallGraph();
+        graph.addEdge("com.acme.OrderController.list()", "com.acme.OrderService.findAll()");
+        graph.addEdge("com.acme.OrderController.get(long)", "com.acme.OrderService.find(long)");
+        graph.addEdge("com.acme.OrderController.get(long)", "com.acme.Überprüfung.check(long)");
+        graph.addEdge("com.acme.OrderService.find(long)", "com.acme.OrderRepository.load(long)");
+        graph.addEdge("com.acme.OrderRepository.load(long)", "com.acme.OrderService.find(long)");
+        graph.addEdge("com.acme.OrderService.findAll()", "java.util.List.of()");
+        return graph.freeze();
+    }
+
+    private MappedCallGraph write(CallGraph graph, List<EndpointDetector.Endpoint> endpoints, String name) throws IOException {
+        File file = new File(tempDir, name);
+        CallGraphBinaryWriter.write(graph, endpoints, file);
+        return MappedCallGraph.open(file.toPath());
+    }
+
+    private static List<String> names(MappedCallGraph mapped, int[] ids) {
+        return Arrays.stream(ids).mapToObj(mapped::nameOf).toList();
+    }
+
+    @Test
+    void roundTripsNodesAndEdges() throws IOException {
+        CallGraph graph = graph();
+        MappedCallGraph mapped = write(graph, ENDPOINTS, MappedCallGraph.FILE_NAME);
+
+        assertThat(mapped.getNodeCount()).isEqualTo(graph.getNodeCount());
+        assertThat(mapped.getEdgeCount()).isEqualTo(graph.getEdgeCount());
+        for (int id = 0; id < graph.getNodeCount(); id++) {
+            String name = graph.nameOf(id);
+            int mappedId = mapped.idOf(name);
+            assertThat(mapped.nameOf(mappedId)).isEqualTo(name);
+            List<String> callees = new ArrayList<>();
+            for (int i = graph.calleeStart(id); i < graph.calleeEnd(id); i++) {
+                callees.add(graph.nameOf(graph.calleeAt(i)));
+            }
+            Collections.sort(callees);
+            assertThat(mapped.getCallees(name)).as(name).isEqualTo(callees);
+            assertThat(mapped.hasCallees(mappedId)).isEqualTo(!callees.isEmpty());
+        }
+        assertThat(mapped.getCallees("com.acme.OrderController.get(long)"))
+                .containsExactly("com.acme.OrderService.find(long)", "com.acme.Überprüfung.check(long)");
+        assertThat(mapped.idOf("com.acme.Missing.method()")).isEqualTo(-1);
+        assertThat(mapped.getCallees("com.acme.Missing.method()")).isEmpty();
+    }
+
+    @Test
+    void reachesThroughCycles() throws IOException {
+        MappedCallGraph mapped = write(graph(), ENDPOINTS, MappedCallGraph.FILE_NAME);
+
+        assertThat(names(mapped, mapped.reachableFrom(mapped.idOf("com.acme.OrderController.get(long)")))).containsExactly(
+                "com.acme.OrderController.get(long)",
+                "com.acme.OrderRepository.load(long)",
+                "com.acme.OrderService.find(long)",
+                "com.acme.Überprüfung.check(long)");
+        assertThat(names(mapped, mapped.reachableFrom(mapped.idOf("com.acme.OrderRepository.load(long)")))).containsExactly(
+                "com.acme.OrderRepository.load(long)",
+                "com.acme.OrderService.find(long)");
+    }
+
+    @Test
+    void encodesLargeCalleeDeltas() throws IOException {
+        CallGraph graph = new CallGraph();
+        for (int i = 1; i < 300; i++) {
+            graph.addEdge(String.format("m%03d", i - 1), String.format("m%03d", i));
+        }
+        graph.addEdge("m000", "m299");
+        MappedCallGraph mapped = write(graph.freeze(), List.of(), MappedCallGraph.FILE_NAME);
+
+        assertThat(mapped.getCallees("m000")).containsExactly("m001", "m299");
+        assertThat(mapped.reachableFrom(mapped.idOf("m000"))).hasSize(300);
+    }
+
+    @Test
+    void storesEndpointsInRouteOrder() throws IOException {
+        List<EndpointDetector.Endpoint> reversed = new ArrayList<>(ENDPOINTS);
+        Collections.reverse(reversed);
+        MappedCallGraph mapped = write(graph(), ENDPOINTS, "a.bin");
+        write(graph(), reversed, "b.bin");
+
+        assertThat(mapped.getEndpoints()).extracting(endpoint -> endpoint.method + " " + endpoint.path)
+                .containsExactly("GET /orders", "GET /orders/{id}", "POST /orders");
+        assertThat(mapped.getEndpoints().get(1).entryMethod).isEqualTo("com.acme.OrderController.get(long)");
+        assertThat(Files.readAllBytes(new File(tempDir, "a.bin").toPath()))
+                .isEqualTo(Files.readAllBytes(new File(tempDir, "b.bin").toPath()));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        File file = new File(tempDir, "other.bin");
+        Files.write(file.toPath(), new byte[64]);
+
+        assertThatThrownBy(() -> MappedCallGraph.open(file.toPath())).isInstanceOf(IOException.class);
+    }
+}
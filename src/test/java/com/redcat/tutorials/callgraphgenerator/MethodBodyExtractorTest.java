@@ -0,0 +1,180 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MethodBodyExtractorTest {
+
+    private static final String CLASS_NAME = "com.acme.Sample";
+    private static final String HANDLE = MethodId.of(CLASS_NAME, "handle", "()I");
+    private static final String HELPER = MethodId.of(CLASS_NAME, "helper", "(I)I");
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * handle() returns helper(20); helper(x) returns x * 2
+     */
+    private static byte[] sampleClass() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "com/acme/Sample", null, "java/lang/Object", null);
+
+        MethodVisitor handle = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "handle", "()I", null, null);
+        handle.visitCode();
+        handle.visitIntInsn(Opcodes.BIPUSH, 20);
+        handle.visitMethodInsn(Opcodes.INVOKESTATIC, "com/acme/Sample", "helper", "(I)I", false);
+        handle.visitInsn(Opcodes.IRETURN);
+        handle.visitMaxs(0, 0);
+        handle.visitEnd();
+
+        MethodVisitor helper = writer.visitMethod(Opcodes.ACC_STATIC, "helper", "(I)I", null, null);
+        helper.visitCode();
+        helper.visitVarInsn(Opcodes.ILOAD, 0);
+        helper.visitInsn(Opcodes.ICONST_2);
+        helper.visitInsn(Opcodes.IMUL);
+        helper.visitInsn(Opcodes.IRETURN);
+        helper.visitMaxs(0, 0);
+        helper.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private MethodBodyExtractor extractor() {
+        ClassFacts facts = new ClassFacts(CLASS_NAME, "java.lang.Object", List.of(), Opcodes.ACC_PUBLIC, List.of(),
+                "Sample.java", new File(tempDir, "com/acme/Sample.class").getPath(),
+                List.of(new ClassFacts.MethodFacts("handle", "()I", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC),
+                        new ClassFacts.MethodFacts("helper", "(I)I", Opcodes.ACC_STATIC)),
+                List.of());
+        ClassBytesStore classBytes = new ClassBytesStore();
+        byte[] bytes = sampleClass();
+        classBytes.put(CLASS_NAME, bytes, bytes.length);
+
+        MethodBodyExtractor extractor = new MethodBodyExtractor(List.of(), 16);
+        extractor.loadClasses(List.of(facts), classBytes);
+        return extractor;
+    }
+
+    private static ReachabilityIndex reachability() {
+        CallGraph graph = new CallGraph();
+        graph.addEdge(HANDLE, HELPER);
+        graph.addEdge(HELPER, "java.lang.Math.abs(int)");
+        return new ReachabilityIndex(graph.freeze());
+    }
+
+    @Test
+    void rendersBytecodeOfClassesWithoutSources() {
+        Map<String, String> bodies = extractor().extractMethodHierarchy(reachability(), HANDLE);
+
+        // JDK methods are left out; the entry comes first
+        assertThat(bodies.keySet()).containsExactly(HANDLE, HELPER);
+        assertThat(bodies.get(HANDLE)).contains("BIPUSH 20", "INVOKESTATIC com/acme/Sample.helper (I)I", "IRETURN");
+        assertThat(bodies.get(HELPER)).contains("ILOAD 0", "IMUL").doesNotContain("BIPUSH");
+    }
+
+    @Test
+    void prefersSourceOfTheMethodToItsBytecode() throws Exception {
+        // Found through the nearest build file, as for classes outside every module
+        Files.writeString(new File(tempDir, "pom.xml").toPath(), "<project/>");
+        File source = new File(tempDir, "src/main/java/com/acme/Sample.java");
+        source.getParentFile().mkdirs();
+        Files.writeString(source.toPath(), """
+                package com.acme;
+
+                public class Sample {
+                    public static int handle() {
+                        return helper(20);
+                    }
+
+                    static int helper(int x) {
+                        return x * 2;
+                    }
+                }
+                """);
+        MethodBodyExtractor extractor = extractor();
+
+        Map<String, String> bodies = extractor.extractMethodHierarchy(reachability(), HANDLE);
+        assertThat(bodies.get(HELPER)).contains("return x * 2;").doesNotContain("IMUL");
+        assertThat(bodies.get(HELPER)).isEqualTo(
+                extractor.extractMethodHierarchyWithInfo(reachability(), HANDLE).get(HELPER).methodBody);
+    }
+
+    @Test
+    void rendersMethodInfoWithBody() {
+        Map<String, MethodBodyExtractor.MethodInfo> methods =
+                extractor().extractMethodHierarchyWithInfo(reachability(), HANDLE);
+
+        MethodBodyExtractor.MethodInfo helper = methods.get(HELPER);
+        assertThat(helper.className).isEqualTo(CLASS_NAME);
+        assertThat(helper.descriptor).isEqualTo("(I)I");
+        assertThat(helper.methodBody).contains("IMUL");
+    }
+
+    @Test
+    void extractsConcurrently() throws Exception {
+        MethodBodyExtractor extractor = extractor();
+        ReachabilityIndex reachability = reachability();
+        Map<String, String> expected = extractor().extractMethodHierarchy(reachability, HANDLE);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Map<String, MethodBodyExtractor.MethodInfo>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(() -> extractor.extractMethodHierarchyWithInfo(reachability, HANDLE)));
+            }
+            for (Future<Map<String, MethodBodyExtractor.MethodInfo>> result : results) {
+                Map<String, MethodBodyExtractor.MethodInfo> methods = result.get();
+                assertThat(methods.keySet()).containsExactly(HANDLE, HELPER);
+                assertThat(methods.get(HELPER).methodBody).isEqualTo(expected.get(HELPER));
+                // Rendered once and shared through the cache
+                assertThat(methods.get(HELPER)).isSameAs(results.get(0).get().get(HELPER));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void findsOnlyHandlerMethodsOfControllers() {
+        String controller = "com.acme.web.OrderController";
+        ClassFacts facts = new ClassFacts(controller, "java.lang.Object", List.of(), Opcodes.ACC_PUBLIC, List.of(),
+                "OrderController.java", "com/acme/web/OrderController.class",
+                List.of(new ClassFacts.MethodFacts("list", "()Ljava/util/List;", Opcodes.ACC_PUBLIC),
+                        new ClassFacts.MethodFacts("find", "(J)Ljava/lang/Object;", Opcodes.ACC_PUBLIC),
+                        new ClassFacts.MethodFacts("<init>", "()V", Opcodes.ACC_PUBLIC),
+                        new ClassFacts.MethodFacts("<clinit>", "()V", Opcodes.ACC_STATIC),
+                        new ClassFacts.MethodFacts("lambda$list$0", "(Ljava/lang/Object;)Z",
+                                Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC),
+                        new ClassFacts.MethodFacts("find", "(J)Ljava/util/Optional;",
+                                Opcodes.ACC_PUBLIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)),
+                List.of());
+        MethodBodyExtractor extractor = new MethodBodyExtractor(List.of(), 16);
+        extractor.loadClasses(List.of(facts), new ClassBytesStore());
+
+        assertThat(extractor.findControllerMethods()).extracting(method -> method.fullName)
+                .containsExactly(controller + ".find(long)", controller + ".list()");
+    }
+
+    @Test
+    void keepsUnknownEntryPointOnItsOwn() {
+        String unknown = MethodId.of(CLASS_NAME, "missing", "()V");
+        Map<String, String> bodies = extractor().extractMethodHierarchy(reachability(), unknown);
+
+        assertThat(bodies).containsOnlyKeys(unknown);
+        assertThat(bodies.get(unknown)).startsWith("// Method body not available");
+    }
+}
@@ -0,0 +1,108 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MethodFilterVisitorTest {
+
+    /**
+     * Lombok generates the accessors and the builder, whose build() copies all ten fields
+     */
+    @Getter
+    @Setter
+    @Builder
+    static class Order {
+        private long id;
+        private String customer;
+        private String currency;
+        private BigDecimal amount;
+        private int quantity;
+        private boolean paid;
+        private double discount;
+        private List<String> lines;
+        private String note;
+        private Object extra;
+
+        public String getLabel() {
+            return customer + " #" + id;
+        }
+    }
+
+    /**
+     * Written by hand: build() validates before allocating
+     */
+    static class InvoiceBuilder {
+        private String number;
+
+        InvoiceBuilder number(String number) {
+            this.number = number;
+            return this;
+        }
+
+        Invoice build() {
+            if (number == null) {
+                throw new IllegalStateException("number is required");
+            }
+            return new Invoice(number);
+        }
+    }
+
+    record Invoice(String number) {
+    }
+
+    private static MethodFilterVisitor visit(Class<?> type) throws IOException {
+        try (InputStream in = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+            MethodFilterVisitor visitor = new MethodFilterVisitor(Opcodes.ASM9);
+            new ClassReader(in).accept(visitor, ClassReader.SKIP_FRAMES);
+            return visitor;
+        }
+    }
+
+    @Test
+    void classifiesLombokAccessors() throws IOException {
+        MethodFilterVisitor order = visit(Order.class);
+
+        assertThat(order.getTrivialKind("getId", "()J")).isEqualTo(MethodFilterVisitor.Kind.GETTER);
+        assertThat(order.getTrivialKind("getAmount", "()Ljava/math/BigDecimal;")).isEqualTo(MethodFilterVisitor.Kind.GETTER);
+        assertThat(order.getTrivialKind("isPaid", "()Z")).isEqualTo(MethodFilterVisitor.Kind.GETTER);
+        assertThat(order.getTrivialKind("setCustomer", "(Ljava/lang/String;)V")).isEqualTo(MethodFilterVisitor.Kind.SETTER);
+        assertThat(order.getTrivialKind("setDiscount", "(D)V")).isEqualTo(MethodFilterVisitor.Kind.SETTER);
+        assertThat(order.getTrivialKind("getLabel", "()Ljava/lang/String;")).isNull();
+    }
+
+    @Test
+    void classifiesLombokBuilder() throws IOException {
+        String builderType = "L" + Order.OrderBuilder.class.getName().replace('.', '/') + ";";
+        String orderType = "L" + Order.class.getName().replace('.', '/') + ";";
+
+        assertThat(visit(Order.class).getTrivialKind("builder", "()" + builderType))
+                .isEqualTo(MethodFilterVisitor.Kind.BUILDER);
+        MethodFilterVisitor builder = visit(Order.OrderBuilder.class);
+        assertThat(builder.getTrivialKind("customer", "(Ljava/lang/String;)" + builderType))
+                .isEqualTo(MethodFilterVisitor.Kind.BUILDER);
+        // Ten field copies, far past the length of any accessor
+        assertThat(builder.getTrivialKind("build", "()" + orderType)).isEqualTo(MethodFilterVisitor.Kind.BUILDER);
+        assertThat(builder.getTrivialKind("toString", "()Ljava/lang/String;")).isEqualTo(MethodFilterVisitor.Kind.OBJECT_METHOD);
+    }
+
+    @Test
+    void keepsBuildWithLogic() throws IOException {
+        MethodFilterVisitor builder = visit(InvoiceBuilder.class);
+        String builderType = "L" + InvoiceBuilder.class.getName().replace('.', '/') + ";";
+
+        assertThat(builder.getTrivialKind("number", "(Ljava/lang/String;)" + builderType))
+                .isEqualTo(MethodFilterVisitor.Kind.BUILDER);
+        assertThat(builder.getTrivialKind("build", "()L" + Invoice.class.getName().replace('.', '/') + ";")).isNull();
+    }
+}
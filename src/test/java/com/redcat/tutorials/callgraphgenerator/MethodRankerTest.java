@@ -0,0 +1,84 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MethodRankerTest {
+
+    private static final String ENTRY = "com.acme.Api.entry()";
+    private static final String ALPHA = "com.acme.Api.alpha()";
+    private static final String BETA = "com.acme.Api.beta()";
+    private static final String CYCLE = "com.acme.Api.cycle()";
+    private static final String DEEP = "com.acme.Api.deep()";
+
+    private final CallGraph graph = new CallGraph();
+
+    private void call(String caller, String callee, int callCount, int loopDepth) {
+        graph.addEdge(graph.getSymbols().intern(caller), graph.getSymbols().intern(callee), callCount, loopDepth);
+    }
+
+    private int[] ids(String... methods) {
+        graph.freeze();
+        int[] ids = new int[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            ids[i] = graph.idOf(methods[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * entry calls alpha once and beta at two call sites in a loop; both call cycle, which calls itself and back
+     * into alpha; beta calls deep seven loops down
+     */
+    private void hierarchy() {
+        call(ENTRY, ALPHA, 1, 0);
+        call(ENTRY, BETA, 2, 1);
+        call(ALPHA, CYCLE, 1, 0);
+        call(BETA, CYCLE, 1, 1);
+        call(CYCLE, ALPHA, 1, 0);
+        call(CYCLE, CYCLE, 1, 2);
+        call(BETA, DEEP, 1, 7);
+    }
+
+    @Test
+    void propagatesFrequencyThroughCallSitesAndLoops() {
+        hierarchy();
+        MethodRanker.Ranking ranking = MethodRanker.rank(graph, ids(ENTRY, ALPHA, BETA, CYCLE, DEEP), new int[]{5, 10, 10, 10, 1});
+
+        assertThat(ranking.frequencies[0]).isEqualTo(1);
+        assertThat(ranking.frequencies[2]).isCloseTo(2 * MethodRanker.LOOP_ITERATIONS, within(1e-9));
+        // Once through alpha, ten times per run of beta; the recursive calls add nothing
+        assertThat(ranking.frequencies[3]).isCloseTo(1 + 20 * MethodRanker.LOOP_ITERATIONS, within(1e-9));
+        assertThat(ranking.frequencies[1]).isEqualTo(1);
+        assertThat(ranking.importances[3]).isCloseTo(2010, within(1e-9));
+    }
+
+    @Test
+    void capsFrequencyOfDeeplyNestedCalls() {
+        hierarchy();
+        MethodRanker.Ranking ranking = MethodRanker.rank(graph, ids(ENTRY, ALPHA, BETA, CYCLE, DEEP), new int[]{5, 10, 10, 10, 1});
+
+        assertThat(ranking.frequencies[4]).isEqualTo(MethodRanker.MAX_FREQUENCY);
+        assertThat(ranking.importances[4]).isEqualTo(MethodRanker.MAX_FREQUENCY);
+    }
+
+    @Test
+    void ranksOnlyMethodsOfTheHierarchy() {
+        hierarchy();
+        // Without beta, cycle is only reached through alpha and deep not at all
+        MethodRanker.Ranking ranking = MethodRanker.rank(graph, ids(ENTRY, ALPHA, CYCLE, DEEP), new int[]{5, 10, 10, 1});
+
+        assertThat(ranking.frequencies).containsExactly(1, 1, 1, 0);
+    }
+
+    @Test
+    void ranksNothingForUnknownEntry() {
+        hierarchy();
+        MethodRanker.Ranking ranking = MethodRanker.rank(graph, ids("com.acme.Api.missing()", ALPHA), new int[]{0, 10});
+
+        assertThat(ranking.frequencies).containsExactly(0, 0);
+        assertThat(ranking.importances).containsExactly(0, 0);
+    }
+}
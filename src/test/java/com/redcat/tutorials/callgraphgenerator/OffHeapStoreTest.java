@@ -0,0 +1,59 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void reusesFreedSpaceBestFitFirst() throws IOException {
+        try (OffHeapStore store = new OffHeapStore(tempDir)) {
+            long small = store.allocate(16);
+            long large = store.allocate(64);
+            store.allocate(8);
+            long size = store.size();
+
+            store.free(large, 64);
+            store.free(small, 16);
+            assertThat(store.getFreeBytes()).isEqualTo(80);
+            // The smallest block that fits, then what is left of the larger one
+            assertThat(store.allocate(12)).isEqualTo(small);
+            assertThat(store.allocate(40)).isEqualTo(large);
+            assertThat(store.allocate(24)).isEqualTo(large + 40);
+            assertThat(store.size()).isEqualTo(size);
+            assertThat(store.getFreeBytes()).isZero();
+            assertThat(store.getReusedBytes()).isEqualTo(16 + 40 + 24);
+        }
+    }
+
+    @Test
+    void callGraphReusesItsAdjacencyWhenRebuilt() throws IOException {
+        try (OffHeapStore store = new OffHeapStore(tempDir)) {
+            CallGraph graph = new CallGraph(new MethodSymbolTable(store), store);
+            for (int caller = 0; caller < 50; caller++) {
+                graph.addEdge("com.acme.Type.m" + caller + "()", "com.acme.Type.m" + (caller + 1) % 50 + "()");
+                graph.addEdge("com.acme.Type.m" + caller + "()", "com.acme.Type.m" + (caller + 7) % 50 + "()");
+            }
+            graph.freeze();
+            long size = store.size();
+
+            assertThat(graph.removeEdges((caller, callee) -> caller % 2 == 0)).isEqualTo(50);
+            // Frozen again with the same number of methods and edges
+            graph.addEdge("com.acme.Type.m1()", "com.acme.Type.m2()");
+            graph.freeze();
+
+            assertThat(store.size()).isEqualTo(size);
+            assertThat(store.getReusedBytes()).isPositive();
+            assertThat(graph.getEdgeCount()).isEqualTo(50);
+            assertThat(graph.getCallees("com.acme.Type.m1()")).containsExactly("com.acme.Type.m2()", "com.acme.Type.m8()");
+        }
+    }
+}
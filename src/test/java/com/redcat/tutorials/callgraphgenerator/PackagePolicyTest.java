@@ -0,0 +1,83 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackagePolicyTest {
+
+    private static final String LIST = "com.acme.orders.api.OrderController.list()";
+    private static final String FIND_ALL = "com.acme.orders.db.OrderRepository.findAll()";
+    private static final String QUERY = "org.springframework.jdbc.core.JdbcTemplate.query(java.lang.String)";
+    private static final String MAP_ROW = "org.springframework.jdbc.core.RowMapper.mapRow()";
+
+    private static List<ClassFacts> classes(String... names) {
+        List<ClassFacts> classes = new ArrayList<>();
+        for (String name : names) {
+            classes.add(new ClassFacts(name, "java.lang.Object", List.of(), Opcodes.ACC_PUBLIC, List.of(), null,
+                    name.replace('.', '/') + ".class", new ArrayList<>(), List.of()));
+        }
+        return classes;
+    }
+
+    @Test
+    void infersCommonRootPackageOfEachGroup() {
+        List<ClassFacts> classes = classes("com.acme.orders.api.OrderController", "com.acme.orders.db.OrderRepository",
+                "com.acme.orders.Order", "org.shop.Main", "Launcher");
+
+        assertThat(PackagePolicy.rootPackages(classes)).containsExactly("com.acme.orders", "org.shop");
+
+        PackagePolicy policy = PackagePolicy.forProject(classes, List.of("com.acme.shared"), null, "com.acme.orders.db");
+        assertThat(policy.getIncludes()).containsExactly("com.acme.orders", "com.acme.shared", "org.shop");
+        assertThat(policy.isInternal("com.acme.orders.api.OrderController")).isTrue();
+        assertThat(policy.isInternal("com.acme.shared.Money")).isTrue();
+        // Excluded although included, and matched on whole segments only
+        assertThat(policy.isInternal("com.acme.orders.db.OrderRepository")).isFalse();
+        assertThat(policy.isInternal("com.acme.ordersarchive.Archive")).isFalse();
+        assertThat(policy.isInternal("org.springframework.web.client.RestTemplate")).isFalse();
+        assertThat(policy.isInternal("Launcher")).isTrue();
+    }
+
+    @Test
+    void explicitIncludesReplaceInferredRoots() {
+        List<ClassFacts> classes = classes("com.acme.orders.Order");
+
+        assertThat(PackagePolicy.forProject(classes, List.of(), "com.acme, org.shop", "").getIncludes())
+                .containsExactly("com.acme", "org.shop");
+        PackagePolicy everything = PackagePolicy.forProject(classes, List.of(), "*", null);
+        assertThat(everything.getIncludes()).isEmpty();
+        assertThat(everything.isInternal("org.springframework.web.client.RestTemplate")).isTrue();
+    }
+
+    @Test
+    void namesLibraryNodesAfterLeadingPackageSegments() {
+        assertThat(PackagePolicy.libraryNode("org.springframework.web.client.RestTemplate")).isEqualTo("org.springframework.web.*");
+        assertThat(PackagePolicy.libraryNode("org.springframework.web.RestTemplate")).isEqualTo("org.springframework.web.*");
+        assertThat(PackagePolicy.libraryNode("com.fasterxml.Mapper")).isEqualTo("com.fasterxml.*");
+        assertThat(PackagePolicy.libraryNode("lib.Util")).isEqualTo("lib.*");
+    }
+
+    @Test
+    void collapsesLibraryCallsIntoLeafNodes() {
+        CallGraph graph = new CallGraph();
+        graph.addEdge(LIST, FIND_ALL);
+        graph.addEdge(FIND_ALL, QUERY);
+        graph.addEdge(FIND_ALL, MAP_ROW);
+        graph.addEdge(QUERY, "org.springframework.jdbc.datasource.DataSourceUtils.getConnection()");
+        PackagePolicy policy = new PackagePolicy(List.of("com.acme"), List.of());
+
+        CallGraph collapsed = policy.collapse(graph);
+
+        assertThat(collapsed.getNodeCount()).isEqualTo(3);
+        assertThat(collapsed.getCallees(LIST)).containsExactly(FIND_ALL);
+        assertThat(collapsed.getCallees(FIND_ALL)).containsExactly("org.springframework.jdbc.*");
+        // Library nodes stay leaves
+        assertThat(collapsed.getCallees("org.springframework.jdbc.*")).isEmpty();
+        assertThat(policy.getCollapsedMethods()).isEqualTo(2);
+        assertThat(policy.getLibraryNodes()).isEqualTo(1);
+    }
+}
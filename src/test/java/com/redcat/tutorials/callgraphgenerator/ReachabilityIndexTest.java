@@ -0,0 +1,83 @@
+package com.redcat.tutorials.callgraphgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReachabilityIndexTest {
+
+    /**
+     * a -> b -> c -> d -> b is a cycle; d and x both call e
+     */
+    private static CallGraph graphWithCycle(boolean reversed) {
+        String[][] edges = {{"a", "b"}, {"b", "c"}, {"c", "d"}, {"d", "b"}, {"d", "e"}, {"x", "e"}};
+        CallGraph graph = new CallGraph();
+        for (int i = 0; i < edges.length; i++) {
+            String[] edge = edges[reversed ? edges.length - 1 - i : i];
+            graph.addEdge(edge[0], edge[1]);
+        }
+        return graph.freeze();
+    }
+
+    private static List<String> names(CallGraph graph, int[] ids) {
+        return Arrays.stream(ids).mapToObj(graph::nameOf).toList();
+    }
+
+    @Test
+    void condensesCycleIntoOneComponent() {
+        ReachabilityIndex index = new ReachabilityIndex(graphWithCycle(false));
+
+        // {a}, {b, c, d}, {e}, {x}
+        assertThat(index.getComponentCount()).isEqualTo(4);
+    }
+
+    @Test
+    void reachableSetsMatchTraversal() {
+        CallGraph graph = graphWithCycle(false);
+        ReachabilityIndex index = new ReachabilityIndex(graph);
+
+        for (String entry : List.of("a", "b", "c", "d", "e", "x")) {
+            int id = graph.idOf(entry);
+            assertThat(names(graph, index.reachableFrom(id))).as(entry).isEqualTo(names(graph, graph.reachableFrom(id)));
+        }
+        assertThat(names(graph, index.reachableFrom(graph.idOf("c")))).containsExactly("b", "c", "d", "e");
+    }
+
+    @Test
+    void listsCallersBeforeCallees() {
+        CallGraph graph = graphWithCycle(false);
+        ReachabilityIndex index = new ReachabilityIndex(graph);
+
+        assertThat(names(graph, index.callOrderFrom(graph.idOf("a")))).containsExactly("a", "b", "c", "d", "e");
+        // The entry comes first, then the rest of its cycle in name order
+        assertThat(names(graph, index.callOrderFrom(graph.idOf("c")))).containsExactly("c", "b", "d", "e");
+    }
+
+    @Test
+    void callOrderDoesNotDependOnEdgeOrder() {
+        CallGraph graph = graphWithCycle(false);
+        CallGraph reversed = graphWithCycle(true);
+
+        assertThat(names(reversed, new ReachabilityIndex(reversed).callOrderFrom(reversed.idOf("a"))))
+                .isEqualTo(names(graph, new ReachabilityIndex(graph).callOrderFrom(graph.idOf("a"))));
+    }
+
+    @Test
+    void staysCorrectWithinCacheCapacity() {
+        CallGraph graph = graphWithCycle(false);
+        ReachabilityIndex uncached = new ReachabilityIndex(graph, 0);
+
+        assertThat(names(graph, uncached.reachableFrom(graph.idOf("a")))).containsExactly("a", "b", "c", "d", "e");
+        assertThat(names(graph, uncached.reachableFrom(graph.idOf("x")))).containsExactly("e", "x");
+        assertThat(uncached.getCachedBytes()).isZero();
+
+        ReachabilityIndex cached = new ReachabilityIndex(graph, 1024);
+        for (String entry : List.of("a", "b", "c", "d", "e", "x")) {
+            cached.reachableFrom(graph.idOf(entry));
+        }
+        assertThat(cached.getCachedBytes()).isPositive().isLessThanOrEqualTo(1024);
+    }
+}
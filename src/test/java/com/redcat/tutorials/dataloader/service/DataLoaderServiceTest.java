@@ -0,0 +1,151 @@
+package com.redcat.tutorials.dataloader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redcat.tutorials.dataloader.dto.LoadDataResponse;
+import com.redcat.tutorials.dataloader.model.ApiMethodBody;
+import com.redcat.tutorials.dataloader.model.MethodDetail;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataLoaderServiceTest {
+
+    private static final String PROJECT = "shop";
+
+    @TempDir
+    File tempDir;
+
+    private MongoTemplate mongoTemplate;
+    private ProjectGenerationService projectGenerationService;
+    private DataLoaderService service;
+
+    // Every document handed to the converter, in the order written, and every bulk write
+    private final List<Object> written = Collections.synchronizedList(new ArrayList<>());
+    private final List<BulkOperations> bulks = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        MongoConverter converter = mock(MongoConverter.class);
+        doAnswer(invocation -> written.add(invocation.getArgument(0))).when(converter).write(any(), any());
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class)))
+                .thenAnswer(invocation -> {
+                    BulkOperations bulk = mock(BulkOperations.class);
+                    bulks.add(bulk);
+                    return bulk;
+                });
+        projectGenerationService = mock(ProjectGenerationService.class);
+        when(projectGenerationService.begin(PROJECT)).thenReturn(2L);
+        when(projectGenerationService.activate(PROJECT, 2L)).thenReturn(true);
+        // Batches of two documents
+        service = new DataLoaderService(mongoTemplate, new ObjectMapper(), projectGenerationService, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private void write(String fileName, String json) throws Exception {
+        Files.writeString(new File(tempDir, fileName).toPath(), json.replace('\'', '"'));
+    }
+
+    private ApiMethodBody controller(String controllerMethod) {
+        return written.stream()
+                .filter(document -> document instanceof ApiMethodBody body && body.getControllerMethod().equals(controllerMethod))
+                .map(ApiMethodBody.class::cast)
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void resolvesBodiesByHashOneBatchAtATime() throws Exception {
+        write("method_bodies.json", "{'h0': 'unused', 'h1': 'body one', 'h2': 'body two'}");
+        write("controller_method_bodies.json", """
+                {'bodyTable': 'method_bodies.json', 'controllers': [
+                  {'controllerMethod': 'A.a()', 'methods': [{'name': 'A.a()', 'bodyHash': 'h1'}, {'name': 'S.s()', 'bodyHash': 'h2'}]},
+                  {'controllerMethod': 'B.b()', 'methods': [{'name': 'B.b()', 'bodyHash': 'missing'}]},
+                  {'controllerMethod': 'C.c()', 'methods': [{'name': 'C.c()', 'bodyHash': 'h1'}, {'name': 'D.d()', 'body': 'inline'}]}
+                ]}
+                """);
+
+        LoadDataResponse response = service.loadDataFromJsonFiles(tempDir.getPath(), PROJECT);
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getMethodBodiesLoaded()).isEqualTo(3);
+        assertThat(controller("A.a()").getMethods()).extracting(MethodDetail::getBody).containsExactly("body one", "body two");
+        assertThat(controller("B.b()").getMethods()).extracting(MethodDetail::getBody).containsExactly("");
+        // Resolved again in the second batch
+        assertThat(controller("C.c()").getMethods()).extracting(MethodDetail::getBody).containsExactly("body one", "inline");
+    }
+
+    @Test
+    void upsertsNewGenerationOnNaturalKeysAndActivatesIt() throws Exception {
+        write("full_call_graph.json", "{'A.a()': ['B.b()'], 'B.b()': ['C.c()', 'D.d()'], 'C.c()': ['D.d()']}");
+
+        LoadDataResponse response = service.loadDataFromJsonFiles(tempDir.getPath(), PROJECT);
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getCallGraphNodesLoaded()).isEqualTo(3);
+        assertThat(bulks).hasSize(2);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Document> documents = ArgumentCaptor.forClass(Document.class);
+        for (BulkOperations bulk : bulks) {
+            verify(bulk, atLeastOnce()).replaceOne(queries.capture(), documents.capture(),
+                    argThat(FindAndReplaceOptions::isUpsert));
+            verify(bulk).execute();
+        }
+        // Keyed within the new generation, so a retried batch replaces rather than duplicates
+        assertThat(queries.getAllValues()).extracting(Query::getQueryObject).containsExactlyInAnyOrder(
+                new Document("fullMethodPath", "A.a()").append("projectName", PROJECT).append("generation", 2L),
+                new Document("fullMethodPath", "B.b()").append("projectName", PROJECT).append("generation", 2L),
+                new Document("fullMethodPath", "C.c()").append("projectName", PROJECT).append("generation", 2L));
+        assertThat(documents.getAllValues()).allSatisfy(document -> assertThat(document.get("generation")).isEqualTo(2L));
+        // Activating the generation is what removes the stale rows of the previous load
+        verify(projectGenerationService).activate(PROJECT, 2L);
+        verify(projectGenerationService, never()).abandon(any(), anyLong());
+    }
+
+    @Test
+    void abandonsGenerationWhenBatchFails() throws Exception {
+        write("full_call_graph.json", "{'A.a()': ['B.b()']}");
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenAnswer(invocation -> {
+            BulkOperations bulk = mock(BulkOperations.class);
+            when(bulk.execute()).thenThrow(new IllegalStateException("write failed"));
+            return bulk;
+        });
+
+        LoadDataResponse response = service.loadDataFromJsonFiles(tempDir.getPath(), PROJECT);
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).contains("write failed");
+        verify(projectGenerationService).abandon(PROJECT, 2L);
+        verify(projectGenerationService, never()).activate(any(), anyLong());
+    }
+}
@@ -0,0 +1,141 @@
+package com.redcat.tutorials.dataloader.service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.redcat.tutorials.dataloader.model.ApiMethodBody;
+import com.redcat.tutorials.dataloader.model.FullCallGraph;
+import com.redcat.tutorials.dataloader.model.ProjectDataset;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProjectGenerationServiceTest {
+
+    private static final String PROJECT = "shop";
+
+    private MongoTemplate mongoTemplate;
+    private ProjectGenerationService service;
+
+    // The project document, as the conditional updates leave it
+    private long activeGeneration = ProjectDataset.NO_GENERATION;
+    private long lastGeneration;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(ProjectDataset.class))).thenAnswer(invocation -> dataset(++lastGeneration));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProjectDataset.class))).thenAnswer(invocation -> {
+            // activeGeneration < generation
+            Query query = invocation.getArgument(0);
+            long generation = query.getQueryObject().get("activeGeneration", Document.class).getLong("$lt");
+            if (activeGeneration >= generation) {
+                return UpdateResult.acknowledged(0, 0L, null);
+            }
+            activeGeneration = generation;
+            return UpdateResult.acknowledged(1, 1L, null);
+        });
+        when(mongoTemplate.findById(PROJECT, ProjectDataset.class)).thenAnswer(invocation -> dataset(lastGeneration));
+        when(mongoTemplate.remove(any(Query.class), any(Class.class))).thenReturn(DeleteResult.acknowledged(0));
+        service = new ProjectGenerationService(mongoTemplate, 0, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private ProjectDataset dataset(long last) {
+        ProjectDataset dataset = new ProjectDataset();
+        dataset.setProjectName(PROJECT);
+        dataset.setActiveGeneration(activeGeneration);
+        dataset.setLastGeneration(last);
+        return dataset;
+    }
+
+    /**
+     * @return whether a removal query selects the project's documents by the given generation criterion
+     */
+    private static boolean removes(Query query, Object generationCriterion) {
+        Document criteria = query.getQueryObject();
+        List<?> and = criteria.get("$and", List.class);
+        return PROJECT.equals(criteria.get("projectName"))
+                && generationCriterion.equals(((Document) and.get(0)).get("generation"));
+    }
+
+    @Test
+    void beginHandsOutIncreasingGenerations() {
+        assertThat(service.begin(PROJECT)).isEqualTo(1);
+        assertThat(service.begin(PROJECT)).isEqualTo(2);
+        assertThat(service.activeGeneration(PROJECT)).isEmpty();
+    }
+
+    @Test
+    void activatingRemovesOlderGenerations() {
+        long first = service.begin(PROJECT);
+        assertThat(service.activate(PROJECT, first)).isTrue();
+        long second = service.begin(PROJECT);
+        assertThat(service.activate(PROJECT, second)).isTrue();
+
+        assertThat(service.requireActiveGeneration(PROJECT)).isEqualTo(second);
+        verify(mongoTemplate, timeout(5_000)).remove(
+                argThat(query -> removes(query, new Document("$lt", second))), eq(ApiMethodBody.class));
+        verify(mongoTemplate, timeout(5_000)).remove(
+                argThat(query -> removes(query, new Document("$lt", second))), eq(FullCallGraph.class));
+    }
+
+    @Test
+    void laterGenerationWinsWhenLoadsFinishOutOfOrder() {
+        long older = service.begin(PROJECT);
+        long newer = service.begin(PROJECT);
+
+        assertThat(service.activate(PROJECT, newer)).isTrue();
+        assertThat(service.activate(PROJECT, older)).isFalse();
+
+        assertThat(activeGeneration).isEqualTo(newer);
+        assertThat(service.requireActiveGeneration(PROJECT)).isEqualTo(newer);
+        // The superseded generation is removed, not the active one
+        verify(mongoTemplate, timeout(5_000)).remove(argThat(query -> removes(query, older)), eq(ApiMethodBody.class));
+        verify(mongoTemplate, never()).remove(argThat(query -> removes(query, newer)), any(Class.class));
+    }
+
+    @Test
+    void dropsLegacyIndexesOnlyWhenPresent() {
+        IndexOperations methodBodyIndexes = mock(IndexOperations.class);
+        IndexOperations callGraphIndexes = mock(IndexOperations.class);
+        when(mongoTemplate.indexOps(ApiMethodBody.class)).thenReturn(methodBodyIndexes);
+        when(mongoTemplate.indexOps(FullCallGraph.class)).thenReturn(callGraphIndexes);
+        when(methodBodyIndexes.getIndexInfo()).thenReturn(List.of(
+                new IndexInfo(List.of(), "_id_", false, false, null),
+                new IndexInfo(List.of(), "projectName_controllerMethod", true, false, null)));
+        when(callGraphIndexes.getIndexInfo()).thenReturn(List.of(new IndexInfo(List.of(), "_id_", false, false, null)));
+        when(mongoTemplate.findDistinct(any(Query.class), anyString(), any(Class.class), eq(String.class))).thenReturn(List.of());
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), any(Class.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        service.migrateLegacyDocuments();
+
+        verify(methodBodyIndexes).dropIndex("projectName_controllerMethod");
+        verify(callGraphIndexes, never()).dropIndex(anyString());
+    }
+}
@@ -0,0 +1,44 @@
+package com.redcat.tutorials.summariser.service;
+
+import com.redcat.tutorials.dataloader.model.MethodDetail;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MethodBodySelectorTest {
+
+    private static MethodDetail method(String name, int bodyLength, Double importance) {
+        return MethodDetail.builder().name(name).body(name.charAt(0) + "x".repeat(bodyLength - 1)).importance(importance).build();
+    }
+
+    /**
+     * Names take 28 characters each and the bodies 34, 394 and 394 more, so 150 tokens fit the entry and one other
+     */
+    private static List<MethodDetail> methods(Double alphaImportance, Double betaImportance) {
+        return List.of(method("e()", 40, 0.0), method("a()", 400, alphaImportance), method("b()", 400, betaImportance));
+    }
+
+    @Test
+    void includesEveryBodyWithoutBudget() {
+        String listing = MethodBodySelector.combine(methods(1.0, 100.0), 0);
+
+        assertThat(listing).contains("Method: e()\n", "Method: a()\n", "Method: b()\n").doesNotContain("omitted");
+    }
+
+    @Test
+    void includesMostImportantBodiesAfterTheEntry() {
+        String listing = MethodBodySelector.combine(methods(1.0, 100.0), 150);
+
+        assertThat(listing).containsSubsequence("Method: e()\n", "Method: a() (body omitted)", "Method: b()\n")
+                .contains("(1 of 3 method bodies omitted to fit the prompt budget)");
+    }
+
+    @Test
+    void fallsBackToCallOrderWithoutImportances() {
+        String listing = MethodBodySelector.combine(methods(null, null), 150);
+
+        assertThat(listing).containsSubsequence("Method: e()\n", "Method: a()\n", "Method: b() (body omitted)");
+    }
+}